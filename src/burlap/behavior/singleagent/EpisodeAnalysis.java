@@ -5,8 +5,8 @@ import java.io.File;
 import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 
+import burlap.oomdp.auxiliary.EpisodeElementReader;
 import burlap.oomdp.auxiliary.StateParser;
 import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.State;
@@ -320,16 +320,43 @@ public class EpisodeAnalysis {
 	 * @return an EpisodeAnalysis object.
 	 */
 	public static EpisodeAnalysis parseFileIntoEA(String path, Domain d, StateParser sp){
+		return parseFileIntoEA(path, d, sp, null);
+	}
+	
+	
+	/**
+	 * Reads an episode that was written to a file and turns into an EpisodeAnalysis object, reading one time step of the file at a time
+	 * and informing a listener after each time step is parsed, so that the episode can be used while it is parsed.
+	 * @param path the path to the episode file.
+	 * @param d the domain to which the states and actions belong
+	 * @param sp a state parser that can parse the state string representation in the file
+	 * @param listener the listener informed after each time step is parsed; may be null
+	 * @return an EpisodeAnalysis object, which holds only the time steps parsed before the listener stopped parsing if it did.
+	 */
+	public static EpisodeAnalysis parseFileIntoEA(String path, Domain d, StateParser sp, ParseListener listener){
 		
-		//read whole file into string first
-		String fcont = null;
+		EpisodeAnalysis ea = new EpisodeAnalysis();
+		
+		EpisodeElementReader reader = new EpisodeElementReader(path);
 		try{
-			fcont = new Scanner(new File(path)).useDelimiter("\\Z").next();
-		}catch(Exception E){
-			System.out.println(E);
+			while(reader.next()){
+				State s = sp.stringToState(reader.getStateString());
+				if(reader.getActionString() != null){
+					ea.recordTransitionTo(getGAFromSpaceDelimGASTring(d, reader.getActionString()), s, Double.parseDouble(reader.getRewardString()));
+				}
+				else{
+					ea.addState(s);
+				}
+				if(listener != null && !listener.parsedTimeStep(ea, ea.stateSequence.size()-1)){
+					break;
+				}
+			}
+		}
+		finally{
+			reader.close();
 		}
 		
-		return parseStringIntoEA(fcont, d, sp);
+		return ea;
 	}
 	
 	
@@ -400,4 +427,24 @@ public class EpisodeAnalysis {
 	
 	
 	
+	
+	
+	/**
+	 * A listener that is informed as each time step of an episode file is parsed by {@link EpisodeAnalysis#parseFileIntoEA(String, Domain, StateParser, ParseListener)}.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface ParseListener{
+		
+		/**
+		 * Called after a time step has been parsed. The state of the time step has been added to the episode along with the action taken in it,
+		 * unless it is the last state of the episode.
+		 * @param ea the episode parsed so far
+		 * @param t the time step that was parsed
+		 * @return true if parsing should continue; false if it should stop.
+		 */
+		public boolean parsedTimeStep(EpisodeAnalysis ea, int t);
+		
+	}
+	
 }
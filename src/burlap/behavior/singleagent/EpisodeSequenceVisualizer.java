@@ -23,7 +23,10 @@ import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.GroundedProp;
 import burlap.oomdp.core.PropositionalFunction;
 import burlap.oomdp.core.State;
-import burlap.oomdp.singleagent.GroundedAction;
+import burlap.oomdp.visualizer.StreamingEpisodeLoader;
+import burlap.oomdp.visualizer.StreamingEpisodeLoader.LoadListener;
+import burlap.oomdp.visualizer.StreamingEpisodeLoader.LoadedEpisode;
+import burlap.oomdp.visualizer.StreamingEpisodeLoader.StepSink;
 import burlap.oomdp.visualizer.Visualizer;
 
 
@@ -33,6 +36,10 @@ import burlap.oomdp.visualizer.Visualizer;
 /**
  * This class is used to visualize a set of episodes that have been saves to files in a common directory. In an episode list, the action name is
  * selected action in the currently rendered state.
+ * <p/>
+ * Episode files are only parsed when they are selected, in a background thread by a {@link StreamingEpisodeLoader}, and their states are listed as
+ * they are parsed. The most recently viewed episodes are kept in memory (see {@link #setMaxCachedEpisodes(int)}); the field {@link #curEA} is set
+ * once the selected episode is fully parsed.
  * @author James MacGlashan
  *
  */
@@ -64,6 +71,9 @@ public class EpisodeSequenceVisualizer extends JFrame{
 	protected StateParser							sp;
 	
 	protected EpisodeAnalysis						curEA;
+	protected StreamingEpisodeLoader<EpisodeAnalysis>	loader;
+	protected LoadedEpisode<EpisodeAnalysis>		curEpisode;
+	protected int									maxCachedEpisodes = 8;
 	protected DefaultListModel						iterationListModel;
 	
 	protected Domain								domain;
@@ -110,6 +120,7 @@ public class EpisodeSequenceVisualizer extends JFrame{
 		
 		this.sp = sp;
 		
+		this.initLoader();
 		
 		this.initGUI();
 		
@@ -239,20 +250,49 @@ public class EpisodeSequenceVisualizer extends JFrame{
 	}
 	
 	
-	private void setIterationListData(){
+	/**
+	 * Sets the maximum number of fully parsed episodes that are kept in memory, so that returning to them does not parse their files again.
+	 * @param maxCachedEpisodes the maximum number of fully parsed episodes kept in memory
+	 */
+	public void setMaxCachedEpisodes(int maxCachedEpisodes){
+		this.maxCachedEpisodes = maxCachedEpisodes;
+		if(this.loader != null){
+			this.loader.setMaxCachedEpisodes(maxCachedEpisodes);
+		}
+	}
+	
+	
+	/**
+	 * Creates the loader that parses episode files in the background as they are selected.
+	 */
+	protected void initLoader(){
 		
-		//clear the old contents
-		iterationListModel.clear();
+		this.loader = new StreamingEpisodeLoader<EpisodeAnalysis>(new StreamingEpisodeLoader.EpisodeParser<EpisodeAnalysis>() {
+			
+			@Override
+			public EpisodeAnalysis parse(String path, final StepSink sink) {
+				return EpisodeAnalysis.parseFileIntoEA(path, domain, sp, new EpisodeAnalysis.ParseListener() {
+					
+					@Override
+					public boolean parsedTimeStep(EpisodeAnalysis ea, int t) {
+						//the label of a state is the action taken in it
+						String label = t < ea.actionSequence.size() ? ea.getAction(t).toString() : "final state";
+						return sink.addStep(ea.getState(t), label);
+					}
+				});
+			}
+		}, this.maxCachedEpisodes);
 		
+	}
+	
+	
+	private void appendIterationListData(){
 		
-		//add each action (which is taken in the state being renderd)
-		for(GroundedAction ga : curEA.actionSequence){
-			iterationListModel.addElement(ga.toString());
+		//add the label (the action taken in the state) of each state parsed since the last update
+		for(int i = iterationListModel.size(); i < curEpisode.numStates(); i++){
+			iterationListModel.addElement(curEpisode.getLabel(i));
 		}
 		
-		//add the final state
-		iterationListModel.addElement("final state");
-		
 	}
 	
 	private void handleEpisodeSelection(ListSelectionEvent e){
@@ -260,20 +300,41 @@ public class EpisodeSequenceVisualizer extends JFrame{
 		if (e.getValueIsAdjusting() == false) {
 
 			int ind = episodeList.getSelectedIndex();
-			//System.out.println("epsidoe id: " + ind);
        		if (ind != -1) {
        			
-				//System.out.println("Loading Episode File...");
-       			curEA = EpisodeAnalysis.parseFileIntoEA(episodeFiles.get(ind), domain, sp);
-				//curEA = EpisodeAnalysis.readEpisodeFromFile(episodeFiles.get(ind));
-				//System.out.println("Finished Loading Episode File.");
-				
+       			//parse the episode in the background and show its states as they are parsed
+       			iterationListModel.clear();
 				painter.updateState(new State()); //clear screen
-				this.setIterationListData();
 				
-			}
-			else{
-				//System.out.println("canceled selection");
+				curEpisode = loader.load(episodeFiles.get(ind), new LoadListener<EpisodeAnalysis>() {
+					
+					@Override
+					public void stepsAvailable(LoadedEpisode<EpisodeAnalysis> episode) {
+						if(episode == curEpisode){
+							appendIterationListData();
+						}
+					}
+					
+					@Override
+					public void loadFinished(LoadedEpisode<EpisodeAnalysis> episode) {
+						if(episode == curEpisode){
+							curEA = episode.getResult();
+							appendIterationListData();
+						}
+					}
+					
+					@Override
+					public void loadFailed(LoadedEpisode<EpisodeAnalysis> episode, RuntimeException ex) {
+						if(episode == curEpisode){
+							appendIterationListData();
+							propViewer.setText("Could not load " + episode.getPath() + ": " + ex);
+						}
+					}
+				});
+				
+				curEA = curEpisode.getResult();
+				this.appendIterationListData();
+				
 			}
 			
 		}
@@ -289,7 +350,7 @@ public class EpisodeSequenceVisualizer extends JFrame{
 				//System.out.println("Changing visualization...");
 				int index = iterationList.getSelectedIndex();
 				
-				State curState = curEA.getState(index);
+				State curState = curEpisode.getState(index);
 				
 				
 				
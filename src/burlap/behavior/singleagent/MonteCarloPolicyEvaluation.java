@@ -0,0 +1,672 @@
+package burlap.behavior.singleagent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import burlap.behavior.singleagent.options.Option;
+import burlap.debugtools.ParallelMatchEngine;
+import burlap.debugtools.RandomFactory;
+import burlap.oomdp.auxiliary.StateGenerator;
+import burlap.oomdp.core.AbstractGroundedAction;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.singleagent.GroundedAction;
+import burlap.oomdp.singleagent.RewardFunction;
+
+
+/**
+ * Estimates the expected discounted return and episode length of a {@link Policy} by Monte Carlo rollouts that are run concurrently
+ * on multiple threads. Each rollout follows the policy from an initial state until a terminal state is reached or the maximum number of
+ * steps is taken, as {@link Policy#evaluateBehavior(State, RewardFunction, TerminalFunction, int)} does, and the mean, variance and
+ * confidence interval of the returns and lengths are computed incrementally as rollouts finish. The rollouts are run by a {@link ParallelMatchEngine}.
+ * <p/>
+ * Each rollout is run inside a {@link RandomFactory} thread scope seeded by a seed derived from this evaluator's base seed and the
+ * index of the rollout, and the results of rollouts are added to the statistics strictly in the order of the rollout indices, so the
+ * estimates, including the rollout at which evaluation stops early, are reproducible as described in {@link RandomFactory#beginThreadScope(long)}.
+ * <p/>
+ * Evaluation stops early once at least {@link #setMinRollouts(int)} rollouts have finished and the width of the confidence interval of
+ * the mean discounted return is no greater than the width set with {@link #setTargetCIWidth(double)}; rollouts that are still running when
+ * evaluation stops are discarded. By default, only the summary statistics of the rollouts are kept and no {@link EpisodeAnalysis}
+ * objects are created; use {@link #setKeepEpisodes(boolean)} to also keep the episode of each rollout.
+ * <p/>
+ * Policies that are not thread safe, such as online planners like {@link burlap.behavior.singleagent.planning.stochastic.sparsesampling.SparseSampling}
+ * and {@link burlap.behavior.singleagent.planning.stochastic.montecarlo.uct.UCT} policies, should be evaluated with a {@link PolicyGenerator} that creates
+ * a separate policy for each thread.
+ * @author James MacGlashan
+ *
+ */
+public class MonteCarloPolicyEvaluation {
+
+	/**
+	 * The reward function used to compute returns
+	 */
+	protected RewardFunction		rf;
+
+	/**
+	 * The terminal function that ends rollouts
+	 */
+	protected TerminalFunction		tf;
+
+	/**
+	 * The discount factor used to compute returns
+	 */
+	protected double				gamma;
+
+	/**
+	 * The maximum number of steps of a rollout, with the meaning it has for {@link Policy#evaluateBehavior(State, RewardFunction, TerminalFunction, int)}
+	 */
+	protected int					maxSteps;
+
+	/**
+	 * The number of threads used to run rollouts
+	 */
+	protected int					nThreads;
+
+	/**
+	 * The seed from which the random scope seed of each rollout is derived
+	 */
+	protected long					baseSeed;
+
+	/**
+	 * The confidence interval width of the mean discounted return at which evaluation stops; evaluation does not stop early if it is not positive
+	 */
+	protected double				targetCIWidth = 0.;
+
+	/**
+	 * The minimum number of rollouts to finish before evaluation can stop early
+	 */
+	protected int					minRollouts = 30;
+
+	/**
+	 * The z value of the confidence level of confidence intervals
+	 */
+	protected double				z = 1.96;
+
+	/**
+	 * Whether the episode of each rollout is kept
+	 */
+	protected boolean				keepEpisodes = false;
+
+	/**
+	 * The listener that is told about each finished rollout; may be null
+	 */
+	protected RolloutListener		listener = null;
+
+
+
+	/**
+	 * Initializes. The base seed is drawn from the {@link RandomFactory} default generator.
+	 * @param rf the reward function used to compute returns
+	 * @param tf the terminal function that ends rollouts
+	 * @param gamma the discount factor used to compute returns
+	 * @param maxSteps the maximum number of steps of a rollout
+	 * @param nThreads the number of threads used to run rollouts
+	 */
+	public MonteCarloPolicyEvaluation(RewardFunction rf, TerminalFunction tf, double gamma, int maxSteps, int nThreads){
+		this(rf, tf, gamma, maxSteps, nThreads, RandomFactory.getMapped(0).nextLong());
+	}
+
+
+	/**
+	 * Initializes.
+	 * @param rf the reward function used to compute returns
+	 * @param tf the terminal function that ends rollouts
+	 * @param gamma the discount factor used to compute returns
+	 * @param maxSteps the maximum number of steps of a rollout
+	 * @param nThreads the number of threads used to run rollouts
+	 * @param baseSeed the seed from which the random scope seed of each rollout is derived
+	 */
+	public MonteCarloPolicyEvaluation(RewardFunction rf, TerminalFunction tf, double gamma, int maxSteps, int nThreads, long baseSeed){
+		if(nThreads < 1){
+			throw new RuntimeException("Monte Carlo policy evaluation requires at least one thread.");
+		}
+		this.rf = rf;
+		this.tf = tf;
+		this.gamma = gamma;
+		this.maxSteps = maxSteps;
+		this.nThreads = nThreads;
+		this.baseSeed = baseSeed;
+	}
+
+
+	/**
+	 * Sets the number of threads used to run rollouts.
+	 * @param nThreads the number of threads used to run rollouts.
+	 */
+	public void setNumThreads(int nThreads){
+		if(nThreads < 1){
+			throw new RuntimeException("Monte Carlo policy evaluation requires at least one thread.");
+		}
+		this.nThreads = nThreads;
+	}
+
+
+	/**
+	 * Sets the seed from which the random scope seed of each rollout is derived.
+	 * @param baseSeed the seed from which the random scope seed of each rollout is derived.
+	 */
+	public void setBaseSeed(long baseSeed){
+		this.baseSeed = baseSeed;
+	}
+
+
+	/**
+	 * Sets the width of the confidence interval of the mean discounted return at which evaluation stops early. If the width is not
+	 * positive, all requested rollouts are run.
+	 * @param targetCIWidth the confidence interval width at which evaluation stops.
+	 */
+	public void setTargetCIWidth(double targetCIWidth){
+		this.targetCIWidth = targetCIWidth;
+	}
+
+
+	/**
+	 * Sets the minimum number of rollouts that must finish before evaluation can stop early, so that the confidence interval is not
+	 * computed from a variance estimate of very few samples. The default is 30.
+	 * @param minRollouts the minimum number of rollouts before evaluation can stop early.
+	 */
+	public void setMinRollouts(int minRollouts){
+		this.minRollouts = minRollouts;
+	}
+
+
+	/**
+	 * Sets the z value of the confidence level of confidence intervals, which are computed with the normal approximation. The default,
+	 * 1.96, gives 95% confidence intervals.
+	 * @param z the z value of the confidence level.
+	 */
+	public void setZ(double z){
+		this.z = z;
+	}
+
+
+	/**
+	 * Sets whether the {@link EpisodeAnalysis} of each rollout is kept and returned in the {@link Result}. When episodes are not kept,
+	 * rollouts only accumulate their return and length.
+	 * @param keepEpisodes whether the episode of each rollout is kept.
+	 */
+	public void setKeepEpisodes(boolean keepEpisodes){
+		this.keepEpisodes = keepEpisodes;
+	}
+
+
+	/**
+	 * Sets the listener that is told about each finished rollout, in rollout index order.
+	 * @param listener the listener; may be null.
+	 */
+	public void setRolloutListener(RolloutListener listener){
+		this.listener = listener;
+	}
+
+
+	/**
+	 * Returns the random scope seed of the rollout with the given index. Running the policy from the rollout's initial state inside a
+	 * {@link RandomFactory} thread scope begun with this seed reproduces the rollout.
+	 * @param rolloutIndex the index of the rollout
+	 * @return the random scope seed of the rollout
+	 */
+	public long rolloutSeed(int rolloutIndex){
+		return this.engine().matchSeed(rolloutIndex);
+	}
+
+
+	/**
+	 * Evaluates a policy that is shared by all threads, and must therefore be thread safe, from a fixed initial state.
+	 * @param p the policy to evaluate
+	 * @param initialState the initial state of each rollout
+	 * @param numRollouts the maximum number of rollouts
+	 * @return the result of the evaluation
+	 */
+	public Result evaluate(final Policy p, State initialState, int numRollouts){
+		return this.evaluate(new SharedPolicy(p), new FixedState(initialState), numRollouts);
+	}
+
+
+	/**
+	 * Evaluates a policy that is shared by all threads, and must therefore be thread safe, from initial states drawn from a state generator.
+	 * @param p the policy to evaluate
+	 * @param initialStates the generator of the initial state of each rollout, which is called by one thread at a time
+	 * @param numRollouts the maximum number of rollouts
+	 * @return the result of the evaluation
+	 */
+	public Result evaluate(Policy p, StateGenerator initialStates, int numRollouts){
+		return this.evaluate(new SharedPolicy(p), initialStates, numRollouts);
+	}
+
+
+	/**
+	 * Evaluates the policies created by a policy generator, which creates a separate policy for each thread, from a fixed initial state.
+	 * @param policies the generator of the policy of each thread
+	 * @param initialState the initial state of each rollout
+	 * @param numRollouts the maximum number of rollouts
+	 * @return the result of the evaluation
+	 */
+	public Result evaluate(PolicyGenerator policies, State initialState, int numRollouts){
+		return this.evaluate(policies, new FixedState(initialState), numRollouts);
+	}
+
+
+	/**
+	 * Evaluates the policies created by a policy generator, which creates a separate policy for each thread, from initial states drawn
+	 * from a state generator. The state generator is called inside the random scope of each rollout, by one thread at a time.
+	 * @param policies the generator of the policy of each thread
+	 * @param initialStates the generator of the initial state of each rollout
+	 * @param numRollouts the maximum number of rollouts
+	 * @return the result of the evaluation
+	 */
+	public Result evaluate(final PolicyGenerator policies, final StateGenerator initialStates, final int numRollouts){
+
+		final Result result = new Result(this.keepEpisodes);
+
+		this.engine().run(numRollouts, new ParallelMatchEngine.MatchTaskFactory<RolloutOutcome>() {
+			@Override
+			public ParallelMatchEngine.MatchTask<RolloutOutcome> createTask(int workerIndex) {
+				final Policy p = policies.generatePolicy(workerIndex);
+				return new ParallelMatchEngine.MatchTask<RolloutOutcome>() {
+					@Override
+					public RolloutOutcome runMatch(int rolloutIndex) {
+						State s;
+						synchronized(initialStates){
+							s = initialStates.generateState();
+						}
+						return MonteCarloPolicyEvaluation.this.rollout(p, s);
+					}
+				};
+			}
+		}, new ParallelMatchEngine.ResultCommitter<RolloutOutcome>() {
+			@Override
+			public void commit(int rolloutIndex, RolloutOutcome outcome) {
+				MonteCarloPolicyEvaluation.this.commit(result, rolloutIndex, outcome);
+			}
+		}, new ParallelMatchEngine.StopCondition() {
+			@Override
+			public boolean shouldStop() {
+				result.stoppedEarly = MonteCarloPolicyEvaluation.this.shouldStop(result);
+				return result.stoppedEarly;
+			}
+		});
+
+		result.stoppedEarly = result.stoppedEarly && result.numRollouts() < numRollouts;
+
+		return result;
+	}
+
+
+	/**
+	 * Returns the engine that runs the rollouts, whose match seeds are the rollout seeds.
+	 */
+	protected ParallelMatchEngine engine(){
+		return new ParallelMatchEngine(this.nThreads, this.baseSeed);
+	}
+
+
+	/**
+	 * Adds a finished rollout to the result and tells the listener about it.
+	 */
+	protected void commit(Result result, int rolloutIndex, RolloutOutcome outcome){
+		result.returns.add(outcome.discountedReturn);
+		result.lengths.add(outcome.numSteps);
+		if(outcome.reachedTerminal){
+			result.numTerminated++;
+		}
+		if(result.episodes != null){
+			result.episodes.add(outcome.episode);
+		}
+		if(this.listener != null){
+			this.listener.rolloutFinished(rolloutIndex, outcome.discountedReturn, outcome.numSteps, result);
+		}
+	}
+
+
+	/**
+	 * Returns whether enough rollouts have been added to the result that evaluation can stop.
+	 */
+	protected boolean shouldStop(Result result){
+		return this.targetCIWidth > 0. && result.numRollouts() >= Math.max(2, this.minRollouts)
+				&& 2. * result.returns.confidenceHalfWidth(this.z) <= this.targetCIWidth;
+	}
+
+
+	/**
+	 * Follows a policy from the given state until a terminal state is reached or the maximum number of steps is taken. If episodes are
+	 * kept, the rollout is recorded with {@link Policy#evaluateBehavior(State, RewardFunction, TerminalFunction, int)}; otherwise only its return
+	 * and length are accumulated, with the same treatment of options as that method.
+	 * @param p the policy to follow
+	 * @param s the initial state
+	 * @return the outcome of the rollout
+	 */
+	protected RolloutOutcome rollout(Policy p, State s){
+
+		if(this.keepEpisodes){
+			EpisodeAnalysis ea = p.evaluateBehavior(s, this.rf, this.tf, this.maxSteps);
+			State last = ea.getState(ea.maxTimeStep());
+			return new RolloutOutcome(ea.getDiscountedReturn(this.gamma), ea.maxTimeStep(), this.tf.isTerminal(last), ea);
+		}
+
+		double sum = 0.;
+		double discount = 1.;
+		int nSteps = 0;
+		int stepCount = 0;
+		State cur = s;
+		//like evaluateBehavior, the step limit is compared to 0 before the first step and to the number of states of the episode after it
+		while(!this.tf.isTerminal(cur) && stepCount < this.maxSteps){
+
+			AbstractGroundedAction aga = p.getAction(cur);
+			if(aga == null){
+				throw new Policy.PolicyUndefinedException();
+			}
+			if(!(aga instanceof GroundedAction)){
+				throw new RuntimeException("cannot folow policy for non-single agent actions");
+			}
+			GroundedAction ga = (GroundedAction)aga;
+
+			if(ga.action.isPrimitive() || !p.evaluateDecomposesOptions){
+				State next = ga.executeIn(cur);
+				sum += discount * this.rf.reward(cur, ga, next);
+				discount *= this.gamma;
+				nSteps++;
+				cur = next;
+			}
+			else{
+				Option o = (Option)ga.action;
+				o.initiateInState(cur, ga.params);
+				do{
+					GroundedAction cga = o.oneStepActionSelection(cur, ga.params);
+					State next = cga.executeIn(cur);
+					sum += discount * this.rf.reward(cur, cga, next);
+					discount *= this.gamma;
+					nSteps++;
+					cur = next;
+				}while(o.continueFromState(cur, ga.params));
+			}
+			stepCount = nSteps + 1;
+
+		}
+
+		return new RolloutOutcome(sum, nSteps, this.tf.isTerminal(cur), null);
+	}
+
+
+
+	/**
+	 * Creates the policy used by each thread of an evaluation, so that policies that are not thread safe can be evaluated concurrently.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface PolicyGenerator{
+
+		/**
+		 * Returns the policy used by the thread with the given index. It is called once by each thread, before the thread runs any rollout.
+		 * @param workerIndex the index of the thread
+		 * @return the policy used by the thread
+		 */
+		public Policy generatePolicy(int workerIndex);
+
+	}
+
+
+	/**
+	 * Is told about each rollout of an evaluation when it is added to the statistics, in rollout index order. Calls are never concurrent,
+	 * but may be made by any of the threads of the evaluation.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface RolloutListener{
+
+		/**
+		 * Called when a rollout is added to the statistics.
+		 * @param rolloutIndex the index of the rollout
+		 * @param discountedReturn the discounted return of the rollout
+		 * @param numSteps the number of steps of the rollout
+		 * @param statistics the result of the evaluation so far, which includes the rollout
+		 */
+		public void rolloutFinished(int rolloutIndex, double discountedReturn, int numSteps, Result statistics);
+
+	}
+
+
+
+	/**
+	 * The result of an evaluation: the statistics of the discounted returns and lengths of the rollouts, and their episodes if episodes were kept.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class Result{
+
+		/**
+		 * The statistics of the discounted returns of the rollouts
+		 */
+		public final RunningStatistics		returns = new RunningStatistics();
+
+		/**
+		 * The statistics of the number of steps of the rollouts
+		 */
+		public final RunningStatistics		lengths = new RunningStatistics();
+
+		/**
+		 * The episode of each rollout, in rollout index order; null if episodes were not kept
+		 */
+		public final List<EpisodeAnalysis>	episodes;
+
+		/**
+		 * The number of rollouts that ended in a terminal state rather than by reaching the maximum number of steps
+		 */
+		protected int						numTerminated = 0;
+
+		/**
+		 * Whether evaluation stopped before all requested rollouts were run because the confidence interval was narrow enough
+		 */
+		protected boolean					stoppedEarly = false;
+
+
+		protected Result(boolean keepEpisodes){
+			this.episodes = keepEpisodes ? new ArrayList<EpisodeAnalysis>() : null;
+		}
+
+
+		/**
+		 * Returns the number of rollouts in the statistics.
+		 * @return the number of rollouts in the statistics.
+		 */
+		public int numRollouts(){
+			return this.returns.n();
+		}
+
+
+		/**
+		 * Returns the number of rollouts that ended in a terminal state rather than by reaching the maximum number of steps.
+		 * @return the number of rollouts that ended in a terminal state.
+		 */
+		public int numTerminated(){
+			return this.numTerminated;
+		}
+
+
+		/**
+		 * Returns whether evaluation stopped before all requested rollouts were run because the confidence interval of the mean
+		 * discounted return was narrow enough.
+		 * @return true if evaluation stopped early; false otherwise.
+		 */
+		public boolean stoppedEarly(){
+			return this.stoppedEarly;
+		}
+
+
+		@Override
+		public String toString(){
+			return "rollouts: " + this.numRollouts() + (this.stoppedEarly ? " (stopped early)" : "") + ", terminated: " + this.numTerminated
+					+ "\nreturn: " + this.returns + "\nlength: " + this.lengths;
+		}
+
+	}
+
+
+
+	/**
+	 * Computes the mean, variance and confidence interval of a stream of samples incrementally, with Welford's method.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class RunningStatistics{
+
+		protected int		n = 0;
+		protected double	mean = 0.;
+		protected double	m2 = 0.;
+		protected double	min = Double.POSITIVE_INFINITY;
+		protected double	max = Double.NEGATIVE_INFINITY;
+
+
+		/**
+		 * Adds a sample.
+		 * @param x the sample
+		 */
+		public void add(double x){
+			this.n++;
+			double d = x - this.mean;
+			this.mean += d / this.n;
+			this.m2 += d * (x - this.mean);
+			this.min = Math.min(this.min, x);
+			this.max = Math.max(this.max, x);
+		}
+
+
+		/**
+		 * Returns the number of samples.
+		 * @return the number of samples.
+		 */
+		public int n(){
+			return this.n;
+		}
+
+
+		/**
+		 * Returns the mean of the samples; 0 if there are none.
+		 * @return the mean of the samples.
+		 */
+		public double mean(){
+			return this.mean;
+		}
+
+
+		/**
+		 * Returns the unbiased sample variance of the samples; 0 if there are fewer than two.
+		 * @return the sample variance of the samples.
+		 */
+		public double variance(){
+			return this.n > 1 ? this.m2 / (this.n - 1) : 0.;
+		}
+
+
+		/**
+		 * Returns the standard deviation of the samples.
+		 * @return the standard deviation of the samples.
+		 */
+		public double stdDev(){
+			return Math.sqrt(this.variance());
+		}
+
+
+		/**
+		 * Returns the standard error of the mean.
+		 * @return the standard error of the mean.
+		 */
+		public double stdError(){
+			return this.n > 0 ? Math.sqrt(this.variance() / this.n) : Double.POSITIVE_INFINITY;
+		}
+
+
+		/**
+		 * Returns half the width of the normal approximation confidence interval of the mean with the given z value.
+		 * @param z the z value of the confidence level, such as 1.96 for a 95% confidence interval
+		 * @return half the width of the confidence interval of the mean.
+		 */
+		public double confidenceHalfWidth(double z){
+			return z * this.stdError();
+		}
+
+
+		/**
+		 * Returns the smallest sample.
+		 * @return the smallest sample.
+		 */
+		public double min(){
+			return this.min;
+		}
+
+
+		/**
+		 * Returns the largest sample.
+		 * @return the largest sample.
+		 */
+		public double max(){
+			return this.max;
+		}
+
+
+		@Override
+		public String toString(){
+			return "mean " + this.mean + " +/- " + this.confidenceHalfWidth(1.96) + " (95%), std dev " + this.stdDev() + ", min " + this.min + ", max " + this.max;
+		}
+
+	}
+
+
+
+	/**
+	 * The outcome of a single rollout.
+	 */
+	protected static class RolloutOutcome{
+
+		protected double			discountedReturn;
+		protected int				numSteps;
+		protected boolean			reachedTerminal;
+		protected EpisodeAnalysis	episode;
+
+		protected RolloutOutcome(double discountedReturn, int numSteps, boolean reachedTerminal, EpisodeAnalysis episode){
+			this.discountedReturn = discountedReturn;
+			this.numSteps = numSteps;
+			this.reachedTerminal = reachedTerminal;
+			this.episode = episode;
+		}
+
+	}
+
+
+	/**
+	 * A policy generator that gives every thread the same policy.
+	 */
+	protected static class SharedPolicy implements PolicyGenerator{
+
+		protected Policy p;
+
+		protected SharedPolicy(Policy p){
+			this.p = p;
+		}
+
+		@Override
+		public Policy generatePolicy(int workerIndex){
+			return this.p;
+		}
+
+	}
+
+
+	/**
+	 * A state generator that returns the same state for every rollout. The state is not copied, because rollouts do not modify states.
+	 */
+	protected static class FixedState implements StateGenerator{
+
+		protected State s;
+
+		protected FixedState(State s){
+			this.s = s;
+		}
+
+		@Override
+		public State generateState(){
+			return this.s;
+		}
+
+	}
+
+}
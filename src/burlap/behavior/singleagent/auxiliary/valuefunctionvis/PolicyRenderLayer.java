@@ -1,12 +1,27 @@
 package burlap.behavior.singleagent.auxiliary.valuefunctionvis;
 
+import java.awt.Component;
 import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
 import java.util.Collection;
+import java.util.List;
 
 import burlap.behavior.singleagent.Policy;
+import burlap.behavior.singleagent.Policy.ActionProb;
+import burlap.behavior.singleagent.auxiliary.valuefunctionvis.TiledStateRenderer.StateTilePainter;
+import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.State;
 import burlap.oomdp.visualizer.RenderLayer;
 
+/**
+ * Used to visualize a policy for a collection of states with a {@link StatePolicyPainter}. Nothing is rendered if either the painter or the policy is null.
+ * <p/>
+ * By default, every state is painted with the policy each time the layer is rendered. For large state collections, tiled rendering can be enabled with
+ * {@link #enableTiledRendering(Component, int)}, in which case the action distribution of each state is computed once, in the background and possibly in parallel,
+ * and the states are painted into cached tiles with a {@link TiledStateRenderer}. The distributions are then only computed again when {@link #refresh()} is called.
+ * @author James MacGlashan
+ *
+ */
 public class PolicyRenderLayer implements RenderLayer{
 
 	/**
@@ -24,6 +39,21 @@ public class PolicyRenderLayer implements RenderLayer{
 	 */
 	protected Policy							policy;
 	
+	/**
+	 * The tiled renderer used when tiled rendering is enabled; null otherwise
+	 */
+	protected TiledStateRenderer				tiledRenderer = null;
+	
+	/**
+	 * The painter of the tiled renderer; null if tiled rendering is disabled
+	 */
+	protected PolicyTilePainter					tilePainter = null;
+	
+	/**
+	 * The painter with which the tiles of the tiled renderer were last painted
+	 */
+	protected StatePolicyPainter				tiledSpp = null;
+	
 	
 	public PolicyRenderLayer(Collection <State> states, StatePolicyPainter spp, Policy policy){
 		this.statesToVisualize = states;
@@ -46,6 +76,9 @@ public class PolicyRenderLayer implements RenderLayer{
 	 */
 	public void setStateValuesToVisualize(Collection<State> stateValuesToVisualize) {
 		this.statesToVisualize = stateValuesToVisualize;
+		if(this.tiledRenderer != null){
+			this.tiledRenderer.setStates(stateValuesToVisualize);
+		}
 	}
 	
 	/**
@@ -63,6 +96,11 @@ public class PolicyRenderLayer implements RenderLayer{
 	 */
 	public void setSpp(StatePolicyPainter spp) {
 		this.spp = spp;
+		if(this.tiledRenderer != null && spp != null && spp != this.tiledSpp){
+			//hiding and showing the policy with the same painter does not require repainting the tiles
+			this.tiledSpp = spp;
+			this.tiledRenderer.repaintAll();
+		}
 	}
 	
 	
@@ -81,6 +119,53 @@ public class PolicyRenderLayer implements RenderLayer{
 	 */
 	public void setPolicy(Policy policy) {
 		this.policy = policy;
+		if(this.tilePainter != null){
+			this.tilePainter.policy = policy;
+		}
+		this.refresh();
+	}
+	
+	
+	/**
+	 * Enables tiled rendering, in which the action distributions of the states are computed once and the states are painted into cached tiles by a {@link TiledStateRenderer}.
+	 * If more than one thread is used, the policy's {@link Policy#getActionDistributionForState(State)} method and the painter must be thread safe.
+	 * @param repaintTarget the component on which this layer is rendered, which is repainted when distributions and tiles have been computed in the background. If null, they are computed when the layer is rendered.
+	 * @param nThreads the number of threads used to compute the distributions and paint the tiles
+	 */
+	public void enableTiledRendering(Component repaintTarget, int nThreads){
+		this.tilePainter = new PolicyTilePainter(this.policy);
+		this.tiledRenderer = new TiledStateRenderer(this.statesToVisualize, this.tilePainter, repaintTarget);
+		this.tiledSpp = this.spp;
+		this.tiledRenderer.setNumThreads(nThreads);
+	}
+	
+	
+	/**
+	 * Disables tiled rendering, so that every state is painted with the policy every time the layer is rendered.
+	 */
+	public void disableTiledRendering(){
+		this.tiledRenderer = null;
+		this.tilePainter = null;
+	}
+	
+	
+	/**
+	 * Returns the tiled renderer used when tiled rendering is enabled.
+	 * @return the tiled renderer used when tiled rendering is enabled; null if it is disabled.
+	 */
+	public TiledStateRenderer getTiledRenderer(){
+		return this.tiledRenderer;
+	}
+	
+	
+	/**
+	 * If tiled rendering is enabled, causes the action distributions of the states to be computed again, for instance after the policy's planner has
+	 * been updated, and only the tiles of states whose distribution changed to be painted again. Has no effect otherwise.
+	 */
+	public void refresh(){
+		if(this.tiledRenderer != null){
+			this.tiledRenderer.refresh();
+		}
 	}
 
 	@Override
@@ -90,10 +175,127 @@ public class PolicyRenderLayer implements RenderLayer{
 			return;
 		}
 		
+		if(this.tiledRenderer != null){
+			this.tiledRenderer.render(g2, width, height);
+			return;
+		}
+		
 		for(State s : this.statesToVisualize){
 			this.spp.paintStatePolicy(g2, s, policy, width, height);
 		}
 		
 	}
 	
+	
+	
+	/**
+	 * The {@link StateTilePainter} of this layer's tiled renderer, which computes the action distribution of each state and paints each state with
+	 * a {@link CachedDistributionPolicy} that returns its distribution.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected class PolicyTilePainter implements StateTilePainter{
+
+		/**
+		 * The policy whose action distributions are computed, set when tiled rendering is enabled and when the layer's policy is set, so that
+		 * the background threads never see a policy that is being replaced; null if there is no policy
+		 */
+		protected volatile Policy		policy;
+		
+		public PolicyTilePainter(Policy policy){
+			this.policy = policy;
+		}
+
+		@Override
+		public Object computeStateData(State s) {
+			Policy p = this.policy;
+			if(p == null){
+				return null;
+			}
+			return p.getActionDistributionForState(s);
+		}
+
+		@Override
+		public boolean dataChanged(Object[] newData, Object[] oldData) {
+			return false;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean sameData(Object a, Object b) {
+			if(a == null || b == null){
+				return a == b;
+			}
+			List<ActionProb> da = (List<ActionProb>)a;
+			List<ActionProb> db = (List<ActionProb>)b;
+			if(da.size() != db.size()){
+				return false;
+			}
+			for(int i = 0; i < da.size(); i++){
+				if(da.get(i).pSelection != db.get(i).pSelection || !da.get(i).ga.equals(db.get(i).ga)){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void paintState(Graphics2D g2, State s, Object data, float cWidth, float cHeight) {
+			StatePolicyPainter painter = PolicyRenderLayer.this.spp;
+			if(painter != null){
+				painter.paintStatePolicy(g2, s, new CachedDistributionPolicy((List<ActionProb>)data), cWidth, cHeight);
+			}
+		}
+
+		@Override
+		public Rectangle2D getStateRegion(State s, float cWidth, float cHeight) {
+			if(PolicyRenderLayer.this.spp instanceof StateRegionPainter){
+				return ((StateRegionPainter)PolicyRenderLayer.this.spp).getStateRegion(s, cWidth, cHeight);
+			}
+			return null;
+		}
+		
+	}
+	
+	
+	/**
+	 * A policy that returns a previously computed action distribution for a state, used to paint a state with a {@link StatePolicyPainter}
+	 * without querying the rendered policy again.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class CachedDistributionPolicy extends Policy{
+
+		/**
+		 * The action distribution of the state; null if the policy is undefined for it
+		 */
+		protected List<ActionProb>		distribution;
+		
+		public CachedDistributionPolicy(List<ActionProb> distribution){
+			this.distribution = distribution;
+		}
+		
+		@Override
+		public AbstractGroundedAction getAction(State s) {
+			return this.sampleFromActionDistribution(s);
+		}
+
+		@Override
+		public List<ActionProb> getActionDistributionForState(State s) {
+			return this.distribution;
+		}
+
+		@Override
+		public boolean isStochastic() {
+			return true;
+		}
+
+		@Override
+		public boolean isDefinedFor(State s) {
+			return this.distribution != null;
+		}
+		
+	}
+	
 }
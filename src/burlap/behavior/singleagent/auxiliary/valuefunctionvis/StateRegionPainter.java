@@ -0,0 +1,26 @@
+package burlap.behavior.singleagent.auxiliary.valuefunctionvis;
+
+import java.awt.geom.Rectangle2D;
+
+import burlap.oomdp.core.State;
+
+
+/**
+ * An interface for state painters, such as {@link StateValuePainter} and {@link StatePolicyPainter} implementations, that can report the region of the
+ * canvas to which they paint a state. Render layers that cache their rendering in tiles with a {@link TiledStateRenderer} use the region to
+ * repaint only the tiles of states whose rendering changed; states of painters that do not implement this interface are painted in every tile.
+ * @author James MacGlashan
+ *
+ */
+public interface StateRegionPainter {
+
+	/**
+	 * Returns a rectangle that contains everything the painter paints for the given state.
+	 * @param s the state
+	 * @param cWidth width of the canvas size
+	 * @param cHeight height of the canvas size
+	 * @return a rectangle that contains everything painted for the state.
+	 */
+	public Rectangle2D getStateRegion(State s, float cWidth, float cHeight);
+
+}
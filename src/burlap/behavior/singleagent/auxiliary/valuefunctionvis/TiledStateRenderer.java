@@ -0,0 +1,601 @@
+package burlap.behavior.singleagent.auxiliary.valuefunctionvis;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import burlap.debugtools.ParallelMatchEngine;
+import burlap.oomdp.core.State;
+
+
+/**
+ * Renders a collection of states to a canvas through a cache of offscreen tiles, for render layers such as {@link ValueFunctionRenderLayer} and
+ * {@link PolicyRenderLayer} that paint every state of a large collection. The data needed to paint each state, such as its value or action distribution,
+ * is computed once by a {@link StateTilePainter} and kept until {@link #refresh()} is called, and the states are painted into tiles of the canvas
+ * that are kept as images and drawn with one image copy each. When the data is refreshed, only the tiles of states whose data changed are painted
+ * again, unless the painter reports that the change affects every state (for instance, because the range of values changed).
+ * <p/>
+ * If a component to repaint is given, the data is computed and the tiles are painted by a background thread, so that {@link #render(Graphics2D, float, float)}
+ * never blocks the thread that paints the canvas: until the tiles for the current canvas size are painted, it draws the previous tiles, scaled
+ * if the canvas was resized, and the component is repainted when the background thread finishes. The data of the states and the tiles can be computed by
+ * multiple threads, in which case the painter must be thread safe. If no component is given, everything is computed in the calling thread when
+ * the layer is rendered.
+ * <p/>
+ * Tiles are only painted with the states whose region, as reported by the painter's {@link StateTilePainter#getStateRegion(State, float, float)}, intersects them.
+ * States whose region is unknown are painted in every tile.
+ * @author James MacGlashan
+ *
+ */
+public class TiledStateRenderer {
+
+	/**
+	 * The painter of the states
+	 */
+	protected StateTilePainter				painter;
+
+	/**
+	 * The states to render, in painting order
+	 */
+	protected List<State>					states;
+
+	/**
+	 * The component that is repainted when the background thread has painted new tiles; if null, rendering is synchronous
+	 */
+	protected Component						repaintTarget;
+
+	/**
+	 * The number of threads used to compute the data of the states and paint the tiles
+	 */
+	protected int							nThreads = 1;
+
+	/**
+	 * The width and height of a tile in pixels
+	 */
+	protected int							tileSize = 128;
+
+	/**
+	 * The data of each state; null until it is first computed
+	 */
+	protected Object []						data = null;
+
+	/**
+	 * The states list for which the data was computed; the data is only used while this is the current states list
+	 */
+	protected List<State>					dataStates = null;
+
+	/**
+	 * Whether the data of the states must be recomputed
+	 */
+	protected boolean						dataStale = true;
+
+	/**
+	 * Whether every tile must be repainted, even if the data of its states did not change
+	 */
+	protected boolean						tilesStale = true;
+
+	/**
+	 * The tiles of the current canvas size, or of the last size for which tiles were laid out
+	 */
+	protected TileLayout					layout = null;
+
+	/**
+	 * The tiles of the previous canvas size, drawn scaled until the tiles of the current layout are painted
+	 */
+	protected TileLayout					previousLayout = null;
+
+	/**
+	 * The width of the canvas on which the states were last rendered
+	 */
+	protected int							requestedWidth = 0;
+
+	/**
+	 * The height of the canvas on which the states were last rendered
+	 */
+	protected int							requestedHeight = 0;
+
+	/**
+	 * Whether a background thread is computing data or painting tiles
+	 */
+	protected boolean						working = false;
+
+
+
+	/**
+	 * Initializes.
+	 * @param states the states to render, in painting order
+	 * @param painter the painter of the states
+	 * @param repaintTarget the component to repaint when new tiles have been painted in the background; if null, rendering is synchronous
+	 */
+	public TiledStateRenderer(Collection<State> states, StateTilePainter painter, Component repaintTarget){
+		this.states = new ArrayList<State>(states);
+		this.painter = painter;
+		this.repaintTarget = repaintTarget;
+	}
+
+
+	/**
+	 * Sets the states to render, whose data is then computed again. Any data or layout that the background thread is computing for the
+	 * previous states is discarded when it finishes.
+	 * @param states the states to render, in painting order
+	 */
+	public synchronized void setStates(Collection<State> states){
+		this.states = new ArrayList<State>(states);
+		this.data = null;
+		this.dataStates = null;
+		this.dataStale = true;
+		this.layout = null;
+		this.requestRepaint();
+	}
+
+
+	/**
+	 * Sets the number of threads used to compute the data of the states and paint the tiles. If it is greater than 1, the painter must be thread safe.
+	 * @param nThreads the number of threads.
+	 */
+	public synchronized void setNumThreads(int nThreads){
+		if(nThreads < 1){
+			throw new RuntimeException("A tiled state renderer requires at least one thread.");
+		}
+		this.nThreads = nThreads;
+	}
+
+
+	/**
+	 * Sets the width and height of a tile in pixels.
+	 * @param tileSize the width and height of a tile in pixels.
+	 */
+	public synchronized void setTileSize(int tileSize){
+		if(tileSize < 1){
+			throw new RuntimeException("The tile size must be positive.");
+		}
+		this.tileSize = tileSize;
+		this.tilesStale = true;
+	}
+
+
+	/**
+	 * Marks the data of the states as out of date, so that it is computed again the next time the states are rendered, and the component is repainted.
+	 * Only the tiles of states whose data changed are then painted again.
+	 */
+	public synchronized void refresh(){
+		this.dataStale = true;
+		this.requestRepaint();
+	}
+
+
+	/**
+	 * Marks every tile as out of date, for instance because the way the painter paints states has changed, so that they are painted again the next time the
+	 * states are rendered, and the component is repainted. The data of the states is not computed again.
+	 */
+	public synchronized void repaintAll(){
+		this.tilesStale = true;
+		this.requestRepaint();
+	}
+
+
+	/**
+	 * Renders the states. If rendering is synchronous, any out of date data and tiles are first computed by the calling thread; otherwise the background thread
+	 * is started to compute them, and the current tiles are drawn.
+	 * @param g2 the graphics context of the canvas
+	 * @param width the width of the canvas
+	 * @param height the height of the canvas
+	 */
+	public void render(Graphics2D g2, float width, float height){
+
+		int w = Math.max(1, (int)Math.ceil(width));
+		int h = Math.max(1, (int)Math.ceil(height));
+
+		boolean synchronous;
+		synchronized(this){
+			this.requestedWidth = w;
+			this.requestedHeight = h;
+			synchronous = this.repaintTarget == null;
+			if(!synchronous && this.needsWork() && !this.working){
+				this.working = true;
+				Thread worker = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						TiledStateRenderer.this.work();
+					}
+				}, "Tiled state renderer");
+				worker.setDaemon(true);
+				worker.start();
+			}
+		}
+
+		if(synchronous){
+			this.work();
+		}
+
+		TileLayout lay;
+		TileLayout prev;
+		synchronized(this){
+			lay = this.layout;
+			prev = this.previousLayout;
+		}
+
+		if(lay == null || !lay.complete()){
+			if(prev != null){
+				prev.draw(g2, w, h);
+			}
+		}
+		if(lay != null){
+			lay.draw(g2, w, h);
+		}
+
+	}
+
+
+	/**
+	 * Returns whether the data or tiles for the last requested canvas size are out of date.
+	 */
+	protected boolean needsWork(){
+		return this.dataStale || this.data == null || this.dataStates != this.states || this.tilesStale || this.layout == null || this.layout.states != this.states
+				|| this.layout.width != this.requestedWidth || this.layout.height != this.requestedHeight || !this.layout.complete();
+	}
+
+
+	/**
+	 * Computes out of date data and paints out of date tiles until everything is up to date for the last requested canvas size. A layout or data
+	 * computed for a states list that has since been replaced by {@link #setStates(Collection)} is discarded rather than installed.
+	 */
+	protected void work(){
+
+		try{
+			while(true){
+
+				int w, h;
+				boolean recompute;
+				boolean repaintEverything;
+				TileLayout lay;
+				List<State> st;
+				Object [] oldData;
+				synchronized(this){
+					if(!this.needsWork()){
+						break;
+					}
+					w = this.requestedWidth;
+					h = this.requestedHeight;
+					st = this.states;
+					recompute = this.dataStale || this.data == null || this.dataStates != st;
+					repaintEverything = this.tilesStale;
+					this.dataStale = false;
+					this.tilesStale = false;
+					lay = this.layout;
+					oldData = this.dataStates == st ? this.data : null;
+				}
+
+				boolean [] dirty = null;
+				if(lay == null || lay.states != st || lay.width != w || lay.height != h || repaintEverything){
+					TileLayout nl = this.layOut(st, w, h);
+					synchronized(this){
+						if(this.states != st){
+							//the states were replaced while laying out
+							continue;
+						}
+						if(lay != null && lay.complete()){
+							this.previousLayout = lay;
+						}
+						else if(this.previousLayout == null){
+							this.previousLayout = lay;
+						}
+						this.layout = nl;
+					}
+					lay = nl;
+					dirty = new boolean[lay.numTiles()];
+					Arrays.fill(dirty, true);
+				}
+
+				if(recompute){
+					Object [] newData = this.computeData(st);
+					boolean all = this.painter.dataChanged(newData, oldData) || oldData == null || oldData.length != newData.length;
+					if(dirty == null){
+						dirty = new boolean[lay.numTiles()];
+					}
+					if(all){
+						Arrays.fill(dirty, true);
+					}
+					else{
+						for(int i = 0; i < newData.length; i++){
+							if(!this.painter.sameData(oldData[i], newData[i])){
+								lay.markStateTiles(i, dirty);
+							}
+						}
+					}
+					synchronized(this){
+						if(this.states != st){
+							//the states were replaced while computing their data
+							continue;
+						}
+						this.data = newData;
+						this.dataStates = st;
+					}
+					oldData = newData;
+				}
+
+				if(dirty == null){
+					//the layout is current, but some of its tiles have not been painted
+					dirty = new boolean[lay.numTiles()];
+					synchronized(lay){
+						for(int t = 0; t < dirty.length; t++){
+							dirty[t] = lay.images[t] == null;
+						}
+					}
+				}
+
+				//oldData now holds the data of st, which may differ from this.data if the states were replaced since
+				this.paintTiles(lay, dirty, st, oldData);
+
+			}
+		}
+		finally{
+			synchronized(this){
+				this.working = false;
+			}
+			this.requestRepaint();
+		}
+
+	}
+
+
+	/**
+	 * Assigns the states to the tiles of a canvas of the given size.
+	 */
+	protected TileLayout layOut(List<State> st, int w, int h){
+		TileLayout lay = new TileLayout(st, w, h, this.tileSize);
+		List<List<Integer>> tileStates = new ArrayList<List<Integer>>(lay.numTiles());
+		for(int t = 0; t < lay.numTiles(); t++){
+			tileStates.add(new ArrayList<Integer>());
+		}
+		for(int i = 0; i < st.size(); i++){
+			Rectangle2D r = this.painter.getStateRegion(st.get(i), w, h);
+			int c0 = 0, c1 = lay.cols-1, r0 = 0, r1 = lay.rows-1;
+			if(r != null){
+				c0 = Math.max(0, (int)Math.floor(r.getMinX() / lay.tileSize));
+				c1 = Math.min(lay.cols-1, (int)Math.floor(r.getMaxX() / lay.tileSize));
+				r0 = Math.max(0, (int)Math.floor(r.getMinY() / lay.tileSize));
+				r1 = Math.min(lay.rows-1, (int)Math.floor(r.getMaxY() / lay.tileSize));
+			}
+			lay.stateTiles[4*i] = c0;
+			lay.stateTiles[4*i+1] = c1;
+			lay.stateTiles[4*i+2] = r0;
+			lay.stateTiles[4*i+3] = r1;
+			for(int row = r0; row <= r1; row++){
+				for(int col = c0; col <= c1; col++){
+					tileStates.get(row*lay.cols + col).add(i);
+				}
+			}
+		}
+		for(int t = 0; t < lay.numTiles(); t++){
+			List<Integer> ts = tileStates.get(t);
+			int [] a = new int[ts.size()];
+			for(int j = 0; j < a.length; j++){
+				a[j] = ts.get(j);
+			}
+			lay.tileStates[t] = a;
+		}
+		return lay;
+	}
+
+
+	/**
+	 * Computes the data of every state, splitting the states among the threads.
+	 */
+	protected Object [] computeData(final List<State> st){
+		final Object [] newData = new Object[st.size()];
+		ParallelMatchEngine.runIndexed(st.size(), this.nThreads, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int i) {
+				newData[i] = TiledStateRenderer.this.painter.computeStateData(st.get(i));
+			}
+		});
+		return newData;
+	}
+
+
+	/**
+	 * Paints the tiles that are marked dirty, splitting the tiles among the threads, and installs each tile image as soon as it is painted.
+	 */
+	protected void paintTiles(final TileLayout lay, boolean [] dirty, final List<State> st, final Object [] d){
+		final List<Integer> toPaint = new ArrayList<Integer>();
+		for(int t = 0; t < dirty.length; t++){
+			if(dirty[t]){
+				toPaint.add(t);
+			}
+		}
+		ParallelMatchEngine.runIndexed(toPaint.size(), this.nThreads, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int i) {
+				int t = toPaint.get(i);
+				BufferedImage img = lay.paintTile(t, st, d, TiledStateRenderer.this.painter);
+				synchronized(lay){
+					lay.images[t] = img;
+				}
+			}
+		});
+	}
+
+
+	/**
+	 * Repaints the component, if there is one.
+	 */
+	protected void requestRepaint(){
+		if(this.repaintTarget != null){
+			this.repaintTarget.repaint();
+		}
+	}
+
+
+
+	/**
+	 * Computes the data that is needed to paint a state and paints states with their data, for a {@link TiledStateRenderer}.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface StateTilePainter{
+
+		/**
+		 * Computes the data that is needed to paint a state, such as its value. This method is not called by the thread that paints the canvas.
+		 * @param s the state
+		 * @return the data of the state
+		 */
+		public Object computeStateData(State s);
+
+		/**
+		 * Called after the data of every state has been computed and before any tile is painted with it, so that the painter can adapt to the data
+		 * as a whole (for instance, by rescaling its colors to the range of the values).
+		 * @param newData the data of each state
+		 * @param oldData the previous data of each state; null if the data is computed for the first time
+		 * @return true if every state must be painted again, even if its data did not change; false otherwise
+		 */
+		public boolean dataChanged(Object [] newData, Object [] oldData);
+
+		/**
+		 * Returns whether two data of a state would be painted the same.
+		 * @param a the previous data of the state
+		 * @param b the new data of the state
+		 * @return true if the state would be painted the same with either; false otherwise
+		 */
+		public boolean sameData(Object a, Object b);
+
+		/**
+		 * Paints a state with its data.
+		 * @param g2 graphics context to which the state should be painted
+		 * @param s the state
+		 * @param data the data of the state
+		 * @param cWidth width of the canvas size
+		 * @param cHeight height of the canvas size
+		 */
+		public void paintState(Graphics2D g2, State s, Object data, float cWidth, float cHeight);
+
+		/**
+		 * Returns a rectangle that contains everything painted for a state, or null if it is unknown.
+		 * @param s the state
+		 * @param cWidth width of the canvas size
+		 * @param cHeight height of the canvas size
+		 * @return a rectangle that contains everything painted for the state; null if it is unknown.
+		 */
+		public Rectangle2D getStateRegion(State s, float cWidth, float cHeight);
+
+	}
+
+
+	/**
+	 * The tiles of a canvas of a given size, the states painted in each tile, and the painted tile images.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class TileLayout{
+
+		/**
+		 * The states list whose states are assigned to the tiles
+		 */
+		protected final List<State>		states;
+		protected final int				width;
+		protected final int				height;
+		protected final int				tileSize;
+		protected final int				cols;
+		protected final int				rows;
+
+		/**
+		 * The indices of the states painted in each tile, in painting order
+		 */
+		protected final int [][]		tileStates;
+
+		/**
+		 * The first and last tile column and row of each state
+		 */
+		protected final int []			stateTiles;
+
+		/**
+		 * The painted image of each tile; null if it has not been painted
+		 */
+		protected final BufferedImage []	images;
+
+
+		protected TileLayout(List<State> states, int width, int height, int tileSize){
+			this.states = states;
+			this.width = width;
+			this.height = height;
+			this.tileSize = tileSize;
+			this.cols = (width + tileSize - 1) / tileSize;
+			this.rows = (height + tileSize - 1) / tileSize;
+			this.tileStates = new int[this.cols*this.rows][];
+			this.stateTiles = new int[4*states.size()];
+			this.images = new BufferedImage[this.cols*this.rows];
+		}
+
+		protected int numTiles(){
+			return this.images.length;
+		}
+
+		/**
+		 * Returns whether every tile has been painted.
+		 */
+		protected synchronized boolean complete(){
+			for(BufferedImage img : this.images){
+				if(img == null){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		protected void markStateTiles(int i, boolean [] dirty){
+			for(int row = this.stateTiles[4*i+2]; row <= this.stateTiles[4*i+3]; row++){
+				for(int col = this.stateTiles[4*i]; col <= this.stateTiles[4*i+1]; col++){
+					dirty[row*this.cols + col] = true;
+				}
+			}
+		}
+
+		protected BufferedImage paintTile(int t, List<State> st, Object [] d, StateTilePainter painter){
+			int x = (t % this.cols) * this.tileSize;
+			int y = (t / this.cols) * this.tileSize;
+			BufferedImage img = new BufferedImage(Math.min(this.tileSize, this.width - x), Math.min(this.tileSize, this.height - y), BufferedImage.TYPE_INT_ARGB_PRE);
+			Graphics2D g2 = img.createGraphics();
+			g2.translate(-x, -y);
+			for(int i : this.tileStates[t]){
+				painter.paintState(g2, st.get(i), d[i], this.width, this.height);
+			}
+			g2.dispose();
+			return img;
+		}
+
+		/**
+		 * Draws the painted tiles, scaled from the size of this layout to the given canvas size.
+		 */
+		protected void draw(Graphics2D g2, int w, int h){
+			double sx = (double)w / this.width;
+			double sy = (double)h / this.height;
+			for(int t = 0; t < this.images.length; t++){
+				BufferedImage img;
+				synchronized(this){
+					img = this.images[t];
+				}
+				if(img == null){
+					continue;
+				}
+				int x = (t % this.cols) * this.tileSize;
+				int y = (t / this.cols) * this.tileSize;
+				if(sx == 1. && sy == 1.){
+					g2.drawImage(img, x, y, null);
+				}
+				else{
+					int x0 = (int)Math.round(x*sx);
+					int y0 = (int)Math.round(y*sy);
+					int x1 = (int)Math.round((x + img.getWidth())*sx);
+					int y1 = (int)Math.round((y + img.getHeight())*sy);
+					g2.drawImage(img, x0, y0, x1-x0, y1-y0, null);
+				}
+			}
+		}
+
+	}
+
+}
@@ -1,12 +1,15 @@
 package burlap.behavior.singleagent.auxiliary.valuefunctionvis;
 
+import java.awt.Component;
 import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
 import burlap.behavior.singleagent.QValue;
+import burlap.behavior.singleagent.auxiliary.valuefunctionvis.TiledStateRenderer.StateTilePainter;
 import burlap.behavior.singleagent.planning.OOMDPPlanner;
 import burlap.behavior.singleagent.planning.QComputablePlanner;
 import burlap.oomdp.core.State;
@@ -18,6 +21,11 @@ import burlap.oomdp.visualizer.RenderLayer;
  * Used to visualize the value function for a collection of states. This class makes use of the {@link StateValuePainter} {@link StatePolicyPainter}
  * and {@link StaticDomainPainter} to paint the value function. Each state is iterated over and the the respective classes are used to pain its value function.
  * The visualizer requires a QComputablePlanner to retrieve the value function.
+ * <p/>
+ * By default, the value of every state is computed and every state is painted each time the layer is rendered. For large state collections,
+ * tiled rendering can be enabled with {@link #enableTiledRendering(Component, int)}, in which case the values are computed once, in the background
+ * and possibly in parallel, and the states are painted into cached tiles with a {@link TiledStateRenderer}. The values are then only computed again
+ * when {@link #refresh()} is called.
  * @author James MacGlashan
  *
  */
@@ -41,6 +49,12 @@ public class ValueFunctionRenderLayer implements RenderLayer {
 	protected QComputablePlanner				planner;
 	
 	
+	/**
+	 * The tiled renderer used when tiled rendering is enabled; null otherwise
+	 */
+	protected TiledStateRenderer				tiledRenderer = null;
+	
+	
 	
 	/**
 	 * Initializes the visualizer.
@@ -69,6 +83,9 @@ public class ValueFunctionRenderLayer implements RenderLayer {
 	 */
 	public void setStatesToVisualize(Collection<State> stateValuesToVisualize) {
 		this.statesToVisualize = stateValuesToVisualize;
+		if(this.tiledRenderer != null){
+			this.tiledRenderer.setStates(stateValuesToVisualize);
+		}
 	}
 
 	/**
@@ -86,12 +103,61 @@ public class ValueFunctionRenderLayer implements RenderLayer {
 	 */
 	public void setSvp(StateValuePainter svp) {
 		this.svp = svp;
+		if(this.tiledRenderer != null){
+			this.tiledRenderer.refresh();
+			this.tiledRenderer.repaintAll();
+		}
+	}
+	
+	
+	/**
+	 * Enables tiled rendering, in which the values of the states are computed once and the states are painted into cached tiles by a {@link TiledStateRenderer}.
+	 * If more than one thread is used, the planner's {@link QComputablePlanner#getQs(State)} method and the painter must be thread safe.
+	 * @param repaintTarget the component on which this layer is rendered, which is repainted when values and tiles have been computed in the background. If null, they are computed when the layer is rendered.
+	 * @param nThreads the number of threads used to compute the values and paint the tiles
+	 */
+	public void enableTiledRendering(Component repaintTarget, int nThreads){
+		this.tiledRenderer = new TiledStateRenderer(this.statesToVisualize, new ValueTilePainter(), repaintTarget);
+		this.tiledRenderer.setNumThreads(nThreads);
+	}
+	
+	
+	/**
+	 * Disables tiled rendering, so that the values of the states are computed every time the layer is rendered.
+	 */
+	public void disableTiledRendering(){
+		this.tiledRenderer = null;
+	}
+	
+	
+	/**
+	 * Returns the tiled renderer used when tiled rendering is enabled.
+	 * @return the tiled renderer used when tiled rendering is enabled; null if it is disabled.
+	 */
+	public TiledStateRenderer getTiledRenderer(){
+		return this.tiledRenderer;
+	}
+	
+	
+	/**
+	 * If tiled rendering is enabled, causes the values of the states to be computed again, for instance after further planning, and only
+	 * the tiles of states whose value changed to be painted again. Has no effect otherwise, since values are then computed every time the layer is rendered.
+	 */
+	public void refresh(){
+		if(this.tiledRenderer != null){
+			this.tiledRenderer.refresh();
+		}
 	}
 	
 	
 	@Override
 	public void render(Graphics2D g2, float width, float height) {
 		
+		if(this.tiledRenderer != null){
+			this.tiledRenderer.render(g2, width, height);
+			return;
+		}
+		
 		List <Double> values = new ArrayList<Double>(this.statesToVisualize.size());
 		double minV = Double.POSITIVE_INFINITY;
 		double maxV = Double.NEGATIVE_INFINITY;
@@ -150,4 +216,63 @@ public class ValueFunctionRenderLayer implements RenderLayer {
 	}
 	
 
+	
+	
+	/**
+	 * The {@link StateTilePainter} of this layer's tiled renderer, which computes the value of each state and rescales the value painter to the range
+	 * of the values before painting.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected class ValueTilePainter implements StateTilePainter{
+
+		protected double minV = Double.NaN;
+		protected double maxV = Double.NaN;
+		
+		@Override
+		public Object computeStateData(State s) {
+			return ValueFunctionRenderLayer.this.getVValue(s);
+		}
+
+		@Override
+		public boolean dataChanged(Object[] newData, Object[] oldData) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for(Object o : newData){
+				double v = (Double)o;
+				if(v < min){
+					min = v;
+				}
+				if(v > max){
+					max = v;
+				}
+			}
+			boolean rescaled = oldData == null || Double.compare(min, this.minV) != 0 || Double.compare(max, this.maxV) != 0;
+			this.minV = min;
+			this.maxV = max;
+			ValueFunctionRenderLayer.this.svp.rescale(min, max);
+			return rescaled;
+		}
+
+		@Override
+		public boolean sameData(Object a, Object b) {
+			return a.equals(b);
+		}
+
+		@Override
+		public void paintState(Graphics2D g2, State s, Object data, float cWidth, float cHeight) {
+			ValueFunctionRenderLayer.this.svp.paintStateValue(g2, s, (Double)data, cWidth, cHeight);
+		}
+
+		@Override
+		public Rectangle2D getStateRegion(State s, float cWidth, float cHeight) {
+			if(ValueFunctionRenderLayer.this.svp instanceof StateRegionPainter){
+				return ((StateRegionPainter)ValueFunctionRenderLayer.this.svp).getStateRegion(s, cWidth, cHeight);
+			}
+			return null;
+		}
+		
+	}
+	
+
 }
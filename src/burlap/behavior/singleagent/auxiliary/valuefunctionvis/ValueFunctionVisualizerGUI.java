@@ -19,6 +19,10 @@ import burlap.oomdp.visualizer.MultiLayerRenderer;
 
 /**
  * Provides a GUI for a value function and policy visualizer. Provides a toggle button for rendering the policy if the policy is provided.
+ * <p/>
+ * The value function and policy layers use tiled rendering (see {@link TiledStateRenderer}): the values and action distributions of the states are computed
+ * once in the background, so the GUI stays responsive for large state collections, and the states are painted into cached tiles. If the planner's
+ * value function changes after the GUI is shown, call {@link #refresh()} to update the rendering.
  * @author James MacGlashan
  *
  */
@@ -91,10 +95,34 @@ public class ValueFunctionVisualizerGUI extends JFrame implements ItemListener {
 		this.vfLayer = new ValueFunctionRenderLayer(statesToVisualize, svp, planner);
 		this.pLayer = new PolicyRenderLayer(states, null, null);
 		
+		this.vfLayer.enableTiledRendering(this.visualizer, 1);
+		this.pLayer.enableTiledRendering(this.visualizer, 1);
+		
 		this.visualizer.addRenderLayer(vfLayer);
 		this.visualizer.addRenderLayer(pLayer);
 		
 	}
+	
+	
+	/**
+	 * Sets the number of threads used to compute the values and action distributions of the states and to paint them. If it is greater than 1,
+	 * the planner, policy and painters must be thread safe.
+	 * @param nThreads the number of rendering threads
+	 */
+	public void setNumRenderThreads(int nThreads){
+		this.vfLayer.getTiledRenderer().setNumThreads(nThreads);
+		this.pLayer.getTiledRenderer().setNumThreads(nThreads);
+	}
+	
+	
+	/**
+	 * Causes the values and action distributions of the states to be computed again, for instance after further planning, and repaints
+	 * the states whose rendering changed.
+	 */
+	public void refresh(){
+		this.vfLayer.refresh();
+		this.pLayer.refresh();
+	}
 
 	
 	/**
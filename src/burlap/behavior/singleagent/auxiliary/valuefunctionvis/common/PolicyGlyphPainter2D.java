@@ -1,6 +1,7 @@
 package burlap.behavior.singleagent.auxiliary.valuefunctionvis.common;
 
 import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -8,6 +9,7 @@ import java.util.Map;
 import burlap.behavior.singleagent.Policy;
 import burlap.behavior.singleagent.Policy.ActionProb;
 import burlap.behavior.singleagent.auxiliary.valuefunctionvis.StatePolicyPainter;
+import burlap.behavior.singleagent.auxiliary.valuefunctionvis.StateRegionPainter;
 import burlap.oomdp.core.Attribute;
 import burlap.oomdp.core.ObjectInstance;
 import burlap.oomdp.core.State;
@@ -23,7 +25,7 @@ import burlap.oomdp.core.Attribute.AttributeType;
  * @author James MacGlashan
  *
  */
-public class PolicyGlyphPainter2D implements StatePolicyPainter {
+public class PolicyGlyphPainter2D implements StatePolicyPainter, StateRegionPainter {
 
 	
 	/**
@@ -224,48 +226,11 @@ public class PolicyGlyphPainter2D implements StatePolicyPainter {
 
 	@Override
 	public void paintStatePolicy(Graphics2D g2, State s, Policy policy, float cWidth, float cHeight) {
-		ObjectInstance xOb = this.xObjectInstance(s);
-		ObjectInstance yOb = this.yObjectInstance(s);
-		
-		Attribute xAtt = xOb.getObjectClass().getAttribute(xAttName);
-		Attribute yAtt = yOb.getObjectClass().getAttribute(yAttName);
-		
-		float domainXScale = 0f;
-		float domainYScale = 0f;
-		float xval = 0f;
-		float yval = 0f;
-		float width = 0f;
-		float height = 0f;
-		
-		if(this.numXCells != -1){
-			domainXScale = this.numXCells;
-		}
-		else if(xAtt.type == Attribute.AttributeType.DISC){
-			domainXScale = xAtt.discValues.size();
-		}
-		else if(xAtt.type == AttributeType.INT){
-			domainXScale = (float)(xAtt.upperLim - xAtt.lowerLim + 1);
-		}
-		else {
-			domainXScale = (float)(xAtt.upperLim - xAtt.lowerLim);
-		}
-		width = cWidth / domainXScale;
-		xval = ((float)(xOb.getNumericValForAttribute(xAttName) - xAtt.lowerLim))*width;
-		
-		if(this.numYCells != -1){
-			domainYScale = this.numYCells;
-		}
-		else if(yAtt.type == AttributeType.DISC){
-			domainYScale = yAtt.discValues.size();
-		}
-		else if(yAtt.type == AttributeType.INT){
-			domainYScale = (float)(yAtt.upperLim - yAtt.lowerLim + 1);
-		}
-		else{
-			domainYScale = (float)(yAtt.upperLim - yAtt.lowerLim);
-		}
-		height = cHeight / domainYScale;
-		yval = cHeight - height - ((float)(yOb.getNumericValForAttribute(yAttName) - yAtt.lowerLim))*height;
+		Rectangle2D.Float cell = this.cellRect(s, cWidth, cHeight);
+		float xval = cell.x;
+		float yval = cell.y;
+		float width = cell.width;
+		float height = cell.height;
 		
 		
 		List<ActionProb> pdist = policy.getActionDistributionForState(s);
@@ -331,6 +296,72 @@ public class PolicyGlyphPainter2D implements StatePolicyPainter {
 	}
 	
 	
+	/**
+	 * Returns the rectangle of the canvas cell in which a state is painted.
+	 * @param s the state
+	 * @param cWidth width of the canvas size
+	 * @param cHeight height of the canvas size
+	 * @return the rectangle of the cell of the state.
+	 */
+	protected Rectangle2D.Float cellRect(State s, float cWidth, float cHeight){
+		
+		ObjectInstance xOb = this.xObjectInstance(s);
+		ObjectInstance yOb = this.yObjectInstance(s);
+		
+		Attribute xAtt = xOb.getObjectClass().getAttribute(xAttName);
+		Attribute yAtt = yOb.getObjectClass().getAttribute(yAttName);
+		
+		float domainXScale = 0f;
+		float domainYScale = 0f;
+		float xval = 0f;
+		float yval = 0f;
+		float width = 0f;
+		float height = 0f;
+		
+		if(this.numXCells != -1){
+			domainXScale = this.numXCells;
+		}
+		else if(xAtt.type == Attribute.AttributeType.DISC){
+			domainXScale = xAtt.discValues.size();
+		}
+		else if(xAtt.type == AttributeType.INT){
+			domainXScale = (float)(xAtt.upperLim - xAtt.lowerLim + 1);
+		}
+		else {
+			domainXScale = (float)(xAtt.upperLim - xAtt.lowerLim);
+		}
+		width = cWidth / domainXScale;
+		xval = ((float)(xOb.getNumericValForAttribute(xAttName) - xAtt.lowerLim))*width;
+		
+		if(this.numYCells != -1){
+			domainYScale = this.numYCells;
+		}
+		else if(yAtt.type == AttributeType.DISC){
+			domainYScale = yAtt.discValues.size();
+		}
+		else if(yAtt.type == AttributeType.INT){
+			domainYScale = (float)(yAtt.upperLim - yAtt.lowerLim + 1);
+		}
+		else{
+			domainYScale = (float)(yAtt.upperLim - yAtt.lowerLim);
+		}
+		height = cHeight / domainYScale;
+		yval = cHeight - height - ((float)(yOb.getNumericValForAttribute(yAttName) - yAtt.lowerLim))*height;
+		
+		return new Rectangle2D.Float(xval, yval, width, height);
+	}
+	
+	
+	/**
+	 * Returns the cell of the state, in which its glyphs are painted, with a margin for antialiasing.
+	 */
+	@Override
+	public Rectangle2D getStateRegion(State s, float cWidth, float cHeight) {
+		Rectangle2D.Float cell = this.cellRect(s, cWidth, cHeight);
+		return new Rectangle2D.Float(cell.x - 1f, cell.y - 1f, cell.width + 2f, cell.height + 2f);
+	}
+	
+	
 	/**
 	 * Returns the object instance in a state that holds the x-position information.
 	 * @param s the state for which to get the x-position
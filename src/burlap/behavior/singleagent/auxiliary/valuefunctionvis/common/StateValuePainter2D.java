@@ -5,6 +5,7 @@ import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
 
+import burlap.behavior.singleagent.auxiliary.valuefunctionvis.StateRegionPainter;
 import burlap.behavior.singleagent.auxiliary.valuefunctionvis.StateValuePainter;
 import burlap.oomdp.core.Attribute;
 import burlap.oomdp.core.ObjectInstance;
@@ -17,7 +18,7 @@ import burlap.oomdp.core.Attribute.AttributeType;
  * @author James MacGlashan
  *
  */
-public class StateValuePainter2D extends StateValuePainter {
+public class StateValuePainter2D extends StateValuePainter implements StateRegionPainter {
 
 	
 	/**
@@ -211,6 +212,45 @@ public class StateValuePainter2D extends StateValuePainter {
 	@Override
 	public void paintStateValue(Graphics2D g2, State s, double value, float cWidth, float cHeight) {
 		
+		Rectangle2D.Float cell = this.cellRect(s, cWidth, cHeight);
+		float xval = cell.x;
+		float yval = cell.y;
+		float width = cell.width;
+		float height = cell.height;
+		
+		
+		
+		Color col = this.colorBlend.color(value);
+		g2.setColor(col);
+		
+		g2.fill(new Rectangle2D.Float(xval, yval, width, height));
+		
+		if(this.renderValueString){
+			
+			g2.setColor(this.vsFontColor);
+			g2.setFont(new Font("sansserif", Font.BOLD, this.vsFontSize));
+			String fstring = String.format("%."+this.vsPrecision+"f", value);
+			
+			float sxval = xval + this.vsOffsetFromLeft*width;
+			float syval = yval + this.vsOffsetFromTop*height;
+			
+			g2.drawString(fstring, sxval, syval);
+			
+		}
+		
+
+	}
+	
+	
+	/**
+	 * Returns the rectangle of the canvas cell in which a state is painted.
+	 * @param s the state
+	 * @param cWidth width of the canvas size
+	 * @param cHeight height of the canvas size
+	 * @return the rectangle of the cell of the state.
+	 */
+	protected Rectangle2D.Float cellRect(State s, float cWidth, float cHeight){
+		
 		ObjectInstance xOb = this.xObjectInstance(s);
 		ObjectInstance yOb = this.yObjectInstance(s);
 		
@@ -254,27 +294,24 @@ public class StateValuePainter2D extends StateValuePainter {
 		height = cHeight / domainYScale;
 		yval = cHeight - height - ((float)(yOb.getNumericValForAttribute(yAttName) - yAtt.lowerLim))*height;
 		
-		
-		
-		Color col = this.colorBlend.color(value);
-		g2.setColor(col);
-		
-		g2.fill(new Rectangle2D.Float(xval, yval, width, height));
-		
+		return new Rectangle2D.Float(xval, yval, width, height);
+	}
+	
+	
+	/**
+	 * Returns the cell of the state, extended to include the text of the value if values strings are rendered, with a margin for antialiasing.
+	 */
+	@Override
+	public Rectangle2D getStateRegion(State s, float cWidth, float cHeight) {
+		Rectangle2D.Float cell = this.cellRect(s, cWidth, cHeight);
+		Rectangle2D region = new Rectangle2D.Float(cell.x - 1f, cell.y - 1f, cell.width + 2f, cell.height + 2f);
 		if(this.renderValueString){
-			
-			g2.setColor(this.vsFontColor);
-			g2.setFont(new Font("sansserif", Font.BOLD, this.vsFontSize));
-			String fstring = String.format("%."+this.vsPrecision+"f", value);
-			
-			float sxval = xval + this.vsOffsetFromLeft*width;
-			float syval = yval + this.vsOffsetFromTop*height;
-			
-			g2.drawString(fstring, sxval, syval);
-			
+			//value strings are drawn from their baseline, and are at most a few font sizes wide
+			float sxval = cell.x + this.vsOffsetFromLeft*cell.width;
+			float syval = cell.y + this.vsOffsetFromTop*cell.height;
+			region.add(new Rectangle2D.Float(sxval - 1f, syval - 1.5f*this.vsFontSize, 10f*this.vsFontSize, 2f*this.vsFontSize));
 		}
-		
-
+		return region;
 	}
 	
 	
@@ -14,11 +14,15 @@ import burlap.behavior.singleagent.planning.QComputablePlanner;
 import burlap.behavior.singleagent.planning.commonpolicies.GreedyQPolicy;
 import burlap.behavior.singleagent.planning.deterministic.DDPlannerPolicy;
 import burlap.behavior.singleagent.planning.deterministic.DeterministicPlanner;
+import burlap.behavior.singleagent.planning.stochastic.valueiteration.ValueIteration;
+import burlap.behavior.singleagent.options.OptionEvaluatingRF;
 import burlap.behavior.singleagent.vfa.StateToFeatureVectorGenerator;
 import burlap.behavior.statehashing.NameDependentStateHashFactory;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.ParallelMatchEngine;
+import burlap.debugtools.RandomFactory;
 import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.State;
@@ -41,6 +45,16 @@ import com.joptimizer.util.Utils;
  * This algorithm will take expert trajectors and return a policy that models them. It is an implementation of the algorithm described by Abbel and Ng [1].
  * Both the projection method and quadractic programming version are available.
  * 
+ * The expert feature expectations are computed once and cached by the request. By default, a {@link ValueIteration} planner is warm started
+ * between reward function updates: it keeps its reachable states, transition dynamics, and value function, and only reruns VI for the new reward function.
+ * The feature expectations of each learned policy are either estimated from rollouts, which can be run on multiple threads
+ * (see {@link ApprenticeshipLearningRequest#setNumThreads(int)}), or computed exactly from discounted state visitation frequencies on a
+ * {@link FeatureExpectationModel} (see {@link ApprenticeshipLearningRequest#setUsingExactFeatureExpectations(boolean)}) that is compiled once and
+ * reused for every policy. Rollouts are only run concurrently for policies that can be safely queried by multiple threads, which are the initial
+ * random policy and greedy policies of a {@link ValueIteration} planner; rollouts of other policies are run sequentially. Concurrent rollouts
+ * also require the domain's actions and the feature generator to support concurrent calls. Each concurrent rollout runs inside a {@link RandomFactory}
+ * thread scope, so the rollouts do not depend on the number of threads.
+ * 
  * 
  * 
  * 1. Abbeel, Peter and Ng, Andrew. "Apprenticeship Learning via Inverse Reinforcement Learning"
@@ -191,15 +205,13 @@ public class ApprenticeshipLearning {
 		Policy policy = new RandomPolicy(domain);
 
 		StateToFeatureVectorGenerator featureFunctions = request.getFeatureGenerator();
+		FeatureExpectationModel model = ApprenticeshipLearning.createFeatureExpectationModel(request);
 		List<double[]> featureExpectationsHistory = new ArrayList<double[]>();
-		double[] expertExpectations = 
-				ApprenticeshipLearning.estimateFeatureExpectation(expertEpisodes, featureFunctions, request.getGamma());
+		double[] expertExpectations = request.getExpertFeatureExpectations();
 
 		// (1b) Compute u^(0) = u(pi^(0))
-		EpisodeAnalysis episodeAnalysis = 
-				policy.evaluateBehavior(request.getStartStateGenerator().generateState(), new UniformCostRF(), maximumExpertEpisodeLength);
-		double[] featureExpectations = 
-				ApprenticeshipLearning.estimateFeatureExpectation(episodeAnalysis, featureFunctions, request.getGamma());
+		double[] featureExpectations = ApprenticeshipLearning.policyFeatureExpectation(
+				request, policy, new UniformCostRF(), ApprenticeshipLearning.generateStartStates(request, 1), maximumExpertEpisodeLength, model);
 		featureExpectationsHistory.add(featureExpectations);
 
 		int maxIterations = request.getMaxIterations();
@@ -230,26 +242,12 @@ public class ApprenticeshipLearning {
 					ApprenticeshipLearning.generateRewardFunction(featureFunctions, featureWeights);
 
 			// (4b) Compute optimal policy for pi^(i) give R
-			planner.resetPlannerResults();
-			planner.plannerInit(domain, rewardFunction, terminalFunction, request.getGamma(), stateHashingFactory);
-			planner.planFromState(request.getStartStateGenerator().generateState());
-
-			if (planner instanceof DeterministicPlanner) {
-				policy = new DDPlannerPolicy((DeterministicPlanner)planner);
-			}
-			else if (planner instanceof QComputablePlanner) {
-				policy = new GreedyQPolicy((QComputablePlanner)planner);
-			}
+			List<State> startStates = ApprenticeshipLearning.generateStartStates(request, policyCount);
+			policy = ApprenticeshipLearning.replan(request, rewardFunction, terminalFunction, stateHashingFactory, startStates, i == 0, policy);
 
 			// (5) Compute u^(i) = u(pi^(i))
-
-			List<EpisodeAnalysis> evaluatedEpisodes = new ArrayList<EpisodeAnalysis>();
-			for (int j = 0; j < policyCount; ++j) {
-				evaluatedEpisodes.add(
-						policy.evaluateBehavior(request.getStartStateGenerator().generateState(), rewardFunction, maximumExpertEpisodeLength));
-			}
-			featureExpectations = 
-					ApprenticeshipLearning.estimateFeatureExpectation(evaluatedEpisodes, featureFunctions, request.getGamma());
+			featureExpectations = ApprenticeshipLearning.policyFeatureExpectation(
+					request, policy, rewardFunction, startStates, maximumExpertEpisodeLength, model);
 			featureExpectationsHistory.add(featureExpectations);
 
 			// (6) i++, go back to (2).
@@ -298,8 +296,8 @@ public class ApprenticeshipLearning {
 		List<double[]> featureExpectationsHistory = new ArrayList<double[]>();
 
 		StateToFeatureVectorGenerator featureFunctions = request.getFeatureGenerator();
-		double[] expertExpectations = 
-				ApprenticeshipLearning.estimateFeatureExpectation(expertEpisodes, featureFunctions, request.getGamma());
+		FeatureExpectationModel model = ApprenticeshipLearning.createFeatureExpectationModel(request);
+		double[] expertExpectations = request.getExpertFeatureExpectations();
 
 		// (1). Randomly generate policy pi^(0)
 		Domain domain = request.getDomain();
@@ -307,13 +305,8 @@ public class ApprenticeshipLearning {
 		policyHistory.add(policy);
 
 		// (1b) Set up initial Feature Expectation based on policy
-		List<EpisodeAnalysis> sampleEpisodes = new ArrayList<EpisodeAnalysis>();
-		for (int j = 0; j < request.getPolicyCount(); ++j) {
-			sampleEpisodes.add(
-					policy.evaluateBehavior(request.getStartStateGenerator().generateState(), new UniformCostRF(), maximumExpertEpisodeLength)); 
-		}
-		double[] curFE = 
-				ApprenticeshipLearning.estimateFeatureExpectation(sampleEpisodes, featureFunctions, request.getGamma());
+		double[] curFE = ApprenticeshipLearning.policyFeatureExpectation(
+				request, policy, new UniformCostRF(), ApprenticeshipLearning.generateStartStates(request, request.getPolicyCount()), maximumExpertEpisodeLength, model);
 		featureExpectationsHistory.add(curFE);
 		double[] lastProjFE = null;
 		double[] newProjFE = null;
@@ -353,24 +346,13 @@ public class ApprenticeshipLearning {
 					ApprenticeshipLearning.generateRewardFunction(featureFunctions, featureWeights);
 
 			// (4b) Compute optimal policy for pi^(i) give R
-			planner.resetPlannerResults();
-			planner.plannerInit(domain, rewardFunction, terminalFunction, request.getGamma(), stateHashingFactory);
-			planner.planFromState(request.getStartStateGenerator().generateState());
-			if (planner instanceof DeterministicPlanner) {
-				policy = new DDPlannerPolicy((DeterministicPlanner)planner);
-			}
-			else if (planner instanceof QComputablePlanner) {
-				policy = new GreedyQPolicy((QComputablePlanner)planner);
-			}
+			List<State> startStates = ApprenticeshipLearning.generateStartStates(request, policyCount);
+			policy = ApprenticeshipLearning.replan(request, rewardFunction, terminalFunction, stateHashingFactory, startStates, i == 0, policy);
 			policyHistory.add(policy);
 
 			// (5) Compute u^(i) = u(pi^(i))
-			List<EpisodeAnalysis> evaluatedEpisodes = new ArrayList<EpisodeAnalysis>();
-			for (int j = 0; j < policyCount; ++j) {
-				evaluatedEpisodes.add(
-						policy.evaluateBehavior(request.getStartStateGenerator().generateState(), rewardFunction, maximumExpertEpisodeLength));
-			}
-			curFE = ApprenticeshipLearning.estimateFeatureExpectation(evaluatedEpisodes, featureFunctions, request.getGamma());
+			curFE = ApprenticeshipLearning.policyFeatureExpectation(
+					request, policy, rewardFunction, startStates, maximumExpertEpisodeLength, model);
 			featureExpectationsHistory.add(curFE.clone());
 
 			// (6) i++, go back to (2).
@@ -381,6 +363,146 @@ public class ApprenticeshipLearning {
 
 	
 	
+	/*
+	 * Static methods for planning and evaluating the learned policies
+	 */
+	
+	
+	/**
+	 * Generates the given number of start states from the request's start state generator.
+	 * @param request the apprenticeship learning request
+	 * @param n the number of start states to generate
+	 * @return the generated start states
+	 */
+	private static List<State> generateStartStates(ApprenticeshipLearningRequest request, int n) {
+		List<State> startStates = new ArrayList<State>(n);
+		for (int j = 0; j < n; ++j) {
+			startStates.add(request.getStartStateGenerator().generateState());
+		}
+		return startStates;
+	}
+	
+	
+	/**
+	 * Returns the {@link FeatureExpectationModel} used to compute exact feature expectations, or null if the request estimates them from rollouts.
+	 * @param request the apprenticeship learning request
+	 * @return the model used to compute exact feature expectations, or null if they are estimated from rollouts
+	 */
+	private static FeatureExpectationModel createFeatureExpectationModel(ApprenticeshipLearningRequest request) {
+		if (!request.getUsingExactFeatureExpectations()) {
+			return null;
+		}
+		StateHashFactory hashingFactory = request.getPlanner().getHashingFactory();
+		if (hashingFactory == null) {
+			hashingFactory = new NameDependentStateHashFactory();
+		}
+		return new FeatureExpectationModel(request.getDomain(), hashingFactory, request.getFeatureGenerator());
+	}
+	
+	
+	/**
+	 * Replans for a new reward function from each of the given start states and returns the planner's policy. A {@link ValueIteration}
+	 * planner is warm started if the request allows it and this is not the first replan; otherwise the planner is reset and reinitialized.
+	 * @param request the apprenticeship learning request
+	 * @param rewardFunction the new reward function
+	 * @param terminalFunction the terminal function used by the planner
+	 * @param stateHashingFactory the state hashing factory used by the planner
+	 * @param startStates the states from which to plan
+	 * @param firstReplan whether this is the first replan of the learning run
+	 * @param lastPolicy the policy to return if the planner does not define a policy type
+	 * @return the planner's policy
+	 */
+	private static Policy replan(ApprenticeshipLearningRequest request, RewardFunction rewardFunction, TerminalFunction terminalFunction,
+			StateHashFactory stateHashingFactory, List<State> startStates, boolean firstReplan, Policy lastPolicy) {
+		
+		OOMDPPlanner planner = request.getPlanner();
+		if (!firstReplan && request.getWarmStartPlanner() && planner instanceof ValueIteration && !(planner.getRF() instanceof OptionEvaluatingRF)) {
+			planner.setRf(rewardFunction);
+			((ValueIteration)planner).rewardFunctionChanged();
+		}
+		else {
+			planner.resetPlannerResults();
+			planner.plannerInit(request.getDomain(), rewardFunction, terminalFunction, request.getGamma(), stateHashingFactory);
+		}
+		for (State s : startStates) {
+			planner.planFromState(s);
+		}
+		
+		if (planner instanceof DeterministicPlanner) {
+			return new DDPlannerPolicy((DeterministicPlanner)planner);
+		}
+		else if (planner instanceof QComputablePlanner) {
+			return new GreedyQPolicy((QComputablePlanner)planner);
+		}
+		return lastPolicy;
+	}
+	
+	
+	/**
+	 * Computes the feature expectations of a policy for episodes from the given start states, either exactly with the given model or,
+	 * if it is null, by estimating them from one rollout per start state.
+	 * @param request the apprenticeship learning request
+	 * @param policy the policy to evaluate
+	 * @param rewardFunction the reward function recorded in the rollouts
+	 * @param startStates the start states of the episodes
+	 * @param episodeLength the number of states in each episode
+	 * @param model the model used to compute exact feature expectations; null to estimate them from rollouts
+	 * @return the feature expectations of the policy
+	 */
+	private static double[] policyFeatureExpectation(ApprenticeshipLearningRequest request, Policy policy, RewardFunction rewardFunction,
+			List<State> startStates, int episodeLength, FeatureExpectationModel model) {
+		if (model != null) {
+			return model.featureExpectation(policy, startStates, request.getGamma(), episodeLength);
+		}
+		List<EpisodeAnalysis> episodes = ApprenticeshipLearning.rolloutPolicy(request, policy, rewardFunction, startStates, episodeLength);
+		return ApprenticeshipLearning.estimateFeatureExpectation(episodes, request.getFeatureGenerator(), request.getGamma());
+	}
+	
+	
+	/**
+	 * Rolls out a policy once from each of the given start states. The rollouts are run on the request's number of threads when
+	 * the policy can be safely queried concurrently, and sequentially otherwise.
+	 * @param request the apprenticeship learning request
+	 * @param policy the policy to roll out
+	 * @param rewardFunction the reward function recorded in the rollouts
+	 * @param startStates the start states of the rollouts
+	 * @param episodeLength the number of states in each rollout
+	 * @return the rollouts, in the order of their start states
+	 */
+	private static List<EpisodeAnalysis> rolloutPolicy(ApprenticeshipLearningRequest request, final Policy policy, final RewardFunction rewardFunction,
+			final List<State> startStates, final int episodeLength) {
+		
+		final OOMDPPlanner planner = request.getPlanner();
+		final boolean greedy = policy instanceof GreedyQPolicy && planner instanceof ValueIteration;
+		final List<EpisodeAnalysis> episodes = new ArrayList<EpisodeAnalysis>(startStates.size());
+		
+		if (request.getNumThreads() <= 1 || startStates.size() <= 1 || !(greedy || policy instanceof RandomPolicy)) {
+			for (State s : startStates) {
+				episodes.add(policy.evaluateBehavior(s, rewardFunction, episodeLength));
+			}
+			return episodes;
+		}
+		
+		ParallelMatchEngine engine = new ParallelMatchEngine(request.getNumThreads(), RandomFactory.getMapped(0).nextLong());
+		engine.run(startStates.size(), new ParallelMatchEngine.MatchTask<EpisodeAnalysis>() {
+			@Override
+			public EpisodeAnalysis runMatch(int matchIndex) {
+				//a greedy policy per rollout so that its tie breaking uses the rollout's scoped random generator
+				Policy p = greedy ? new GreedyQPolicy((QComputablePlanner)planner) : policy;
+				return p.evaluateBehavior(startStates.get(matchIndex), rewardFunction, episodeLength);
+			}
+		}, new ParallelMatchEngine.ResultCommitter<EpisodeAnalysis>() {
+			@Override
+			public void commit(int matchIndex, EpisodeAnalysis result) {
+				episodes.add(result);
+			}
+		});
+		
+		return episodes;
+	}
+	
+	
+	
 	/*
 	 * Static methods for estimating weights and tolerance in feature expectation space
 	 */
@@ -551,7 +673,7 @@ public class ApprenticeshipLearning {
 	/**
 	 * This class extends Policy, and all it does is create a randomly generated distribution of
 	 * actions over all possible states. It lazily initializes because I have no idea what sorts 
-	 * of states you are passing it.
+	 * of states you are passing it. Its queries are synchronized so that it can be rolled out by multiple threads.
 	 * @author Stephen Brawner
 	 *
 	 */
@@ -610,7 +732,7 @@ public class ApprenticeshipLearning {
 		}
 
 		@Override
-		public AbstractGroundedAction getAction(State s) {
+		public synchronized AbstractGroundedAction getAction(State s) {
 			StateHashTuple stateHashTuple = this.hashFactory.hashState(s);
 
 			// If this state has not yet been visited, we need to compute a new distribution of actions
@@ -634,7 +756,7 @@ public class ApprenticeshipLearning {
 		}
 
 		@Override
-		public List<ActionProb> getActionDistributionForState(State s) {
+		public synchronized List<ActionProb> getActionDistributionForState(State s) {
 			StateHashTuple stateHashTuple = this.hashFactory.hashState(s);
 
 			// If this state has not yet been visited, we need to compute a new distribution of actions
@@ -56,12 +56,37 @@ public class ApprenticeshipLearningRequest extends IRLRequest{
 	 * If true, use the full max margin method (expensive); if false, use the cheaper projection method 
 	 */
 	protected boolean 								useMaxMargin;
+	
+	/**
+	 * If true, the feature expectations of the learned policies are computed exactly from their discounted state visitation frequencies on
+	 * a tabular model compiled from the domain's transition dynamics; if false, they are estimated from policy rollouts
+	 */
+	protected boolean 								useExactFeatureExpectations;
+	
+	/**
+	 * The number of threads used to roll out policies when feature expectations are estimated from rollouts
+	 */
+	protected int 									numThreads;
+	
+	/**
+	 * If true, a {@link burlap.behavior.singleagent.planning.stochastic.valueiteration.ValueIteration} planner keeps its value function between
+	 * reward function updates and replans from it; if false, the planner is reset before each replan
+	 */
+	protected boolean 								warmStartPlanner;
+	
+	/**
+	 * The cached feature expectations of the expert episodes; null when they must be recomputed
+	 */
+	protected double[] 								expertFeatureExpectations;
 
 
 	public static final double 			DEFAULT_EPSILON = 0.01;
 	public static final int 			DEFAULT_MAXITERATIONS = 100;
 	public static final int 			DEFAULT_POLICYCOUNT = 5;
 	public static final boolean 		DEFAULT_USEMAXMARGIN = false;
+	public static final boolean 		DEFAULT_USEEXACTFEATUREEXPECTATIONS = false;
+	public static final int 			DEFAULT_NUMTHREADS = 1;
+	public static final boolean 		DEFAULT_WARMSTARTPLANNER = true;
 
 	public ApprenticeshipLearningRequest() {
 		super();
@@ -80,6 +105,9 @@ public class ApprenticeshipLearningRequest extends IRLRequest{
 		this.maxIterations = ApprenticeshipLearningRequest.DEFAULT_MAXITERATIONS;
 		this.policyCount = ApprenticeshipLearningRequest.DEFAULT_POLICYCOUNT;
 		this.useMaxMargin = ApprenticeshipLearningRequest.DEFAULT_USEMAXMARGIN;
+		this.useExactFeatureExpectations = ApprenticeshipLearningRequest.DEFAULT_USEEXACTFEATUREEXPECTATIONS;
+		this.numThreads = ApprenticeshipLearningRequest.DEFAULT_NUMTHREADS;
+		this.warmStartPlanner = ApprenticeshipLearningRequest.DEFAULT_WARMSTARTPLANNER;
 	}
 
 	@Override
@@ -104,6 +132,9 @@ public class ApprenticeshipLearningRequest extends IRLRequest{
 		if (this.policyCount <= 0) {
 			return false;
 		}
+		if (this.numThreads <= 0) {
+			return false;
+		}
 		return true;
 	}
 
@@ -118,15 +149,17 @@ public class ApprenticeshipLearningRequest extends IRLRequest{
 
 	public void setFeatureGenerator(StateToFeatureVectorGenerator stateFeaturesGenerator) {
 		this.featureGenerator = stateFeaturesGenerator;
+		this.expertFeatureExpectations = null;
 	}
 
 	public void setExpertEpisodes(List<EpisodeAnalysis> episodeList) {
 		this.expertEpisodes = new ArrayList<EpisodeAnalysis>(episodeList);
+		this.expertFeatureExpectations = null;
 	}
 
 	public void setStartStateGenerator(StateGenerator startStateGenerator) { this.startStateGenerator = startStateGenerator;}
 
-	public void setGamma(double gamma) { this.gamma = gamma;}
+	public void setGamma(double gamma) { this.gamma = gamma; this.expertFeatureExpectations = null;}
 
 	public void setEpsilon(double epsilon) {this.epsilon = epsilon;}
 
@@ -137,6 +170,9 @@ public class ApprenticeshipLearningRequest extends IRLRequest{
 	public void setTHistory(double[] tHistory) {this.tHistory = tHistory.clone();}
 
 	public void setUsingMaxMargin(boolean useMaxMargin) {this.useMaxMargin = useMaxMargin;}
+	public void setUsingExactFeatureExpectations(boolean useExactFeatureExpectations) {this.useExactFeatureExpectations = useExactFeatureExpectations;}
+	public void setNumThreads(int numThreads) {this.numThreads = numThreads;}
+	public void setWarmStartPlanner(boolean warmStartPlanner) {this.warmStartPlanner = warmStartPlanner;}
 
 	public Domain getDomain() {return this.domain;}
 
@@ -159,4 +195,20 @@ public class ApprenticeshipLearningRequest extends IRLRequest{
 	public double[] getTHistory() {return this.tHistory.clone();}
 
 	public boolean getUsingMaxMargin() {return this.useMaxMargin;}
+	public boolean getUsingExactFeatureExpectations() {return this.useExactFeatureExpectations;}
+	public int getNumThreads() {return this.numThreads;}
+	public boolean getWarmStartPlanner() {return this.warmStartPlanner;}
+	
+	/**
+	 * Returns the discounted feature expectations of the expert episodes. They are computed the first time they are requested and cached
+	 * until the expert episodes, feature generator, or discount factor are changed through this object's setters, so the returned
+	 * array should not be modified.
+	 * @return the discounted feature expectations of the expert episodes
+	 */
+	public double[] getExpertFeatureExpectations() {
+		if (this.expertFeatureExpectations == null) {
+			this.expertFeatureExpectations = ApprenticeshipLearning.estimateFeatureExpectation(this.expertEpisodes, this.featureGenerator, this.gamma);
+		}
+		return this.expertFeatureExpectations;
+	}
 }
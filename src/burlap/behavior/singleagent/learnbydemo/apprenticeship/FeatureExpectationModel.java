@@ -0,0 +1,368 @@
+package burlap.behavior.singleagent.learnbydemo.apprenticeship;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import burlap.behavior.singleagent.Policy;
+import burlap.behavior.singleagent.Policy.ActionProb;
+import burlap.behavior.singleagent.options.Option;
+import burlap.behavior.singleagent.vfa.StateToFeatureVectorGenerator;
+import burlap.behavior.statehashing.StateHashFactory;
+import burlap.behavior.statehashing.StateHashTuple;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TransitionProbability;
+import burlap.oomdp.singleagent.Action;
+import burlap.oomdp.singleagent.GroundedAction;
+
+
+/**
+ * Computes the discounted feature expectations of policies exactly from their discounted state visitation frequencies, rather than
+ * estimating them from policy rollouts. The model is a tabular compilation of the domain's transition dynamics that is built lazily
+ * as states are reached: each state is given a compact id, its feature vector is computed once, and the successor ids and probabilities
+ * of each of its grounded actions are stored in arrays. Because none of this depends on the policy, a single model can be reused
+ * to evaluate every policy produced during apprenticeship learning, and each evaluation only combines the cached dynamics with
+ * the policy's action distributions.
+ * <p/>
+ * The feature expectations are computed for the same finite horizon episodes that
+ * {@link burlap.behavior.singleagent.Policy#evaluateBehavior(burlap.oomdp.core.State, burlap.oomdp.singleagent.RewardFunction, int)} rolls out,
+ * so they are the exact expected values of the rollout estimates computed by
+ * {@link ApprenticeshipLearning#estimateFeatureExpectation(java.util.List, burlap.behavior.singleagent.vfa.StateToFeatureVectorGenerator, Double)}.
+ * The domain's actions must be able to enumerate their transitions and the policies must select primitive actions.
+ * @author Stephen Brawner and Mark Ho
+ *
+ */
+public class FeatureExpectationModel {
+
+	/**
+	 * The domain whose transition dynamics are compiled
+	 */
+	protected Domain								domain;
+
+	/**
+	 * The hashing factory used to identify states
+	 */
+	protected StateHashFactory						hashingFactory;
+
+	/**
+	 * The feature generator that turns a state into a feature vector
+	 */
+	protected StateToFeatureVectorGenerator			featureGenerator;
+
+	/**
+	 * The id of each hashed state
+	 */
+	protected Map<StateHashTuple, Integer>			stateIds = new HashMap<StateHashTuple, Integer>();
+
+	/**
+	 * The state of each id
+	 */
+	protected List<State>							states = new ArrayList<State>();
+
+	/**
+	 * The feature vector of each state id
+	 */
+	protected List<double[]>						features = new ArrayList<double[]>();
+
+	/**
+	 * The compiled actions of each state id; an entry is null until the state's transitions are first needed
+	 */
+	protected List<CompiledActions>					stateActions = new ArrayList<CompiledActions>();
+
+
+	/**
+	 * Initializes.
+	 * @param domain the domain whose transition dynamics are compiled
+	 * @param hashingFactory the hashing factory used to identify states
+	 * @param featureGenerator the feature generator that turns a state into a feature vector
+	 */
+	public FeatureExpectationModel(Domain domain, StateHashFactory hashingFactory, StateToFeatureVectorGenerator featureGenerator){
+		this.domain = domain;
+		this.hashingFactory = hashingFactory;
+		this.featureGenerator = featureGenerator;
+	}
+
+
+	/**
+	 * Returns the number of states compiled so far.
+	 * @return the number of states compiled so far.
+	 */
+	public int numStates(){
+		return this.states.size();
+	}
+
+
+	/**
+	 * Computes the discounted feature expectations of the given policy for episodes that start in a state drawn uniformly from the
+	 * given start states (with repetition, as if each had been rolled out once) and that contain the given number of states.
+	 * @param policy the policy to evaluate
+	 * @param startStates the start states of the episodes
+	 * @param gamma the discount factor
+	 * @param numStates the number of states in each episode, including the start state
+	 * @return the discounted feature expectations of the policy
+	 */
+	public double [] featureExpectation(Policy policy, List<State> startStates, double gamma, int numStates){
+
+		double [] cur = new double[0];
+		double startProb = 1. / startStates.size();
+		for(State s : startStates){
+			int id = this.stateId(s);
+			cur = this.ensureCapacity(cur, this.states.size());
+			cur[id] += startProb;
+		}
+
+		//the merged successor distribution of each state under the policy, computed when the state is first left
+		Map<Integer, PolicyTransitions> policyTransitions = new HashMap<Integer, PolicyTransitions>();
+
+		double [] fe = null;
+		double discount = 1.;
+		for(int t = 0; t < numStates; t++){
+
+			for(int i = 0; i < cur.length; i++){
+				if(cur[i] == 0.){
+					continue;
+				}
+				double [] fv = this.features.get(i);
+				if(fe == null){
+					fe = new double[fv.length];
+				}
+				double w = discount * cur[i];
+				for(int j = 0; j < fe.length; j++){
+					fe[j] += w * fv[j];
+				}
+			}
+
+			if(t == numStates-1){
+				break;
+			}
+
+			//compile the policy transitions of the occupied states first, since that may discover new states
+			for(int i = 0; i < cur.length; i++){
+				if(cur[i] != 0. && !policyTransitions.containsKey(i)){
+					policyTransitions.put(i, this.policyTransitionsFor(i, policy));
+				}
+			}
+
+			double [] next = new double[this.states.size()];
+			for(int i = 0; i < cur.length; i++){
+				if(cur[i] == 0.){
+					continue;
+				}
+				PolicyTransitions pt = policyTransitions.get(i);
+				for(int k = 0; k < pt.successors.length; k++){
+					next[pt.successors[k]] += cur[i] * pt.probs[k];
+				}
+			}
+
+			cur = next;
+			discount *= gamma;
+
+		}
+
+		return fe;
+	}
+
+
+	/**
+	 * Returns the id of the given state, adding it to the model if it has not been seen before.
+	 * @param s the state
+	 * @return the id of the state
+	 */
+	protected int stateId(State s){
+		StateHashTuple sh = this.hashingFactory.hashState(s);
+		Integer id = this.stateIds.get(sh);
+		if(id == null){
+			id = this.states.size();
+			this.stateIds.put(sh, id);
+			this.states.add(s);
+			this.features.add(this.featureGenerator.generateFeatureVectorFrom(s));
+			this.stateActions.add(null);
+		}
+		return id;
+	}
+
+
+	/**
+	 * Returns the compiled actions of the state with the given id, compiling them if needed.
+	 * @param id the state id
+	 * @return the compiled actions of the state
+	 */
+	protected CompiledActions actionsFor(int id){
+		CompiledActions ca = this.stateActions.get(id);
+		if(ca == null){
+			State s = this.states.get(id);
+			List<GroundedAction> gas = Action.getAllApplicableGroundedActionsFromActionList(this.domain.getActions(), s);
+			ca = new CompiledActions(gas.size());
+			for(int i = 0; i < gas.size(); i++){
+				ca.actions[i] = gas.get(i);
+				this.compileTransitions(s, gas.get(i), ca, i);
+			}
+			this.stateActions.set(id, ca);
+		}
+		return ca;
+	}
+
+
+	/**
+	 * Compiles the transitions of the given grounded action from the given state into the given slot of a {@link CompiledActions} object.
+	 * @param s the source state
+	 * @param ga the grounded action
+	 * @param ca the compiled actions object
+	 * @param slot the slot in which the transitions are stored
+	 */
+	protected void compileTransitions(State s, GroundedAction ga, CompiledActions ca, int slot){
+		if(ga.action instanceof Option){
+			throw new RuntimeException("Exact feature expectations cannot be computed for policies that select options.");
+		}
+		List<TransitionProbability> tps = ga.action.getTransitions(s, ga.params);
+		ca.successors[slot] = new int[tps.size()];
+		ca.probs[slot] = new double[tps.size()];
+		for(int k = 0; k < tps.size(); k++){
+			TransitionProbability tp = tps.get(k);
+			ca.successors[slot][k] = this.stateId(tp.s);
+			ca.probs[slot][k] = tp.p;
+		}
+	}
+
+
+	/**
+	 * Merges the compiled transitions of the state with the given id under the given policy's action distribution into a single
+	 * successor distribution.
+	 * @param id the state id
+	 * @param policy the policy
+	 * @return the successor distribution of the state under the policy
+	 */
+	protected PolicyTransitions policyTransitionsFor(int id, Policy policy){
+
+		CompiledActions ca = this.actionsFor(id);
+		State s = this.states.get(id);
+		Map<Integer, Double> merged = new HashMap<Integer, Double>();
+
+		for(ActionProb ap : policy.getActionDistributionForState(s)){
+			if(ap.pSelection == 0.){
+				continue;
+			}
+			GroundedAction ga = (GroundedAction)ap.ga;
+			int slot = -1;
+			for(int i = 0; i < ca.actions.length; i++){
+				if(ca.actions[i].equals(ga)){
+					slot = i;
+					break;
+				}
+			}
+			int [] successors;
+			double [] probs;
+			if(slot != -1){
+				successors = ca.successors[slot];
+				probs = ca.probs[slot];
+			}
+			else{
+				//an action the domain did not enumerate for this state; compile it on its own
+				CompiledActions single = new CompiledActions(1);
+				this.compileTransitions(s, ga, single, 0);
+				successors = single.successors[0];
+				probs = single.probs[0];
+			}
+			for(int k = 0; k < successors.length; k++){
+				Double p = merged.get(successors[k]);
+				merged.put(successors[k], (p == null ? 0. : p) + ap.pSelection * probs[k]);
+			}
+		}
+
+		PolicyTransitions pt = new PolicyTransitions(merged.size());
+		int k = 0;
+		for(Map.Entry<Integer, Double> e : merged.entrySet()){
+			pt.successors[k] = e.getKey();
+			pt.probs[k] = e.getValue();
+			k++;
+		}
+
+		return pt;
+	}
+
+
+	/**
+	 * Returns an array with the contents of the given array and at least the given length.
+	 * @param a the array
+	 * @param n the minimum length
+	 * @return the given array if it is long enough; a zero padded copy otherwise
+	 */
+	protected double [] ensureCapacity(double [] a, int n){
+		if(a.length >= n){
+			return a;
+		}
+		double [] na = new double[n];
+		System.arraycopy(a, 0, na, 0, a.length);
+		return na;
+	}
+
+
+
+	/**
+	 * The compiled grounded actions of a state and the successor ids and probabilities of each.
+	 * @author Stephen Brawner
+	 *
+	 */
+	protected static class CompiledActions{
+
+		/**
+		 * The grounded actions
+		 */
+		public GroundedAction []	actions;
+
+		/**
+		 * The successor state ids of each action
+		 */
+		public int [][]				successors;
+
+		/**
+		 * The successor probabilities of each action
+		 */
+		public double [][]			probs;
+
+
+		/**
+		 * Initializes for the given number of actions.
+		 * @param n the number of actions
+		 */
+		public CompiledActions(int n){
+			this.actions = new GroundedAction[n];
+			this.successors = new int[n][];
+			this.probs = new double[n][];
+		}
+
+	}
+
+
+	/**
+	 * The successor distribution of a state under a policy.
+	 * @author Stephen Brawner
+	 *
+	 */
+	protected static class PolicyTransitions{
+
+		/**
+		 * The successor state ids
+		 */
+		public int []				successors;
+
+		/**
+		 * The successor probabilities
+		 */
+		public double []			probs;
+
+
+		/**
+		 * Initializes for the given number of successors.
+		 * @param n the number of successors
+		 */
+		public PolicyTransitions(int n){
+			this.successors = new int[n];
+			this.probs = new double[n];
+		}
+
+	}
+
+}
@@ -2,14 +2,19 @@ package burlap.behavior.singleagent.learnbydemo.mlirl;
 
 import burlap.behavior.singleagent.EpisodeAnalysis;
 import burlap.behavior.singleagent.Policy;
+import burlap.behavior.singleagent.QValue;
+import burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI;
 import burlap.behavior.singleagent.learnbydemo.mlirl.support.BoltzmannPolicyGradient;
 import burlap.behavior.singleagent.learnbydemo.mlirl.support.QGradientPlanner;
+import burlap.behavior.singleagent.planning.OOMDPPlanner;
 import burlap.behavior.singleagent.planning.QComputablePlanner;
 import burlap.behavior.singleagent.planning.commonpolicies.BoltzmannQPolicy;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.ParallelMatchEngine;
 import burlap.oomdp.core.State;
 import burlap.oomdp.singleagent.GroundedAction;
 
+import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -25,6 +30,16 @@ import java.util.List;
  * The gradient ascent will stop either after a fixed number of steps or until the change in likelihood is smaller
  * than some threshold. If the max number of steps is set to -1, then it will continue until the change in likelihood
  * is smaller than the threshold.
+ * <p/>
+ * Each step evaluates the log likelihood and its gradient together in a single pass over the expert trajectories
+ * (see {@link #logLikelihoodAndGradient(double[])}), so the planner is solved only once per step. By default, when the planner is a
+ * {@link burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI}, it is warm started after each
+ * parameter change from the value function and value function gradients of the previous parameters rather than being reset
+ * and solved from scratch. The per trajectory contributions can be computed on multiple threads (see {@link #setNumThreads(int)}),
+ * in which case the reward function must support concurrent calls to its reward and gradient methods; contributions are always summed in trajectory
+ * order so the results do not depend on the number of threads. Besides fixed learning rate gradient ascent, the parameters can
+ * be optimized with L-BFGS and a backtracking line search (see {@link #setOptimizer(burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL.Optimizer)}),
+ * which typically needs far fewer steps and is insensitive to the scale of the learning rate.
  *
  *
  *
@@ -64,6 +79,37 @@ public class MLIRL {
 	protected int debugCode = 625420;
 
 
+	/**
+	 * The optimizer used to search the reward function parameter space.
+	 */
+	protected Optimizer optimizer = Optimizer.GRADIENT_ASCENT;
+
+	/**
+	 * Whether a {@link burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI} planner is warm started after parameter changes instead of being reset.
+	 */
+	protected boolean warmStartPlanner = true;
+
+	/**
+	 * The number of threads used to compute the per trajectory likelihood and gradient contributions.
+	 */
+	protected int nThreads = 1;
+
+	/**
+	 * The number of past steps whose parameter and gradient changes L-BFGS uses to approximate the inverse Hessian.
+	 */
+	protected int lbfgsMemory = 10;
+
+	/**
+	 * The maximum number of step size halvings an L-BFGS line search makes before giving up.
+	 */
+	protected int maxLineSearchSteps = 20;
+
+	/**
+	 * The sufficient increase constant of the L-BFGS backtracking (Armijo) line search.
+	 */
+	protected double lineSearchSufficientIncrease = 1e-4;
+
+
 	/**
 	 * Initializes.
 	 * @param request the problem request definition
@@ -85,6 +131,25 @@ public class MLIRL {
 	}
 
 
+	/**
+	 * Returns a new instance for the given request with the same learning rate, termination conditions, optimizer settings,
+	 * number of threads, and debug code as this instance.
+	 * @param request the problem request definition of the new instance
+	 * @return a new instance for the given request with the same settings as this instance.
+	 */
+	public MLIRL copyWithRequest(MLIRLRequest request){
+		MLIRL c = new MLIRL(request, this.learningRate, this.maxLikelihoodChange, this.maxSteps);
+		c.debugCode = this.debugCode;
+		c.optimizer = this.optimizer;
+		c.warmStartPlanner = this.warmStartPlanner;
+		c.nThreads = this.nThreads;
+		c.lbfgsMemory = this.lbfgsMemory;
+		c.maxLineSearchSteps = this.maxLineSearchSteps;
+		c.lineSearchSufficientIncrease = this.lineSearchSufficientIncrease;
+		return c;
+	}
+
+
 	/**
 	 * Sets the {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRLRequest} object defining the IRL problem.
 	 * @param request the {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRLRequest} object defining the IRL problem.
@@ -124,13 +189,98 @@ public class MLIRL {
 
 
 	/**
-	 * Runs gradient ascent.
+	 * Returns the optimizer used to search the reward function parameter space.
+	 * @return the optimizer used to search the reward function parameter space.
+	 */
+	public Optimizer getOptimizer(){
+		return optimizer;
+	}
+
+
+	/**
+	 * Sets the optimizer used to search the reward function parameter space. The default is {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL.Optimizer#GRADIENT_ASCENT}.
+	 * @param optimizer the optimizer used to search the reward function parameter space.
+	 */
+	public void setOptimizer(Optimizer optimizer){
+		this.optimizer = optimizer;
+	}
+
+
+	/**
+	 * Sets whether a {@link burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI} planner is warm started
+	 * after each parameter change from its previous solution (the default) or reset and solved from scratch. Planners of other
+	 * types are always reset.
+	 * @param warmStartPlanner if true, the planner is warm started; if false, it is reset after each parameter change.
+	 */
+	public void toggleWarmStartPlanner(boolean warmStartPlanner){
+		this.warmStartPlanner = warmStartPlanner;
+	}
+
+
+	/**
+	 * Returns the number of threads used to compute the per trajectory likelihood and gradient contributions.
+	 * @return the number of threads used to compute the per trajectory likelihood and gradient contributions.
+	 */
+	public int getNumThreads(){
+		return nThreads;
+	}
+
+
+	/**
+	 * Sets the number of threads used to compute the per trajectory likelihood and gradient contributions. The default is 1.
+	 * When more than one thread is used, the reward function's reward and gradient methods will be called concurrently.
+	 * @param nThreads the number of threads used to compute the per trajectory likelihood and gradient contributions.
+	 */
+	public void setNumThreads(int nThreads){
+		if(nThreads < 1){
+			throw new RuntimeException("MLIRL requires at least one thread.");
+		}
+		this.nThreads = nThreads;
+	}
+
+
+	/**
+	 * Sets the number of past steps whose parameter and gradient changes L-BFGS uses to approximate the inverse Hessian. The default is 10.
+	 * @param lbfgsMemory the L-BFGS memory size.
+	 */
+	public void setLBFGSMemory(int lbfgsMemory){
+		this.lbfgsMemory = lbfgsMemory;
+	}
+
+
+	/**
+	 * Sets the maximum number of step size halvings an L-BFGS line search makes before giving up. The default is 20.
+	 * @param maxLineSearchSteps the maximum number of step size halvings in a line search.
+	 */
+	public void setMaxLineSearchSteps(int maxLineSearchSteps){
+		this.maxLineSearchSteps = maxLineSearchSteps;
+	}
+
+
+	/**
+	 * Runs the IRL optimization with the selected {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL.Optimizer}.
 	 */
 	public void performIRL(){
 
-		//reset planner
-		this.request.getPlanner().resetPlannerResults();
-		double lastLikelihood = this.logLikelihood();
+		if(this.optimizer == Optimizer.LBFGS){
+			this.performLBFGS();
+		}
+		else{
+			this.performGradientAscent();
+		}
+
+	}
+
+
+	/**
+	 * Runs fixed learning rate gradient ascent.
+	 */
+	protected void performGradientAscent(){
+
+		double [] params = this.request.getRf().getParameters();
+		double [] grad = new double[params.length];
+
+		double lastLikelihood = this.evaluateAt(params, grad);
 		DPrint.cl(this.debugCode, "RF: " + this.request.getRf().toString());
 		DPrint.cl(this.debugCode, "Log likelihood: " + lastLikelihood);
 
@@ -138,26 +288,13 @@ public class MLIRL {
 		int i;
 		for(i = 0; i < maxSteps || this.maxSteps == -1; i++){
 
-			//get current param values
-			double [] oldParams = this.request.getRf().getParameters().clone();
-
-			//get gradient
-			double [] grad = this.logLikelihoodGradient();
-
-
 			//move up gradient
-			double maxChange = 0.;
-			double [] params = this.request.getRf().getParameters();
 			for(int f = 0; f < params.length; f++){
 				params[f] += this.learningRate*grad[f];
-				double delta = Math.abs(params[f]-oldParams[f]);
-				maxChange = Math.max(maxChange, delta);
 			}
 
-			//reset planner
-			this.request.getPlanner().resetPlannerResults();
-
-			double newLikelihood = this.logLikelihood();
+			//the gradient at the new parameters is computed along with their likelihood for the next step
+			double newLikelihood = this.evaluateAt(params, grad);
 			double likelihoodChange = newLikelihood-lastLikelihood;
 			lastLikelihood = newLikelihood;
 
@@ -182,6 +319,346 @@ public class MLIRL {
 	}
 
 
+	/**
+	 * Runs L-BFGS ascent with a backtracking line search. The first step, and any step after the search direction had to be reset,
+	 * starts its line search from a plain gradient step scaled by the learning rate; all other line searches start from the full L-BFGS step.
+	 * Optimization stops when the likelihood change of a step is smaller than the threshold, the maximum number of steps is reached, or
+	 * a line search fails to find a sufficient increase.
+	 */
+	protected void performLBFGS(){
+
+		double [] x = this.request.getRf().getParameters().clone();
+		int d = x.length;
+		double [] g = new double[d];
+		double f = this.evaluateAt(x, g);
+		DPrint.cl(this.debugCode, "RF: " + this.request.getRf().toString());
+		DPrint.cl(this.debugCode, "Log likelihood: " + f);
+
+		LinkedList<double[]> sHistory = new LinkedList<double[]>();
+		LinkedList<double[]> yHistory = new LinkedList<double[]>();
+		LinkedList<Double> rhoHistory = new LinkedList<Double>();
+
+		double [] nx = new double[d];
+		double [] ng = new double[d];
+
+		int i;
+		for(i = 0; i < maxSteps || this.maxSteps == -1; i++){
+
+			double [] dir = this.lbfgsDirection(g, sHistory, yHistory, rhoHistory);
+			double slope = dot(dir, g);
+			if(sHistory.isEmpty() || !(slope > 0.)){
+				//not an ascent direction (or no curvature information yet); restart from the gradient
+				sHistory.clear();
+				yHistory.clear();
+				rhoHistory.clear();
+				dir = g.clone();
+				slope = dot(g, g);
+			}
+			if(slope == 0.){
+				i++;
+				break;
+			}
+
+			double step = sHistory.isEmpty() ? this.learningRate : 1.;
+			double nf = Double.NEGATIVE_INFINITY;
+			boolean accepted = false;
+			for(int ls = 0; ls <= this.maxLineSearchSteps; ls++){
+				for(int j = 0; j < d; j++){
+					nx[j] = x[j] + step*dir[j];
+				}
+				nf = this.evaluateAt(nx, ng);
+				if(nf >= f + this.lineSearchSufficientIncrease*step*slope){
+					accepted = true;
+					break;
+				}
+				step *= 0.5;
+			}
+
+			if(!accepted){
+				//restore the last accepted parameters and planner solution
+				this.evaluateAt(x, g);
+				DPrint.cl(this.debugCode, "Line search failed to find a sufficient increase; stopping.");
+				i++;
+				break;
+			}
+
+			//store the curvature pair for the minimization of the negative log likelihood
+			double [] sv = new double[d];
+			double [] yv = new double[d];
+			for(int j = 0; j < d; j++){
+				sv[j] = nx[j] - x[j];
+				yv[j] = g[j] - ng[j];
+			}
+			double sy = dot(sv, yv);
+			if(sy > 1e-10){
+				sHistory.addLast(sv);
+				yHistory.addLast(yv);
+				rhoHistory.addLast(1. / sy);
+				if(sHistory.size() > this.lbfgsMemory){
+					sHistory.removeFirst();
+					yHistory.removeFirst();
+					rhoHistory.removeFirst();
+				}
+			}
+
+			double likelihoodChange = nf - f;
+			System.arraycopy(nx, 0, x, 0, d);
+			System.arraycopy(ng, 0, g, 0, d);
+			f = nf;
+
+			DPrint.cl(this.debugCode, "RF: " + this.request.getRf().toString());
+			DPrint.cl(this.debugCode, "Log likelihood: " + f + " (change: " + likelihoodChange + ")");
+
+			if(Math.abs(likelihoodChange) < this.maxLikelihoodChange){
+				i++;
+				break;
+			}
+
+		}
+
+		DPrint.cl(this.debugCode, "\nNum L-BFGS steps: " + i);
+		DPrint.cl(this.debugCode, "RF: " + this.request.getRf().toString());
+
+	}
+
+
+	/**
+	 * Computes the L-BFGS ascent direction for the given gradient with the standard two loop recursion.
+	 * @param g the gradient of the log likelihood
+	 * @param sHistory the stored parameter changes, oldest first
+	 * @param yHistory the stored changes in the negative log likelihood gradient, oldest first
+	 * @param rhoHistory the stored inverse inner products of the parameter and gradient changes, oldest first
+	 * @return the ascent direction
+	 */
+	protected double [] lbfgsDirection(double [] g, LinkedList<double[]> sHistory, LinkedList<double[]> yHistory, LinkedList<Double> rhoHistory){
+
+		int m = sHistory.size();
+		double [] q = g.clone();
+		if(m == 0){
+			return q;
+		}
+
+		double [] alpha = new double[m];
+		for(int k = m-1; k >= 0; k--){
+			alpha[k] = rhoHistory.get(k) * dot(sHistory.get(k), q);
+			double [] y = yHistory.get(k);
+			for(int j = 0; j < q.length; j++){
+				q[j] -= alpha[k] * y[j];
+			}
+		}
+
+		double [] lastS = sHistory.getLast();
+		double [] lastY = yHistory.getLast();
+		double scale = dot(lastS, lastY) / dot(lastY, lastY);
+		for(int j = 0; j < q.length; j++){
+			q[j] *= scale;
+		}
+
+		for(int k = 0; k < m; k++){
+			double beta = rhoHistory.get(k) * dot(yHistory.get(k), q);
+			double [] s = sHistory.get(k);
+			for(int j = 0; j < q.length; j++){
+				q[j] += (alpha[k] - beta) * s[j];
+			}
+		}
+
+		return q;
+	}
+
+
+	/**
+	 * Sets the reward function parameters to the given values, updates the planner for them, and returns the log likelihood of the
+	 * expert trajectories, storing its gradient in the given array. The given values are copied into the reward function's parameter
+	 * array, so references to that array held elsewhere remain valid.
+	 * @param params the reward function parameter values to evaluate
+	 * @param gradient the array in which the log likelihood gradient is stored
+	 * @return the log likelihood of the expert trajectories
+	 */
+	protected double evaluateAt(double [] params, double [] gradient){
+		double [] rfParams = this.request.getRf().getParameters();
+		if(rfParams != params){
+			System.arraycopy(params, 0, rfParams, 0, rfParams.length);
+		}
+		this.rewardParametersChanged();
+		return this.logLikelihoodAndGradient(gradient);
+	}
+
+
+	/**
+	 * Informs the planner that the reward function parameters have changed, either by warm starting it (if it is a
+	 * {@link burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI} and warm starts are enabled)
+	 * or by resetting its results.
+	 */
+	protected void rewardParametersChanged(){
+		OOMDPPlanner planner = this.request.getPlanner();
+		if(this.warmStartPlanner && planner instanceof DifferentiableVI){
+			((DifferentiableVI)planner).rewardParametersChanged();
+		}
+		else{
+			planner.resetPlannerResults();
+		}
+	}
+
+
+	/**
+	 * Computes the log likelihood of all expert trajectories and its gradient under the current reward function parameters in a single pass,
+	 * using the current planner results. The planner is first asked to plan from every trajectory state (which is cheap for states it has already solved),
+	 * then the per trajectory contributions are computed, on multiple threads if this object is set to use them, and summed in trajectory order.
+	 * @param gradient the array in which the gradient is stored; it must have the reward function's parameter dimension
+	 * @return the log likelihood of all expert trajectories
+	 */
+	public double logLikelihoodAndGradient(double [] gradient){
+
+		final double [] weights = this.request.getEpisodeWeights();
+		final List<EpisodeAnalysis> exampleTrajectories = this.request.getExpertEpisodes();
+		final int n = exampleTrajectories.size();
+		final int d = gradient.length;
+		final int threads = Math.min(this.nThreads, n);
+
+		//planning mutates the planner, so it is always done up front on this thread
+		this.planFromTrajectoryStates(threads > 1);
+
+		final double [] logLikes = new double[n];
+		final double [][] grads = new double[n][d];
+
+		ParallelMatchEngine.runIndexed(n, threads, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int i) {
+				logLikes[i] = MLIRL.this.logLikelihoodAndGradientOfTrajectory(exampleTrajectories.get(i), weights[i], grads[i]);
+			}
+		});
+
+		double sum = 0.;
+		for(int j = 0; j < d; j++){
+			gradient[j] = 0.;
+		}
+		for(int i = 0; i < n; i++){
+			sum += logLikes[i];
+			addToVector(gradient, grads[i]);
+		}
+
+		return sum;
+	}
+
+
+	/**
+	 * Has the planner plan from every state of the expert trajectories (which is cheap for states it has already solved). Planning
+	 * mutates the planner, so this must not be called concurrently with any other use of the planner.
+	 * @param prepareForConcurrentQueries if true, the Q-values of every trajectory state are also queried once, so that any
+	 *                                    transition dynamics the planner caches lazily are cached before the planner is queried by multiple threads.
+	 */
+	public void planFromTrajectoryStates(boolean prepareForConcurrentQueries){
+		QGradientPlanner planner = (QGradientPlanner)this.request.getPlanner();
+		for(EpisodeAnalysis ea : this.request.getExpertEpisodes()){
+			for(int t = 0; t < ea.numTimeSteps()-1; t++){
+				this.request.getPlanner().planFromState(ea.getState(t));
+				if(prepareForConcurrentQueries){
+					planner.getQs(ea.getState(t));
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Computes and returns the log-likelihood of the given trajectory under the current planner results and weights it by the given weight.
+	 * Unlike {@link #logLikelihoodOfTrajectory(burlap.behavior.singleagent.EpisodeAnalysis, double)}, this method does not plan, so
+	 * the planner must already have planned from every state in the trajectory (see {@link #planFromTrajectoryStates(boolean)}), in
+	 * which case this method may be called concurrently.
+	 * @param ea the trajectory
+	 * @param weight the weight to assign the trajectory
+	 * @return the log-likelihood of the given trajectory under the current planner results, weighted by the given weight.
+	 */
+	public double plannedLogLikelihoodOfTrajectory(EpisodeAnalysis ea, double weight){
+
+		QGradientPlanner planner = (QGradientPlanner)this.request.getPlanner();
+		double beta = this.request.getBoltzmannBeta();
+
+		double logLike = 0.;
+		for(int t = 0; t < ea.numTimeSteps()-1; t++){
+			List<QValue> Qs = planner.getQs(ea.getState(t));
+			GroundedAction ga = ea.getAction(t);
+			double [] qs = new double[Qs.size()];
+			int aind = -1;
+			for(int i = 0; i < qs.length; i++){
+				qs[i] = Qs.get(i).q;
+				if(aind == -1 && Qs.get(i).a.equals(ga)){
+					aind = i;
+				}
+			}
+			if(aind == -1){
+				throw new RuntimeException("Error in computing MLIRL log likelihood: Could not find query action in Q-value list.");
+			}
+			double maxBetaScaled = BoltzmannPolicyGradient.maxBetaScaled(qs, beta);
+			logLike += beta*qs[aind] - BoltzmannPolicyGradient.logSum(qs, maxBetaScaled, beta);
+		}
+
+		return weight * logLike;
+	}
+
+
+	/**
+	 * Computes the weighted log likelihood of the given trajectory and adds its weighted gradient to the given array, using the current
+	 * planner results without planning. The planner must already have planned from every state in the trajectory.
+	 * The Q-values and Q-value gradients of each trajectory state are computed once and used for both the likelihood and the gradient.
+	 * @param ea the trajectory
+	 * @param weight the weight of the trajectory
+	 * @param gradient the array to which the weighted log likelihood gradient of the trajectory is added
+	 * @return the weighted log likelihood of the trajectory
+	 */
+	protected double logLikelihoodAndGradientOfTrajectory(EpisodeAnalysis ea, double weight, double [] gradient){
+
+		QGradientPlanner planner = (QGradientPlanner)this.request.getPlanner();
+		double beta = this.request.getBoltzmannBeta();
+		int d = gradient.length;
+
+		double logLike = 0.;
+		double [] trajectoryGradient = new double[d];
+		for(int t = 0; t < ea.numTimeSteps()-1; t++){
+
+			State s = ea.getState(t);
+			GroundedAction ga = ea.getAction(t);
+
+			List<QValue> Qs = planner.getQs(s);
+			double [] qs = new double[Qs.size()];
+			int aind = -1;
+			for(int i = 0; i < qs.length; i++){
+				qs[i] = Qs.get(i).q;
+				if(aind == -1 && Qs.get(i).a.equals(ga)){
+					aind = i;
+				}
+			}
+			if(aind == -1){
+				throw new RuntimeException("Error in computing MLIRL log likelihood: Could not find query action in Q-value list.");
+			}
+
+			double maxBetaScaled = BoltzmannPolicyGradient.maxBetaScaled(qs, beta);
+			double logSum = BoltzmannPolicyGradient.logSum(qs, maxBetaScaled, beta);
+			logLike += beta*qs[aind] - logSum;
+
+			//the gradient of the log Boltzmann policy is beta times the difference between the query action's Q-value gradient and the expected Q-value gradient
+			double [] gqa = planner.getQGradient(s, ga).gradient;
+			for(int j = 0; j < d; j++){
+				trajectoryGradient[j] += beta * gqa[j];
+			}
+			for(int i = 0; i < qs.length; i++){
+				double probA = Math.exp(beta*qs[i] - logSum);
+				double [] gq = i == aind ? gqa : planner.getQGradient(s, (GroundedAction)Qs.get(i).a).gradient;
+				for(int j = 0; j < d; j++){
+					trajectoryGradient[j] -= beta * probA * gq[j];
+				}
+			}
+
+		}
+
+		for(int j = 0; j < d; j++){
+			gradient[j] += weight * trajectoryGradient[j];
+		}
+
+		return weight * logLike;
+	}
+
+
 	/**
 	 * Computes and returns the log-likelihood of all expert trajectories under the current reward function parameters.
 	 * @return the log-likelihood of all expert trajectories under the current reward function parameters.
@@ -279,4 +756,37 @@ public class MLIRL {
 	}
 
 
+	/**
+	 * Returns the inner product of two vectors.
+	 * @param a the first vector
+	 * @param b the second vector
+	 * @return the inner product of the two vectors
+	 */
+	protected static double dot(double [] a, double [] b){
+		double sum = 0.;
+		for(int i = 0; i < a.length; i++){
+			sum += a[i] * b[i];
+		}
+		return sum;
+	}
+
+
+
+	/**
+	 * The optimizers that can be used to search the reward function parameter space.
+	 */
+	public static enum Optimizer{
+
+		/**
+		 * Gradient ascent with a fixed learning rate.
+		 */
+		GRADIENT_ASCENT,
+
+		/**
+		 * L-BFGS ascent with a backtracking line search. The learning rate only scales the first step.
+		 */
+		LBFGS
+	}
+
+
 }
@@ -5,6 +5,7 @@ import burlap.behavior.singleagent.learnbydemo.mlirl.support.DifferentiableRF;
 import burlap.behavior.singleagent.learnbydemo.mlirl.support.QGradientPlannerFactory;
 import burlap.behavior.singleagent.planning.OOMDPPlanner;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.ParallelMatchEngine;
 import burlap.debugtools.RandomFactory;
 
 import java.util.ArrayList;
@@ -21,6 +22,15 @@ import java.util.Random;
  * At initialization, the reward function parameters for each behavior cluster will be randomly assigned values between
  * -1 and 1. If you want to change this behavior, subclass this object and override the
  * {@link #initializeClusterRFParameters(java.util.List)} method.
+ * <p/>
+ * Each cluster has its own planner generated by the request's {@link burlap.behavior.singleagent.learnbydemo.mlirl.support.QGradientPlannerFactory}
+ * and its own {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL} instance, so the EM steps can use multiple threads
+ * (see {@link #setNumThreads(int)}): the expectation step plans each cluster's planner concurrently and then evaluates the likelihood of every
+ * trajectory under every cluster concurrently, and the maximization step runs each cluster's weighted MLIRL concurrently. Each planning
+ * and maximization task runs inside a {@link burlap.debugtools.RandomFactory} thread scope seeded from this object's random generator
+ * (whatever the number of threads), and all reductions are performed in a fixed order, so the results are reproducible as described in
+ * {@link burlap.debugtools.RandomFactory#beginThreadScope(long)}. With more than one thread, the domain's actions and the reward functions
+ * must support concurrent calls.
  *
  * <p/>
  * 1. Babes, Monica, et al. "Apprenticeship learning about multiple intentions." Proceedings of the 28th International Conference on Machine Learning (ICML-11). 2011.
@@ -46,11 +56,21 @@ public class MultipleIntentionsMLIRL {
 
 
 	/**
-	 * The {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL} instance used to perform the maximization step
+	 * The {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL} instance whose settings are used to perform the maximization step
 	 * for each clusters reward function parameter values.
 	 */
 	protected MLIRL mlirlInstance;
 
+	/**
+	 * The {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL} instance of each cluster, created from {@link #mlirlInstance} when first needed.
+	 */
+	protected List<MLIRL> clusterMLIRLs;
+
+	/**
+	 * The number of threads used for the EM steps.
+	 */
+	protected int nThreads = 1;
+
 	/**
 	 * The number of EM iterations to run.
 	 */
@@ -94,24 +114,48 @@ public class MultipleIntentionsMLIRL {
 	}
 
 
+	/**
+	 * Returns the number of threads used for the EM steps.
+	 * @return the number of threads used for the EM steps.
+	 */
+	public int getNumThreads(){
+		return nThreads;
+	}
+
+
+	/**
+	 * Sets the number of threads used for the EM steps. The default is 1.
+	 * @param nThreads the number of threads used for the EM steps.
+	 */
+	public void setNumThreads(int nThreads){
+		if(nThreads < 1){
+			throw new RuntimeException("MultipleIntentionsMLIRL requires at least one thread.");
+		}
+		this.nThreads = nThreads;
+	}
+
+
 	/**
 	 * Performs multiple intention inverse reinforcement learning.
 	 */
 	public void performIRL(){
 
 		int k = this.clusterPriors.length;
+		final List<MLIRL> mlirls = this.getClusterMLIRLs();
 
 		for(int i = 0; i < this.numEMIterations; i++){
 
 			DPrint.cl(this.debugCode, "Starting EM iteration " + (i+1) + "/" + this.numEMIterations);
 
-			double [][] trajectoryPerClusterWeights = this.computePerClusterMLIRLWeights();
-			for(int j = 0; j < k; j++){
-				MLIRLRequest clusterRequest = this.clusterRequests.get(j);
-				clusterRequest.setEpisodeWeights(trajectoryPerClusterWeights[j].clone());
-				this.mlirlInstance.setRequest(clusterRequest);
-				this.mlirlInstance.performIRL();
-			}
+			final double [][] trajectoryPerClusterWeights = this.computePerClusterMLIRLWeights();
+			this.runTasks(k, true, new ParallelMatchEngine.IndexedTask() {
+				@Override
+				public void run(int j) {
+					MLIRLRequest clusterRequest = MultipleIntentionsMLIRL.this.clusterRequests.get(j);
+					clusterRequest.setEpisodeWeights(trajectoryPerClusterWeights[j].clone());
+					mlirls.get(j).performIRL();
+				}
+			});
 
 
 		}
@@ -136,9 +180,7 @@ public class MultipleIntentionsMLIRL {
 		for(int i = 0; i < k; i++){
 			double logPrior = Math.log(this.clusterPriors[i]);
 
-			//set the IRL request for the current cluster
-			this.mlirlInstance.setRequest(this.clusterRequests.get(i));
-			double logTrajectory = this.mlirlInstance.logLikelihoodOfTrajectory(t, 1.);
+			double logTrajectory = this.getClusterMLIRLs().get(i).logLikelihoodOfTrajectory(t, 1.);
 			double v = logTrajectory + logPrior;
 			probs[i] = v;
 			mx = Math.max(mx, v);
@@ -202,6 +244,9 @@ public class MultipleIntentionsMLIRL {
 	public void toggleDebugPrinting(boolean printDebug){
 		DPrint.toggleCode(this.debugCode, printDebug);
 		this.mlirlInstance.toggleDebugPrinting(printDebug);
+		for(MLIRLRequest clusterRequest : this.clusterRequests){
+			clusterRequest.getPlanner().toggleDebugPrinting(printDebug);
+		}
 	}
 
 
@@ -232,27 +277,33 @@ public class MultipleIntentionsMLIRL {
 	 */
 	protected double [][] computePerClusterMLIRLWeights(){
 
-		int k = this.clusterPriors.length;
-		int n = this.request.getExpertEpisodes().size();
-
-		double [][] newWeights = new double[k][n];
-
-		//first do pass computing log prior weighted likelihood of each trajectory
-		for(int i = 0; i < k; i++){
-			double logPrior = Math.log(this.clusterPriors[i]);
-
-			//set the IRL request for the current cluster
-			this.mlirlInstance.setRequest(this.clusterRequests.get(i));
+		final int k = this.clusterPriors.length;
+		final int n = this.request.getExpertEpisodes().size();
+		final List<MLIRL> mlirls = this.getClusterMLIRLs();
+		final boolean concurrentQueries = this.nThreads > 1;
 
-			//compute the trajectory log-likelihoods and add them in
-			for(int j = 0; j < n; j++){
-				double trajectLogLikelihood = this.mlirlInstance.logLikelihoodOfTrajectory(
-						this.request.getExpertEpisodes().get(j), 1.);
+		final double [][] newWeights = new double[k][n];
 
-				double val = logPrior + trajectLogLikelihood;
-				newWeights[i][j] = val;
+		//first make sure each cluster's planner has planned for every trajectory state
+		this.runTasks(k, true, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int i) {
+				mlirls.get(i).planFromTrajectoryStates(concurrentQueries);
 			}
-		}
+		});
+
+		//then compute the log prior weighted likelihood of each trajectory under each cluster
+		final List<EpisodeAnalysis> trajectories = this.request.getExpertEpisodes();
+		this.runTasks(k*n, false, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int ind) {
+				int i = ind / n;
+				int j = ind % n;
+				double logPrior = Math.log(MultipleIntentionsMLIRL.this.clusterPriors[i]);
+				double trajectLogLikelihood = mlirls.get(i).plannedLogLikelihoodOfTrajectory(trajectories.get(j), 1.);
+				newWeights[i][j] = logPrior + trajectLogLikelihood;
+			}
+		});
 
 		//now pass through normalizing in log space, and then exponentiate to get back probability
 		//also maintain sum of entire matrix to normalize for new cluster priors
@@ -281,6 +332,59 @@ public class MultipleIntentionsMLIRL {
 	}
 
 
+	/**
+	 * Returns the {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL} instance of each cluster, creating them with the settings
+	 * of {@link #mlirlInstance} if they do not exist yet.
+	 * @return the {@link burlap.behavior.singleagent.learnbydemo.mlirl.MLIRL} instance of each cluster.
+	 */
+	protected List<MLIRL> getClusterMLIRLs(){
+		if(this.clusterMLIRLs == null){
+			this.clusterMLIRLs = new ArrayList<MLIRL>(this.clusterRequests.size());
+			for(MLIRLRequest clusterRequest : this.clusterRequests){
+				this.clusterMLIRLs.add(this.mlirlInstance.copyWithRequest(clusterRequest));
+			}
+		}
+		return this.clusterMLIRLs;
+	}
+
+
+	/**
+	 * Runs tasks 0 through numTasks-1 on up to {@link #nThreads} threads and returns once they have all finished. If any task throws
+	 * an exception, the remaining unstarted tasks are skipped and the first exception is rethrown.
+	 * @param numTasks the number of tasks to run
+	 * @param scoped if true, a seed for each task is drawn from {@link #rand} in task order before any task runs, and each task runs inside a
+	 *               {@link burlap.debugtools.RandomFactory} thread scope begun with its seed.
+	 * @param task the task to run for each index
+	 */
+	protected void runTasks(final int numTasks, boolean scoped, final ParallelMatchEngine.IndexedTask task){
+
+		final long [] seeds = scoped ? new long[numTasks] : null;
+		if(scoped){
+			for(int i = 0; i < numTasks; i++){
+				seeds[i] = this.rand.nextLong();
+			}
+		}
+
+		ParallelMatchEngine.runIndexed(numTasks, this.nThreads, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int i) {
+				if(seeds == null){
+					task.run(i);
+					return;
+				}
+				RandomFactory.beginThreadScope(seeds[i]);
+				try{
+					task.run(i);
+				}
+				finally{
+					RandomFactory.endThreadScope();
+				}
+			}
+		});
+
+	}
+
+
 	/**
 	 * Given a matrix holding the log[Pr(c)] + log(Pr(t | c)] values in its entries, where
 	 * Pr(c) is the probability of the cluster and Pr(t | c)] is the probability of the trajectory given the cluster,
@@ -377,5 +481,4 @@ public class MultipleIntentionsMLIRL {
 		}
 	}
 
-
 }
@@ -3,20 +3,42 @@ package burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners;
 import burlap.behavior.singleagent.learnbydemo.mlirl.support.DifferentiableRF;
 import burlap.behavior.singleagent.planning.ActionTransitions;
 import burlap.behavior.singleagent.planning.HashedTransitionProbability;
+import burlap.behavior.singleagent.options.Option;
+import burlap.behavior.singleagent.planning.stochastic.valueiteration.ValueIteration;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.ParallelMatchEngine;
 import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.State;
 import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.singleagent.Action;
+import burlap.oomdp.singleagent.GroundedAction;
 
 import java.util.*;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
 
 /**
  * Performs Differentiable Value Iteration using the Boltzmann backup operator and a
  * {@link burlap.behavior.singleagent.learnbydemo.mlirl.support.DifferentiableRF}. This class
  * behaves the same as the normal {@link burlap.behavior.singleagent.planning.stochastic.valueiteration.ValueIteration}
  * planner except for being in the differentiable value function case.
+ * <p/>
+ * Before VI runs, the reachable state space and its cached transition dynamics are compiled into flat arrays over compact
+ * state ids (see {@link burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI.CompiledDynamics}),
+ * and the rewards and reward gradients of every transition are evaluated once for the current reward function parameters.
+ * VI then keeps the value function in a double array and the value function gradients in a single contiguous
+ * array of (number of states) * (parameter dimension) entries, and each sweep performs the Boltzmann value backup and the value gradient
+ * backup of a state together from the same Q-values and Q-value gradients without allocating anything. With one thread (the default),
+ * sweeps update states in place, as the map based VI did. With more threads (see {@link #setNumThreads(int)}), the states are partitioned
+ * across the threads and each sweep reads the values of the previous sweep, so the results do not depend on how the states are divided
+ * among the threads. When VI finishes, the results are stored in the value function and value gradient maps so that all the usual
+ * query methods see them.
+ * <p/>
+ * The compiled arrays assume primitive actions whose cached transition dynamics do not change. If the planner has {@link burlap.behavior.singleagent.options.Option}
+ * actions, whose transition probabilities are discounted and whose rewards are their expected rewards, or if transition dynamics caching is disabled,
+ * VI instead performs the Boltzmann backups of {@link DifferentiableVFPlanner} on a single thread, as {@link #canCompile()} describes.
  * @author James MacGlashan.
  */
 public class DifferentiableVI extends DifferentiableVFPlanner{
@@ -53,6 +75,37 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 	protected boolean												hasRunVI = false;
 
 
+	/**
+	 * The number of threads used to perform each VI sweep.
+	 */
+	protected int													nThreads = 1;
+
+	/**
+	 * The compiled state space and transition dynamics; null when they must be compiled before VI is next run.
+	 */
+	protected CompiledDynamics										compiled = null;
+
+	/**
+	 * The value of each state, indexed by compiled state id.
+	 */
+	protected double []												values;
+
+	/**
+	 * The value function gradient of each state, stored contiguously by compiled state id.
+	 */
+	protected double []												gradients;
+
+	/**
+	 * The second value buffer used by multi-threaded sweeps.
+	 */
+	protected double []												nextValues;
+
+	/**
+	 * The second gradient buffer used by multi-threaded sweeps.
+	 */
+	protected double []												nextGradients;
+
+
 
 	/**
 	 * Initializes the planner.
@@ -83,6 +136,33 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 	public void recomputeReachableStates(){
 		this.foundReachableStates = false;
 		this.transitionDynamics = new HashMap<StateHashTuple, List<ActionTransitions>>();
+		if(this.transitionStateStore != null){
+			this.transitionStateStore.clear();
+		}
+		this.compiled = null;
+	}
+
+
+	/**
+	 * Returns the number of threads used to perform each VI sweep.
+	 * @return the number of threads used to perform each VI sweep.
+	 */
+	public int getNumThreads(){
+		return nThreads;
+	}
+
+
+	/**
+	 * Sets the number of threads used to perform each VI sweep. The default is 1, which updates states in place. With more than one thread,
+	 * the states are partitioned across the threads and each sweep reads the results of the previous sweep. VI that cannot be run on compiled
+	 * dynamics (see {@link #canCompile()}) always uses one thread.
+	 * @param nThreads the number of threads used to perform each VI sweep.
+	 */
+	public void setNumThreads(int nThreads){
+		if(nThreads < 1){
+			throw new RuntimeException("DifferentiableVI requires at least one thread.");
+		}
+		this.nThreads = nThreads;
 	}
 
 
@@ -96,6 +176,18 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 	}
 
 
+	/**
+	 * Signals that the parameters of this planner's {@link burlap.behavior.singleagent.learnbydemo.mlirl.support.DifferentiableRF}
+	 * have changed, so that the next call to {@link #planFromState(burlap.oomdp.core.State)} reruns VI. Unlike {@link #resetPlannerResults()},
+	 * the reachable states, cached transition dynamics, value function, and value function gradients are all kept, so VI is warm
+	 * started from the solution for the previous parameters, which typically converges in far fewer passes when the parameters
+	 * changed only slightly (as they do between the steps of gradient ascent).
+	 */
+	public void rewardParametersChanged(){
+		this.hasRunVI = false;
+	}
+
+
 	@Override
 	public void planFromState(State initialState){
 		this.initializeOptionsForExpectationComputations();
@@ -103,6 +195,9 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 			this.performReachabilityFrom(initialState);
 			this.runVI();
 		}
+		else if(!this.hasRunVI){
+			this.runVI();
+		}
 
 	}
 
@@ -111,6 +206,7 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 		super.resetPlannerResults();
 		this.foundReachableStates = false;
 		this.hasRunVI = false;
+		this.compiled = null;
 	}
 
 	/**
@@ -125,9 +221,82 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 			throw new RuntimeException("Cannot run VI until the reachable states have been found. Use the planFromState, performReachabilityFrom, addStateToStateSpace or addStatesToStateSpace methods at least once before calling runVI.");
 		}
 
-		Set<StateHashTuple> states = mapToStateIndex.keySet();
+		if(!this.canCompile()){
+			this.compiled = null;
+			long start = ValueIteration.SWEEPS_TIME.start();
+			int i = this.runInterpretedPasses();
+			ValueIteration.SWEEPS_TIME.stop(start);
+			DPrint.cl(this.debugCode, "Passes: " + i);
+			this.hasRunVI = true;
+			return;
+		}
 
-		int i = 0;
+		if(this.compiled == null || this.compiled.states.length != this.mapToStateIndex.size()){
+			this.compileDynamics();
+		}
+		this.evaluateRewards();
+		this.loadValues();
+		long start = ValueIteration.SWEEPS_TIME.start();
+
+		int i;
+		if(this.nThreads > 1 && this.compiled.states.length >= 2*this.nThreads){
+			i = this.runParallelPasses();
+		}
+		else{
+			int d = this.compiled.paramDimension;
+			double [] qs = new double[this.compiled.maxActions];
+			double [] probs = new double[this.compiled.maxActions];
+			double [] gqs = new double[this.compiled.maxActions*d];
+			for(i = 0; i < this.maxIterations; i++){
+
+				double delta = this.sweep(0, this.compiled.states.length, this.values, this.gradients, this.values, this.gradients, qs, probs, gqs);
+
+				if(delta < this.maxDelta){
+					break; //approximated well enough; stop iterating
+				}
+
+			}
+		}
+
+		ValueIteration.SWEEPS_TIME.stop(start);
+		this.storeValues();
+
+		DPrint.cl(this.debugCode, "Passes: " + i);
+
+		this.hasRunVI = true;
+
+	}
+
+
+	/**
+	 * Returns whether VI can be run on compiled dynamics. Compiled dynamics apply the discount factor and the reward function to every transition and are
+	 * only recompiled when the state space grows, so they cannot represent {@link burlap.behavior.singleagent.options.Option} actions, whose transition
+	 * probabilities are already discounted and whose rewards are their expected rewards, or transition dynamics that are not cached.
+	 * @return true if VI can be run on compiled dynamics; false if it must perform the uncompiled Boltzmann backups.
+	 */
+	protected boolean canCompile(){
+		if(!this.useCachedTransitions){
+			return false;
+		}
+		for(Action a : this.actions){
+			if(a instanceof Option){
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Runs VI passes with the uncompiled Boltzmann value and value gradient backups of {@link DifferentiableVFPlanner}, updating the states in place.
+	 * Terminal states are given a zero value gradient.
+	 * @return the number of passes performed.
+	 */
+	protected int runInterpretedPasses(){
+
+		Set<StateHashTuple> states = this.mapToStateIndex.keySet();
+
+		int i;
 		for(i = 0; i < this.maxIterations; i++){
 
 			double delta = 0.;
@@ -135,10 +304,17 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 
 				double v = this.value(sh);
 				double newV = this.performBellmanUpdateOn(sh);
-				double [] ng = this.performDPValueGradientUpdateOn(sh);
+				if(this.tf.isTerminal(sh.s)){
+					//terminal states have a zero value, so they also have a zero gradient, as in compiled sweeps
+					this.valueGradient.put(sh, new double[((DifferentiableRF)this.rf).getParameterDimension()]);
+				}
+				else{
+					this.performDPValueGradientUpdateOn(sh);
+				}
 				delta = Math.max(Math.abs(newV - v), delta);
 
 			}
+			BELLMAN_BACKUPS.add(states.size());
 
 			if(delta < this.maxDelta){
 				break; //approximated well enough; stop iterating
@@ -146,10 +322,380 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 
 		}
 
-		DPrint.cl(this.debugCode, "Passes: " + i);
+		return i;
+	}
 
-		this.hasRunVI = true;
 
+	/**
+	 * Returns the Q-value gradient from the compiled transition dynamics and value gradient array when VI has been run
+	 * on the current state space and the query state is part of it; otherwise it is computed by the superclass method.
+	 * @param s the state
+	 * @param ga the grounded action.
+	 * @return the Q-value gradient that was computed.
+	 */
+	@Override
+	protected double [] computeQGradient(State s, GroundedAction ga){
+
+		CompiledDynamics c = this.compiled;
+		if(c != null && this.hasRunVI && !this.containsParameterizedActions){
+			Integer id = c.ids.get(this.hashingFactory.hashState(s));
+			if(id != null){
+				for(int sa = c.saStart[id]; sa < c.saStart[id+1]; sa++){
+					if(c.saActions[sa].equals(ga)){
+						int d = c.paramDimension;
+						double [] gradient = new double[d];
+						for(int t = c.tStart[sa]; t < c.tStart[sa+1]; t++){
+							double p = c.tProb[t];
+							int ro = t*d;
+							for(int j = 0; j < d; j++){
+								gradient[j] += p * c.tRewardGradient[ro+j];
+							}
+							int sp = c.tSucc[t];
+							if(sp >= 0){
+								int vo = sp*d;
+								for(int j = 0; j < d; j++){
+									gradient[j] += p * this.gamma * this.gradients[vo+j];
+								}
+							}
+						}
+						return gradient;
+					}
+				}
+			}
+		}
+
+		return super.computeQGradient(s, ga);
+	}
+
+
+	/**
+	 * Compiles the current state space and its cached transition dynamics into a new {@link burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI.CompiledDynamics}.
+	 * Transitions to states outside of the state space contribute their default value to a constant term of their Q-value.
+	 */
+	protected void compileDynamics(){
+
+		int n = this.mapToStateIndex.size();
+		CompiledDynamics c = new CompiledDynamics();
+		c.states = new StateHashTuple[n];
+		c.ids = new HashMap<StateHashTuple, Integer>(n*2);
+		int i = 0;
+		for(StateHashTuple sh : this.mapToStateIndex.keySet()){
+			c.states[i] = sh;
+			c.ids.put(sh, i);
+			i++;
+		}
+
+		List<List<ActionTransitions>> allTransitions = new ArrayList<List<ActionTransitions>>(n);
+		int nsa = 0;
+		int nt = 0;
+		for(i = 0; i < n; i++){
+			List<ActionTransitions> transitions = this.getActionsTransitions(c.states[i]);
+			allTransitions.add(transitions);
+			nsa += transitions.size();
+			c.maxActions = Math.max(c.maxActions, transitions.size());
+			for(ActionTransitions at : transitions){
+				nt += at.transitions.size();
+			}
+		}
+
+		c.terminal = new boolean[n];
+		c.saStart = new int[n+1];
+		c.saActions = new GroundedAction[nsa];
+		c.saConstant = new double[nsa];
+		c.tStart = new int[nsa+1];
+		c.tSucc = new int[nt];
+		c.tProb = new double[nt];
+		c.tNext = new State[nt];
+		c.tReward = new double[nt];
+
+		int sa = 0;
+		int t = 0;
+		for(i = 0; i < n; i++){
+			c.terminal[i] = this.tf.isTerminal(c.states[i].s);
+			c.saStart[i] = sa;
+			for(ActionTransitions at : allTransitions.get(i)){
+				c.saActions[sa] = at.ga;
+				c.tStart[sa] = t;
+				for(HashedTransitionProbability tp : at.transitions){
+					Integer sid = c.ids.get(tp.sh);
+					c.tSucc[t] = sid != null ? sid : -1;
+					c.tProb[t] = tp.p;
+					c.tNext[t] = tp.sh.s;
+					if(sid == null){
+						c.saConstant[sa] += tp.p * this.gamma * this.value(tp.sh);
+					}
+					t++;
+				}
+				sa++;
+			}
+		}
+		c.saStart[n] = sa;
+		c.tStart[nsa] = t;
+
+		this.compiled = c;
+
+	}
+
+
+	/**
+	 * Evaluates the reward and reward gradient of every compiled transition for the current reward function parameters.
+	 */
+	protected void evaluateRewards(){
+
+		CompiledDynamics c = this.compiled;
+		DifferentiableRF drf = (DifferentiableRF)this.rf;
+		int d = drf.getParameterDimension();
+		c.paramDimension = d;
+		if(c.tRewardGradient == null || c.tRewardGradient.length != c.tReward.length*d){
+			c.tRewardGradient = new double[c.tReward.length*d];
+		}
+
+		for(int i = 0; i < c.states.length; i++){
+			State s = c.states[i].s;
+			for(int sa = c.saStart[i]; sa < c.saStart[i+1]; sa++){
+				GroundedAction ga = c.saActions[sa];
+				for(int t = c.tStart[sa]; t < c.tStart[sa+1]; t++){
+					c.tReward[t] = this.rf.reward(s, ga, c.tNext[t]);
+					System.arraycopy(drf.getGradient(s, ga, c.tNext[t]), 0, c.tRewardGradient, t*d, d);
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * Loads the value function and value function gradients stored in this planner's maps into the compiled arrays, so that VI is started
+	 * from the previous results. States without stored results start from their default value and a zero gradient.
+	 */
+	protected void loadValues(){
+
+		CompiledDynamics c = this.compiled;
+		int n = c.states.length;
+		int d = c.paramDimension;
+		if(this.values == null || this.values.length != n){
+			this.values = new double[n];
+			this.nextValues = null;
+		}
+		if(this.gradients == null || this.gradients.length != n*d){
+			this.gradients = new double[n*d];
+			this.nextGradients = null;
+		}
+
+		for(int i = 0; i < n; i++){
+			StateHashTuple sh = c.states[i];
+			this.values[i] = c.terminal[i] ? 0. : this.value(sh);
+			double [] g = c.terminal[i] ? null : this.valueGradient.get(sh);
+			if(g != null && g.length == d){
+				System.arraycopy(g, 0, this.gradients, i*d, d);
+			}
+			else{
+				Arrays.fill(this.gradients, i*d, i*d+d, 0.);
+			}
+		}
+
+	}
+
+
+	/**
+	 * Stores the compiled value function and value function gradients in this planner's maps.
+	 */
+	protected void storeValues(){
+
+		CompiledDynamics c = this.compiled;
+		int d = c.paramDimension;
+		for(int i = 0; i < c.states.length; i++){
+			StateHashTuple sh = c.states[i];
+			this.valueFunction.put(sh, this.values[i]);
+			this.valueGradient.put(sh, Arrays.copyOfRange(this.gradients, i*d, i*d+d));
+		}
+
+	}
+
+
+	/**
+	 * Performs the fused Boltzmann value and value gradient backup of the states with compiled ids in [lo, hi). Values and gradients
+	 * are read from the input arrays and written to the output arrays, which may be the same arrays for in place updates.
+	 * @param lo the first state id to back up
+	 * @param hi one past the last state id to back up
+	 * @param vIn the values that are read
+	 * @param gIn the value gradients that are read
+	 * @param vOut the array to which new values are written
+	 * @param gOut the array to which new value gradients are written
+	 * @param qs scratch space for the Q-values of a state; must hold at least the maximum number of actions
+	 * @param probs scratch space for the Boltzmann action probabilities of a state; must hold at least the maximum number of actions
+	 * @param gqs scratch space for the Q-value gradients of a state; must hold at least the maximum number of actions times the parameter dimension
+	 * @return the maximum change in value of the backed up states
+	 */
+	protected double sweep(int lo, int hi, double [] vIn, double [] gIn, double [] vOut, double [] gOut, double [] qs, double [] probs, double [] gqs){
+
+		CompiledDynamics c = this.compiled;
+		int d = c.paramDimension;
+		double beta = this.boltzBeta;
+		double delta = 0.;
+		int backups = 0;
+
+		for(int i = lo; i < hi; i++){
+
+			if(c.terminal[i]){
+				continue;
+			}
+			backups++;
+
+			int go = i*d;
+			int na = 0;
+			for(int sa = c.saStart[i]; sa < c.saStart[i+1]; sa++){
+				double q = c.saConstant[sa];
+				int qo = na*d;
+				for(int j = 0; j < d; j++){
+					gqs[qo+j] = 0.;
+				}
+				for(int t = c.tStart[sa]; t < c.tStart[sa+1]; t++){
+					double p = c.tProb[t];
+					q += p * c.tReward[t];
+					int ro = t*d;
+					for(int j = 0; j < d; j++){
+						gqs[qo+j] += p * c.tRewardGradient[ro+j];
+					}
+					int sp = c.tSucc[t];
+					if(sp >= 0){
+						double pg = p * this.gamma;
+						q += pg * vIn[sp];
+						int vo = sp*d;
+						for(int j = 0; j < d; j++){
+							gqs[qo+j] += pg * gIn[vo+j];
+						}
+					}
+				}
+				qs[na] = q;
+				na++;
+			}
+
+			double oldV = vIn[i];
+			double v = 0.;
+			if(na > 0){
+				double maxBetaScaled = Double.NEGATIVE_INFINITY;
+				for(int k = 0; k < na; k++){
+					maxBetaScaled = Math.max(maxBetaScaled, beta * qs[k]);
+				}
+				double expSum = 0.;
+				for(int k = 0; k < na; k++){
+					probs[k] = Math.exp(beta * qs[k] - maxBetaScaled);
+					expSum += probs[k];
+				}
+				for(int k = 0; k < na; k++){
+					probs[k] /= expSum;
+					v += probs[k] * qs[k];
+				}
+			}
+
+			//the value gradient is sum_a pi(a) * (1 + beta*(Q(a) - V)) * dQ(a)
+			for(int j = 0; j < d; j++){
+				gOut[go+j] = 0.;
+			}
+			for(int k = 0; k < na; k++){
+				double w = probs[k] * (1. + beta * (qs[k] - v));
+				int qo = k*d;
+				for(int j = 0; j < d; j++){
+					gOut[go+j] += w * gqs[qo+j];
+				}
+			}
+			vOut[i] = v;
+
+			delta = Math.max(Math.abs(v - oldV), delta);
+
+		}
+		BELLMAN_BACKUPS.add(backups);
+
+		return delta;
+	}
+
+
+	/**
+	 * Runs VI passes with the states partitioned across this planner's threads, where each pass reads the results of the previous pass.
+	 * The calling thread sweeps the first partition.
+	 * @return the number of passes performed, counted the same way as the single threaded VI loop.
+	 */
+	protected int runParallelPasses(){
+
+		final int n = this.compiled.states.length;
+		final int d = this.compiled.paramDimension;
+		final int maxActions = this.compiled.maxActions;
+		final int nt = this.nThreads;
+
+		if(this.maxIterations <= 0){
+			return 0;
+		}
+
+		if(this.nextValues == null || this.nextValues.length != n){
+			this.nextValues = new double[n];
+		}
+		if(this.nextGradients == null || this.nextGradients.length != n*d){
+			this.nextGradients = new double[n*d];
+		}
+		//terminal states are never swept, so both buffers must hold their zero results
+		System.arraycopy(this.values, 0, this.nextValues, 0, n);
+		System.arraycopy(this.gradients, 0, this.nextGradients, 0, n*d);
+
+		final double [][] vBuf = new double[][]{this.values, this.nextValues};
+		final double [][] gBuf = new double[][]{this.gradients, this.nextGradients};
+		final int [] cur = new int[]{0};
+		final int [] passes = new int[]{0};
+		final boolean [] done = new boolean[]{false};
+		final double [] partDelta = new double[nt];
+
+		final CyclicBarrier barrier = new CyclicBarrier(nt, new Runnable() {
+			@Override
+			public void run() {
+				double delta = 0.;
+				for(double pd : partDelta){
+					delta = Math.max(pd, delta);
+				}
+				cur[0] = 1 - cur[0];
+				if(delta < DifferentiableVI.this.maxDelta){
+					done[0] = true;
+				}
+				else{
+					passes[0]++;
+					if(passes[0] >= DifferentiableVI.this.maxIterations){
+						done[0] = true;
+					}
+				}
+			}
+		});
+
+		ParallelMatchEngine.runWorkers(nt, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int part) {
+				int lo = (int)((long)n * part / nt);
+				int hi = (int)((long)n * (part+1) / nt);
+				double [] qs = new double[maxActions];
+				double [] probs = new double[maxActions];
+				double [] gqs = new double[maxActions*d];
+				while(true){
+					int c = cur[0];
+					partDelta[part] = DifferentiableVI.this.sweep(lo, hi, vBuf[c], gBuf[c], vBuf[1-c], gBuf[1-c], qs, probs, gqs);
+					try {
+						barrier.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException("Interrupted during a parallel VI sweep.", e);
+					} catch (BrokenBarrierException e) {
+						throw new RuntimeException("A parallel VI sweep was aborted.", e);
+					}
+					if(done[0]){
+						return;
+					}
+				}
+			}
+		});
+
+		this.values = vBuf[cur[0]];
+		this.gradients = gBuf[cur[0]];
+		this.nextValues = vBuf[1-cur[0]];
+		this.nextGradients = gBuf[1-cur[0]];
+
+		return passes[0];
 	}
 
 
@@ -161,6 +707,7 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 		StateHashTuple sh = this.hashingFactory.hashState(s);
 		this.mapToStateIndex.put(sh, sh);
 		this.foundReachableStates = true;
+		this.compiled = null;
 	}
 
 
@@ -187,6 +734,7 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 		StateHashTuple sih = this.stateHash(si);
 
 		DPrint.cl(this.debugCode, "Starting reachability analysis");
+		long start = ValueIteration.REACHABILITY_TIME.start();
 
 		//add to the open list
 		LinkedList<StateHashTuple> openList = new LinkedList<StateHashTuple>();
@@ -225,6 +773,8 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 
 		}
 
+		ValueIteration.REACHABILITY_TIME.stop(start);
+		ValueIteration.NUM_STATES.set(mapToStateIndex.size());
 		DPrint.cl(this.debugCode, "Finished reachability analysis; # states: " + mapToStateIndex.size());
 
 		this.foundReachableStates = true;
@@ -235,4 +785,86 @@ public class DifferentiableVI extends DifferentiableVFPlanner{
 	}
 
 
+
+	/**
+	 * The state space and transition dynamics of a {@link burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI}
+	 * compiled into flat arrays. States are identified by compact ids; the grounded actions of state i are the state-action indices in
+	 * [saStart[i], saStart[i+1]), and the transitions of state-action sa are the transition indices in [tStart[sa], tStart[sa+1]).
+	 * @author James MacGlashan.
+	 */
+	protected static class CompiledDynamics{
+
+		/**
+		 * The hashed state of each state id.
+		 */
+		public StateHashTuple []			states;
+
+		/**
+		 * The id of each hashed state.
+		 */
+		public Map<StateHashTuple, Integer>	ids;
+
+		/**
+		 * Whether each state is terminal.
+		 */
+		public boolean []					terminal;
+
+		/**
+		 * The first state-action index of each state; has one extra entry marking the end.
+		 */
+		public int []						saStart;
+
+		/**
+		 * The grounded action of each state-action index.
+		 */
+		public GroundedAction []			saActions;
+
+		/**
+		 * The discounted value contributed to the Q-value of each state-action by transitions to states outside of the state space.
+		 */
+		public double []					saConstant;
+
+		/**
+		 * The first transition index of each state-action; has one extra entry marking the end.
+		 */
+		public int []						tStart;
+
+		/**
+		 * The successor state id of each transition, or -1 if the successor is outside of the state space.
+		 */
+		public int []						tSucc;
+
+		/**
+		 * The probability of each transition.
+		 */
+		public double []					tProb;
+
+		/**
+		 * The successor state of each transition.
+		 */
+		public State []						tNext;
+
+		/**
+		 * The reward of each transition for the reward function parameters when VI was last run.
+		 */
+		public double []					tReward;
+
+		/**
+		 * The reward gradient of each transition for the reward function parameters when VI was last run, stored contiguously by transition index.
+		 */
+		public double []					tRewardGradient;
+
+		/**
+		 * The reward function parameter dimension when VI was last run.
+		 */
+		public int							paramDimension;
+
+		/**
+		 * The maximum number of grounded actions of any state.
+		 */
+		public int							maxActions;
+
+	}
+
+
 }
@@ -3,6 +3,7 @@ package burlap.behavior.singleagent.learning;
 import java.util.List;
 
 import burlap.behavior.singleagent.EpisodeAnalysis;
+import burlap.debugtools.MetricsRegistry;
 import burlap.oomdp.core.State;
 
 /**
@@ -10,11 +11,35 @@ import burlap.oomdp.core.State;
  * is the {@link #runLearningEpisodeFrom(State)} method which causes the agent to interact with the world until it reaches a terminal state.
  * The interface also provides some common mechanisms for getting the last learning episode the agent performed, storing a history
  * of learning episodes, and returning the history of stored episodes. 
+ * <p/>
+ * The interface also defines the metrics to which learning agents report when metrics are enabled in the {@link burlap.debugtools.MetricsRegistry}:
+ * the number of learning episodes and steps, the duration of each episode, and the latency of each action selection.
  * @author James MacGlashan
  *
  */
 public interface LearningAgent {
 
+	/**
+	 * The counter of the learning episodes run by learning agents
+	 */
+	public static final MetricsRegistry.Counter		EPISODES = MetricsRegistry.counter("learning.episodes");
+	
+	/**
+	 * The counter of the steps taken in learning episodes
+	 */
+	public static final MetricsRegistry.Counter		EPISODE_STEPS = MetricsRegistry.counter("learning.episodeSteps");
+	
+	/**
+	 * The timer of learning episodes
+	 */
+	public static final MetricsRegistry.Timer		EPISODE_TIME = MetricsRegistry.timer("learning.episode");
+	
+	/**
+	 * The timer of the action selections of learning agents
+	 */
+	public static final MetricsRegistry.Timer		ACTION_SELECTION_TIME = MetricsRegistry.timer("learning.actionSelection");
+	
+
 	/**
 	 * Causes the agent to perform a learning episode starting in the given initial state. The episode terminates when a terminal
 	 * state is reached or if the agent decides to determinate the episode (e.g., by having an internal parameter set for a
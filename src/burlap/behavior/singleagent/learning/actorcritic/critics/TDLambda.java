@@ -1,7 +1,6 @@
 package burlap.behavior.singleagent.learning.actorcritic.critics;
 
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 
 import burlap.behavior.learningrate.ConstantLR;
@@ -9,6 +8,7 @@ import burlap.behavior.learningrate.LearningRate;
 import burlap.behavior.singleagent.ValueFunctionInitialization;
 import burlap.behavior.singleagent.learning.actorcritic.Critic;
 import burlap.behavior.singleagent.learning.actorcritic.CritiqueResult;
+import burlap.behavior.singleagent.learning.tdmethods.EligibilityTraceSet;
 import burlap.behavior.singleagent.options.Option;
 import burlap.behavior.singleagent.options.OptionEvaluatingRF;
 import burlap.behavior.statehashing.StateHashFactory;
@@ -73,7 +73,13 @@ public class TDLambda implements Critic {
 	/**
 	 * The eligibility traces for the current episode.
 	 */
-	protected LinkedList<StateEligibilityTrace>		traces;
+	protected EligibilityTraceSet					traces = new EligibilityTraceSet();
+	
+	
+	/**
+	 * The kind of eligibility trace update performed when a state is visited. The default is replacing traces.
+	 */
+	protected EligibilityTraceSet.TraceType			traceType = EligibilityTraceSet.TraceType.REPLACING;
 	
 	
 	/**
@@ -153,7 +159,7 @@ public class TDLambda implements Critic {
 	
 	@Override
 	public void initializeEpisode(State s) {
-		this.traces = new LinkedList<TDLambda.StateEligibilityTrace>();
+		this.traces.clear();
 	}
 
 	@Override
@@ -161,6 +167,34 @@ public class TDLambda implements Critic {
 		this.traces.clear();
 	}
 	
+	/**
+	 * Sets the kind of eligibility trace update performed when a state is visited.
+	 * @param traceType the kind of eligibility trace update
+	 */
+	public void setTraceType(EligibilityTraceSet.TraceType traceType){
+		this.traceType = traceType;
+	}
+	
+	
+	/**
+	 * Sets the minimum eligibility a trace must have to remain active. Traces whose eligibility decays below it are dropped, which
+	 * bounds the number of traces updated on each step. The default is {@link EligibilityTraceSet#DEFAULTMINELIGIBILITY}.
+	 * @param minEligibility the minimum eligibility a trace must have to remain active.
+	 */
+	public void setMinEligibility(double minEligibility){
+		this.traces.setMinEligibility(minEligibility);
+	}
+	
+	
+	/**
+	 * Returns the eligibility traces of the current episode, which can be queried for the number of active traces.
+	 * @return the eligibility traces of the current episode.
+	 */
+	public EligibilityTraceSet getTraces(){
+		return this.traces;
+	}
+	
+	
 	/**
 	 * Sets the learning rate function to use.
 	 * @param lr the learning rate function to use.
@@ -190,28 +224,21 @@ public class TDLambda implements Critic {
 		
 		double delta = r + discount*nextV - vs.v;
 		
-		//update all traces
-		boolean foundTrace = false;
-		for(StateEligibilityTrace t : traces){
-			
-			if(t.sh.equals(sh)){
-				foundTrace = true;
-				t.eligibility = 1.;
-			}
-			
-			double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, t.sh.s, null);
-			t.v.v = t.v.v + learningRate * delta * t.eligibility;
-			t.eligibility = t.eligibility * lambda * discount;
+		//visit the current state's trace
+		int curSlot = traces.slot(vs);
+		if(curSlot == -1){
+			curSlot = traces.add(vs, sh, vs.v);
 		}
+		traces.visit(curSlot, 1., this.traceType, this.learningRate.peekAtLearningRate(sh.s, null));
 		
-		if(!foundTrace){
-			//then add it
-			double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, sh.s, null);
-			vs.v = vs.v + learningRate * delta;
-			StateEligibilityTrace t = new StateEligibilityTrace(sh, discount*this.lambda, vs);
-			
-			traces.add(t);
+		//update all traces
+		for(int i = 0; i < traces.size(); i++){
+			StateHashTuple tsh = (StateHashTuple)traces.payload(i);
+			VValue tv = (VValue)traces.key(i);
+			double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, tsh.s, null);
+			tv.v = tv.v + learningRate * delta * traces.eligibility(i);
 		}
+		traces.decayAndPrune(lambda * discount);
 		
 		
 		CritiqueResult critique = new CritiqueResult(s, ga, sprime, delta);
@@ -271,8 +298,10 @@ public class TDLambda implements Critic {
 	/**
 	 * A data structure for storing the elements of an eligibility trace.
 	 * @author James MacGlashan
+	 * @deprecated TDLambda now stores its traces in an {@link EligibilityTraceSet}; this class is no longer used.
 	 *
 	 */
+	@Deprecated
 	public static class StateEligibilityTrace{
 		
 		/**
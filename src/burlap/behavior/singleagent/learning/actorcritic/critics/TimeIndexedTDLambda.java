@@ -153,19 +153,23 @@ public class TimeIndexedTDLambda extends TDLambda {
 		
 		double delta = r + discount*nextV - vs.v;
 		
+		//always need to add the current state since it's a different time stamp for each state
+		int curSlot = traces.slot(vs);
+		if(curSlot == -1){
+			curSlot = traces.add(vs, sh, vs.v);
+		}
+		traces.visit(curSlot, 1., this.traceType, this.learningRate.peekAtLearningRate(sh.s, null));
+		
 		//update all traces
-		for(StateEligibilityTrace t : traces){
-			double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, t.sh.s, null);
-			t.v.v = t.v.v + learningRate * delta * t.eligibility;
-			t.eligibility = t.eligibility * lambda * discount;
+		for(int i = 0; i < traces.size(); i++){
+			StateHashTuple tsh = (StateHashTuple)traces.payload(i);
+			VValue tv = (VValue)traces.key(i);
+			double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, tsh.s, null);
+			tv.v = tv.v + learningRate * delta * traces.eligibility(i);
 		}
+		traces.decayAndPrune(lambda * discount);
+		
 		
-		//always need to add the current state since it's a different time stamp for each state
-		double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, sh.s, null);
-		vs.v = vs.v + learningRate * delta;
-		StateEligibilityTrace t = new StateTimeElibilityTrace(sh, curTime, discount*this.lambda, vs);
-		traces.add(t);
-
 		//update time stamp for next visit
 		curTime += n;
 		
@@ -211,8 +215,10 @@ public class TimeIndexedTDLambda extends TDLambda {
 	/**
 	 * Extends the standard {@link TDLambda.StateEligibilityTrace} to include time/depth information.
 	 * @author James MacGlashan
+	 * @deprecated TimeIndexedTDLambda now stores its traces in an {@link burlap.behavior.singleagent.learning.tdmethods.EligibilityTraceSet}; this class is no longer used.
 	 *
 	 */
+	@Deprecated
 	public static class StateTimeElibilityTrace extends StateEligibilityTrace{
 
 		/**
@@ -1,8 +1,10 @@
 package burlap.behavior.singleagent.learning.lspi;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.ejml.simple.SimpleMatrix;
 
@@ -19,10 +21,12 @@ import burlap.behavior.singleagent.planning.commonpolicies.GreedyQPolicy;
 import burlap.behavior.singleagent.vfa.ActionApproximationResult;
 import burlap.behavior.singleagent.vfa.ActionFeaturesQuery;
 import burlap.behavior.singleagent.vfa.FeatureDatabase;
+import burlap.behavior.singleagent.vfa.FunctionWeight;
 import burlap.behavior.singleagent.vfa.StateFeature;
 import burlap.behavior.singleagent.vfa.ValueFunctionApproximation;
 import burlap.behavior.singleagent.vfa.common.LinearVFA;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.RandomFactory;
 import burlap.oomdp.auxiliary.common.ConstantStateGenerator;
 import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.Domain;
@@ -104,6 +108,21 @@ public class LSPI extends OOMDPPlanner implements QComputablePlanner, LearningAg
 	 */
 	protected SARSCollector											planningCollector;
 	
+	/**
+	 * The number of threads used to collect data in the {@link #planFromState(State)} method; the planning collector must be thread safe if it is greater than 1.
+	 */
+	protected int													numPlanningCollectionThreads = 1;
+	
+	/**
+	 * The cached features of the samples of the dataset
+	 */
+	protected SARSFeatureCache										featureCache;
+	
+	/**
+	 * Whether the features of samples are kept between policy iterations; if false, they are recomputed on every iteration.
+	 */
+	protected boolean												cacheFeatures = true;
+	
 	/**
 	 * The maximum number of policy iterations permitted when LSPI is run from the {@link #planFromState(State)} or {@link #runLearningEpisodeFrom(State)} methods.
 	 */
@@ -333,48 +352,142 @@ public class LSPI extends OOMDPPlanner implements QComputablePlanner, LearningAg
 
 	
 	/**
-	 * Runs LSTDQ on this object's current {@link SARSData} dataset.
+	 * Returns the number of threads used to collect data in the {@link #planFromState(State)} method.
+	 * @return the number of threads used to collect data in the {@link #planFromState(State)} method.
+	 */
+	public int getNumPlanningCollectionThreads() {
+		return numPlanningCollectionThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to collect data in the {@link #planFromState(State)} method. If it is greater than 1, the samples are collected
+	 * in that many shards with {@link SARSCollector#collectNInstances(burlap.oomdp.auxiliary.StateGenerator, RewardFunction, int, int, TerminalFunction, SARSData, int, int, long)},
+	 * so the planning collector must be thread safe.
+	 * @param numPlanningCollectionThreads the number of threads used to collect data in the {@link #planFromState(State)} method.
+	 */
+	public void setNumPlanningCollectionThreads(int numPlanningCollectionThreads) {
+		this.numPlanningCollectionThreads = numPlanningCollectionThreads;
+	}
+	
+	
+	/**
+	 * Sets whether the features of the samples of the dataset are cached between policy iterations, which is the default. Caching should be disabled
+	 * if the feature database creates new features online and is not frozen, so that the features of every sample are recomputed on every iteration.
+	 * @param cacheFeatures whether the features of samples are cached between policy iterations.
+	 */
+	public void setCacheFeatures(boolean cacheFeatures) {
+		this.cacheFeatures = cacheFeatures;
+	}
+	
+	
+	/**
+	 * Returns the cache of the features of the samples of the dataset; null if LSTDQ has not been run.
+	 * @return the cache of the features of the samples of the dataset.
+	 */
+	public SARSFeatureCache getFeatureCache() {
+		return featureCache;
+	}
+
+	
+	/**
+	 * Runs LSTDQ on this object's current {@link SARSData} dataset. The features of the samples are taken from this object's {@link SARSFeatureCache},
+	 * which is first brought up to date with the dataset, and the inverse matrix is updated with the Sherman-Morrison formula on
+	 * the sparse feature vectors, in time quadratic in the number of features for each sample. The action of the greedy policy in the next state of each sample
+	 * is selected from the cached next state features with the current weights, breaking ties randomly as {@link GreedyQPolicy} does.
 	 * @return the new weight matrix as a {@link SimpleMatrix} object.
 	 */
 	public SimpleMatrix LSTDQ(){
 		
-		//set our policy
-		Policy p = new GreedyQPolicy(this);
-		
 		//first we want to get all the features for all of our states in our data set; this is important if our feature database generates new features on the fly
 		//and will also restrict our focus to only the action features that we want
-		List<SSFeatures> features = new ArrayList<LSPI.SSFeatures>(this.dataset.size());
-		for(SARS sars : this.dataset.dataset){
-			features.add(new SSFeatures(this.featureDatabase.getActionFeaturesSets(sars.s, this.gaListWrapper(sars.a)), 
-					this.featureDatabase.getActionFeaturesSets(sars.sp, this.gaListWrapper(p.getAction(sars.sp)))));
+		if(this.featureCache == null || this.featureCache.featureDatabase != this.featureDatabase){
+			this.featureCache = new SARSFeatureCache(this.featureDatabase, this.actions);
+		}
+		if(!this.cacheFeatures){
+			this.featureCache.clear();
 		}
+		this.featureCache.update(this.dataset);
+		SparseFeatureMatrix phis = this.featureCache.getStateActionFeatures();
+		SparseFeatureMatrix phiPrimes = this.featureCache.getNextStateActionFeatures();
 		
 		int nf = this.featureDatabase.numberOfFeatures();
-		SimpleMatrix B = SimpleMatrix.identity(nf).scale(this.identityScalar);
-		SimpleMatrix b = new SimpleMatrix(nf, 1);
 		
+		//the weights of the current greedy policy
+		double [] pw = new double[nf];
+		for(int i = 0; i < nf; i++){
+			FunctionWeight fw = this.vfa.getFunctionWeight(i);
+			if(fw != null){
+				pw[i] = fw.weightValue();
+			}
+		}
+		Random rand = RandomFactory.getMapped(0);
 		
+		//B is stored row major
+		double [] B = new double[nf*nf];
+		for(int i = 0; i < nf; i++){
+			B[i*nf + i] = this.identityScalar;
+		}
+		double [] b = new double[nf];
+		double [] u = new double[nf];
+		double [] v = new double[nf];
 		
-		for(int i = 0; i < features.size(); i++){
-
-			SimpleMatrix phi = this.phiConstructor(features.get(i).sActionFeatures, nf);
-			SimpleMatrix phiPrime = this.phiConstructor(features.get(i).sPrimeActionFeatures, nf);
+		for(int i = 0; i < this.featureCache.size(); i++){
+			
+			int pStart = phis.rowStart(i);
+			int pEnd = phis.rowEnd(i);
+			int spRow = this.greedyNextStateRow(i, phiPrimes, pw, rand);
+			int ppStart = phiPrimes.rowStart(spRow);
+			int ppEnd = phiPrimes.rowEnd(spRow);
 			double r = this.dataset.get(i).r;
 			
-
-			SimpleMatrix numerator = B.mult(phi).mult(phi.minus(phiPrime.scale(gamma)).transpose()).mult(B);
-			SimpleMatrix denomenatorM = phi.minus(phiPrime.scale(this.gamma)).transpose().mult(B).mult(phi);
-			double denomenator = denomenatorM.get(0) + 1;
+			//u = B phi
+			for(int row = 0; row < nf; row++){
+				int base = row*nf;
+				double sum = 0.;
+				for(int p = pStart; p < pEnd; p++){
+					sum += B[base + phis.id(p)] * phis.value(p);
+				}
+				u[row] = sum;
+			}
+			
+			//v = (phi - gamma phi')^T B
+			Arrays.fill(v, 0.);
+			for(int p = pStart; p < pEnd; p++){
+				addScaledRow(B, phis.id(p)*nf, phis.value(p), v, nf);
+			}
+			for(int p = ppStart; p < ppEnd; p++){
+				addScaledRow(B, phiPrimes.id(p)*nf, -this.gamma*phiPrimes.value(p), v, nf);
+			}
+			
+			double denomenator = 1.;
+			for(int p = pStart; p < pEnd; p++){
+				denomenator += v[phis.id(p)] * phis.value(p);
+			}
 			
-			B = B.minus(numerator.scale(1./denomenator));
-			b = b.plus(phi.scale(r));
+			//B = B - u v^T / denomenator
+			for(int row = 0; row < nf; row++){
+				double ur = u[row] / denomenator;
+				if(ur != 0.){
+					addScaledRow(v, 0, -ur, B, row*nf, nf);
+				}
+			}
 			
-			//DPrint.cl(0, "updated matrix for row " + i + "/" + features.size());
+			for(int p = pStart; p < pEnd; p++){
+				b[phis.id(p)] += r * phis.value(p);
+			}
 			
 		}
 		
 		
-		SimpleMatrix w = B.mult(b);
+		SimpleMatrix w = new SimpleMatrix(nf, 1);
+		for(int row = 0; row < nf; row++){
+			double sum = 0.;
+			int base = row*nf;
+			for(int c = 0; c < nf; c++){
+				sum += B[base + c] * b[c];
+			}
+			w.set(row, 0, sum);
+		}
 		
 		this.vfa = new LinearVFA(this.featureDatabase);
 		for(int i = 0; i < nf; i++){
@@ -386,6 +499,64 @@ public class LSPI extends OOMDPPlanner implements QComputablePlanner, LearningAg
 		
 	}
 	
+	
+	/**
+	 * Returns the row of the cached next state features of a sample for the action the greedy policy with the given weights takes in the
+	 * sample's next state. Ties are broken uniformly at random.
+	 * @param sample the index of the sample
+	 * @param phiPrimes the cached next state features
+	 * @param pw the weights of the policy
+	 * @param rand the random generator used to break ties
+	 * @return the row of the next state features of the greedy action.
+	 */
+	protected int greedyNextStateRow(int sample, SparseFeatureMatrix phiPrimes, double [] pw, Random rand){
+		int first = this.featureCache.nextStateFirstRow(sample);
+		int end = this.featureCache.nextStateEndRow(sample);
+		if(first == end){
+			throw new RuntimeException("No actions are applicable in the next state of sample " + sample + ".");
+		}
+		int numMax = 1;
+		double maxQ = phiPrimes.dot(first, pw);
+		for(int row = first+1; row < end; row++){
+			double q = phiPrimes.dot(row, pw);
+			if(q == maxQ){
+				numMax++;
+			}
+			else if(q > maxQ){
+				numMax = 1;
+				maxQ = q;
+			}
+		}
+		int selected = rand.nextInt(numMax);
+		for(int row = first; row < end; row++){
+			if(phiPrimes.dot(row, pw) == maxQ){
+				if(selected == 0){
+					return row;
+				}
+				selected--;
+			}
+		}
+		throw new RuntimeException("Could not find the greedy action of sample " + sample + ".");
+	}
+	
+	
+	/**
+	 * Adds the scaled row of a row major matrix to a vector.
+	 */
+	private static void addScaledRow(double [] m, int rowBase, double scale, double [] into, int n){
+		addScaledRow(m, rowBase, scale, into, 0, n);
+	}
+	
+	
+	/**
+	 * Adds n scaled values of an array, starting at srcOffset, to another array, starting at intoOffset.
+	 */
+	private static void addScaledRow(double [] src, int srcOffset, double scale, double [] into, int intoOffset, int n){
+		for(int c = 0; c < n; c++){
+			into[intoOffset + c] += scale * src[srcOffset + c];
+		}
+	}
+	
 	/**
 	 * Runs LSPI for either numIterations or until the change in the weight matrix is no greater than maxChange.
 	 * @param numIterations the maximum number of policy iterations.
@@ -493,7 +664,13 @@ public class LSPI extends OOMDPPlanner implements QComputablePlanner, LearningAg
 		if(planningCollector == null){
 			this.planningCollector = new SARSCollector.UniformRandomSARSCollector(this.actions);
 		}
-		this.dataset = this.planningCollector.collectNInstances(new ConstantStateGenerator(initialState), this.rf, this.numSamplesForPlanning, Integer.MAX_VALUE, this.tf, this.dataset);
+		if(this.numPlanningCollectionThreads > 1){
+			this.dataset = this.planningCollector.collectNInstances(new ConstantStateGenerator(initialState), this.rf, this.numSamplesForPlanning, Integer.MAX_VALUE, this.tf, this.dataset, 
+					this.numPlanningCollectionThreads, this.numPlanningCollectionThreads, RandomFactory.getMapped(0).nextLong());
+		}
+		else{
+			this.dataset = this.planningCollector.collectNInstances(new ConstantStateGenerator(initialState), this.rf, this.numSamplesForPlanning, Integer.MAX_VALUE, this.tf, this.dataset);
+		}
 		this.runPolicyIteration(this.maxNumPlanningIterations, this.maxChange);
 		
 
@@ -503,6 +680,9 @@ public class LSPI extends OOMDPPlanner implements QComputablePlanner, LearningAg
 	public void resetPlannerResults() {
 		this.dataset.clear();
 		this.vfa.resetWeights();
+		if(this.featureCache != null){
+			this.featureCache.clear();
+		}
 	}
 	
 	
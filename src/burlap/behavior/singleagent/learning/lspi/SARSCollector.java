@@ -2,6 +2,7 @@ package burlap.behavior.singleagent.learning.lspi;
 
 import java.util.List;
 
+import burlap.debugtools.ParallelMatchEngine;
 import burlap.debugtools.RandomFactory;
 import burlap.oomdp.auxiliary.StateGenerator;
 import burlap.oomdp.core.Domain;
@@ -83,6 +84,58 @@ public abstract class SARSCollector {
 	}
 	
 	
+	/**
+	 * Collects nSamples of SARS tuples in numShards independent shards that are run on nThreads threads with a {@link ParallelMatchEngine}, and returns them
+	 * in a {@link SARSData} object. Each shard collects its share of the samples with {@link #collectNInstances(StateGenerator, RewardFunction, int, int, TerminalFunction, SARSData)}
+	 * inside a {@link RandomFactory} thread scope derived from the seed and the shard index, and the shards are added to the dataset in shard order,
+	 * so the resulting dataset is reproducible as described in {@link RandomFactory#beginThreadScope(long)}. This collector must be thread safe; the state generator is called by one thread at a time.
+	 * @param sg a state geneator for finding initial state from which data can be collected.
+	 * @param rf the reward function that defines the reward received.
+	 * @param nSamples the number of SARS samples to collect.
+	 * @param maxEpisodeSteps the maximum number of steps that can be taken when rolling out from a state generted by {@link StateGenerator} sg, before a new rollout is started.
+	 * @param tf the terminal function that caused a rollout to stop and a new state to be generated from {@link StateGenerator} sg.
+	 * @param intoDataset the dataset into which the results will be collected. If null, a new dataset is created.
+	 * @param numShards the number of shards into which the samples are divided
+	 * @param nThreads the number of threads used to collect the shards
+	 * @param seed the seed from which the random scope seed of each shard is derived
+	 * @return the intoDataset object, which is created if it is input as null.
+	 */
+	public SARSData collectNInstances(final StateGenerator sg, final RewardFunction rf, final int nSamples, final int maxEpisodeSteps, final TerminalFunction tf, SARSData intoDataset,
+			final int numShards, int nThreads, long seed){
+		
+		if(intoDataset == null){
+			intoDataset = new SARSData(nSamples);
+		}
+		final SARSData dataset = intoDataset;
+		
+		final StateGenerator lockedSG = new StateGenerator() {
+			@Override
+			public State generateState() {
+				synchronized(sg){
+					return sg.generateState();
+				}
+			}
+		};
+		
+		ParallelMatchEngine engine = new ParallelMatchEngine(nThreads, seed);
+		engine.run(numShards, new ParallelMatchEngine.MatchTask<SARSData>() {
+			@Override
+			public SARSData runMatch(int shard) {
+				int n = (int)((long)nSamples * (shard+1) / numShards) - (int)((long)nSamples * shard / numShards);
+				return SARSCollector.this.collectNInstances(lockedSG, rf, n, maxEpisodeSteps, tf, new SARSData(n));
+			}
+		}, new ParallelMatchEngine.ResultCommitter<SARSData>() {
+			@Override
+			public void commit(int shard, SARSData result) {
+				dataset.dataset.addAll(result.dataset);
+			}
+		});
+		
+		return intoDataset;
+		
+	}
+	
+	
 	
 	/**
 	 * Collects SARS data from source states generated by a {@link StateGenerator} by choosing actions uniformly at random.
@@ -1,10 +1,23 @@
 package burlap.behavior.singleagent.learning.lspi;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import burlap.oomdp.auxiliary.StateParser;
+import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.State;
+import burlap.oomdp.singleagent.Action;
 import burlap.oomdp.singleagent.GroundedAction;
+import burlap.oomdp.singleagent.common.NullAction;
 
 
 /**
@@ -88,6 +101,140 @@ public class SARSData {
 	}
 	
 	
+	/**
+	 * Writes this dataset to a file, so that it can be loaded with {@link #parseFileIntoSARSData(String, Domain, StateParser)} instead of being collected again.
+	 * Each distinct state object is written once, so states that are shared by samples, such as the next state of one sample
+	 * and the previous state of the following sample, are also shared by the samples of the loaded dataset. If the directory for the specified
+	 * file path does not exist, then it will be created. If the file extension is not ".sars" it will automatically be added.
+	 * @param path the path to the file in which to write this dataset.
+	 * @param sp the state parser to use to convert state objects to string representations.
+	 */
+	public void writeToFile(String path, StateParser sp){
+		
+		if(!path.endsWith(".sars")){
+			path = path + ".sars";
+		}
+		
+		File f = (new File(path)).getParentFile();
+		if(f != null){
+			f.mkdirs();
+		}
+		
+		Map<State, Integer> stateIds = new IdentityHashMap<State, Integer>();
+		BufferedWriter out = null;
+		try{
+			out = new BufferedWriter(new FileWriter(path));
+			for(SARS sars : this.dataset){
+				writeState(out, sars.s, stateIds, sp);
+				writeState(out, sars.sp, stateIds, sp);
+			}
+			out.write("#SAMPLES#\n");
+			for(SARS sars : this.dataset){
+				out.write(stateIds.get(sars.s) + " " + stateIds.get(sars.sp) + " " + sars.r + " " + sars.a.actionName());
+				for(String p : sars.a.params){
+					out.write(" " + p);
+				}
+				out.write("\n");
+			}
+			out.close();
+			out = null;
+		}catch(IOException e){
+			throw new RuntimeException("Could not write SARS data to " + path, e);
+		}finally{
+			closeQuietly(out);
+		}
+		
+	}
+	
+	
+	/**
+	 * Reads a dataset that was written to a file with {@link #writeToFile(String, StateParser)}.
+	 * @param path the path to the dataset file.
+	 * @param d the domain to which the states and actions belong
+	 * @param sp a state parser that can parse the state string representation in the file
+	 * @return the dataset.
+	 */
+	public static SARSData parseFileIntoSARSData(String path, Domain d, StateParser sp){
+		
+		List<State> states = new ArrayList<State>();
+		SARSData data = new SARSData();
+		
+		BufferedReader in = null;
+		try{
+			in = new BufferedReader(new FileReader(path));
+			StringBuilder stateString = null;
+			boolean firstLine = true;
+			boolean samples = false;
+			String line;
+			while((line = in.readLine()) != null){
+				if(samples){
+					if(line.length() > 0){
+						String [] comps = line.split(" ");
+						String [] params = new String[comps.length-4];
+						System.arraycopy(comps, 4, params, 0, params.length);
+						Action a = d.getAction(comps[3]);
+						if(a == null){
+							//the domain does not have a reference, so create a null action in its place
+							a = new NullAction(comps[3]);
+						}
+						data.add(states.get(Integer.parseInt(comps[0])), new GroundedAction(a, params), Double.parseDouble(comps[2]), states.get(Integer.parseInt(comps[1])));
+					}
+				}
+				else if(line.equals("#STATE#") || line.equals("#SAMPLES#")){
+					if(stateString != null){
+						states.add(sp.stringToState(stateString.toString()));
+					}
+					stateString = null;
+					samples = line.equals("#SAMPLES#");
+					if(!samples){
+						stateString = new StringBuilder();
+						firstLine = true;
+					}
+				}
+				else if(stateString != null){
+					if(!firstLine){
+						stateString.append("\n");
+					}
+					stateString.append(line);
+					firstLine = false;
+				}
+			}
+		}catch(IOException e){
+			throw new RuntimeException("Could not read SARS data from " + path, e);
+		}finally{
+			closeQuietly(in);
+		}
+		
+		return data;
+	}
+	
+	
+	/**
+	 * Closes a stream that is still open because reading or writing it failed; any exception thrown while closing it is ignored so that
+	 * it does not hide the original failure.
+	 */
+	private static void closeQuietly(Closeable c){
+		if(c != null){
+			try{
+				c.close();
+			}catch(IOException e){
+				//the original exception is already being thrown
+			}
+		}
+	}
+	
+	
+	private static void writeState(BufferedWriter out, State s, Map<State, Integer> stateIds, StateParser sp) throws IOException{
+		if(stateIds.containsKey(s)){
+			return;
+		}
+		stateIds.put(s, stateIds.size());
+		out.write("#STATE#\n");
+		out.write(sp.stateToString(s));
+		out.write("\n");
+	}
+	
+	
 	/**
 	 * State-action-reward-state tuple.
 	 * @author James MacGlashan
@@ -0,0 +1,207 @@
+package burlap.behavior.singleagent.learning.lspi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import burlap.behavior.singleagent.learning.lspi.SARSData.SARS;
+import burlap.behavior.singleagent.vfa.ActionFeaturesQuery;
+import burlap.behavior.singleagent.vfa.FeatureDatabase;
+import burlap.oomdp.singleagent.Action;
+import burlap.oomdp.singleagent.GroundedAction;
+
+
+/**
+ * Caches the state-action features of the samples of a {@link SARSData} dataset in {@link SparseFeatureMatrix} objects, so that LSTDQ does not
+ * query the {@link FeatureDatabase} for them on every policy iteration. For each sample (s, a, r, s'), the cache holds the features of (s, a), and
+ * the features of s' paired with each action that is applicable in s', in the order in which {@link Action#getAllApplicableGroundedActionsFromActionList(List, burlap.oomdp.core.State)}
+ * returns them. The action that a policy takes in s' can therefore be found, and its features retrieved, without recomputing any features when the policy changes.
+ * <p/>
+ * The cache is brought up to date with {@link #update(SARSData)}, which only computes the features of samples that were added to the
+ * dataset since the last update. If samples were removed or replaced, the features of the changed samples and all samples after them are recomputed.
+ * Caching assumes that the features the database returns for a state-action pair do not change; feature databases that create features online
+ * should be frozen with {@link FeatureDatabase#freezeDatabaseState(boolean)} once the dataset has been collected, or the cache should be
+ * cleared before each use.
+ * @author James MacGlashan
+ *
+ */
+public class SARSFeatureCache {
+
+	/**
+	 * The feature database from which features are computed
+	 */
+	protected FeatureDatabase			featureDatabase;
+
+	/**
+	 * The actions whose applicable groundings are paired with each next state
+	 */
+	protected List<Action>				actions;
+
+	/**
+	 * The dataset whose features are cached
+	 */
+	protected SARSData					dataset;
+
+	/**
+	 * The samples whose features are cached, in dataset order
+	 */
+	protected List<SARS>				cachedSamples = new ArrayList<SARS>();
+
+	/**
+	 * The features of (s, a) of each sample, one row per sample
+	 */
+	protected SparseFeatureMatrix		stateActionFeatures = new SparseFeatureMatrix(16, 64);
+
+	/**
+	 * The features of s' paired with each applicable action, in consecutive rows for each sample
+	 */
+	protected SparseFeatureMatrix		nextStateActionFeatures = new SparseFeatureMatrix(64, 256);
+
+	/**
+	 * The first row of {@link #nextStateActionFeatures} of each sample, followed by the end row of the last sample
+	 */
+	protected int []					nextStateFirstRows = new int[17];
+
+
+
+	/**
+	 * Initializes.
+	 * @param featureDatabase the feature database from which features are computed
+	 * @param actions the actions whose applicable groundings are paired with each next state
+	 */
+	public SARSFeatureCache(FeatureDatabase featureDatabase, List<Action> actions){
+		this.featureDatabase = featureDatabase;
+		this.actions = actions;
+	}
+
+
+	/**
+	 * Returns the number of samples whose features are cached.
+	 * @return the number of samples whose features are cached.
+	 */
+	public int size(){
+		return this.cachedSamples.size();
+	}
+
+
+	/**
+	 * Returns the features of (s, a) of the samples, in which row i holds the features of sample i.
+	 * @return the features of (s, a) of the samples.
+	 */
+	public SparseFeatureMatrix getStateActionFeatures(){
+		return this.stateActionFeatures;
+	}
+
+
+	/**
+	 * Returns the features of s' paired with each applicable action of the samples. The rows of a sample are given by {@link #nextStateFirstRow(int)}
+	 * and {@link #nextStateEndRow(int)}.
+	 * @return the features of s' paired with each applicable action.
+	 */
+	public SparseFeatureMatrix getNextStateActionFeatures(){
+		return this.nextStateActionFeatures;
+	}
+
+
+	/**
+	 * Returns the row of {@link #getNextStateActionFeatures()} that holds the features of s' and the first action applicable in it.
+	 * @param sample the index of the sample
+	 * @return the first next state row of the sample.
+	 */
+	public int nextStateFirstRow(int sample){
+		return this.nextStateFirstRows[sample];
+	}
+
+
+	/**
+	 * Returns one more than the row of {@link #getNextStateActionFeatures()} that holds the features of s' and the last action applicable in it.
+	 * @param sample the index of the sample
+	 * @return one more than the last next state row of the sample.
+	 */
+	public int nextStateEndRow(int sample){
+		return this.nextStateFirstRows[sample+1];
+	}
+
+
+	/**
+	 * Removes all cached features.
+	 */
+	public void clear(){
+		this.dataset = null;
+		this.truncate(0);
+	}
+
+
+	/**
+	 * Brings the cache up to date with a dataset, computing the features of the samples that are not cached.
+	 * @param dataset the dataset whose features should be cached
+	 */
+	public void update(SARSData dataset){
+
+		if(dataset != this.dataset){
+			this.truncate(0);
+			this.dataset = dataset;
+		}
+
+		//find the first sample that was removed or replaced since the last update
+		int n = Math.min(this.cachedSamples.size(), dataset.size());
+		int valid = 0;
+		while(valid < n && this.cachedSamples.get(valid) == dataset.get(valid)){
+			valid++;
+		}
+		this.truncate(valid);
+
+		for(int i = valid; i < dataset.size(); i++){
+			this.add(dataset.get(i));
+		}
+
+	}
+
+
+	/**
+	 * Computes and caches the features of a sample.
+	 * @param sars the sample
+	 */
+	protected void add(SARS sars){
+
+		List<GroundedAction> sa = new ArrayList<GroundedAction>(1);
+		sa.add(sars.a);
+		List<ActionFeaturesQuery> sFeatures = this.featureDatabase.getActionFeaturesSets(sars.s, sa);
+		if(sFeatures.size() != 1){
+			throw new RuntimeException("Expected only one actions's set of features.");
+		}
+		this.stateActionFeatures.addRow(sFeatures.get(0).features);
+
+		List<GroundedAction> gas = Action.getAllApplicableGroundedActionsFromActionList(this.actions, sars.sp);
+		List<ActionFeaturesQuery> spFeatures = this.featureDatabase.getActionFeaturesSets(sars.sp, gas);
+		for(GroundedAction ga : gas){
+			ActionFeaturesQuery afq = ActionFeaturesQuery.getActionFeaturesForQueryFromSet(ga, spFeatures);
+			if(afq == null){
+				throw new RuntimeException("The feature database returned no features for action " + ga.toString());
+			}
+			this.nextStateActionFeatures.addRow(afq.features);
+		}
+
+		int i = this.cachedSamples.size();
+		if(i + 2 > this.nextStateFirstRows.length){
+			this.nextStateFirstRows = Arrays.copyOf(this.nextStateFirstRows, 2 * this.nextStateFirstRows.length);
+		}
+		this.nextStateFirstRows[i+1] = this.nextStateActionFeatures.numRows();
+		this.cachedSamples.add(sars);
+
+	}
+
+
+	/**
+	 * Removes the features of all samples with an index of n or greater.
+	 */
+	protected void truncate(int n){
+		if(n >= this.cachedSamples.size()){
+			return;
+		}
+		this.cachedSamples.subList(n, this.cachedSamples.size()).clear();
+		this.stateActionFeatures.truncate(n);
+		this.nextStateActionFeatures.truncate(this.nextStateFirstRows[n]);
+	}
+
+}
@@ -0,0 +1,169 @@
+package burlap.behavior.singleagent.learning.lspi;
+
+import java.util.Arrays;
+import java.util.List;
+
+import burlap.behavior.singleagent.vfa.StateFeature;
+
+
+/**
+ * A compact, append-only matrix of sparse feature vectors, stored in compressed sparse row form: the feature ids and values of all rows are
+ * stored contiguously in primitive arrays, and the row with index i occupies positions {@link #rowStart(int)} (inclusive) through
+ * {@link #rowEnd(int)} (exclusive) of {@link #ids} and {@link #values}, in the order in which its features were given. Storing features this way
+ * takes a small fraction of the memory of lists of {@link StateFeature} objects and lets algorithms such as LSTDQ iterate over them without
+ * any object access.
+ * @author James MacGlashan
+ *
+ */
+public class SparseFeatureMatrix {
+
+	/**
+	 * The feature ids of all rows
+	 */
+	protected int []		ids;
+
+	/**
+	 * The feature values of all rows
+	 */
+	protected double []		values;
+
+	/**
+	 * The start position of each row, followed by the end position of the last row
+	 */
+	protected int []		rowStarts;
+
+	/**
+	 * The number of rows
+	 */
+	protected int			numRows = 0;
+
+
+	/**
+	 * Initializes an empty matrix.
+	 * @param rowCapacity the number of rows for which space is initially allocated
+	 * @param entryCapacity the number of non-zero entries for which space is initially allocated
+	 */
+	public SparseFeatureMatrix(int rowCapacity, int entryCapacity){
+		this.ids = new int[Math.max(entryCapacity, 1)];
+		this.values = new double[this.ids.length];
+		this.rowStarts = new int[Math.max(rowCapacity, 1) + 1];
+	}
+
+
+	/**
+	 * Returns the number of rows.
+	 * @return the number of rows.
+	 */
+	public int numRows(){
+		return this.numRows;
+	}
+
+
+	/**
+	 * Returns the position of the first entry of a row.
+	 * @param row the index of the row
+	 * @return the position of the first entry of the row in {@link #ids} and {@link #values}.
+	 */
+	public int rowStart(int row){
+		return this.rowStarts[row];
+	}
+
+
+	/**
+	 * Returns one more than the position of the last entry of a row.
+	 * @param row the index of the row
+	 * @return one more than the position of the last entry of the row in {@link #ids} and {@link #values}.
+	 */
+	public int rowEnd(int row){
+		return this.rowStarts[row+1];
+	}
+
+
+	/**
+	 * Returns the feature id of the entry at the given position.
+	 * @param pos the position of an entry
+	 * @return the feature id of the entry.
+	 */
+	public int id(int pos){
+		return this.ids[pos];
+	}
+
+
+	/**
+	 * Returns the feature value of the entry at the given position.
+	 * @param pos the position of an entry
+	 * @return the feature value of the entry.
+	 */
+	public double value(int pos){
+		return this.values[pos];
+	}
+
+
+	/**
+	 * Appends a row with the given features.
+	 * @param features the non-zero features of the row
+	 * @return the index of the row.
+	 */
+	public int addRow(List<StateFeature> features){
+		int start = this.rowStarts[this.numRows];
+		this.ensureCapacity(this.numRows + 1, start + features.size());
+		int pos = start;
+		for(StateFeature f : features){
+			this.ids[pos] = f.id;
+			this.values[pos] = f.value;
+			pos++;
+		}
+		this.numRows++;
+		this.rowStarts[this.numRows] = pos;
+		return this.numRows - 1;
+	}
+
+
+	/**
+	 * Removes all rows with an index of numRows or greater.
+	 * @param numRows the number of rows to keep
+	 */
+	public void truncate(int numRows){
+		if(numRows < this.numRows){
+			this.numRows = Math.max(numRows, 0);
+		}
+	}
+
+
+	/**
+	 * Removes all rows.
+	 */
+	public void clear(){
+		this.numRows = 0;
+	}
+
+
+	/**
+	 * Returns the dot product of a row with a dense weight vector, summed in the order of the row's features. Features whose ids are not
+	 * indices of the weight vector have a weight of zero.
+	 * @param row the index of the row
+	 * @param w the dense weight vector
+	 * @return the dot product of the row with the weight vector.
+	 */
+	public double dot(int row, double [] w){
+		double sum = 0.;
+		for(int p = this.rowStarts[row]; p < this.rowStarts[row+1]; p++){
+			int id = this.ids[p];
+			sum += this.values[p] * (id < w.length ? w[id] : 0.);
+		}
+		return sum;
+	}
+
+
+	protected void ensureCapacity(int rows, int entries){
+		if(rows + 1 > this.rowStarts.length){
+			this.rowStarts = Arrays.copyOf(this.rowStarts, Math.max(rows + 1, 2 * this.rowStarts.length));
+		}
+		if(entries > this.ids.length){
+			int n = Math.max(entries, 2 * this.ids.length);
+			this.ids = Arrays.copyOf(this.ids, n);
+			this.values = Arrays.copyOf(this.values, n);
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package burlap.behavior.singleagent.learning.lspi;
+
+import java.util.List;
+
+import burlap.behavior.singleagent.Policy;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.singleagent.Action;
+import burlap.oomdp.singleagent.environment.VectorizedEnvironment;
+import burlap.oomdp.singleagent.environment.VectorizedEnvironment.ActionSelector;
+import burlap.oomdp.singleagent.environment.VectorizedEnvironment.StepBatch;
+import burlap.oomdp.singleagent.environment.VectorizedEnvironment.StepListener;
+
+
+/**
+ * Collects {@link SARSData} from the K copies of a {@link VectorizedEnvironment} at once: each step of the environment adds one SARS tuple
+ * for each copy, in copy order. Copies that reach a terminal state or the environment's maximum number of episode steps are reset by the
+ * environment, so, like {@link SARSCollector#collectNInstances(burlap.oomdp.auxiliary.StateGenerator, burlap.oomdp.singleagent.RewardFunction, int, int, burlap.oomdp.core.TerminalFunction, SARSData)},
+ * collection continues from new initial states until the requested number of samples has been collected.
+ * <p/>
+ * By default, actions are chosen uniformly at random, as they are by {@link SARSCollector.UniformRandomSARSCollector}.
+ * @author James MacGlashan
+ *
+ */
+public class VectorizedSARSCollector {
+
+	/**
+	 * The selector of the actions of the copies
+	 */
+	protected ActionSelector		selector;
+
+
+	/**
+	 * Initializes to choose uniformly at random among the actions of the domain.
+	 * @param domain the domain containing the actions to use
+	 */
+	public VectorizedSARSCollector(Domain domain){
+		this(domain.getActions());
+	}
+
+
+	/**
+	 * Initializes to choose uniformly at random among the given actions.
+	 * @param actions the action set to use for collecting data.
+	 */
+	public VectorizedSARSCollector(List<Action> actions){
+		this(new VectorizedEnvironment.UniformRandomSelector(actions));
+	}
+
+
+	/**
+	 * Initializes to follow the given policy, which must be thread safe if the environment uses more than one thread.
+	 * @param p the policy to follow
+	 */
+	public VectorizedSARSCollector(Policy p){
+		this(new VectorizedEnvironment.PolicySelector(p));
+	}
+
+
+	/**
+	 * Initializes to choose actions with the given selector.
+	 * @param selector the selector of the actions of the copies
+	 */
+	public VectorizedSARSCollector(ActionSelector selector){
+		this.selector = selector;
+	}
+
+
+	/**
+	 * Steps the copies of a vectorized environment until nSamples SARS tuples have been collected and returns them in a {@link SARSData} object.
+	 * If nSamples is not a multiple of the number of copies, only the first copies of the last step are added.
+	 * @param env the environment to step
+	 * @param nSamples the number of SARS samples to collect.
+	 * @param intoDataset the dataset into which the results will be collected. If null, a new dataset is created.
+	 * @return the intoDataset object, which is created if it is input as null.
+	 */
+	public SARSData collectNInstances(VectorizedEnvironment env, int nSamples, SARSData intoDataset){
+
+		if(intoDataset == null){
+			intoDataset = new SARSData(nSamples);
+		}
+
+		final SARSData dataset = intoDataset;
+		final int target = intoDataset.size() + nSamples;
+		int k = env.numCopies();
+		int numSteps = (nSamples + k - 1) / k;
+
+		env.run(numSteps, this.selector, new StepListener() {
+
+			@Override
+			public void stepped(StepBatch batch) {
+				for(int i = 0; i < batch.size() && dataset.size() < target; i++){
+					dataset.add(batch.states[i], batch.actions[i], batch.rewards[i], batch.nextStates[i]);
+				}
+			}
+		});
+
+		return intoDataset;
+
+	}
+
+}
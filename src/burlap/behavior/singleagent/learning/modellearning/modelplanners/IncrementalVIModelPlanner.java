@@ -0,0 +1,518 @@
+package burlap.behavior.singleagent.learning.modellearning.modelplanners;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import burlap.behavior.singleagent.Policy;
+import burlap.behavior.singleagent.learning.modellearning.ModelPlanner;
+import burlap.behavior.singleagent.planning.ActionTransitions;
+import burlap.behavior.singleagent.planning.HashedTransitionProbability;
+import burlap.behavior.singleagent.planning.ValueFunctionPlanner;
+import burlap.behavior.singleagent.planning.commonpolicies.GreedyQPolicy;
+import burlap.behavior.statehashing.StateHashFactory;
+import burlap.behavior.statehashing.StateHashTuple;
+import burlap.datastructures.HashIndexedHeap;
+import burlap.debugtools.DPrint;
+import burlap.oomdp.core.AbstractGroundedAction;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.singleagent.RewardFunction;
+
+
+/**
+ * An incremental alternative to {@link VIModelPlanner}. Rather than running value iteration from scratch over every state the agent has ever observed
+ * each time the model changes, this planner keeps its value function, its cached transition dynamics, and its index of known states across model updates.
+ * When the model changes for a state, only the cached transitions of that state are recomputed, the known state space is extended only with the states newly
+ * reachable from it, and the change is propagated through the value function with prioritized sweeping [1] seeded at the changed state. Each
+ * state stores back pointers to the states that can transition to it, so that when a state's value changes by some amount, each of its predecessors is
+ * queued with a priority of the change times the maximum probability with which the predecessor transitions to it. Sweeping stops once the highest
+ * priority falls below the maximum value function delta.
+ * <p/>
+ * Since a single model update only changes the Bellman backup of the changed state, the planner's value function stays as accurate as that of
+ * {@link VIModelPlanner} while the cost of each replan grows with the part of the state space whose values actually change rather than with all known states.
+ * The number of Bellman backups performed for each model update can be bounded with {@link #setMaxBackupsPerUpdate(int)} to bound the latency of each learning step;
+ * queued states that are not backed up within the budget remain queued and are swept on the next update.
+ * <p/>
+ * Transition dynamics are cached, which requires that the model only changes for the state passed to {@link #modelChanged(State)}, as is the case for
+ * tabular models.
+ * <p/>
+ * 1. Li, Lihong, Michael L. Littman, and L. Littman. Prioritized sweeping converges to the optimal value function. Tech. Rep. DCS-TR-631, 2008.
+ * @author James MacGlashan
+ *
+ */
+public class IncrementalVIModelPlanner implements ModelPlanner {
+
+	/**
+	 * The incremental value function planner
+	 */
+	protected SweepingValueFunction		planner;
+
+	/**
+	 * The greedy policy that results from the planner
+	 */
+	protected Policy					modelPolicy;
+
+	/**
+	 * The last initial state of an episode
+	 */
+	protected State						initialState;
+
+	/**
+	 * The hashing factory to use
+	 */
+	protected StateHashFactory			hashingFactory;
+
+	/**
+	 * The maximum value function delta; sweeping stops when the highest priority is below it
+	 */
+	protected double					maxDelta;
+
+	/**
+	 * The maximum number of Bellman backups per update, as a multiple of the number of known states. If set to -1, then there is no limit.
+	 */
+	protected int						maxPassesPerUpdate;
+
+	/**
+	 * The maximum number of Bellman backups per update. If set to -1, then there is no hard limit.
+	 */
+	protected int						maxBackupsPerUpdate = -1;
+
+
+	/**
+	 * Initializes. The number of backups performed for each update is limited to the number of backups maxPasses sweeps over all known states would
+	 * perform, which makes this planner a drop in replacement for {@link VIModelPlanner}.
+	 * @param domain model domain
+	 * @param rf model reward funciton
+	 * @param tf model termination function
+	 * @param gamma discount factor
+	 * @param hashingFactory the hashing factory
+	 * @param maxDelta max value function delta
+	 * @param maxPasses the maximum number of Bellman backups per update, as a multiple of the number of known states. If set to -1, then there is no limit.
+	 */
+	public IncrementalVIModelPlanner(Domain domain, RewardFunction rf, TerminalFunction tf, double gamma, StateHashFactory hashingFactory, double maxDelta, int maxPasses){
+
+		this.hashingFactory = hashingFactory;
+		this.maxDelta = maxDelta;
+		this.maxPassesPerUpdate = maxPasses;
+
+		this.planner = new SweepingValueFunction(domain, rf, tf, gamma, hashingFactory);
+		DPrint.toggleCode(this.planner.getDebugCode(), false);
+		this.modelPolicy = new ReplanIfUnseenPolicy(new GreedyQPolicy(this.planner));
+
+	}
+
+
+	/**
+	 * Sets the maximum number of Bellman backups that are performed for each model update or newly observed state, which bounds the latency of each learning step.
+	 * States that remain queued when the budget is exhausted are swept on the next update. If set to -1, then there is no hard limit.
+	 * @param maxBackupsPerUpdate the maximum number of Bellman backups per update.
+	 */
+	public void setMaxBackupsPerUpdate(int maxBackupsPerUpdate){
+		this.maxBackupsPerUpdate = maxBackupsPerUpdate;
+	}
+
+
+	/**
+	 * Returns the maximum number of Bellman backups that are performed for each model update or newly observed state. -1 indicates no hard limit.
+	 * @return the maximum number of Bellman backups per update.
+	 */
+	public int getMaxBackupsPerUpdate(){
+		return this.maxBackupsPerUpdate;
+	}
+
+
+	/**
+	 * Returns the number of states known to the planner.
+	 * @return the number of states known to the planner.
+	 */
+	public int numKnownStates(){
+		return this.planner.nodes.size();
+	}
+
+
+	/**
+	 * Returns the number of states queued for a Bellman backup.
+	 * @return the number of states queued for a Bellman backup.
+	 */
+	public int numQueuedStates(){
+		return this.planner.queue.size();
+	}
+
+
+	@Override
+	public void initializePlannerIn(State s) {
+		this.initialState = s;
+		StateHashTuple sh = this.hashingFactory.hashState(s);
+		if(!this.planner.nodes.containsKey(sh)){
+			this.planner.addReachableStatesFrom(sh);
+			this.planner.sweep(this.backupBudget());
+		}
+	}
+
+	@Override
+	public void modelChanged(State changedState) {
+		this.planner.refreshTransitionsFor(this.hashingFactory.hashState(changedState));
+		this.planner.sweep(this.backupBudget());
+	}
+
+	@Override
+	public Policy modelPlannedPolicy() {
+		return this.modelPolicy;
+	}
+
+	@Override
+	public void resetPlanner() {
+		this.planner.resetPlannerResults();
+	}
+
+
+	/**
+	 * Returns the number of Bellman backups permitted for the current update, or -1 if there is no limit.
+	 * @return the number of Bellman backups permitted for the current update, or -1 if there is no limit.
+	 */
+	protected int backupBudget(){
+		int budget = -1;
+		if(this.maxPassesPerUpdate != -1){
+			budget = this.maxPassesPerUpdate * Math.max(1, this.planner.nodes.size());
+		}
+		if(this.maxBackupsPerUpdate != -1 && (budget == -1 || this.maxBackupsPerUpdate < budget)){
+			budget = this.maxBackupsPerUpdate;
+		}
+		return budget;
+	}
+
+
+
+	/**
+	 * A value function planner that maintains back pointers and a priority queue of states so that changes to the model can be propagated
+	 * incrementally with prioritized sweeping.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected class SweepingValueFunction extends ValueFunctionPlanner{
+
+		/**
+		 * The sweep node of each known state
+		 */
+		protected Map<StateHashTuple, SweepNode>		nodes = new HashMap<StateHashTuple, SweepNode>();
+
+		/**
+		 * The priority queue of states awaiting a Bellman backup
+		 */
+		protected HashIndexedHeap<SweepNode>			queue = new HashIndexedHeap<SweepNode>(new SweepNodeComparator());
+
+
+		/**
+		 * Initializes.
+		 * @param domain the domain in which to plan
+		 * @param rf the reward function
+		 * @param tf the terminal state function
+		 * @param gamma the discount factor
+		 * @param hashingFactory the state hashing factor to use
+		 */
+		public SweepingValueFunction(Domain domain, RewardFunction rf, TerminalFunction tf, double gamma, StateHashFactory hashingFactory){
+			this.VFPInit(domain, rf, tf, gamma, hashingFactory);
+		}
+
+
+		@Override
+		public void planFromState(State initialState) {
+			this.addReachableStatesFrom(this.stateHash(initialState));
+			this.sweep(-1);
+		}
+
+
+		@Override
+		public void resetPlannerResults(){
+			super.resetPlannerResults();
+			this.nodes.clear();
+			this.queue = new HashIndexedHeap<SweepNode>(new SweepNodeComparator());
+		}
+
+
+		/**
+		 * Adds all states reachable from the given state that are not already known, links their back pointers, and queues them for a Bellman backup.
+		 * @param sh the hashed state from which to find new states
+		 */
+		protected void addReachableStatesFrom(StateHashTuple sh){
+
+			if(this.nodes.containsKey(sh)){
+				return;
+			}
+
+			LinkedList<SweepNode> openList = new LinkedList<SweepNode>();
+			openList.offer(this.newNode(sh));
+
+			while(openList.size() > 0){
+				SweepNode node = openList.poll();
+				this.linkSuccessors(node, openList);
+			}
+
+			DPrint.cl(this.debugCode, "Known states: " + this.nodes.size());
+
+		}
+
+
+		/**
+		 * Recomputes the cached transition dynamics of the given state, relinks its back pointers, adds any newly reachable states, and queues it for a Bellman backup.
+		 * @param sh the hashed state whose transition dynamics changed
+		 */
+		protected void refreshTransitionsFor(StateHashTuple sh){
+
+			SweepNode node = this.nodes.get(sh);
+			if(node == null){
+				this.addReachableStatesFrom(sh);
+				return;
+			}
+
+			//unlink from old successors
+			for(SweepNode succ : node.successors){
+				succ.predecessors.remove(node);
+			}
+			node.successors.clear();
+			this.transitionDynamics.remove(node.sh);
+
+			LinkedList<SweepNode> openList = new LinkedList<SweepNode>();
+			this.linkSuccessors(node, openList);
+			while(openList.size() > 0){
+				this.linkSuccessors(openList.poll(), openList);
+			}
+
+			this.enqueue(node, Double.MAX_VALUE);
+
+		}
+
+
+		/**
+		 * Performs Bellman backups on queued states in order of priority until the highest priority is below the maximum delta, the queue is empty,
+		 * or the budget is exhausted.
+		 * @param budget the maximum number of Bellman backups to perform; -1 for no limit.
+		 */
+		protected void sweep(int budget){
+
+			int numBackups = 0;
+			while(this.queue.size() > 0 && (budget == -1 || numBackups < budget)){
+
+				SweepNode node = this.queue.peek();
+				if(node.priority < IncrementalVIModelPlanner.this.maxDelta){
+					break;
+				}
+				this.queue.poll();
+				node.priority = 0.;
+
+				double oldV = this.value(node.sh);
+				double newV = this.performBellmanUpdateOn(node.sh);
+				double delta = Math.abs(newV - oldV);
+				numBackups++;
+
+				for(Map.Entry<SweepNode, Double> e : node.predecessors.entrySet()){
+					this.enqueue(e.getKey(), e.getValue() * delta);
+				}
+
+			}
+
+			DPrint.cl(this.debugCode, "Swept with " + numBackups + " Bellman backups; " + this.queue.size() + " states remain queued");
+
+		}
+
+
+		/**
+		 * Creates the sweep node for a newly known state, initializes its value, and queues it for a Bellman backup.
+		 * @param sh the hashed state
+		 * @return the new sweep node
+		 */
+		protected SweepNode newNode(StateHashTuple sh){
+			SweepNode node = new SweepNode(sh);
+			this.nodes.put(sh, node);
+			this.mapToStateIndex.put(sh, sh);
+			this.enqueue(node, Double.MAX_VALUE);
+			return node;
+		}
+
+
+		/**
+		 * Computes and caches the transition dynamics of the given node, links it as a back pointer of each of its successors, and adds successors that
+		 * are not yet known to the open list.
+		 * @param node the node whose successors should be linked
+		 * @param openList the list to which newly known successor nodes are added
+		 */
+		protected void linkSuccessors(SweepNode node, LinkedList<SweepNode> openList){
+
+			List<ActionTransitions> transitions = this.getActionsTransitions(node.sh);
+			for(ActionTransitions at : transitions){
+				for(HashedTransitionProbability tp : at.transitions){
+					SweepNode succ = this.nodes.get(tp.sh);
+					if(succ == null){
+						succ = this.newNode(tp.sh);
+						openList.offer(succ);
+					}
+					Double prev = succ.predecessors.get(node);
+					if(prev == null){
+						succ.predecessors.put(node, tp.p);
+						node.successors.add(succ);
+					}
+					else if(tp.p > prev){
+						succ.predecessors.put(node, tp.p);
+					}
+				}
+			}
+
+		}
+
+
+		/**
+		 * Raises the priority of the given node to the given priority if it is higher than its current priority and the maximum delta, queueing it if necessary.
+		 * @param node the node to queue
+		 * @param priority the priority of the node
+		 */
+		protected void enqueue(SweepNode node, double priority){
+			if(priority < IncrementalVIModelPlanner.this.maxDelta || priority <= node.priority){
+				return;
+			}
+			node.priority = priority;
+			if(this.queue.containsInstance(node) != null){
+				this.queue.refreshPriority(node);
+			}
+			else{
+				this.queue.insert(node);
+			}
+		}
+
+	}
+
+
+	/**
+	 * A node for a known state that stores the states that can transition to it with the maximum probability of doing so, the states it can transition to,
+	 * and its priority.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class SweepNode{
+
+		/**
+		 * The hashed state of this node
+		 */
+		public StateHashTuple					sh;
+
+		/**
+		 * The predecessor nodes and the maximum probability with which each transitions to this node
+		 */
+		public Map<SweepNode, Double>			predecessors = new HashMap<SweepNode, Double>();
+
+		/**
+		 * The successor nodes of this node
+		 */
+		public List<SweepNode>					successors = new ArrayList<SweepNode>();
+
+		/**
+		 * The priority of this node
+		 */
+		public double							priority = 0.;
+
+
+		/**
+		 * Initializes.
+		 * @param sh the hashed state of this node
+		 */
+		public SweepNode(StateHashTuple sh){
+			this.sh = sh;
+		}
+
+		@Override
+		public int hashCode(){
+			return this.sh.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object other){
+			if(this == other){
+				return true;
+			}
+			if(!(other instanceof SweepNode)){
+				return false;
+			}
+			return this.sh.equals(((SweepNode)other).sh);
+		}
+
+	}
+
+
+	/**
+	 * Comparator for the priority of sweep nodes
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class SweepNodeComparator implements Comparator<SweepNode>{
+
+		@Override
+		public int compare(SweepNode o1, SweepNode o2) {
+			return Double.compare(o1.priority, o2.priority);
+		}
+
+	}
+
+
+	/**
+	 * A policy that adds a state and the states reachable from it to the planner and sweeps if the state is unknown
+	 * @author James MacGlashan
+	 *
+	 */
+	class ReplanIfUnseenPolicy extends Policy{
+
+		/**
+		 * The source policy to follow for known states
+		 */
+		Policy p;
+
+
+		/**
+		 * Initializes with a given source policy
+		 * @param p the source policy
+		 */
+		public ReplanIfUnseenPolicy(Policy p){
+			this.p = p;
+		}
+
+		@Override
+		public AbstractGroundedAction getAction(State s) {
+			this.planIfUnseen(s);
+			return p.getAction(s);
+		}
+
+		@Override
+		public List<ActionProb> getActionDistributionForState(State s) {
+			this.planIfUnseen(s);
+			return p.getActionDistributionForState(s);
+		}
+
+		@Override
+		public boolean isStochastic() {
+			return p.isStochastic();
+		}
+
+		@Override
+		public boolean isDefinedFor(State s) {
+			return p.isDefinedFor(s);
+		}
+
+
+		/**
+		 * Adds the given state and the states reachable from it to the planner and sweeps if it is not already known.
+		 * @param s the state to check
+		 */
+		protected void planIfUnseen(State s){
+			StateHashTuple sh = IncrementalVIModelPlanner.this.hashingFactory.hashState(s);
+			if(!IncrementalVIModelPlanner.this.planner.nodes.containsKey(sh)){
+				IncrementalVIModelPlanner.this.planner.addReachableStatesFrom(sh);
+				IncrementalVIModelPlanner.this.planner.sweep(IncrementalVIModelPlanner.this.backupBudget());
+			}
+		}
+
+	}
+
+}
@@ -1,11 +1,10 @@
 package burlap.behavior.singleagent.learning.modellearning.models;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import burlap.behavior.singleagent.learning.modellearning.Model;
 import burlap.behavior.statehashing.StateHashFactory;
@@ -21,48 +20,117 @@ import burlap.oomdp.singleagent.RewardFunction;
 
 /**
  * A tabular model using frequencies to model the transition dynamics.
- * 
- * 
+ * <p/>
+ * To keep the memory footprint and lookup cost small for long running agents, each observed (hashed) state is assigned a compact integer id
+ * and the actions applicable in a state are assigned consecutive state-action indices when the state is first used as the source of a transition.
+ * The number of tries and the reward sum of each state-action pair are stored in primitive arrays indexed by the state-action index, and the observed
+ * outcomes of each state-action pair are stored as a sparse list of outcome state ids with their counts. Planners that work with state ids can
+ * iterate over the outcomes of a state-action pair with {@link #numOutcomes(int)}, {@link #outcomeStateId(int, int)}, and {@link #outcomeProbability(int, int)}
+ * without any objects being created. The {@link #getTransitionProbabilities(State, GroundedAction)} method is still supported
+ * for planners that operate on {@link State} objects.
+ *
+ *
  * @author James MacGlashan; adapted from code provided by Takehiro Oyakawa and Chan Trau
  *
  */
 public class TabularModel extends Model {
 
+	/**
+	 * The initial capacity of the state and state-action arrays
+	 */
+	protected static final int					INITIALCAPACITY = 64;
+
+	/**
+	 * The initial capacity of the outcome list of a state-action pair
+	 */
+	protected static final int					INITIALOUTCOMECAPACITY = 2;
+
+
 	/**
 	 * The source actual domain object for which actions will be modeled.
 	 */
 	protected Domain							sourceDomain;
-	
+
 	/**
 	 * The hashing factory to use for indexing states
 	 */
 	protected StateHashFactory					hashingFactory;
-	
+
 	/**
-	 * A mapping from (hashed) states to state nodes that store transition statistics
+	 * A mapping from (hashed) states to their compact ids
 	 */
-	protected Map<StateHashTuple, StateNode> 	stateNodes;
-	
+	protected Map<StateHashTuple, Integer> 		stateIds;
+
 	/**
-	 * The set of states marked as terminal states.
+	 * The hashed states indexed by their id
 	 */
-	protected Set<StateHashTuple> 				terminalStates;
-	
+	protected List<StateHashTuple>				states;
+
+	/**
+	 * The applicable grounded actions of each state indexed by state id; null for states that have not been the source of a transition
+	 */
+	protected List<GroundedAction[]>			stateActions;
+
+	/**
+	 * The first state-action index of each state indexed by state id; -1 for states that have not been the source of a transition
+	 */
+	protected int []							saStart;
+
+	/**
+	 * Whether each state is marked terminal, indexed by state id
+	 */
+	protected boolean []						terminal;
+
+	/**
+	 * The number of state-action pairs
+	 */
+	protected int								numSA;
+
+	/**
+	 * The number of times each state-action pair has been tried
+	 */
+	protected int []							nTries;
+
+	/**
+	 * The sum of rewards received for each state-action pair
+	 */
+	protected double []							sumR;
+
+	/**
+	 * The outcome state ids of each state-action pair; null for pairs that have not been tried
+	 */
+	protected int [][]							outcomeIds;
+
+	/**
+	 * The number of times each outcome of each state-action pair has been observed; parallel to {@link #outcomeIds}
+	 */
+	protected int [][]							outcomeCounts;
+
+	/**
+	 * The number of distinct outcomes of each state-action pair
+	 */
+	protected int []							numOutcomes;
+
+	/**
+	 * The total number of distinct outcomes over all state-action pairs
+	 */
+	protected long								totalOutcomes;
+
 	/**
 	 * The number of transitions necessary to be confident in a model's prediction.
 	 */
 	protected int								nConfident;
-	
+
 	/**
 	 * The modeled terminal funciton.
 	 */
 	protected TerminalFunction					modeledTF;
-	
+
 	/**
 	 * The modeled reward function.
 	 */
 	protected RewardFunction					modeledRF;
-	
+
 	/**
 	 * Initializes.
 	 * @param sourceDomain the source domain whose actions will be modeled.
@@ -72,35 +140,32 @@ public class TabularModel extends Model {
 	public TabularModel(Domain sourceDomain, StateHashFactory hashingFactory, int nConfident){
 		this.sourceDomain = sourceDomain;
 		this.hashingFactory = hashingFactory;
-		this.stateNodes = new HashMap<StateHashTuple, TabularModel.StateNode>();
-		this.terminalStates = new HashSet<StateHashTuple>();
 		this.nConfident = nConfident;
-		
+		this.initStorage();
+
 		this.modeledTF = new TerminalFunction() {
-			
+
 			@Override
 			public boolean isTerminal(State s) {
-				return terminalStates.contains(TabularModel.this.hashingFactory.hashState(s));
+				Integer id = TabularModel.this.stateIds.get(TabularModel.this.hashingFactory.hashState(s));
+				return id != null && TabularModel.this.terminal[id];
 			}
 		};
-		
-		
+
+
 		this.modeledRF = new RewardFunction() {
-			
+
 			@Override
 			public double reward(State s, GroundedAction a, State sprime) {
-				StateActionNode san = TabularModel.this.getStateActionNode(TabularModel.this.hashingFactory.hashState(s), a);
-				if(san == null){
+				int sa = TabularModel.this.stateActionIndex(TabularModel.this.hashingFactory.hashState(s), a);
+				if(sa == -1){
 					return 0;
 				}
-				if(san.nTries == 0){
-					return 0.;
-				}
-				return san.sumR / (double)san.nTries;
+				return TabularModel.this.expectedReward(sa);
 			}
 		};
 	}
-	
+
 	@Override
 	public RewardFunction getModelRF() {
 		return this.modeledRF;
@@ -113,292 +178,394 @@ public class TabularModel extends Model {
 
 	@Override
 	public boolean transitionIsModeled(State s, GroundedAction ga) {
-		
-		StateActionNode san = this.getStateActionNode(this.hashingFactory.hashState(s), ga);
-		if(san == null){
+
+		int sa = this.stateActionIndex(this.hashingFactory.hashState(s), ga);
+		if(sa == -1){
 			return false;
 		}
-		if(san.nTries < this.nConfident){
+		if(this.nTries[sa] < this.nConfident){
 			return false;
 		}
-		
+
 		return true;
 	}
 
 	@Override
 	public State sampleModelHelper(State s, GroundedAction ga) {
-		return this.sampleTransitionFromTransitionProbabilities(s, ga);
+
+		int sa = this.stateActionIndex(this.hashingFactory.hashState(s), ga);
+		if(sa == -1){
+			//assume transition to self if we haven't modeled this at all
+			return s;
+		}
+		if(this.nTries[sa] == 0){
+			return this.sampleTransitionFromTransitionProbabilities(s, ga);
+		}
+
+		int r = this.rand.nextInt(this.nTries[sa]);
+		int [] ids = this.outcomeIds[sa];
+		int [] counts = this.outcomeCounts[sa];
+		int n = this.numOutcomes[sa];
+		for(int i = 0; i < n; i++){
+			r -= counts[i];
+			if(r < 0){
+				return this.states.get(ids[i]).s;
+			}
+		}
+
+		throw new RuntimeException("Outcome counts of the model did not sum to the number of tries.");
 	}
 
 	@Override
 	public List<TransitionProbability> getTransitionProbabilities(State s, GroundedAction ga) {
-		
-		List<TransitionProbability> transitions = new ArrayList<TransitionProbability>();
-		
-		StateActionNode san = this.getStateActionNode(this.hashingFactory.hashState(s), ga);
-		if(san == null){
+
+		int sa = this.stateActionIndex(this.hashingFactory.hashState(s), ga);
+		if(sa == -1){
 			//assume transition to self if we haven't modeled this at all
-			TransitionProbability tp = new TransitionProbability(s, 1.);
-			transitions.add(tp);
+			List<TransitionProbability> transitions = new ArrayList<TransitionProbability>(1);
+			transitions.add(new TransitionProbability(s, 1.));
+			return transitions;
 		}
-		else{
-			for(OutcomeState os : san.outcomes.values()){
-				State sp = os.osh.s;
-				double p = (double)os.nTimes / (double)san.nTries;
-				TransitionProbability tp = new TransitionProbability(sp, p);
-				transitions.add(tp);
-			}
+
+		int n = this.numOutcomes[sa];
+		List<TransitionProbability> transitions = new ArrayList<TransitionProbability>(n);
+		for(int i = 0; i < n; i++){
+			transitions.add(new TransitionProbability(this.states.get(this.outcomeIds[sa][i]).s, this.outcomeProbability(sa, i)));
 		}
-		
+
 		return transitions;
 	}
 
 	@Override
 	public void updateModel(State s, GroundedAction ga, State sprime, double r, boolean sprimeIsTerminal) {
-		
+
 		StateHashTuple sh = this.hashingFactory.hashState(s);
 		StateHashTuple shp = this.hashingFactory.hashState(sprime);
-		
+
+		int sid = this.getOrCreateStateId(sh);
+		int spid = this.getOrCreateStateId(shp);
+
 		if(sprimeIsTerminal){
-			this.terminalStates.add(shp);
+			this.terminal[spid] = true;
+		}
+
+		int sa = this.getOrCreateStateActionIndex(sh, sid, ga);
+		this.nTries[sa]++;
+		this.sumR[sa] += r;
+		this.addOutcome(sa, spid);
+
+	}
+
+
+	@Override
+	public void resetModel(){
+		this.initStorage();
+	}
+
+
+	/**
+	 * Returns the compact id of the given state, or -1 if the state has never been observed.
+	 * @param s the state
+	 * @return the compact id of the given state, or -1 if the state has never been observed.
+	 */
+	public int stateId(State s){
+		Integer id = this.stateIds.get(this.hashingFactory.hashState(s));
+		if(id == null){
+			return -1;
 		}
-		
-		StateActionNode san = this.getOrCreateActionNode(sh, ga);
-		san.update(r, shp);
+		return id;
+	}
 
+
+	/**
+	 * Returns the hashed state with the given compact id.
+	 * @param id the compact state id
+	 * @return the hashed state with the given compact id.
+	 */
+	public StateHashTuple stateForId(int id){
+		return this.states.get(id);
+	}
+
+
+	/**
+	 * Returns whether the state with the given id has been observed as a terminal state.
+	 * @param id the compact state id
+	 * @return true if the state has been observed as a terminal state; false otherwise.
+	 */
+	public boolean isTerminal(int id){
+		return this.terminal[id];
 	}
-	
+
+
 	/**
-	 * Returns the {@link TabularModel.StateActionNode} object associated with the given hashed state and action.
-	 * If there is not an associated {@link TabularModel.StateActionNode} object, then null is returned.
+	 * Returns the state-action index of the given state and action, or -1 if no transition from the given state has ever been observed.
+	 * @param s the source state
+	 * @param ga the grounded action
+	 * @return the state-action index of the given state and action, or -1 if no transition from the given state has ever been observed.
+	 */
+	public int stateActionIndex(State s, GroundedAction ga){
+		return this.stateActionIndex(this.hashingFactory.hashState(s), ga);
+	}
+
+
+	/**
+	 * Returns the number of times the state-action pair with the given index has been tried.
+	 * @param sa the state-action index
+	 * @return the number of times the state-action pair has been tried.
+	 */
+	public int numTries(int sa){
+		return this.nTries[sa];
+	}
+
+
+	/**
+	 * Returns the average reward received for the state-action pair with the given index, or 0 if it has never been tried.
+	 * @param sa the state-action index
+	 * @return the average reward received for the state-action pair.
+	 */
+	public double expectedReward(int sa){
+		if(this.nTries[sa] == 0){
+			return 0.;
+		}
+		return this.sumR[sa] / (double)this.nTries[sa];
+	}
+
+
+	/**
+	 * Returns the number of distinct outcome states observed for the state-action pair with the given index.
+	 * @param sa the state-action index
+	 * @return the number of distinct outcome states observed for the state-action pair.
+	 */
+	public int numOutcomes(int sa){
+		return this.numOutcomes[sa];
+	}
+
+
+	/**
+	 * Returns the compact state id of the i'th outcome of the state-action pair with the given index.
+	 * @param sa the state-action index
+	 * @param i the index of the outcome
+	 * @return the compact state id of the outcome
+	 */
+	public int outcomeStateId(int sa, int i){
+		return this.outcomeIds[sa][i];
+	}
+
+
+	/**
+	 * Returns the modeled probability of the i'th outcome of the state-action pair with the given index.
+	 * @param sa the state-action index
+	 * @param i the index of the outcome
+	 * @return the modeled probability of the outcome
+	 */
+	public double outcomeProbability(int sa, int i){
+		return (double)this.outcomeCounts[sa][i] / (double)this.nTries[sa];
+	}
+
+
+	/**
+	 * Returns the number of distinct states observed.
+	 * @return the number of distinct states observed.
+	 */
+	public int numStates(){
+		return this.states.size();
+	}
+
+
+	/**
+	 * Returns the number of state-action pairs stored, which includes every applicable action of every state that has been the source of a transition.
+	 * @return the number of state-action pairs stored.
+	 */
+	public int numStateActionPairs(){
+		return this.numSA;
+	}
+
+
+	/**
+	 * Returns the total number of distinct outcomes stored over all state-action pairs.
+	 * @return the total number of distinct outcomes stored.
+	 */
+	public long numOutcomeEntries(){
+		return this.totalOutcomes;
+	}
+
+
+	/**
+	 * Returns an estimate of the number of bytes used by the primitive tables of this model, which excludes the stored states themselves
+	 * and the grounded action objects.
+	 * @return an estimate of the number of bytes used by the primitive tables of this model.
+	 */
+	public long approximateTableBytes(){
+		long bytes = (long)this.saStart.length*4 + this.terminal.length;
+		bytes += (long)this.nTries.length*(4 + 8 + 4 + 2*8);
+		for(int sa = 0; sa < this.numSA; sa++){
+			if(this.outcomeIds[sa] != null){
+				bytes += 2*(16 + (long)this.outcomeIds[sa].length*4);
+			}
+		}
+		return bytes;
+	}
+
+
+	/**
+	 * Creates empty storage.
+	 */
+	protected void initStorage(){
+		this.stateIds = new HashMap<StateHashTuple, Integer>();
+		this.states = new ArrayList<StateHashTuple>();
+		this.stateActions = new ArrayList<GroundedAction[]>();
+		this.saStart = new int[INITIALCAPACITY];
+		this.terminal = new boolean[INITIALCAPACITY];
+		this.numSA = 0;
+		this.nTries = new int[INITIALCAPACITY];
+		this.sumR = new double[INITIALCAPACITY];
+		this.outcomeIds = new int[INITIALCAPACITY][];
+		this.outcomeCounts = new int[INITIALCAPACITY][];
+		this.numOutcomes = new int[INITIALCAPACITY];
+		this.totalOutcomes = 0;
+	}
+
+
+	/**
+	 * Returns the state-action index associated with the given hashed state and action.
+	 * If the state has never been the source of a transition, then -1 is returned.
 	 * @param sh the hashed state
 	 * @param ga the grounded action
-	 * @return the associated {@link TabularModel.StateActionNode} or null if it does not exist.
+	 * @return the associated state-action index or -1 if it does not exist.
 	 */
-	protected StateActionNode getStateActionNode(StateHashTuple sh, GroundedAction ga){
+	protected int stateActionIndex(StateHashTuple sh, GroundedAction ga){
 
-		StateNode sn = this.stateNodes.get(sh);
-		if(sn == null){
-			return null;
+		Integer id = this.stateIds.get(sh);
+		if(id == null || this.saStart[id] == -1){
+			return -1;
 		}
-		return sn.actionNode((GroundedAction)ga.translateParameters(sh.s, sn.sh.s));
+		StateHashTuple stored = this.states.get(id);
+		GroundedAction tga = (GroundedAction)ga.translateParameters(sh.s, stored.s);
+		return this.actionIndex(id, tga);
 	}
-	
+
+
 	/**
-	 * Returns the {@link TabularModel.StateActionNode} object associated with the given hashed state and action.
-	 * If there is not an associated {@link TabularModel.StateActionNode} object, then one will be created.
+	 * Returns the state-action index associated with the given hashed state and action.
+	 * If the state has never been the source of a transition, then its state-action pairs will be created.
 	 * @param sh the hashed state
+	 * @param sid the id of the hashed state
 	 * @param ga the grounded action
-	 * @return the associated {@link TabularModel.StateActionNode}
+	 * @return the associated state-action index
 	 */
-	protected StateActionNode getOrCreateActionNode(StateHashTuple sh, GroundedAction ga){
+	protected int getOrCreateStateActionIndex(StateHashTuple sh, int sid, GroundedAction ga){
+
+		int sa = -1;
+		if(this.saStart[sid] == -1){
 
-		StateNode sn = this.stateNodes.get(sh);
-		StateActionNode toReturn = null;
-		if(sn == null){
-			sn = new StateNode(sh);
-			this.stateNodes.put(sh, sn);
-			
-			//List <GroundedAction> allActions = sh.s.getAllGroundedActionsFor(this.sourceDomain.getActions());
 			List<GroundedAction> allActions = Action.getAllApplicableGroundedActionsFromActionList(this.sourceDomain.getActions(), sh.s);
-			for(GroundedAction tga : allActions){
-				StateActionNode san = sn.addActionNode(tga);
-				if(tga.equals(ga)){
-					toReturn = san;
-				}
-			}
-			
+			this.ensureSACapacity(this.numSA + allActions.size());
+			this.saStart[sid] = this.numSA;
+			this.stateActions.set(sid, allActions.toArray(new GroundedAction[allActions.size()]));
+			this.numSA += allActions.size();
+
+			sa = this.actionIndex(sid, ga);
+
 		}
 		else{
-			toReturn = sn.actionNode((GroundedAction)ga.translateParameters(sh.s, sn.sh.s));
+			sa = this.actionIndex(sid, (GroundedAction)ga.translateParameters(sh.s, this.states.get(sid).s));
 		}
-		
-		if(toReturn == null){
+
+		if(sa == -1){
 			throw new RuntimeException("Could not finding matching grounded action in model for action: " + ga.toString());
 		}
-		
-		
-		return toReturn;
-	}
-	
-	
-	@Override
-	public void resetModel(){
-		this.stateNodes.clear();
-		this.terminalStates.clear();
+
+
+		return sa;
 	}
-	
-	/**
-	 * A class for storing statistics about a state
-	 * @author James MacGlashan
-	 *
-	 */
-	class StateNode{
-		
-		/**
-		 * The hashed state this node wraps
-		 */
-		StateHashTuple sh;
-		
-		/**
-		 * Maps from actions to state-aciton nodes that store statistics about the acitons taken from this state
-		 */
-		Map <GroundedAction, StateActionNode> actionNodes;
-		
-		
-		/**
-		 * Initializes
-		 * @param sh the hashed state this node wraps.
-		 */
-		public StateNode(StateHashTuple sh){
-			this.sh = sh;
-			this.actionNodes = new HashMap<GroundedAction, TabularModel.StateActionNode>();
+
+
+	/**
+	 * Returns the state-action index of the given (already translated) action in the state with the given id, or -1 if the action is not applicable in the state.
+	 * @param sid the state id
+	 * @param ga the grounded action
+	 * @return the state-action index of the action, or -1 if the action is not applicable in the state.
+	 */
+	protected int actionIndex(int sid, GroundedAction ga){
+		GroundedAction [] gas = this.stateActions.get(sid);
+		for(int i = 0; i < gas.length; i++){
+			if(gas[i].equals(ga)){
+				return this.saStart[sid] + i;
+			}
 		}
-		
-		
-		/**
-		 * Returns a {@link StateActionNode} object for the given grounded action
-		 * @param ga the grounded action specifying the action node to return
-		 * @return the {@link StateActionNode} object associated with the specified action
-		 */
-		public StateActionNode actionNode(GroundedAction ga){
-			return actionNodes.get(ga);
+		return -1;
+	}
+
+
+	/**
+	 * Returns the compact id of the given hashed state, assigning it a new id if it has not been observed before.
+	 * @param sh the hashed state
+	 * @return the compact id of the state
+	 */
+	protected int getOrCreateStateId(StateHashTuple sh){
+		Integer id = this.stateIds.get(sh);
+		if(id != null){
+			return id;
 		}
-		
-		/**
-		 * Creates and adds a {@link StateActionNode} for the given grounded action
-		 * @param ga the grounded action for which a {@link StateActionNode} should be created.
-		 * @return the created {@link StateActionNode} object.
-		 */
-		public StateActionNode addActionNode(GroundedAction ga){
-			StateActionNode san = new StateActionNode(ga);
-			this.actionNodes.put(ga, san);
-			return san;
+		int nid = this.states.size();
+		if(nid >= this.saStart.length){
+			int ncap = this.saStart.length*2;
+			this.saStart = Arrays.copyOf(this.saStart, ncap);
+			this.terminal = Arrays.copyOf(this.terminal, ncap);
 		}
-		
-		
+		this.saStart[nid] = -1;
+		this.terminal[nid] = false;
+		this.states.add(sh);
+		this.stateActions.add(null);
+		this.stateIds.put(sh, nid);
+		return nid;
 	}
-	
-	
-	/**
-	 * A class storing statistics information for a given state and action pair. Objects of this class should be associated with a {@link StateNode} object.
-	 * @author James MacGlashan
-	 *
-	 */
-	class StateActionNode{
-		
-		/**
-		 * The relevant action
-		 */
-		GroundedAction ga;
-		
-		/**
-		 * The number of times this action has been tried in the associated state
-		 */
-		int nTries;
-		
-		/**
-		 * The sum reward received over all tries fo this action in the associated stte.
-		 */
-		double sumR;
-		
-		/**
-		 * A map to the states to which this action from the associated state transition.
-		 */
-		Map<StateHashTuple, OutcomeState> outcomes;
-		
-		
-		/**
-		 * Initializes.
-		 * @param ga the action for which this object will record transition statistics
-		 */
-		public StateActionNode(GroundedAction ga){
-			this.ga = ga;
-			this.sumR = 0.;
-			this.nTries = 0;
-			
-			this.outcomes = new HashMap<StateHashTuple, TabularModel.OutcomeState>();
-		}
-		
-		
-		/**
-		 * Initializes
-		 * @param ga the action for which this object will record transition statistics
-		 * @param r the reward received for one observaiton
-		 * @param sprime the outcome recieved for one observation
-		 */
-		public StateActionNode(GroundedAction ga, double r, StateHashTuple sprime){
-			this.ga = ga;
-			this.sumR = r;
-			this.nTries = 1;
-			
-			this.outcomes = new HashMap<StateHashTuple, TabularModel.OutcomeState>();
-			this.outcomes.put(sprime, new OutcomeState(sprime));
+
+
+	/**
+	 * Records an observation of the outcome state with the given id for the given state-action pair.
+	 * @param sa the state-action index
+	 * @param spid the outcome state id
+	 */
+	protected void addOutcome(int sa, int spid){
+		int [] ids = this.outcomeIds[sa];
+		int n = this.numOutcomes[sa];
+		if(ids == null){
+			ids = new int[INITIALOUTCOMECAPACITY];
+			this.outcomeIds[sa] = ids;
+			this.outcomeCounts[sa] = new int[INITIALOUTCOMECAPACITY];
 		}
-		
-		/**
-		 * Updates with a new transition observation
-		 * @param r the reward received
-		 * @param sprime the outcome state
-		 */
-		public void update(double r, StateHashTuple sprime){
-			this.nTries++;
-			this.sumR += r;
-			OutcomeState stored = this.outcomes.get(sprime);
-			if(stored != null){
-				stored.nTimes++;
+		for(int i = 0; i < n; i++){
+			if(ids[i] == spid){
+				this.outcomeCounts[sa][i]++;
+				return;
 			}
-			else{
-				this.outcomes.put(sprime, new OutcomeState(sprime));
-			}
-		}
-		
-	}
-	
-	
-	/**
-	 * A class for storing how many times an outcome state is observed
-	 * @author James MacGlashan
-	 *
-	 */
-	class OutcomeState{
-		
-		/**
-		 * The hased outcome state observed
-		 */
-		StateHashTuple osh;
-		
-		/**
-		 * The number of times it has been observed
-		 */
-		int nTimes;
-		
-		
-		/**
-		 * Initializes for the given outcome state with an observation count of 1
-		 * @param osh the observed hased outcome state
-		 */
-		public OutcomeState(StateHashTuple osh){
-			this.osh = osh;
-			nTimes = 1;
 		}
-		
-		@Override
-		public int hashCode(){
-			return osh.hashCode();
+		if(n == ids.length){
+			this.outcomeIds[sa] = Arrays.copyOf(ids, n*2);
+			this.outcomeCounts[sa] = Arrays.copyOf(this.outcomeCounts[sa], n*2);
 		}
-		
-		@Override
-		public boolean equals(Object o){
-			if(!(o instanceof OutcomeState)){
-				return false;
-			}
-			
-			OutcomeState oos = (OutcomeState)o;
-			return this.osh.equals(oos.osh);
+		this.outcomeIds[sa][n] = spid;
+		this.outcomeCounts[sa][n] = 1;
+		this.numOutcomes[sa] = n+1;
+		this.totalOutcomes++;
+	}
+
+
+	/**
+	 * Ensures that the state-action arrays can hold at least the given number of state-action pairs.
+	 * @param capacity the required capacity
+	 */
+	protected void ensureSACapacity(int capacity){
+		if(capacity <= this.nTries.length){
+			return;
 		}
-		
-		
+		int ncap = Math.max(capacity, this.nTries.length*2);
+		this.nTries = Arrays.copyOf(this.nTries, ncap);
+		this.sumR = Arrays.copyOf(this.sumR, ncap);
+		this.outcomeIds = Arrays.copyOf(this.outcomeIds, ncap);
+		this.outcomeCounts = Arrays.copyOf(this.outcomeCounts, ncap);
+		this.numOutcomes = Arrays.copyOf(this.numOutcomes, ncap);
 	}
 
 
@@ -10,7 +10,7 @@ import burlap.behavior.singleagent.learning.modellearning.Model;
 import burlap.behavior.singleagent.learning.modellearning.ModelPlanner;
 import burlap.behavior.singleagent.learning.modellearning.ModelPlanner.ModelPlannerGenerator;
 import burlap.behavior.singleagent.learning.modellearning.ModeledDomainGenerator;
-import burlap.behavior.singleagent.learning.modellearning.modelplanners.VIModelPlanner;
+import burlap.behavior.singleagent.learning.modellearning.modelplanners.IncrementalVIModelPlanner;
 import burlap.behavior.singleagent.learning.modellearning.models.TabularModel;
 import burlap.behavior.singleagent.planning.OOMDPPlanner;
 import burlap.behavior.singleagent.shaping.potential.PotentialFunction;
@@ -77,7 +77,7 @@ public class PotentialShapedRMax extends OOMDPPlanner implements LearningAgent{
 	
 	
 	/**
-	 * Initializes for a tabular model, VI planner, and standard RMax paradigm
+	 * Initializes for a tabular model, incremental VI planner, and standard RMax paradigm
 	 * @param domain the real world domain
 	 * @param rf the real world reward function
 	 * @param tf the real world terminal function
@@ -86,7 +86,7 @@ public class PotentialShapedRMax extends OOMDPPlanner implements LearningAgent{
 	 * @param maxReward the maximum possible reward
 	 * @param nConfident the number of observations requird for the model to be confident in a transtion
 	 * @param maxVIDelta the maximum change in value function for VI to terminate
-	 * @param maxVIPasses the maximum number of VI iterations per replan.
+	 * @param maxVIPasses the maximum number of Bellman backups per replan, as a multiple of the number of known states.
 	 */
 	public PotentialShapedRMax(Domain domain, RewardFunction rf, TerminalFunction tf, double gamma, StateHashFactory hashingFactory, double maxReward, int nConfident,
 			double maxVIDelta, int maxVIPasses){
@@ -100,13 +100,13 @@ public class PotentialShapedRMax extends OOMDPPlanner implements LearningAgent{
 		this.modeledTerminalFunction = new PotentialShapedRMaxTerminal(this.model.getModelTF());
 		this.modeledRewardFunction = new PotentialShapedRMaxRF(this.model.getModelRF(), new RMaxPotential(maxReward, gamma));
 		
-		this.modelPlanner = new VIModelPlanner(modeledDomain, modeledRewardFunction, modeledTerminalFunction, gamma, hashingFactory, maxVIDelta, maxVIPasses);
+		this.modelPlanner = new IncrementalVIModelPlanner(modeledDomain, modeledRewardFunction, modeledTerminalFunction, gamma, hashingFactory, maxVIDelta, maxVIPasses);
 		
 	}
 	
 	
 	/**
-	 * Initializes for a tabular model, VI planner, and potential shaped function.
+	 * Initializes for a tabular model, incremental VI planner, and potential shaped function.
 	 * @param domain the real world domain
 	 * @param rf the real world reward function
 	 * @param tf the real world terminal function
@@ -115,7 +115,7 @@ public class PotentialShapedRMax extends OOMDPPlanner implements LearningAgent{
 	 * @param potential the admissible potential function
 	 * @param nConfident the number of observations requird for the model to be confident in a transtion
 	 * @param maxVIDelta the maximum change in value function for VI to terminate
-	 * @param maxVIPasses the maximum number of VI iterations per replan.
+	 * @param maxVIPasses the maximum number of Bellman backups per replan, as a multiple of the number of known states.
 	 */
 	public PotentialShapedRMax(Domain domain, RewardFunction rf, TerminalFunction tf, double gamma, StateHashFactory hashingFactory, PotentialFunction potential, int nConfident,
 			double maxVIDelta, int maxVIPasses){
@@ -129,7 +129,7 @@ public class PotentialShapedRMax extends OOMDPPlanner implements LearningAgent{
 		this.modeledTerminalFunction = new PotentialShapedRMaxTerminal(this.model.getModelTF());
 		this.modeledRewardFunction = new PotentialShapedRMaxRF(this.model.getModelRF(), potential);
 		
-		this.modelPlanner = new VIModelPlanner(modeledDomain, modeledRewardFunction, modeledTerminalFunction, gamma, hashingFactory, maxVIDelta, maxVIPasses);
+		this.modelPlanner = new IncrementalVIModelPlanner(modeledDomain, modeledRewardFunction, modeledTerminalFunction, gamma, hashingFactory, maxVIDelta, maxVIPasses);
 		
 	}
 	
@@ -0,0 +1,472 @@
+package burlap.behavior.singleagent.learning.tdmethods;
+
+import java.util.Arrays;
+
+
+/**
+ * A sparse set of eligibility traces for the duration of a learning episode that is shared by the eligibility trace learning algorithms.
+ * Traces are stored in dense primitive parallel arrays (a trace's position in those arrays is its slot) and indexed by an open addressing hash table,
+ * so that updating every active trace is a pass over contiguous arrays and looking up the trace of a given key does not create any objects. Traces
+ * may be keyed either by an int id (for instance, a function approximation weight id) or by an object (for instance, the {@link burlap.behavior.singleagent.QValue}
+ * of a state-action pair, whose equals and hashCode methods are used), but a single set should only use one kind of key.
+ * <p/>
+ * After each update, traces can be decayed with {@link #decayAndPrune(double)}, which removes any trace whose eligibility magnitude falls below a
+ * minimum eligibility threshold. Since a trace that is not revisited decays by a factor of gamma*lambda each step, the number of active traces is bounded by
+ * about log(threshold)/log(gamma*lambda) steps' worth of visited keys regardless of the episode length, rather than growing with the episode.
+ * <p/>
+ * Each trace also stores an arbitrary payload object and an initial value (for instance, the Q-value or weight value when the trace started), so that learning
+ * algorithms can track how much their parameters have changed.
+ * <p/>
+ * The set counts the number of active traces, the largest number of traces that have been active at once, and the total number of traces pruned.
+ * @author James MacGlashan
+ *
+ */
+public class EligibilityTraceSet {
+
+	/**
+	 * The kinds of eligibility trace updates supported when a key is visited.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static enum TraceType{
+		/**
+		 * The visited trace's eligibility is incremented by the gradient
+		 */
+		ACCUMULATING,
+
+		/**
+		 * The visited trace's eligibility is set to the gradient
+		 */
+		REPLACING,
+
+		/**
+		 * The visited trace's eligibility e is set to (1 - learningRate*e)*gradient + e, the dutch trace of true online TD(lambda) for tabular features.
+		 */
+		DUTCH
+	}
+
+
+	/**
+	 * The default minimum eligibility threshold
+	 */
+	public static final double			DEFAULTMINELIGIBILITY = 1e-4;
+
+
+	/**
+	 * The int id key of each slot
+	 */
+	protected int []					ids;
+
+	/**
+	 * The object key of each slot; null for int keyed traces
+	 */
+	protected Object []					keys;
+
+	/**
+	 * The payload of each slot
+	 */
+	protected Object []					payloads;
+
+	/**
+	 * The eligibility of each slot
+	 */
+	protected double []					eligibility;
+
+	/**
+	 * The initial value of each slot
+	 */
+	protected double []					initialValues;
+
+	/**
+	 * The number of active traces
+	 */
+	protected int						size = 0;
+
+	/**
+	 * The open addressing hash table; each entry is a slot index plus one, or 0 if the entry is empty
+	 */
+	protected int []					table;
+
+	/**
+	 * The minimum magnitude of eligibility for a trace to remain active
+	 */
+	protected double					minEligibility;
+
+	/**
+	 * The largest number of traces that have been active at once
+	 */
+	protected int						maxActive = 0;
+
+	/**
+	 * The total number of traces that have been pruned
+	 */
+	protected long						numPruned = 0;
+
+
+	/**
+	 * Initializes with the default minimum eligibility threshold.
+	 */
+	public EligibilityTraceSet(){
+		this(DEFAULTMINELIGIBILITY);
+	}
+
+
+	/**
+	 * Initializes.
+	 * @param minEligibility the minimum magnitude of eligibility for a trace to remain active after decaying.
+	 */
+	public EligibilityTraceSet(double minEligibility){
+		this.minEligibility = minEligibility;
+		this.ids = new int[16];
+		this.keys = new Object[16];
+		this.payloads = new Object[16];
+		this.eligibility = new double[16];
+		this.initialValues = new double[16];
+		this.table = new int[32];
+	}
+
+
+	/**
+	 * Returns the minimum magnitude of eligibility for a trace to remain active after decaying.
+	 * @return the minimum magnitude of eligibility for a trace to remain active after decaying.
+	 */
+	public double getMinEligibility(){
+		return this.minEligibility;
+	}
+
+
+	/**
+	 * Sets the minimum magnitude of eligibility for a trace to remain active after decaying.
+	 * @param minEligibility the minimum magnitude of eligibility for a trace to remain active after decaying.
+	 */
+	public void setMinEligibility(double minEligibility){
+		this.minEligibility = minEligibility;
+	}
+
+
+	/**
+	 * Returns the number of active traces.
+	 * @return the number of active traces.
+	 */
+	public int size(){
+		return this.size;
+	}
+
+
+	/**
+	 * Returns the largest number of traces that have been active at once since this set was created or its counters were reset.
+	 * @return the largest number of traces that have been active at once.
+	 */
+	public int getMaxActive(){
+		return this.maxActive;
+	}
+
+
+	/**
+	 * Returns the total number of traces that have been pruned since this set was created or its counters were reset.
+	 * @return the total number of traces that have been pruned.
+	 */
+	public long getNumPruned(){
+		return this.numPruned;
+	}
+
+
+	/**
+	 * Resets the maximum active trace and pruned trace counters.
+	 */
+	public void resetCounters(){
+		this.maxActive = this.size;
+		this.numPruned = 0;
+	}
+
+
+	/**
+	 * Removes all traces.
+	 */
+	public void clear(){
+		Arrays.fill(this.keys, 0, this.size, null);
+		Arrays.fill(this.payloads, 0, this.size, null);
+		Arrays.fill(this.table, 0);
+		this.size = 0;
+	}
+
+
+	/**
+	 * Returns the slot of the trace with the given int id, or -1 if there is no such trace.
+	 * @param id the int id key
+	 * @return the slot of the trace, or -1 if there is no such trace.
+	 */
+	public int slot(int id){
+		int mask = this.table.length-1;
+		int i = mix(id) & mask;
+		while(true){
+			int e = this.table[i];
+			if(e == 0){
+				return -1;
+			}
+			if(this.keys[e-1] == null && this.ids[e-1] == id){
+				return e-1;
+			}
+			i = (i+1) & mask;
+		}
+	}
+
+
+	/**
+	 * Returns the slot of the trace with the given object key, or -1 if there is no such trace.
+	 * @param key the object key
+	 * @return the slot of the trace, or -1 if there is no such trace.
+	 */
+	public int slot(Object key){
+		int mask = this.table.length-1;
+		int i = mix(key.hashCode()) & mask;
+		while(true){
+			int e = this.table[i];
+			if(e == 0){
+				return -1;
+			}
+			Object k = this.keys[e-1];
+			if(k != null && (k == key || k.equals(key))){
+				return e-1;
+			}
+			i = (i+1) & mask;
+		}
+	}
+
+
+	/**
+	 * Adds a trace with zero eligibility for the given int id, which must not already have a trace.
+	 * @param id the int id key
+	 * @param payload the payload of the trace
+	 * @param initialValue the initial value of the trace
+	 * @return the slot of the new trace
+	 */
+	public int add(int id, Object payload, double initialValue){
+		int s = this.newSlot(payload, initialValue);
+		this.ids[s] = id;
+		this.keys[s] = null;
+		this.insertIndex(s, mix(id));
+		return s;
+	}
+
+
+	/**
+	 * Adds a trace with zero eligibility for the given object key, which must not already have a trace.
+	 * @param key the object key
+	 * @param payload the payload of the trace
+	 * @param initialValue the initial value of the trace
+	 * @return the slot of the new trace
+	 */
+	public int add(Object key, Object payload, double initialValue){
+		int s = this.newSlot(payload, initialValue);
+		this.ids[s] = 0;
+		this.keys[s] = key;
+		this.insertIndex(s, mix(key.hashCode()));
+		return s;
+	}
+
+
+	/**
+	 * Updates the eligibility of the trace in the given slot for a visit with the given gradient (1 for tabular methods).
+	 * @param slot the slot of the trace
+	 * @param gradient the gradient of the visited parameter
+	 * @param type the kind of trace update
+	 * @param learningRate the learning rate, which is only used by dutch traces
+	 */
+	public void visit(int slot, double gradient, TraceType type, double learningRate){
+		double e = this.eligibility[slot];
+		switch(type){
+			case ACCUMULATING:
+				e += gradient;
+				break;
+			case REPLACING:
+				e = gradient;
+				break;
+			case DUTCH:
+				e += (1. - learningRate*e)*gradient;
+				break;
+		}
+		this.eligibility[slot] = e;
+	}
+
+
+	/**
+	 * Returns the int id key of the trace in the given slot.
+	 * @param slot the slot of the trace
+	 * @return the int id key of the trace
+	 */
+	public int id(int slot){
+		return this.ids[slot];
+	}
+
+
+	/**
+	 * Returns the object key of the trace in the given slot, or null if it is int keyed.
+	 * @param slot the slot of the trace
+	 * @return the object key of the trace
+	 */
+	public Object key(int slot){
+		return this.keys[slot];
+	}
+
+
+	/**
+	 * Returns the payload of the trace in the given slot.
+	 * @param slot the slot of the trace
+	 * @return the payload of the trace
+	 */
+	public Object payload(int slot){
+		return this.payloads[slot];
+	}
+
+
+	/**
+	 * Returns the eligibility of the trace in the given slot.
+	 * @param slot the slot of the trace
+	 * @return the eligibility of the trace
+	 */
+	public double eligibility(int slot){
+		return this.eligibility[slot];
+	}
+
+
+	/**
+	 * Sets the eligibility of the trace in the given slot.
+	 * @param slot the slot of the trace
+	 * @param e the eligibility of the trace
+	 */
+	public void setEligibility(int slot, double e){
+		this.eligibility[slot] = e;
+	}
+
+
+	/**
+	 * Returns the initial value of the trace in the given slot.
+	 * @param slot the slot of the trace
+	 * @return the initial value of the trace
+	 */
+	public double initialValue(int slot){
+		return this.initialValues[slot];
+	}
+
+
+	/**
+	 * Multiplies the eligibility of every trace by the given factor and removes traces whose eligibility magnitude falls below the minimum eligibility.
+	 * Removing traces changes the slots of the remaining traces.
+	 * @param factor the decay factor; typically gamma*lambda
+	 */
+	public void decayAndPrune(double factor){
+		int n = 0;
+		for(int i = 0; i < this.size; i++){
+			double e = this.eligibility[i] * factor;
+			if(Math.abs(e) < this.minEligibility || e == 0.){
+				continue;
+			}
+			if(n != i){
+				this.ids[n] = this.ids[i];
+				this.keys[n] = this.keys[i];
+				this.payloads[n] = this.payloads[i];
+				this.initialValues[n] = this.initialValues[i];
+			}
+			this.eligibility[n] = e;
+			n++;
+		}
+		if(n != this.size){
+			this.numPruned += this.size - n;
+			Arrays.fill(this.keys, n, this.size, null);
+			Arrays.fill(this.payloads, n, this.size, null);
+			this.size = n;
+			this.rebuildIndex();
+		}
+	}
+
+
+	/**
+	 * Removes the trace in the given slot. The last trace is moved into the removed slot.
+	 * @param slot the slot of the trace to remove
+	 */
+	public void remove(int slot){
+		int last = this.size-1;
+		if(slot != last){
+			this.ids[slot] = this.ids[last];
+			this.keys[slot] = this.keys[last];
+			this.payloads[slot] = this.payloads[last];
+			this.eligibility[slot] = this.eligibility[last];
+			this.initialValues[slot] = this.initialValues[last];
+		}
+		this.keys[last] = null;
+		this.payloads[last] = null;
+		this.size = last;
+		this.rebuildIndex();
+	}
+
+
+	/**
+	 * Claims a new slot, growing the arrays and hash table if necessary.
+	 * @param payload the payload of the trace
+	 * @param initialValue the initial value of the trace
+	 * @return the new slot
+	 */
+	protected int newSlot(Object payload, double initialValue){
+		if(this.size == this.eligibility.length){
+			int ncap = this.size*2;
+			this.ids = Arrays.copyOf(this.ids, ncap);
+			this.keys = Arrays.copyOf(this.keys, ncap);
+			this.payloads = Arrays.copyOf(this.payloads, ncap);
+			this.eligibility = Arrays.copyOf(this.eligibility, ncap);
+			this.initialValues = Arrays.copyOf(this.initialValues, ncap);
+		}
+		if((this.size+1)*2 > this.table.length){
+			this.table = new int[this.table.length*2];
+			this.rebuildIndex();
+		}
+		int s = this.size;
+		this.payloads[s] = payload;
+		this.eligibility[s] = 0.;
+		this.initialValues[s] = initialValue;
+		this.size++;
+		if(this.size > this.maxActive){
+			this.maxActive = this.size;
+		}
+		return s;
+	}
+
+
+	/**
+	 * Inserts the given slot into the hash table.
+	 * @param slot the slot
+	 * @param hash the mixed hash of the slot's key
+	 */
+	protected void insertIndex(int slot, int hash){
+		int mask = this.table.length-1;
+		int i = hash & mask;
+		while(this.table[i] != 0){
+			i = (i+1) & mask;
+		}
+		this.table[i] = slot+1;
+	}
+
+
+	/**
+	 * Rebuilds the hash table from the active slots.
+	 */
+	protected void rebuildIndex(){
+		Arrays.fill(this.table, 0);
+		for(int s = 0; s < this.size; s++){
+			Object k = this.keys[s];
+			this.insertIndex(s, k == null ? mix(this.ids[s]) : mix(k.hashCode()));
+		}
+	}
+
+
+	/**
+	 * Spreads the bits of a hash code.
+	 * @param h the hash code
+	 * @return the spread hash code
+	 */
+	protected static int mix(int h){
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
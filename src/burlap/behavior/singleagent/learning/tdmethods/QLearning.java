@@ -456,6 +456,7 @@ public class QLearning extends OOMDPPlanner implements QComputablePlanner, Learn
 		this.toggleShouldAnnotateOptionDecomposition(shouldAnnotateOptions);
 		
 		EpisodeAnalysis ea = new EpisodeAnalysis(initialState);
+		long episodeStart = EPISODE_TIME.start();
 		
 		StateHashTuple curState = this.stateHash(initialState);
 		eStepCounter = 0;
@@ -464,7 +465,9 @@ public class QLearning extends OOMDPPlanner implements QComputablePlanner, Learn
 		
 		while(!tf.isTerminal(curState.s) && eStepCounter < maxSteps){
 			
+			long selectionStart = ACTION_SELECTION_TIME.start();
 			GroundedAction action = (GroundedAction)learningPolicy.getAction(curState.s);
+			ACTION_SELECTION_TIME.stop(selectionStart);
 			QValue curQ = this.getQ(curState, action);
 			
 			StateHashTuple nextState = this.stateHash(action.executeIn(curState.s));
@@ -515,6 +518,10 @@ public class QLearning extends OOMDPPlanner implements QComputablePlanner, Learn
 			
 		}
 		
+		EPISODE_TIME.stop(episodeStart);
+		EPISODES.increment();
+		EPISODE_STEPS.add(eStepCounter);
+		
 		if(episodeHistory.size() >= numEpisodesToStore){
 			episodeHistory.poll();
 		}
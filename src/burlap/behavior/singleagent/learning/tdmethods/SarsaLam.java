@@ -1,7 +1,5 @@
 package burlap.behavior.singleagent.learning.tdmethods;
 
-import java.util.LinkedList;
-
 import burlap.behavior.singleagent.EpisodeAnalysis;
 import burlap.behavior.singleagent.Policy;
 import burlap.behavior.singleagent.QValue;
@@ -36,6 +34,18 @@ public class SarsaLam extends QLearning {
 	protected double				lambda;
 	
 	
+	/**
+	 * The eligibility traces of the current episode
+	 */
+	protected EligibilityTraceSet	traces = new EligibilityTraceSet();
+	
+	
+	/**
+	 * The kind of eligibility trace update performed when a state-action pair is visited. The default is replacing traces.
+	 */
+	protected EligibilityTraceSet.TraceType	traceType = EligibilityTraceSet.TraceType.REPLACING;
+	
+	
 	/**
 	 * Initializes SARSA(\lambda) with 0.1 epsilon greedy policy, the same Q-value initialization everywhere, and places no limit on the number of steps the 
 	 * agent can take in an episode. By default the agent will only save the last learning episode and a call to the {@link #planFromState(State)} method
@@ -138,19 +148,52 @@ public class SarsaLam extends QLearning {
 		this.lambda = lambda;
 	}
 	
+	
+	/**
+	 * Sets the kind of eligibility trace update performed when a state-action pair is visited. With replacing traces (the default), visiting
+	 * a state-action pair also clears the traces of the other actions in the same state.
+	 * @param traceType the kind of eligibility trace update
+	 */
+	public void setTraceType(EligibilityTraceSet.TraceType traceType){
+		this.traceType = traceType;
+	}
+	
+	
+	/**
+	 * Sets the minimum eligibility a trace must have to remain active. Traces whose eligibility decays below it are dropped, which
+	 * bounds the number of traces updated on each step. The default is {@link EligibilityTraceSet#DEFAULTMINELIGIBILITY}.
+	 * @param minEligibility the minimum eligibility a trace must have to remain active.
+	 */
+	public void setMinEligibility(double minEligibility){
+		this.traces.setMinEligibility(minEligibility);
+	}
+	
+	
+	/**
+	 * Returns the eligibility traces, which can be queried for the number of active traces.
+	 * @return the eligibility traces.
+	 */
+	public EligibilityTraceSet getTraces(){
+		return this.traces;
+	}
+	
 		
 	
 	@Override
 	public EpisodeAnalysis runLearningEpisodeFrom(State initialState,int maxSteps) {
 		
 		EpisodeAnalysis ea = new EpisodeAnalysis(initialState);
+		long episodeStart = EPISODE_TIME.start();
 		maxQChangeInLastEpisode = 0.;
 		
 		StateHashTuple curState = this.stateHash(initialState);
 		eStepCounter = 0;
-		LinkedList<EligibilityTrace> traces = new LinkedList<SarsaLam.EligibilityTrace>();
+		EligibilityTraceSet traces = this.traces;
+		traces.clear();
 		
+		long selectionStart = ACTION_SELECTION_TIME.start();
 		GroundedAction action = (GroundedAction)learningPolicy.getAction(curState.s);
+		ACTION_SELECTION_TIME.stop(selectionStart);
 		QValue curQ = this.getQ(curState, action);
 		
 		
@@ -158,7 +201,9 @@ public class SarsaLam extends QLearning {
 		while(!tf.isTerminal(curState.s) && eStepCounter < maxSteps){
 			
 			StateHashTuple nextState = this.stateHash(action.executeIn(curState.s));
+			selectionStart = ACTION_SELECTION_TIME.start();
 			GroundedAction nextAction = (GroundedAction)learningPolicy.getAction(nextState.s);
+			ACTION_SELECTION_TIME.stop(selectionStart);
 			QValue nextQ = this.getQ(nextState, nextAction);
 			double nextQV = nextQ.q;
 			
@@ -194,46 +239,38 @@ public class SarsaLam extends QLearning {
 			//delta
 			double delta = r + (discount * nextQV) - curQ.q;
 			
-			//update all
-			boolean foundCurrentQTrace = false;
-			for(EligibilityTrace et : traces){
-				
-				if(et.sh.equals(curState)){
-					if(et.q.a.equals(action)){
-						foundCurrentQTrace = true;
-						et.eligibility = 1.; //replacing traces
-					}
-					else{
-						et.eligibility = 0.; //replacing traces
+			//visit the current trace
+			int curSlot = traces.slot(curQ);
+			if(this.traceType == EligibilityTraceSet.TraceType.REPLACING){
+				//replacing traces also clear the traces of the other actions in the current state
+				for(QValue oq : this.getStateNode(curState).qEntry){
+					int oslot = oq == curQ ? -1 : traces.slot(oq);
+					if(oslot != -1){
+						traces.setEligibility(oslot, 0.);
 					}
 				}
-				
-				double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, et.sh.s, et.q.a);
-				
-				et.q.q = et.q.q + (learningRate * et.eligibility * delta);
-				et.eligibility = et.eligibility * lambda * discount;
-				
-				double deltaQ = Math.abs(et.initialQ - et.q.q);
-				if(deltaQ > maxQChangeInLastEpisode){
-					maxQChangeInLastEpisode = deltaQ;
-				}
-				
 			}
+			if(curSlot == -1){
+				curSlot = traces.add(curQ, curState, curQ.q);
+			}
+			traces.visit(curSlot, 1., this.traceType, this.learningRate.peekAtLearningRate(curState.s, curQ.a));
 			
-			if(!foundCurrentQTrace){
-				//then update and add it
-				double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, curQ.s, curQ.a);
-				curQ.q = curQ.q + (learningRate * delta);
-				EligibilityTrace et = new EligibilityTrace(curState, curQ, lambda*discount);
+			//update all
+			for(int i = 0; i < traces.size(); i++){
 				
-				traces.add(et);
-
-				double deltaQ = Math.abs(et.initialQ - et.q.q);
+				QValue tq = (QValue)traces.key(i);
+				StateHashTuple tsh = (StateHashTuple)traces.payload(i);
+				
+				double learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, tsh.s, tq.a);
+				tq.q = tq.q + (learningRate * traces.eligibility(i) * delta);
+				
+				double deltaQ = Math.abs(traces.initialValue(i) - tq.q);
 				if(deltaQ > maxQChangeInLastEpisode){
 					maxQChangeInLastEpisode = deltaQ;
 				}
 				
 			}
+			traces.decayAndPrune(lambda * discount);
 			
 			
 			//move on
@@ -245,7 +282,9 @@ public class SarsaLam extends QLearning {
 			
 		}
 		
-		
+		EPISODE_TIME.stop(episodeStart);
+		EPISODES.increment();
+		EPISODE_STEPS.add(eStepCounter);
 		
 		if(episodeHistory.size() >= numEpisodesToStore){
 			episodeHistory.poll();
@@ -262,8 +301,10 @@ public class SarsaLam extends QLearning {
 	/**
 	 * A data structure for maintaining eligibility trace values
 	 * @author James MacGlashan
+	 * @deprecated SarsaLam now stores its traces in an {@link EligibilityTraceSet}; this class is no longer used.
 	 *
 	 */
+	@Deprecated
 	public static class EligibilityTrace{
 		
 		/**
@@ -1,12 +1,8 @@
 package burlap.behavior.singleagent.learning.tdmethods.vfa;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import burlap.behavior.learningrate.ConstantLR;
 import burlap.behavior.learningrate.LearningRate;
@@ -14,6 +10,7 @@ import burlap.behavior.singleagent.EpisodeAnalysis;
 import burlap.behavior.singleagent.Policy;
 import burlap.behavior.singleagent.QValue;
 import burlap.behavior.singleagent.learning.LearningAgent;
+import burlap.behavior.singleagent.learning.tdmethods.EligibilityTraceSet;
 import burlap.behavior.singleagent.options.Option;
 import burlap.behavior.singleagent.planning.OOMDPPlanner;
 import burlap.behavior.singleagent.planning.QComputablePlanner;
@@ -119,9 +116,14 @@ public class GradientDescentSarsaLam extends OOMDPPlanner implements QComputable
 	
 	
 	/**
-	 * Whether to use accumulating or replacing eligibility traces.
+	 * The kind of eligibility trace update performed for the weights of a visited state-action pair. The default is accumulating traces.
 	 */
-	protected boolean												useReplacingTraces = false;
+	protected EligibilityTraceSet.TraceType							traceType = EligibilityTraceSet.TraceType.ACCUMULATING;
+	
+	/**
+	 * The eligibility traces of the current episode
+	 */
+	protected EligibilityTraceSet									traces = new EligibilityTraceSet();
 	
 	/**
 	 * Whether options should be decomposed into actions in the returned {@link burlap.behavior.singleagent.EpisodeAnalysis} objects.
@@ -306,7 +308,36 @@ public class GradientDescentSarsaLam extends OOMDPPlanner implements QComputable
 	 * @param toggle
 	 */
 	public void setUseReplaceTraces(boolean toggle){
-		this.useReplacingTraces = toggle;
+		this.traceType = toggle ? EligibilityTraceSet.TraceType.REPLACING : EligibilityTraceSet.TraceType.ACCUMULATING;
+	}
+	
+	
+	/**
+	 * Sets the kind of eligibility trace update performed for the weights of a visited state-action pair. With replacing traces, visiting
+	 * a state-action pair also clears the traces of the weights of the other actions in the same state. Dutch traces are exact for binary features.
+	 * @param traceType the kind of eligibility trace update
+	 */
+	public void setTraceType(EligibilityTraceSet.TraceType traceType){
+		this.traceType = traceType;
+	}
+	
+	
+	/**
+	 * Sets the minimum eligibility a trace must have to remain active. Traces whose eligibility magnitude decays below it are dropped, which
+	 * bounds the number of traces updated on each step. The default is 0.01.
+	 * @param minEligibility the minimum eligibility a trace must have to remain active.
+	 */
+	public void setMinEligibility(double minEligibility){
+		this.minEligibityForUpdate = minEligibility;
+	}
+	
+	
+	/**
+	 * Returns the eligibility traces of the current or last episode, which can be queried for the number of active traces.
+	 * @return the eligibility traces of the current or last episode.
+	 */
+	public EligibilityTraceSet getTraces(){
+		return this.traces;
 	}
 	
 	
@@ -359,7 +390,9 @@ public class GradientDescentSarsaLam extends OOMDPPlanner implements QComputable
 		
 		State curState = initialState;
 		eStepCounter = 0;
-		Map <Integer, EligibilityTraceVector> traces = new HashMap<Integer, GradientDescentSarsaLam.EligibilityTraceVector>();
+		EligibilityTraceSet traces = this.traces;
+		traces.clear();
+		traces.setMinEligibility(this.minEligibityForUpdate);
 		
 		GroundedAction action = (GroundedAction)this.learningPolicy.getAction(curState);
 		List<ActionApproximationResult> allCurApproxResults = this.getAllActionApproximations(curState);
@@ -407,19 +440,20 @@ public class GradientDescentSarsaLam extends OOMDPPlanner implements QComputable
 			double delta = r + (discount * nextQV) - curApprox.approximationResult.predictedValue;
 			
 			
-			if(useReplacingTraces){
-				//then first clear traces of unselected action and reset the trace for the selected one
+			double learningRate = 0.;
+			if(!this.useFeatureWiseLearningRate){
+				learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, curState, action);
+			}
+			
+			
+			if(this.traceType == EligibilityTraceSet.TraceType.REPLACING){
+				//then first clear traces of unselected actions
 				for(ActionApproximationResult aar : allCurApproxResults){
-					if(!aar.ga.equals(action)){ //clear unselected action trace
+					if(!aar.ga.equals(action)){
 						for(FunctionWeight fw : aar.approximationResult.functionWeights){
-							traces.remove(fw.weightId());
-						}
-					}
-					else{ //reset trace of selected action
-						for(FunctionWeight fw : aar.approximationResult.functionWeights){
-							EligibilityTraceVector storedTrace = traces.get(fw.weightId());
-							if(storedTrace != null){
-								storedTrace.eligibilityValue = 0.;
+							int slot = traces.slot(fw.weightId());
+							if(slot != -1){
+								traces.remove(slot);
 							}
 						}
 					}
@@ -427,71 +461,36 @@ public class GradientDescentSarsaLam extends OOMDPPlanner implements QComputable
 			}
 			
 			
-			double learningRate = 0.;
-			if(!this.useFeatureWiseLearningRate){
-				learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, curState, action);
+			//visit the traces of the selected action's weights
+			for(FunctionWeight fw : curApprox.approximationResult.functionWeights){
+				int weightId = fw.weightId();
+				int slot = traces.slot(weightId);
+				if(slot == -1){
+					slot = traces.add(weightId, fw, fw.weightValue());
+				}
+				double visitRate = this.useFeatureWiseLearningRate ? this.learningRate.peekAtLearningRate(weightId) : learningRate;
+				traces.visit(slot, gradient.getPartialDerivative(weightId), this.traceType, visitRate);
 			}
 			
 			
 			//update all traces
-			Set <Integer> deletedSet = new HashSet<Integer>();
-			for(EligibilityTraceVector et : traces.values()){
+			for(int i = 0; i < traces.size(); i++){
 				
-				int weightId = et.weight.weightId();
+				FunctionWeight fw = (FunctionWeight)traces.payload(i);
 				if(this.useFeatureWiseLearningRate){
-					learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, et.weight.weightId());
+					learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, traces.id(i));
 				}
 				
+				double newWeight = fw.weightValue() + learningRate*delta*traces.eligibility(i);
+				fw.setWeight(newWeight);
 				
-				et.eligibilityValue += gradient.getPartialDerivative(weightId);
-				double newWeight = et.weight.weightValue() + learningRate*delta*et.eligibilityValue;
-				et.weight.setWeight(newWeight);
-				
-				double deltaW = Math.abs(et.initialWeightValue - newWeight);
+				double deltaW = Math.abs(traces.initialValue(i) - newWeight);
 				if(deltaW > maxWeightChangeInLastEpisode){
 					maxWeightChangeInLastEpisode = deltaW;
 				}
 				
-				et.eligibilityValue *= this.lambda*discount;
-				if(et.eligibilityValue < this.minEligibityForUpdate){
-					deletedSet.add(weightId);
-				}
-				
-			}
-			
-			//add new traces if need be
-			for(FunctionWeight fw : curApprox.approximationResult.functionWeights){
-				
-				int weightId = fw.weightId();
-				if(!traces.containsKey(fw)){
-					
-					//then it's new and we need to add it
-					if(this.useFeatureWiseLearningRate){
-						learningRate = this.learningRate.pollLearningRate(this.totalNumberOfSteps, weightId);
-					}
-					
-					EligibilityTraceVector et = new EligibilityTraceVector(fw, gradient.getPartialDerivative(weightId));
-					double newWeight = fw.weightValue() + learningRate*delta*et.eligibilityValue;
-					fw.setWeight(newWeight);
-					
-					double deltaW = Math.abs(et.initialWeightValue - newWeight);
-					if(deltaW > maxWeightChangeInLastEpisode){
-						maxWeightChangeInLastEpisode = deltaW;
-					}
-					
-					et.eligibilityValue *= this.lambda*discount;
-					if(et.eligibilityValue >= this.minEligibityForUpdate){
-						traces.put(weightId, et);
-					}
-					
-				}
-				
-			}
-			
-			//delete any traces
-			for(Integer t : deletedSet){
-				traces.remove(t);
 			}
+			traces.decayAndPrune(this.lambda*discount);
 			
 			
 			//move on
@@ -623,8 +622,10 @@ public class GradientDescentSarsaLam extends OOMDPPlanner implements QComputable
 	/**
 	 * An object for keeping track of the eligibility traces within an episode for each VFA weight
 	 * @author James MacGlashan
+	 * @deprecated GradientDescentSarsaLam now stores its traces in an {@link EligibilityTraceSet}; this class is no longer used.
 	 *
 	 */
+	@Deprecated
 	public static class EligibilityTraceVector{
 		
 		/**
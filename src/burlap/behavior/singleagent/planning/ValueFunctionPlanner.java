@@ -1,7 +1,9 @@
 package burlap.behavior.singleagent.planning;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,8 +13,10 @@ import burlap.behavior.singleagent.Policy.ActionProb;
 import burlap.behavior.singleagent.QValue;
 import burlap.behavior.singleagent.ValueFunctionInitialization;
 import burlap.behavior.singleagent.options.Option;
+import burlap.behavior.statehashing.InterningStateHashFactory;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
+import burlap.debugtools.MetricsRegistry;
 import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.State;
@@ -32,12 +36,37 @@ import burlap.oomdp.singleagent.RewardFunction;
  * Note that by default ValueFunction planners will cache the transition dynamics so that they do not have to be procedurally generated
  * by the {@link burlap.oomdp.singleagent.Action}. Transition dynamic caching can be disable by calling the {@link #toggleUseCachedTransitionDynamics(boolean)}
  * method. This may be desirable if the transition dynamics are expected to change with time, such as when the model is being learned in model-based RL.
+ * <p/>
+ * The successor states of cached transitions are hashed with an {@link burlap.behavior.statehashing.InterningStateHashFactory}, so that a state
+ * that is the outcome of many state-action pairs is stored once rather than once per pair. Interning can be disabled with
+ * {@link #toggleTransitionStateInterning(boolean)}, and the size of the cache can be inspected with {@link #getTransitionCacheStatistics()}.
+ * <p/>
+ * When metrics are enabled in the {@link burlap.debugtools.MetricsRegistry}, value function planners count their Bellman backups in
+ * the {@link #BELLMAN_BACKUPS} counter and the transitions they generate in the {@link #TRANSITIONS_GENERATED} counter; rollout based planners
+ * also count their rollouts in the {@link #ROLLOUTS} counter.
  * @author James MacGlashan
  *
  */
 public abstract class ValueFunctionPlanner extends OOMDPPlanner implements QComputablePlanner{
 
 	
+	/**
+	 * The counter of the Bellman backups performed by planners
+	 */
+	public static final MetricsRegistry.Counter						BELLMAN_BACKUPS = MetricsRegistry.counter("planning.bellmanBackups");
+	
+	
+	/**
+	 * The counter of the transitions generated from the transition dynamics of actions by value function planners
+	 */
+	public static final MetricsRegistry.Counter						TRANSITIONS_GENERATED = MetricsRegistry.counter("planning.transitionsGenerated");
+	
+	
+	/**
+	 * The counter of the planning rollouts performed by rollout based value function planners, such as RTDP
+	 */
+	public static final MetricsRegistry.Counter						ROLLOUTS = MetricsRegistry.counter("planning.rollouts");
+	
 	
 	/**
 	 * A boolean toggle to indicate whether the transition dynamics should cached in a hashed data structure for quicker access,
@@ -54,6 +83,19 @@ public abstract class ValueFunctionPlanner extends OOMDPPlanner implements QComp
 	protected Map <StateHashTuple, List<ActionTransitions>>			transitionDynamics;
 	
 	
+	/**
+	 * A boolean toggle to indicate whether the successor states of cached transitions should be interned, so that equal successor states
+	 * share one state object. The default is true.
+	 */
+	protected boolean												internTransitionStates = true;
+	
+	
+	/**
+	 * The store that interns the successor states of cached transitions; created when first needed.
+	 */
+	protected InterningStateHashFactory								transitionStateStore;
+	
+	
 	/**
 	 * A map for storing the current value function estimate for each state.
 	 */
@@ -104,6 +146,9 @@ public abstract class ValueFunctionPlanner extends OOMDPPlanner implements QComp
 		this.mapToStateIndex.clear();
 		this.valueFunction.clear();
 		this.transitionDynamics.clear();
+		if(this.transitionStateStore != null){
+			this.transitionStateStore.clear();
+		}
 	}
 	
 	/**
@@ -173,6 +218,64 @@ public abstract class ValueFunctionPlanner extends OOMDPPlanner implements QComp
 	}
 	
 	
+	/**
+	 * Sets whether the successor states of cached transitions are interned, so that each distinct successor state is stored once. Interning
+	 * only affects transitions that are cached after this method is called. The interned states are only the successor states that the cached
+	 * transitions hold, and they are released whenever the cached transitions are discarded.
+	 * @param internTransitionStates true if successor states should be interned; false if each transition should store the state produced by the action.
+	 */
+	public void toggleTransitionStateInterning(boolean internTransitionStates){
+		this.internTransitionStates = internTransitionStates;
+	}
+	
+	
+	/**
+	 * Returns statistics on the size of the cached transition dynamics.
+	 * @return statistics on the size of the cached transition dynamics.
+	 */
+	public TransitionCacheStatistics getTransitionCacheStatistics(){
+		
+		TransitionCacheStatistics stats = new TransitionCacheStatistics();
+		Set<State> successors = Collections.newSetFromMap(new IdentityHashMap<State, Boolean>());
+		for(List<ActionTransitions> ats : this.transitionDynamics.values()){
+			stats.numSourceStates++;
+			for(ActionTransitions at : ats){
+				stats.numActionTransitions++;
+				for(HashedTransitionProbability tp : at.transitions){
+					stats.numTransitions++;
+					if(successors.add(tp.sh.s)){
+						stats.numObjectInstances += tp.sh.s.numTotalObjets();
+					}
+				}
+			}
+		}
+		stats.numSuccessorStates = successors.size();
+		if(this.transitionStateStore != null){
+			stats.numInternedStates = this.transitionStateStore.size();
+			stats.numInternedLookups = this.transitionStateStore.getNumLookups();
+			stats.numInternedHits = this.transitionStateStore.getNumHits();
+		}
+		
+		return stats;
+	}
+	
+	
+	/**
+	 * Returns the hashing factory with which the successor states of cached transitions are hashed: the interning store if transitions are cached and
+	 * interning is enabled, and the planner's hashing factory otherwise.
+	 * @return the hashing factory with which the successor states of cached transitions are hashed.
+	 */
+	protected StateHashFactory transitionHashingFactory(){
+		if(!this.useCachedTransitions || !this.internTransitionStates){
+			return this.hashingFactory;
+		}
+		if(this.transitionStateStore == null || this.transitionStateStore.getSourceFactory() != this.hashingFactory){
+			this.transitionStateStore = new InterningStateHashFactory(this.hashingFactory);
+		}
+		return this.transitionStateStore;
+	}
+	
+	
 	@Override
 	public List <QValue> getQs(State s){
 		
@@ -319,11 +422,15 @@ public abstract class ValueFunctionPlanner extends OOMDPPlanner implements QComp
 			List<GroundedAction> gas = Action.getAllApplicableGroundedActionsFromActionList(this.actions, sh.s);
 			
 			//now add transitions
+			StateHashFactory transitionHashingFactory = this.transitionHashingFactory();
 			allTransitions = new ArrayList<ActionTransitions>(gas.size());
+			int nTransitions = 0;
 			for(GroundedAction ga : gas){
-				ActionTransitions at = new ActionTransitions(sh.s, ga, hashingFactory);
+				ActionTransitions at = new ActionTransitions(sh.s, ga, transitionHashingFactory);
 				allTransitions.add(at);
+				nTransitions += at.transitions.size();
 			}
+			TRANSITIONS_GENERATED.add(nTransitions);
 			
 			//set it if we're caching
 			if(this.useCachedTransitions){
@@ -404,6 +511,7 @@ public abstract class ValueFunctionPlanner extends OOMDPPlanner implements QComp
 		}
 		
 		valueFunction.put(sh, maxQ);
+		BELLMAN_BACKUPS.increment();
 		
 		return maxQ;
 	}
@@ -466,6 +574,7 @@ public abstract class ValueFunctionPlanner extends OOMDPPlanner implements QComp
 		
 		
 		valueFunction.put(sh, weightedQ);
+		BELLMAN_BACKUPS.increment();
 		
 		return weightedQ;
 		
@@ -591,4 +700,66 @@ public abstract class ValueFunctionPlanner extends OOMDPPlanner implements QComp
 	}
 	
 	
+	
+	
+	/**
+	 * Statistics on the size of the cached transition dynamics of a {@link ValueFunctionPlanner}. The number of distinct successor states and of
+	 * the object instances that they hold are the main contributors to the heap used by the cache; without interning, the number of successor
+	 * states approaches the number of transitions.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class TransitionCacheStatistics{
+		
+		/**
+		 * The number of states whose transitions are cached
+		 */
+		public int		numSourceStates = 0;
+		
+		/**
+		 * The number of cached state-action transition lists
+		 */
+		public int		numActionTransitions = 0;
+		
+		/**
+		 * The number of cached transitions
+		 */
+		public int		numTransitions = 0;
+		
+		/**
+		 * The number of distinct state objects referenced by the cached transitions
+		 */
+		public int		numSuccessorStates = 0;
+		
+		/**
+		 * The total number of object instances of the distinct successor state objects
+		 */
+		public long		numObjectInstances = 0;
+		
+		/**
+		 * The number of states in the interning store
+		 */
+		public int		numInternedStates = 0;
+		
+		/**
+		 * The number of successor states hashed with the interning store
+		 */
+		public long		numInternedLookups = 0;
+		
+		/**
+		 * The number of successor states that were replaced with an interned state
+		 */
+		public long		numInternedHits = 0;
+		
+		
+		@Override
+		public String toString(){
+			return "source states: " + numSourceStates + "; action transitions: " + numActionTransitions + "; transitions: " + numTransitions
+					+ "; successor state objects: " + numSuccessorStates + " (" + numObjectInstances + " object instances); interned states: " + numInternedStates
+					+ " (" + numInternedHits + " of " + numInternedLookups + " lookups reused an interned state)";
+		}
+		
+	}
+	
+	
 }
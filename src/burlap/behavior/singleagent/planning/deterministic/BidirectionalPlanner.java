@@ -0,0 +1,251 @@
+package burlap.behavior.singleagent.planning.deterministic;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import burlap.behavior.singleagent.planning.StateConditionTest;
+import burlap.behavior.statehashing.StateHashFactory;
+import burlap.behavior.statehashing.StateHashTuple;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.singleagent.Action;
+import burlap.oomdp.singleagent.GroundedAction;
+import burlap.oomdp.singleagent.RewardFunction;
+
+
+/**
+ * An abstract class for deterministic planners that search simultaneously forward from the initial state and backward from
+ * an explicitly provided set of goal states until the two searches meet in the middle. Backward search requires the inverse
+ * transition dynamics, so every action the planner uses must provide predecessor states through the
+ * {@link Action#getPredecessors(State, String[])} method (see {@link burlap.oomdp.singleagent.PredecessorGenerator}).
+ * If an action does not support predecessors, a {@link PredecessorsUnsupportedException} is thrown when planning begins.
+ * <p/>
+ * Search nodes generated by the backward search use the back pointer to point to the search node <i>closer to the goal</i>
+ * and the generating action is the action that is applied in the node's state to reach the back pointer's state. When the
+ * searches meet, the forward and backward partial paths are joined and encoded into the planner's internal policy.
+ * <p/>
+ * The goal condition of this planner is membership in the set of goal states, as determined by the state hashing factory.
+ * @author James MacGlashan
+ *
+ */
+public abstract class BidirectionalPlanner extends DeterministicPlanner {
+
+	/**
+	 * The hashed goal states from which the backward search begins.
+	 */
+	protected List<StateHashTuple>					goalStates;
+
+
+	/**
+	 * Initializes the planner. The goal condition is set to be membership in the provided set of goal states.
+	 * @param domain the domain in which to plan.
+	 * @param rf the reward function to use (probably should be negative to be compatible with most search planners)
+	 * @param tf the terminal function
+	 * @param goalStates the goal states from which the backward search will begin.
+	 * @param hashingFactory the hashing factory to use for states.
+	 */
+	public void bidirectionalPlannerInit(Domain domain, RewardFunction rf, TerminalFunction tf, List<State> goalStates, StateHashFactory hashingFactory){
+
+		this.goalStates = new ArrayList<StateHashTuple>(goalStates.size());
+		Set<StateHashTuple> goalSet = new HashSet<StateHashTuple>(goalStates.size());
+		for(State g : goalStates){
+			StateHashTuple gh = hashingFactory.hashState(g);
+			if(goalSet.add(gh)){
+				this.goalStates.add(gh);
+			}
+		}
+
+		this.deterministicPlannerInit(domain, rf, tf, new StateSetGoalCondition(goalSet, hashingFactory), hashingFactory);
+
+	}
+
+
+	/**
+	 * Returns the hashed goal states from which the backward search begins.
+	 * @return the hashed goal states from which the backward search begins.
+	 */
+	public List<StateHashTuple> getGoalStates(){
+		return this.goalStates;
+	}
+
+
+	/**
+	 * Throws a {@link PredecessorsUnsupportedException} if any action this planner uses cannot generate its predecessor states.
+	 */
+	protected void verifyPredecessorSupport(){
+		for(Action a : this.actions){
+			if(!a.supportsPredecessors()){
+				throw new PredecessorsUnsupportedException(a);
+			}
+		}
+	}
+
+
+	/**
+	 * Generates the forward successor search nodes of the given search node. Nodes for terminal states should not be passed to this method.
+	 * @param node the search node to expand
+	 * @return the successor search nodes, each with a back pointer to the input node.
+	 */
+	protected List<SearchNode> generateSuccessorNodes(SearchNode node){
+
+		State s = node.s.s;
+		List<GroundedAction> gas = Action.getAllApplicableGroundedActionsFromActionList(this.actions, s);
+		List<SearchNode> res = new ArrayList<SearchNode>(gas.size());
+		for(GroundedAction ga : gas){
+			State ns = ga.executeIn(s);
+			res.add(new SearchNode(this.stateHash(ns), ga, node));
+		}
+
+		return res;
+	}
+
+
+	/**
+	 * Generates the backward (predecessor) search nodes of the given search node. Each returned node's generating action
+	 * is the action that, when applied in the returned node's state, produces the input node's state. Predecessors returned
+	 * by an action are verified by executing the action in them, so actions may over-approximate their predecessors. Terminal
+	 * predecessor states are excluded, since no action can be taken from them.
+	 * @param node the search node whose predecessors are to be generated
+	 * @return the predecessor search nodes, each with a back pointer to the input node.
+	 */
+	protected List<SearchNode> generatePredecessorNodes(SearchNode node){
+
+		State s = node.s.s;
+		List<SearchNode> res = new ArrayList<SearchNode>();
+		for(Action a : this.actions){
+			List<GroundedAction> gas = a.getAllGroundedActionsIgnoringApplicability(s);
+			for(GroundedAction ga : gas){
+				List<State> preds = a.getPredecessors(s, ga.params);
+				for(State ps : preds){
+					if(this.tf.isTerminal(ps) || !a.applicableInState(ps, ga.params)){
+						continue;
+					}
+					if(!this.stateHash(ga.executeIn(ps)).equals(node.s)){
+						continue; //over-approximated predecessor
+					}
+					res.add(new SearchNode(this.stateHash(ps), ga, node));
+				}
+			}
+		}
+
+		return res;
+	}
+
+
+	/**
+	 * Encodes the solution path defined by a forward search node and a backward search node for the same state into this class's internal policy structure.
+	 * As with {@link #encodePlanIntoPolicy(SearchNode)}, if a state is visited more than once in the solution path, the action
+	 * used for the last occurrence of the state is used. If either node is null, it indicates that a plan was not
+	 * found and a {@link PlanningFailedException} runtime exception is thrown.
+	 * @param forwardNode the forward search node at which the searches met; its back pointers lead to the initial state.
+	 * @param backwardNode the backward search node at which the searches met; its back pointers lead to a goal state.
+	 */
+	protected void encodeBidirectionalPlanIntoPolicy(SearchNode forwardNode, SearchNode backwardNode){
+
+		if(forwardNode == null || backwardNode == null){
+			throw new PlanningFailedException();
+		}
+
+		//build the state-action sequence in order of execution
+		LinkedList<SearchNode> stateSequence = new LinkedList<SearchNode>();
+		LinkedList<GroundedAction> actionSequence = new LinkedList<GroundedAction>();
+
+		SearchNode curNode = forwardNode;
+		while(curNode.backPointer != null){
+			stateSequence.addFirst(curNode.backPointer);
+			actionSequence.addFirst(curNode.generatingAction);
+			curNode = curNode.backPointer;
+		}
+
+		curNode = backwardNode;
+		while(curNode.backPointer != null){
+			stateSequence.addLast(curNode);
+			actionSequence.addLast(curNode.generatingAction);
+			curNode = curNode.backPointer;
+		}
+
+		//encode from the end so that later visits of a state take precedence
+		while(!stateSequence.isEmpty()){
+			StateHashTuple sh = stateSequence.removeLast().s;
+			GroundedAction ga = actionSequence.removeLast();
+			if(!mapToStateIndex.containsKey(sh)){
+				internalPolicy.put(sh, ga);
+				mapToStateIndex.put(sh, sh);
+			}
+		}
+
+	}
+
+
+	/**
+	 * Returns the number of actions from the given search node to the root of its search (either the initial state or a goal state).
+	 * @param node the search node
+	 * @return the number of back pointers that are followed to reach the root of the search.
+	 */
+	protected static int depth(SearchNode node){
+		int d = 0;
+		SearchNode curNode = node;
+		while(curNode.backPointer != null){
+			d++;
+			curNode = curNode.backPointer;
+		}
+		return d;
+	}
+
+
+
+	/**
+	 * A {@link StateConditionTest} that is satisfied by the members of a set of hashed states.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class StateSetGoalCondition implements StateConditionTest{
+
+		/**
+		 * The set of goal states
+		 */
+		protected Set<StateHashTuple> goals;
+		
+		/**
+		 * The hashing factory used to hash query states
+		 */
+		protected StateHashFactory hashingFactory;
+
+		/**
+		 * Initializes with the set of hashed goal states.
+		 * @param goals the set of hashed goal states.
+		 * @param hashingFactory the hashing factory that was used to hash the goal states.
+		 */
+		public StateSetGoalCondition(Set<StateHashTuple> goals, StateHashFactory hashingFactory){
+			this.goals = goals;
+			this.hashingFactory = hashingFactory;
+		}
+
+		@Override
+		public boolean satisfies(State s) {
+			return this.goals.contains(this.hashingFactory.hashState(s));
+		}
+
+	}
+
+
+	/**
+	 * Exception class for indicating that an action used by a bidirectional planner cannot generate its predecessor states.
+	 * @author James MacGlashan
+	 *
+	 */
+	public class PredecessorsUnsupportedException extends RuntimeException{
+
+		private static final long serialVersionUID = 1L;
+
+		public PredecessorsUnsupportedException(Action a){
+			super("Action " + a.getName() + " cannot generate predecessor states, which bidirectional search requires");
+		}
+
+	}
+
+}
@@ -10,6 +10,7 @@ import burlap.behavior.singleagent.planning.OOMDPPlanner;
 import burlap.behavior.singleagent.planning.StateConditionTest;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
+import burlap.debugtools.MetricsRegistry;
 import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.State;
 import burlap.oomdp.core.TerminalFunction;
@@ -30,6 +31,11 @@ import burlap.oomdp.singleagent.RewardFunction;
  */
 public abstract class DeterministicPlanner extends OOMDPPlanner{
 
+	/**
+	 * The counter of the search nodes expanded by deterministic planners, reported when metrics are enabled in the {@link burlap.debugtools.MetricsRegistry}
+	 */
+	public static final MetricsRegistry.Counter			STATES_EXPANDED = MetricsRegistry.counter("planning.statesExpanded");
+	
 	/**
 	 * This State condition test should return true for goal states and false for non-goal states.
 	 */
@@ -116,7 +116,9 @@ public abstract class BestFirst extends DeterministicPlanner {
 			nexpanded++;
 			if(node.priority < minF){
 				minF = node.priority;
-				DPrint.cl(debugCode, "Min F Expanded: " + minF + "; Nodes expanded so far: " + nexpanded + "; Open size: " + openQueue.size());
+				if(DPrint.mode(debugCode)){
+					DPrint.cl(debugCode, "Min F Expanded: ", minF, "; Nodes expanded so far: ", nexpanded, "; Open size: ", openQueue.size());
+				}
 			}
 			
 			State s = node.s.s;
@@ -173,7 +175,8 @@ public abstract class BestFirst extends DeterministicPlanner {
 		//search to goal complete. Now follow back pointers to set policy
 		this.encodePlanIntoPolicy(lastVistedNode);
 		
-		DPrint.cl(debugCode, "Num Expanded: " + nexpanded);
+		DPrint.cl(debugCode, "Num Expanded: ", nexpanded);
+		STATES_EXPANDED.add(nexpanded);
 		
 		this.postPlanPrep();
 		
@@ -0,0 +1,246 @@
+package burlap.behavior.singleagent.planning.deterministic.informed.astar;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import burlap.behavior.singleagent.planning.deterministic.BidirectionalPlanner;
+import burlap.behavior.singleagent.planning.deterministic.SearchNode;
+import burlap.behavior.singleagent.planning.deterministic.informed.Heuristic;
+import burlap.behavior.singleagent.planning.deterministic.informed.NullHeuristic;
+import burlap.behavior.singleagent.planning.deterministic.informed.PrioritizedSearchNode;
+import burlap.behavior.statehashing.StateHashFactory;
+import burlap.behavior.statehashing.StateHashTuple;
+import burlap.datastructures.HashIndexedHeap;
+import burlap.debugtools.DPrint;
+import burlap.oomdp.auxiliary.common.NullTermination;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.State;
+import burlap.oomdp.singleagent.RewardFunction;
+
+/**
+ * An implementation of front-to-end bidirectional A*. A forward A* search is performed from the initial state toward the goal states
+ * and a backward A* search is performed from the goal states toward the initial state, using the predecessor states generated by each action
+ * (see {@link burlap.oomdp.singleagent.PredecessorGenerator}). As with {@link AStar}, costs are represented as negative rewards returned by the reward function
+ * and heuristics should return non-positive values. The forward heuristic estimates the reward from a state to the nearest goal; the backward heuristic
+ * estimates the reward from the initial state to a state. If no backward heuristic is provided, the {@link NullHeuristic} is used for it.
+ * <p/>
+ * On each iteration, the direction with the smaller open queue expands its best node. Whenever a generated node has been reached by
+ * the other direction, the joined path is recorded as a candidate solution. Search stops with the meet-in-the-middle rule: once the best
+ * candidate solution is at least as good as the best f-score in either open queue, no better solution can exist, so it is returned.
+ * With admissible heuristics the returned plan is optimal.
+ * <p/>
+ * If a terminal function is provided via the setter method defined for OO-MDPs, then the search algorithm will not expand any nodes
+ * that are terminal states, as if there were no actions that could be executed from that state. Note that terminal states
+ * are not necessarily the same as goal states, since there could be a fail condition from which the agent cannot act, but
+ * that is not explicitly represented in the transition dynamics.
+ *
+ * @author James MacGlashan
+ *
+ */
+public class BidirectionalAStar extends BidirectionalPlanner {
+
+	/**
+	 * The heuristic estimating the reward from a state to the goal states.
+	 */
+	protected Heuristic									forwardHeuristic;
+
+	/**
+	 * The heuristic estimating the reward from the initial state to a state.
+	 */
+	protected Heuristic									backwardHeuristic;
+
+
+	/**
+	 * Initializes bidirectional A* with a forward heuristic only; the backward search will use the {@link NullHeuristic}.
+	 * By default there are no terminal states except the goal states, so a terminal function is not taken.
+	 * @param domain the domain in which to plan
+	 * @param rf the reward function that represents costs as negative reward
+	 * @param goalStates the goal states from which the backward search will begin
+	 * @param hashingFactory the state hashing factory to use
+	 * @param forwardHeuristic the heuristic estimating the reward from a state to the goal states. Should return non-positive values.
+	 */
+	public BidirectionalAStar(Domain domain, RewardFunction rf, List<State> goalStates, StateHashFactory hashingFactory, Heuristic forwardHeuristic){
+		this(domain, rf, goalStates, hashingFactory, forwardHeuristic, new NullHeuristic());
+	}
+
+
+	/**
+	 * Initializes bidirectional A*. By default there are no terminal states except the goal states, so a terminal function is not taken.
+	 * @param domain the domain in which to plan
+	 * @param rf the reward function that represents costs as negative reward
+	 * @param goalStates the goal states from which the backward search will begin
+	 * @param hashingFactory the state hashing factory to use
+	 * @param forwardHeuristic the heuristic estimating the reward from a state to the goal states. Should return non-positive values.
+	 * @param backwardHeuristic the heuristic estimating the reward from the initial state to a state. Should return non-positive values.
+	 */
+	public BidirectionalAStar(Domain domain, RewardFunction rf, List<State> goalStates, StateHashFactory hashingFactory, Heuristic forwardHeuristic, Heuristic backwardHeuristic){
+
+		this.bidirectionalPlannerInit(domain, rf, new NullTermination(), goalStates, hashingFactory);
+
+		this.forwardHeuristic = forwardHeuristic;
+		this.backwardHeuristic = backwardHeuristic;
+
+	}
+
+
+	/**
+	 * Sets the heuristic estimating the reward from the initial state to a state. This should be changed when planning
+	 * from a new initial state with an informed backward heuristic.
+	 * @param backwardHeuristic the heuristic estimating the reward from the initial state to a state. Should return non-positive values.
+	 */
+	public void setBackwardHeuristic(Heuristic backwardHeuristic){
+		this.backwardHeuristic = backwardHeuristic;
+	}
+
+
+	@Override
+	public void planFromState(State initialState) {
+
+		StateHashTuple sih = this.stateHash(initialState);
+
+		if(mapToStateIndex.containsKey(sih)){
+			return ; //no need to plan since this is already solved
+		}
+
+		this.verifyPredecessorSupport();
+
+		SearchDirection forward = new SearchDirection(true);
+		SearchDirection backward = new SearchDirection(false);
+
+		forward.insert(new PrioritizedSearchNode(sih, this.forwardHeuristic.h(sih.s)), 0.);
+		for(StateHashTuple gh : this.goalStates){
+			backward.insert(new PrioritizedSearchNode(gh, this.backwardHeuristic.h(gh.s)), 0.);
+		}
+
+		double bestSolution = Double.NEGATIVE_INFINITY;
+		SearchNode forwardMeet = null;
+		SearchNode backwardMeet = null;
+
+		PrioritizedSearchNode goalInitial = backward.nodes.get(sih);
+		if(goalInitial != null){
+			bestSolution = 0.;
+			forwardMeet = forward.nodes.get(sih);
+			backwardMeet = goalInitial;
+		}
+
+		int nexpanded = 0;
+		while(forward.openQueue.size() > 0 && backward.openQueue.size() > 0){
+
+			//meet-in-the-middle stopping rule
+			if(bestSolution >= Math.min(forward.openQueue.peek().priority, backward.openQueue.peek().priority)){
+				break;
+			}
+
+			SearchDirection dir = forward.openQueue.size() <= backward.openQueue.size() ? forward : backward;
+			SearchDirection other = dir == forward ? backward : forward;
+
+			PrioritizedSearchNode node = dir.openQueue.poll();
+			nexpanded++;
+
+			if(dir.isForward && this.tf.isTerminal(node.s.s)){
+				continue; //do not expand nodes from a terminal state
+			}
+
+			double nodeG = dir.g.get(node.s);
+			List<SearchNode> children = dir.isForward ? this.generateSuccessorNodes(node) : this.generatePredecessorNodes(node);
+			for(SearchNode child : children){
+
+				double r = dir.isForward ? this.rf.reward(node.s.s, child.generatingAction, child.s.s) : this.rf.reward(child.s.s, child.generatingAction, node.s.s);
+				double childG = nodeG + r;
+
+				Double existingG = dir.g.get(child.s);
+				if(existingG != null && childG <= existingG){
+					continue; //no better than an already found path to this node
+				}
+
+				Heuristic h = dir.isForward ? this.forwardHeuristic : this.backwardHeuristic;
+				PrioritizedSearchNode npsn = new PrioritizedSearchNode(child.s, child.generatingAction, node, childG + h.h(child.s.s));
+				PrioritizedSearchNode stored = dir.insert(npsn, childG);
+
+				Double otherG = other.g.get(child.s);
+				if(otherG != null && childG + otherG > bestSolution){
+					bestSolution = childG + otherG;
+					SearchNode otherNode = other.nodes.get(child.s);
+					forwardMeet = dir.isForward ? stored : otherNode;
+					backwardMeet = dir.isForward ? otherNode : stored;
+				}
+
+			}
+
+		}
+
+		this.encodeBidirectionalPlanIntoPolicy(forwardMeet, backwardMeet);
+
+		DPrint.cl(debugCode, "Num Expanded: ", nexpanded, "; Solution reward: ", bestSolution);
+		STATES_EXPANDED.add(nexpanded);
+
+	}
+
+
+
+	/**
+	 * The open queue, closed set and cumulative rewards of one direction of the search.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class SearchDirection{
+
+		/**
+		 * Whether this is the forward direction
+		 */
+		protected boolean										isForward;
+
+		/**
+		 * The open queue of this direction
+		 */
+		protected HashIndexedHeap<PrioritizedSearchNode>		openQueue = new HashIndexedHeap<PrioritizedSearchNode>(new PrioritizedSearchNode.PSNComparator());
+
+		/**
+		 * The best search node found for each state reached by this direction
+		 */
+		protected Map<StateHashTuple, PrioritizedSearchNode>	nodes = new HashMap<StateHashTuple, PrioritizedSearchNode>();
+
+		/**
+		 * The best cumulative reward found to (or from) each state reached by this direction
+		 */
+		protected Map<StateHashTuple, Double>					g = new HashMap<StateHashTuple, Double>();
+
+
+		/**
+		 * Initializes.
+		 * @param isForward whether this is the forward direction
+		 */
+		public SearchDirection(boolean isForward){
+			this.isForward = isForward;
+		}
+
+
+		/**
+		 * Inserts a node into the open queue with the given cumulative reward, updating the priority of the node if it is already
+		 * in the open queue, or reopening it if it was already expanded.
+		 * @param psn the search node to insert
+		 * @param cumR the cumulative reward of the node
+		 * @return the search node instance that is stored for the node's state
+		 */
+		public PrioritizedSearchNode insert(PrioritizedSearchNode psn, double cumR){
+
+			this.g.put(psn.s, cumR);
+
+			PrioritizedSearchNode openPSN = this.openQueue.containsInstance(psn);
+			if(openPSN != null){
+				openPSN.setAuxInfoTo(psn);
+				this.openQueue.refreshPriority(openPSN);
+				return openPSN;
+			}
+
+			this.openQueue.insert(psn);
+			this.nodes.put(psn.s, psn);
+			return psn;
+
+		}
+
+	}
+
+
+}
@@ -142,7 +142,9 @@ public class DynamicWeightedAStar extends AStar {
 			nexpanded++;
 			if(node.priority < minF){
 				minF = node.priority;
-				DPrint.cl(debugCode, "Min F Expanded: " + minF + "; Nodes expanded so far: " + nexpanded + "; Open size: " + openQueue.size());
+				if(DPrint.mode(debugCode)){
+					DPrint.cl(debugCode, "Min F Expanded: ", minF, "; Nodes expanded so far: ", nexpanded, "; Open size: ", openQueue.size());
+				}
 			}
 			
 			
@@ -203,7 +205,8 @@ public class DynamicWeightedAStar extends AStar {
 		//search to goal complete. Now follow back pointers to set policy
 		this.encodePlanIntoPolicy(lastVistedNode);
 		
-		DPrint.cl(debugCode, "Num Expanded: " + nexpanded);
+		DPrint.cl(debugCode, "Num Expanded: ", nexpanded);
+		STATES_EXPANDED.add(nexpanded);
 		
 		this.postPlanPrep();
 		
@@ -94,7 +94,7 @@ public class IDAStar extends DeterministicPlanner {
 			nextMinR = cand.priority;
 			
 			if(solutionNode == null){
-				DPrint.cl(debugCode, "Increase depth to F: " + nextMinR);
+				DPrint.cl(debugCode, "Increase depth to F: ", nextMinR);
 			}
 			
 		}
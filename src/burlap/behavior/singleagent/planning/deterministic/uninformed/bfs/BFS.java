@@ -121,6 +121,7 @@ public class BFS extends DeterministicPlanner {
 
 		
 		DPrint.cl(debugCode,"Num Expanded: " + nexpanded);
+		STATES_EXPANDED.add(nexpanded);
 		
 	}
 
@@ -0,0 +1,157 @@
+package burlap.behavior.singleagent.planning.deterministic.uninformed.bfs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import burlap.behavior.singleagent.planning.deterministic.BidirectionalPlanner;
+import burlap.behavior.singleagent.planning.deterministic.SearchNode;
+import burlap.behavior.statehashing.StateHashFactory;
+import burlap.behavior.statehashing.StateHashTuple;
+import burlap.debugtools.DPrint;
+import burlap.oomdp.auxiliary.common.NullTermination;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.State;
+import burlap.oomdp.singleagent.common.UniformCostRF;
+
+/**
+ * Implements bidirectional Breadth-first search. A breadth-first search is performed forward from the initial state and backward
+ * from a set of provided goal states, using the predecessor states generated by each action
+ * (see {@link burlap.oomdp.singleagent.PredecessorGenerator}). On each iteration, the search direction with the smaller
+ * frontier expands its entire frontier by one layer. Once a layer expansion reaches a state that has been seen by the other direction,
+ * the layer is finished and the shortest joined path found in that layer is returned, which is guaranteed to be a shortest plan.
+ * For a branching factor b and solution depth d, this requires expanding on the order of b^(d/2) nodes rather than the b^d of {@link BFS}.
+ *
+ * <p/>
+ * If a terminal function is provided via the setter method defined for OO-MDPs, then the search algorithm will not expand any nodes
+ * that are terminal states, as if there were no actions that could be executed from that state. Note that terminal states
+ * are not necessarily the same as goal states, since there could be a fail condition from which the agent cannot act, but
+ * that is not explicitly represented in the transition dynamics.
+ *
+ *
+ * @author James MacGlashan
+ *
+ */
+public class BidirectionalBFS extends BidirectionalPlanner {
+
+
+	/**
+	 * BidirectionalBFS only needs reference to the domain, goal states, and hashing factory. The reward function is considered UniformCost, but is
+	 * not used. No states are considered terminal states, but planning will stop when it finds a goal state.
+	 * @param domain the domain in which to plan
+	 * @param goalStates the goal states from which the backward search will begin
+	 * @param hashingFactory the state hashing factory to use.
+	 */
+	public BidirectionalBFS(Domain domain, List<State> goalStates, StateHashFactory hashingFactory){
+		this.bidirectionalPlannerInit(domain, new UniformCostRF(), new NullTermination(), goalStates, hashingFactory);
+	}
+
+
+	@Override
+	public void planFromState(State initialState) {
+
+		StateHashTuple sih = this.stateHash(initialState);
+
+		if(mapToStateIndex.containsKey(sih)){
+			return ; //no need to plan since this is already solved
+		}
+
+		this.verifyPredecessorSupport();
+
+		Map<StateHashTuple, SearchNode> forwardSeen = new HashMap<StateHashTuple, SearchNode>();
+		Map<StateHashTuple, SearchNode> backwardSeen = new HashMap<StateHashTuple, SearchNode>();
+		List<SearchNode> forwardFrontier = new ArrayList<SearchNode>();
+		List<SearchNode> backwardFrontier = new ArrayList<SearchNode>();
+
+		SearchNode initialSearchNode = new SearchNode(sih);
+		forwardSeen.put(sih, initialSearchNode);
+		forwardFrontier.add(initialSearchNode);
+
+		for(StateHashTuple gh : this.goalStates){
+			SearchNode gn = new SearchNode(gh);
+			backwardSeen.put(gh, gn);
+			backwardFrontier.add(gn);
+		}
+
+		SearchNode forwardMeet = null;
+		SearchNode backwardMeet = null;
+
+		if(backwardSeen.containsKey(sih)){
+			//initial state is a goal state
+			forwardMeet = initialSearchNode;
+			backwardMeet = backwardSeen.get(sih);
+		}
+
+		int forwardDepth = 0;
+		int backwardDepth = 0;
+		int nexpanded = 0;
+		while(forwardMeet == null && forwardFrontier.size() > 0 && backwardFrontier.size() > 0){
+
+			boolean expandForward = forwardFrontier.size() <= backwardFrontier.size();
+			List<SearchNode> frontier = expandForward ? forwardFrontier : backwardFrontier;
+			Map<StateHashTuple, SearchNode> seen = expandForward ? forwardSeen : backwardSeen;
+			Map<StateHashTuple, SearchNode> otherSeen = expandForward ? backwardSeen : forwardSeen;
+
+			List<SearchNode> nextFrontier = new ArrayList<SearchNode>();
+			int bestLength = Integer.MAX_VALUE;
+			SearchNode bestThisSide = null;
+			SearchNode bestOtherSide = null;
+
+			for(SearchNode node : frontier){
+
+				nexpanded++;
+
+				if(expandForward && this.tf.isTerminal(node.s.s)){
+					continue; //don't expand terminal states
+				}
+
+				List<SearchNode> children = expandForward ? this.generateSuccessorNodes(node) : this.generatePredecessorNodes(node);
+				for(SearchNode child : children){
+
+					if(seen.containsKey(child.s)){
+						continue;
+					}
+
+					seen.put(child.s, child);
+					nextFrontier.add(child);
+
+					SearchNode otherNode = otherSeen.get(child.s);
+					if(otherNode != null){
+						int length = depth(otherNode);
+						if(length < bestLength){
+							bestLength = length;
+							bestThisSide = child;
+							bestOtherSide = otherNode;
+						}
+					}
+
+				}
+
+			}
+
+			if(expandForward){
+				forwardFrontier = nextFrontier;
+				forwardDepth++;
+			}
+			else{
+				backwardFrontier = nextFrontier;
+				backwardDepth++;
+			}
+
+			if(bestThisSide != null){
+				forwardMeet = expandForward ? bestThisSide : bestOtherSide;
+				backwardMeet = expandForward ? bestOtherSide : bestThisSide;
+			}
+
+		}
+
+		this.encodeBidirectionalPlanIntoPolicy(forwardMeet, backwardMeet);
+
+
+		DPrint.cl(debugCode,"Num Expanded: " + nexpanded + "; Forward depth: " + forwardDepth + "; Backward depth: " + backwardDepth);
+		STATES_EXPANDED.add(nexpanded);
+
+	}
+
+}
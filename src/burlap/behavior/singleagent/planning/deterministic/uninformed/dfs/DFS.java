@@ -175,6 +175,7 @@ public class DFS extends DeterministicPlanner {
 		}
 		
 		DPrint.cl(debugCode, "Num visted: " + numVisted);
+		STATES_EXPANDED.add(numVisted);
 
 	}
 	
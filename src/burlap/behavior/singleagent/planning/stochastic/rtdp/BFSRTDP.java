@@ -190,7 +190,7 @@ public class BFSRTDP extends RTDP {
 		}
 		
 		
-		DPrint.cl(debugCode, "Finished reachability analysis; # states: " + transitionDynamics.size());
+		DPrint.cl(debugCode, "Finished reachability analysis; # states: ", transitionDynamics.size());
 		
 		
 		return closedList;
@@ -241,7 +241,7 @@ public class BoundedRTDP extends ValueFunctionPlanner {
 		}
 		
 		
-		DPrint.cl(this.debugCode, "Finished planning with a total of " + this.numBellmanUpdates + " backups.");
+		DPrint.cl(this.debugCode, "Finished planning with a total of ", this.numBellmanUpdates, " backups.");
 
 	}
 	
@@ -287,6 +287,7 @@ public class BoundedRTDP extends ValueFunctionPlanner {
 	 * @return the margin between the lower bound and upper bound value function for the initial state.
 	 */
 	public double runRollout(State s){
+		ROLLOUTS.increment();
 		LinkedList<StateHashTuple> trajectory = new LinkedList<StateHashTuple>();
 		
 		StateHashTuple csh = this.hashingFactory.hashState(s);
@@ -306,6 +307,7 @@ public class BoundedRTDP extends ValueFunctionPlanner {
 			this.upperBoundV.put(csh, mxU.q);
 			
 			numBellmanUpdates += 2;
+			BELLMAN_BACKUPS.add(2);
 			this.numSteps++;
 			
 			StateSelectionAndExpectedGap select = this.getNextState(csh.s, (GroundedAction)mxU.a);
@@ -339,6 +341,7 @@ public class BoundedRTDP extends ValueFunctionPlanner {
 				this.upperBoundV.put(sh, mxU.q);
 				
 				numBellmanUpdates += 2;
+				BELLMAN_BACKUPS.add(2);
 				lastGap = mxU.q - mxL.q;
 				
 			}
@@ -0,0 +1,609 @@
+package burlap.behavior.singleagent.planning.stochastic.rtdp;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import burlap.behavior.singleagent.ValueFunctionInitialization;
+import burlap.behavior.singleagent.options.Option;
+import burlap.behavior.singleagent.planning.ValueFunctionPlanner;
+import burlap.behavior.statehashing.StateHashFactory;
+import burlap.behavior.statehashing.StateHashTuple;
+import burlap.debugtools.DPrint;
+import burlap.debugtools.ParallelMatchEngine;
+import burlap.debugtools.RandomFactory;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.core.TransitionProbability;
+import burlap.oomdp.singleagent.Action;
+import burlap.oomdp.singleagent.GroundedAction;
+import burlap.oomdp.singleagent.RewardFunction;
+
+
+/**
+ * An implementation of Labeled RTDP [1] that maintains both a lower bound and upper bound value function, as in {@link BoundedRTDP} [2].
+ * Rollouts greedily follow the upper bound value function and sample outcome states from the transition dynamics. After each rollout,
+ * the visited states are checked in reverse order with the LRTDP solved-labeling procedure: a state is labeled solved when the margin between
+ * its upper and lower bound, and that of every state reachable from it under the greedy policy, is no greater than a threshold. Solved states are never
+ * revisited by later rollouts, so converged regions of the state space are not backed up again, and planning terminates as soon as the
+ * initial state is labeled solved (or when a maximum number of rollouts is reached).
+ * <p/>
+ * The bounds and solved labels are stored in a {@link StateBoundTable}, which indexes states by compact integer ids and keeps
+ * all three quantities in a single primitive table, so each Bellman backup computes both bounds from a single enumeration of the transition dynamics.
+ * Because the table is thread-safe, planning can run rollouts from multiple threads at once (see {@link #setNumberOfThreads(int)}), all sharing
+ * the same table. Concurrent rollouts may read slightly stale bounds, which, as in asynchronous dynamic programming, does not affect convergence.
+ * When multiple threads are used, the domain's actions, reward function, and terminal function must be safe to call from multiple threads.
+ * <p/>
+ * After planning, the lower bound is used by the {@link #value(State)}, {@link #getQs(State)}, and {@link #getQ(State, burlap.oomdp.core.AbstractGroundedAction)}
+ * methods by default, which provides anytime behavior; this can be changed with {@link #setUseLowerBoundForValue(boolean)}. Non-terminal states in which no
+ * action is applicable are treated as having a value of 0. The number of rollouts performed per second in the last call to {@link #planFromState(State)} and the
+ * fraction of stored states that are labeled solved can be queried after planning.
+ * <p/>
+ * 1. Bonet, Blai, and Hector Geffner. "Labeled RTDP: Improving the Convergence of Real-Time Dynamic Programming." ICAPS. Vol. 3. 2003.
+ * <br/>
+ * 2. McMahan, H. Brendan, Maxim Likhachev, and Geoffrey J. Gordon. "Bounded real-time dynamic programming: RTDP with monotone upper bounds and performance guarantees."
+ * Proceedings of the 22nd international conference on Machine learning. ACM, 2005.
+ *
+ * @author James MacGlashan
+ *
+ */
+public class LabeledRTDP extends ValueFunctionPlanner {
+
+	/**
+	 * The table of bounds and solved labels
+	 */
+	protected StateBoundTable					table;
+
+	/**
+	 * The lowerbound value function initialization
+	 */
+	protected ValueFunctionInitialization		lowerVInit;
+
+	/**
+	 * The upperbound value function initialization
+	 */
+	protected ValueFunctionInitialization		upperVInit;
+
+	/**
+	 * The max permitted margin between the lower bound and upper bound for a state to be labeled solved.
+	 */
+	protected double							maxDiff;
+
+	/**
+	 * The maximum number of rollouts to perform in a call to {@link #planFromState(State)}. If set to -1, then there is no limit.
+	 */
+	protected int								maxRollouts;
+
+	/**
+	 * The maximum depth/length of a rollout. If set to -1 then there is no limit; the default is -1.
+	 */
+	protected int								maxDepth = -1;
+
+	/**
+	 * The number of threads that run rollouts concurrently. The default is 1.
+	 */
+	protected int								numThreads = 1;
+
+	/**
+	 * Whether the lower bound (true) or upper bound (false) is used for value queries after planning.
+	 */
+	protected boolean							useLowerBoundForValue = true;
+
+	/**
+	 * The number of rollouts performed across all planning.
+	 */
+	protected AtomicInteger						numRollouts = new AtomicInteger(0);
+
+	/**
+	 * The number of Bellman updates performed across all planning. Each update computes both bounds.
+	 */
+	protected AtomicLong						numBellmanUpdates = new AtomicLong(0);
+
+	/**
+	 * The number of rollouts per second achieved in the last call to {@link #planFromState(State)}.
+	 */
+	protected double							lastRolloutsPerSecond = 0.;
+
+
+
+	/**
+	 * Initializes.
+	 * @param domain the domain in which to plan
+	 * @param rf the reward function
+	 * @param tf the terminal state function
+	 * @param gamma the discount factor
+	 * @param hashingFactory the state hashing factor to use
+	 * @param lowerVInit the value function lower bound initialization
+	 * @param upperVInit the value function upper bound initialization
+	 * @param maxDiff the max permitted margin between the lower bound and upper bound for a state to be labeled solved.
+	 * @param maxRollouts the maximum number of rollouts permitted before planning is forced to terminate. If set to -1 then there is no limit.
+	 */
+	public LabeledRTDP(Domain domain, RewardFunction rf, TerminalFunction tf, double gamma, StateHashFactory hashingFactory,
+			ValueFunctionInitialization lowerVInit, ValueFunctionInitialization upperVInit, double maxDiff, int maxRollouts){
+
+		this.VFPInit(domain, rf, tf, gamma, hashingFactory);
+		this.lowerVInit = lowerVInit;
+		this.upperVInit = upperVInit;
+		this.maxDiff = maxDiff;
+		this.maxRollouts = maxRollouts;
+
+		this.table = new StateBoundTable(lowerVInit, upperVInit, tf);
+		this.valueInitializer = lowerVInit;
+
+		this.useCachedTransitions = false;
+
+	}
+
+
+	/**
+	 * Sets the maximum number of rollouts permitted in a call to {@link #planFromState(State)}. If set to -1 then there is no limit.
+	 * @param numRollouts the maximum number of rollouts permitted before planning is forced to terminate. If set to -1 then there is no limit.
+	 */
+	public void setMaxNumberOfRollouts(int numRollouts){
+		this.maxRollouts = numRollouts;
+	}
+
+	/**
+	 * Sets the maximum rollout depth of any rollout. If set to -1, then there is no limit on rollout depth.
+	 * @param maxDepth the maximum rollout depth of any rollout. If set to -1, then there is no limit on rollout depth.
+	 */
+	public void setMaxRolloutDepth(int maxDepth){
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Sets the max permitted margin between the lower bound and upper bound for a state to be labeled solved.
+	 * @param maxDiff the max permitted margin between the lower bound and upper bound for a state to be labeled solved.
+	 */
+	public void setMaxDifference(double maxDiff){
+		this.maxDiff = maxDiff;
+	}
+
+	/**
+	 * Sets the number of threads that run rollouts concurrently during planning.
+	 * @param numThreads the number of threads that run rollouts concurrently.
+	 */
+	public void setNumberOfThreads(int numThreads){
+		if(numThreads < 1){
+			throw new RuntimeException("The number of threads must be at least 1.");
+		}
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Sets whether the lower bound or upper bound value function is used for value and Q-value queries.
+	 * @param useLowerBound if true, then the lower bound is used; if false, then the upper bound is used.
+	 */
+	public void setUseLowerBoundForValue(boolean useLowerBound){
+		this.useLowerBoundForValue = useLowerBound;
+		this.valueInitializer = useLowerBound ? this.lowerVInit : this.upperVInit;
+	}
+
+	/**
+	 * Returns the table of bounds and solved labels used by this planner.
+	 * @return the table of bounds and solved labels used by this planner.
+	 */
+	public StateBoundTable getBoundTable(){
+		return this.table;
+	}
+
+	/**
+	 * Returns the total number of rollouts across all planning
+	 * @return the total number of rollouts across all planning
+	 */
+	public int getNumberOfRollouts(){
+		return this.numRollouts.get();
+	}
+
+	/**
+	 * Returns the total number of Bellman updates across all planning. Each update computes both the lower and upper bound.
+	 * @return the total number of Bellman updates across all planning
+	 */
+	public long getNumberOfBellmanUpdates(){
+		return this.numBellmanUpdates.get();
+	}
+
+	/**
+	 * Returns the number of rollouts per second performed in the last call to {@link #planFromState(State)}.
+	 * @return the number of rollouts per second performed in the last call to {@link #planFromState(State)}.
+	 */
+	public double getRolloutsPerSecond(){
+		return this.lastRolloutsPerSecond;
+	}
+
+	/**
+	 * Returns the fraction of states stored by this planner that are labeled solved.
+	 * @return the fraction of states stored by this planner that are labeled solved.
+	 */
+	public double getFractionOfSolvedStates(){
+		int n = this.table.size();
+		if(n == 0){
+			return 0.;
+		}
+		return (double)this.table.numSolved() / (double)n;
+	}
+
+	/**
+	 * Returns whether the given state is labeled solved.
+	 * @param s the state to check
+	 * @return true if the state is labeled solved; false otherwise.
+	 */
+	public boolean isSolved(State s){
+		int id = this.table.lookupId(this.hashingFactory.hashState(s));
+		return id != -1 && this.table.isSolved(id);
+	}
+
+
+	@Override
+	public void planFromState(State initialState) {
+
+		DPrint.cl(this.debugCode, "Beginning Planning.");
+
+		final StateHashTuple ish = this.hashingFactory.hashState(initialState);
+		final int iid = this.table.stateId(ish);
+		final AtomicInteger rolloutsThisPlan = new AtomicInteger(0);
+		Random seedRand = RandomFactory.getMapped(0);
+
+		long startTime = System.currentTimeMillis();
+
+		final Random [] rands = new Random[this.numThreads];
+		for(int i = 0; i < rands.length; i++){
+			rands[i] = new Random(seedRand.nextLong());
+		}
+		ParallelMatchEngine.runWorkers(this.numThreads, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int i) {
+				LabeledRTDP.this.runRollouts(ish, iid, rolloutsThisPlan, rands[i]);
+			}
+		});
+
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		int nr = Math.min(rolloutsThisPlan.get(), this.maxRollouts == -1 ? Integer.MAX_VALUE : this.maxRollouts);
+		this.lastRolloutsPerSecond = nr / (elapsed / 1000.);
+
+		DPrint.cl(this.debugCode, "Finished planning with ", nr, " rollouts (", this.lastRolloutsPerSecond, " rollouts/sec) and a total of ",
+				this.numBellmanUpdates.get(), " backups; ", this.table.numSolved(), "/", this.table.size(), " states solved.");
+
+	}
+
+
+	/**
+	 * Runs rollouts from the given initial state until it is labeled solved or the rollout budget of the current planning call is exhausted.
+	 * @param ish the hashed initial state
+	 * @param iid the id of the initial state
+	 * @param rolloutsThisPlan the number of rollouts started in the current planning call, shared by all threads
+	 * @param rand the random number generator of the calling thread
+	 */
+	protected void runRollouts(StateHashTuple ish, int iid, AtomicInteger rolloutsThisPlan, Random rand){
+		while(!this.table.isSolved(iid)){
+			int nr = rolloutsThisPlan.incrementAndGet();
+			if(this.maxRollouts != -1 && nr > this.maxRollouts){
+				break;
+			}
+			this.runRollout(ish, iid, rand);
+			this.numRollouts.incrementAndGet();
+		}
+	}
+
+
+	/**
+	 * Runs a single planning rollout from the given state, followed by solved labeling of the visited states in reverse order.
+	 * @param sh the hashed state from which the rollout starts
+	 * @param id the id of the state from which the rollout starts
+	 * @param rand the random number generator to use for sampling outcome states
+	 */
+	protected void runRollout(StateHashTuple sh, int id, Random rand){
+
+		ROLLOUTS.increment();
+		LinkedList<Backup> visited = new LinkedList<Backup>();
+
+		StateHashTuple csh = sh;
+		int cid = id;
+		int depth = 0;
+		while(!this.table.isSolved(cid) && (depth < this.maxDepth || this.maxDepth == -1)){
+
+			Backup b = this.backup(csh, cid, rand, true);
+			visited.push(b);
+			if(b.successorIds == null){
+				break;
+			}
+
+			//sample outcome state
+			double roll = rand.nextDouble();
+			double sumP = 0.;
+			int selection = b.successorIds.length-1;
+			for(int i = 0; i < b.successorIds.length; i++){
+				sumP += b.successorProbs[i];
+				if(roll < sumP){
+					selection = i;
+					break;
+				}
+			}
+
+			csh = b.successors[selection];
+			cid = b.successorIds[selection];
+			depth++;
+
+		}
+
+		while(visited.size() > 0){
+			Backup b = visited.pop();
+			if(!this.checkSolved(b.sh, b.id, rand)){
+				break;
+			}
+		}
+
+	}
+
+
+	/**
+	 * Performs the LRTDP solved-labeling check from the given state. If the margin of every state reachable from it under the greedy
+	 * policy is no greater than the threshold, they are all labeled solved; otherwise, the checked states are backed up in reverse order.
+	 * Unlike the original LRTDP check, the search does not stop at states whose margin is too large, so that the whole unsolved greedy envelope
+	 * is backed up. This ensures that states whose outcomes are rarely sampled by rollouts still converge.
+	 * @param sh the hashed state to check
+	 * @param id the id of the state to check
+	 * @param rand the random number generator to use for tie breaking
+	 * @return true if the state was labeled solved; false otherwise.
+	 */
+	protected boolean checkSolved(StateHashTuple sh, int id, Random rand){
+
+		if(this.table.isSolved(id)){
+			return true;
+		}
+
+		boolean rv = true;
+		LinkedList<Backup> open = new LinkedList<Backup>();
+		LinkedList<Backup> closed = new LinkedList<Backup>();
+		Set<Integer> seen = new HashSet<Integer>();
+
+		open.push(this.backup(sh, id, rand, false));
+		seen.add(id);
+
+		while(open.size() > 0){
+
+			Backup b = open.pop();
+			closed.push(b);
+
+			if(b.upper - b.lower > this.maxDiff){
+				rv = false;
+			}
+
+			if(b.successorIds == null){
+				continue;
+			}
+
+			for(int i = 0; i < b.successorIds.length; i++){
+				int nid = b.successorIds[i];
+				if(!this.table.isSolved(nid) && seen.add(nid)){
+					open.push(this.backup(b.successors[i], nid, rand, false));
+				}
+			}
+
+		}
+
+		if(rv){
+			//store the bounds of the check's backups, so that the stored margin of each solved state is within the threshold
+			for(Backup b : closed){
+				this.table.setBounds(b.id, b.lower, b.upper);
+				this.table.markSolved(b.id);
+			}
+		}
+		else{
+			while(closed.size() > 0){
+				Backup b = closed.pop();
+				this.backup(b.sh, b.id, rand, true);
+			}
+		}
+
+		return rv;
+
+	}
+
+
+	/**
+	 * Computes the Bellman backup of both the lower and upper bound of the given state from a single enumeration of its transition dynamics.
+	 * The greedy action is selected with respect to the upper bound with ties broken randomly.
+	 * @param sh the hashed state to back up
+	 * @param id the id of the state
+	 * @param rand the random number generator to use for tie breaking
+	 * @param store whether the new bounds should be stored in the table
+	 * @return the result of the backup.
+	 */
+	protected Backup backup(StateHashTuple sh, int id, Random rand, boolean store){
+
+		Backup result = new Backup(sh, id);
+
+		if(this.tf.isTerminal(sh.s)){
+			return result;
+		}
+
+		List<GroundedAction> gas = Action.getAllApplicableGroundedActionsFromActionList(this.actions, sh.s);
+		if(gas.size() == 0){
+			if(store){
+				this.table.setBounds(id, 0., 0.);
+			}
+			return result;
+		}
+
+		double maxL = Double.NEGATIVE_INFINITY;
+		double maxU = Double.NEGATIVE_INFINITY;
+		int nTies = 0;
+		for(GroundedAction ga : gas){
+
+			List<TransitionProbability> tps = ga.action.getTransitions(sh.s, ga.params);
+			StateHashTuple [] successors = new StateHashTuple[tps.size()];
+			int [] successorIds = new int[tps.size()];
+			double [] successorProbs = new double[tps.size()];
+
+			double ql = 0.;
+			double qu = 0.;
+			boolean isOption = ga.action instanceof Option;
+			if(isOption){
+				double expectedR = ((Option)ga.action).getExpectedRewards(sh.s, ga.params);
+				ql += expectedR;
+				qu += expectedR;
+			}
+
+			for(int i = 0; i < tps.size(); i++){
+				TransitionProbability tp = tps.get(i);
+				StateHashTuple nsh = this.hashingFactory.hashState(tp.s);
+				int nid = this.table.stateId(nsh);
+				successors[i] = nsh;
+				successorIds[i] = nid;
+				successorProbs[i] = tp.p;
+
+				if(isOption){
+					//for options, tp.p is the discounted probability of transition, so no discount factor is included
+					ql += tp.p * this.table.lower(nid);
+					qu += tp.p * this.table.upper(nid);
+				}
+				else{
+					double r = this.rf.reward(sh.s, ga, tp.s);
+					ql += tp.p * (r + this.gamma * this.table.lower(nid));
+					qu += tp.p * (r + this.gamma * this.table.upper(nid));
+				}
+			}
+
+			maxL = Math.max(maxL, ql);
+
+			if(qu > maxU){
+				maxU = qu;
+				nTies = 1;
+				result.setGreedy(successors, successorIds, successorProbs);
+			}
+			else if(qu == maxU){
+				nTies++;
+				if(rand.nextInt(nTies) == 0){
+					result.setGreedy(successors, successorIds, successorProbs);
+				}
+			}
+
+		}
+
+		result.lower = maxL;
+		result.upper = maxU;
+
+		if(store){
+			this.table.setBounds(id, maxL, maxU);
+			this.numBellmanUpdates.incrementAndGet();
+			BELLMAN_BACKUPS.increment();
+		}
+
+		return result;
+
+	}
+
+
+	@Override
+	public double value(StateHashTuple sh){
+		if(this.tf.isTerminal(sh.s)){
+			return 0.;
+		}
+		int id = this.table.lookupId(sh);
+		if(id == -1){
+			return this.getDefaultValue(sh.s);
+		}
+		return this.useLowerBoundForValue ? this.table.lower(id) : this.table.upper(id);
+	}
+
+
+	@Override
+	public boolean hasComputedValueFor(State s){
+		return this.table.lookupId(this.hashingFactory.hashState(s)) != -1;
+	}
+
+
+	@Override
+	public List <State> getAllStates(){
+		List<StateHashTuple> shs = this.table.getStates();
+		List <State> result = new ArrayList<State>(shs.size());
+		for(StateHashTuple sh : shs){
+			result.add(sh.s);
+		}
+		return result;
+	}
+
+
+	@Override
+	public void resetPlannerResults(){
+		super.resetPlannerResults();
+		this.table.clear();
+	}
+
+
+
+	/**
+	 * The result of a Bellman backup of a state: its new bounds, and the outcome states of its greedy action.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class Backup{
+
+		/**
+		 * The hashed state that was backed up
+		 */
+		public StateHashTuple sh;
+
+		/**
+		 * The id of the state that was backed up
+		 */
+		public int id;
+
+		/**
+		 * The new lower bound
+		 */
+		public double lower = 0.;
+
+		/**
+		 * The new upper bound
+		 */
+		public double upper = 0.;
+
+		/**
+		 * The outcome states of the greedy action; null if the state is terminal or has no applicable actions.
+		 */
+		public StateHashTuple [] successors;
+
+		/**
+		 * The ids of the outcome states of the greedy action; null if the state is terminal or has no applicable actions.
+		 */
+		public int [] successorIds;
+
+		/**
+		 * The probabilities of the outcome states of the greedy action; null if the state is terminal or has no applicable actions.
+		 */
+		public double [] successorProbs;
+
+
+		/**
+		 * Initializes with no greedy outcome states.
+		 * @param sh the hashed state that was backed up
+		 * @param id the id of the state that was backed up
+		 */
+		public Backup(StateHashTuple sh, int id){
+			this.sh = sh;
+			this.id = id;
+		}
+
+		/**
+		 * Sets the outcome states of the greedy action.
+		 * @param successors the outcome states
+		 * @param successorIds the ids of the outcome states
+		 * @param successorProbs the probabilities of the outcome states
+		 */
+		public void setGreedy(StateHashTuple [] successors, int [] successorIds, double [] successorProbs){
+			this.successors = successors;
+			this.successorIds = successorIds;
+			this.successorProbs = successorProbs;
+		}
+
+	}
+
+}
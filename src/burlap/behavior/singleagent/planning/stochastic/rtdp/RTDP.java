@@ -248,8 +248,11 @@ public class RTDP extends ValueFunctionPlanner {
 			}
 			
 			totalStates += nSteps;
+			ROLLOUTS.increment();
 			
-			DPrint.cl(debugCode, "Pass: " + i + "; Num states: " + nSteps + " (total: " + totalStates + ")");
+			if(DPrint.mode(debugCode)){
+				DPrint.cl(debugCode, "Pass: ", i, "; Num states: ", nSteps, " (total: ", totalStates, ")");
+			}
 			
 			if(delta < this.maxDelta){
 				consecutiveSmallDeltas++;
@@ -286,7 +289,10 @@ public class RTDP extends ValueFunctionPlanner {
 			
 			double delta = this.performOrderedBellmanUpdates(orderedStates);
 			totalStates += orderedStates.size();
-			DPrint.cl(debugCode, "Pass: " + i + "; Num states: " + orderedStates.size() + " (total: " + totalStates + ")");
+			ROLLOUTS.increment();
+			if(DPrint.mode(debugCode)){
+				DPrint.cl(debugCode, "Pass: ", i, "; Num states: ", orderedStates.size(), " (total: ", totalStates, ")");
+			}
 			
 			if(delta < this.maxDelta){
 				consecutiveSmallDeltas++;
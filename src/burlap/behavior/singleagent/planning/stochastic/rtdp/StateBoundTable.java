@@ -0,0 +1,284 @@
+package burlap.behavior.singleagent.planning.stochastic.rtdp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import burlap.behavior.singleagent.ValueFunctionInitialization;
+import burlap.behavior.statehashing.StateHashTuple;
+import burlap.oomdp.core.TerminalFunction;
+
+
+/**
+ * A thread-safe table that assigns each hashed state a compact integer id and stores, for each id, a lower bound value,
+ * an upper bound value, and a solved label. Rather than keeping separate hash maps for each quantity, all three are stored
+ * in a single primitive table with a stride of three entries per state, so that a state's id is looked up once and all of
+ * its information is then read with array indexing. The table is stored in fixed-size pages so that it can grow without moving
+ * existing entries, which allows multiple threads to read and write entries concurrently while other threads add new states.
+ * <p/>
+ * Bounds and labels are written with atomic array operations, so concurrent readers always see a complete value, though
+ * not necessarily the most recent one. Solved labels are monotone: once set, they are never cleared until the table is cleared.
+ * <p/>
+ * When a state is first added to the table, its bounds are initialized from the provided lower and upper bound
+ * {@link ValueFunctionInitialization} objects, or to 0 and labeled solved if it is a terminal state.
+ * @author James MacGlashan
+ *
+ */
+public class StateBoundTable {
+
+	/**
+	 * The number of bits used to index a state within a page
+	 */
+	protected static final int						PAGEBITS = 12;
+
+	/**
+	 * The number of states stored in each page
+	 */
+	protected static final int						PAGESIZE = 1 << PAGEBITS;
+
+	/**
+	 * The number of table entries stored for each state
+	 */
+	protected static final int						STRIDE = 3;
+
+
+	/**
+	 * The map from hashed states to their compact ids
+	 */
+	protected ConcurrentHashMap<StateHashTuple, Integer>	ids = new ConcurrentHashMap<StateHashTuple, Integer>();
+
+	/**
+	 * The hashed states indexed by their id
+	 */
+	protected List<StateHashTuple>					states = new ArrayList<StateHashTuple>();
+
+	/**
+	 * The pages of the table. Entry 3*i is the lower bound, 3*i+1 the upper bound, and 3*i+2 the solved label of the i'th state of a page.
+	 * Bounds are stored as the raw long bits of their double values.
+	 */
+	protected volatile AtomicLongArray[]			pages = new AtomicLongArray[0];
+
+	/**
+	 * The number of states in the table
+	 */
+	protected volatile int							size = 0;
+
+	/**
+	 * The number of states that are labeled solved
+	 */
+	protected AtomicInteger							numSolved = new AtomicInteger(0);
+
+
+	/**
+	 * The lower bound value function initialization
+	 */
+	protected ValueFunctionInitialization			lowerVInit;
+
+	/**
+	 * The upper bound value function initialization
+	 */
+	protected ValueFunctionInitialization			upperVInit;
+
+	/**
+	 * The terminal function used to initialize terminal states
+	 */
+	protected TerminalFunction						tf;
+
+
+	/**
+	 * Initializes.
+	 * @param lowerVInit the lower bound value function initialization
+	 * @param upperVInit the upper bound value function initialization
+	 * @param tf the terminal function; terminal states are initialized with bounds of 0 and labeled solved.
+	 */
+	public StateBoundTable(ValueFunctionInitialization lowerVInit, ValueFunctionInitialization upperVInit, TerminalFunction tf){
+		this.lowerVInit = lowerVInit;
+		this.upperVInit = upperVInit;
+		this.tf = tf;
+	}
+
+
+	/**
+	 * Returns the id of the given hashed state, adding it to the table with initialized bounds if it is not already present.
+	 * @param sh the hashed state
+	 * @return the compact id of the state.
+	 */
+	public int stateId(StateHashTuple sh){
+
+		Integer id = this.ids.get(sh);
+		if(id != null){
+			return id;
+		}
+
+		synchronized(this){
+
+			id = this.ids.get(sh);
+			if(id != null){
+				return id;
+			}
+
+			int nid = this.size;
+			if(nid >> PAGEBITS >= this.pages.length){
+				AtomicLongArray [] npages = new AtomicLongArray[this.pages.length+1];
+				System.arraycopy(this.pages, 0, npages, 0, this.pages.length);
+				npages[this.pages.length] = new AtomicLongArray(PAGESIZE*STRIDE);
+				this.pages = npages;
+			}
+
+			AtomicLongArray page = this.pages[nid >> PAGEBITS];
+			int offset = (nid & (PAGESIZE-1))*STRIDE;
+			if(this.tf.isTerminal(sh.s)){
+				page.set(offset, Double.doubleToRawLongBits(0.));
+				page.set(offset+1, Double.doubleToRawLongBits(0.));
+				page.set(offset+2, 1L);
+				this.numSolved.incrementAndGet();
+			}
+			else{
+				page.set(offset, Double.doubleToRawLongBits(this.lowerVInit.value(sh.s)));
+				page.set(offset+1, Double.doubleToRawLongBits(this.upperVInit.value(sh.s)));
+				page.set(offset+2, 0L);
+			}
+
+			this.states.add(sh);
+			this.size = nid+1;
+			this.ids.put(sh, nid);
+
+			return nid;
+
+		}
+
+	}
+
+
+	/**
+	 * Returns the id of the given hashed state, or -1 if it is not in the table.
+	 * @param sh the hashed state
+	 * @return the compact id of the state, or -1 if it is not in the table.
+	 */
+	public int lookupId(StateHashTuple sh){
+		Integer id = this.ids.get(sh);
+		if(id == null){
+			return -1;
+		}
+		return id;
+	}
+
+
+	/**
+	 * Returns the hashed state with the given id.
+	 * @param id the id of the state
+	 * @return the hashed state with the given id.
+	 */
+	public synchronized StateHashTuple getState(int id){
+		return this.states.get(id);
+	}
+
+
+	/**
+	 * Returns the lower bound of the state with the given id.
+	 * @param id the id of the state
+	 * @return the lower bound of the state
+	 */
+	public double lower(int id){
+		return Double.longBitsToDouble(this.pages[id >> PAGEBITS].get((id & (PAGESIZE-1))*STRIDE));
+	}
+
+
+	/**
+	 * Returns the upper bound of the state with the given id.
+	 * @param id the id of the state
+	 * @return the upper bound of the state
+	 */
+	public double upper(int id){
+		return Double.longBitsToDouble(this.pages[id >> PAGEBITS].get((id & (PAGESIZE-1))*STRIDE + 1));
+	}
+
+
+	/**
+	 * Returns the margin between the upper and lower bound of the state with the given id.
+	 * @param id the id of the state
+	 * @return the margin between the upper and lower bound of the state
+	 */
+	public double gap(int id){
+		AtomicLongArray page = this.pages[id >> PAGEBITS];
+		int offset = (id & (PAGESIZE-1))*STRIDE;
+		return Double.longBitsToDouble(page.get(offset+1)) - Double.longBitsToDouble(page.get(offset));
+	}
+
+
+	/**
+	 * Sets the lower and upper bound of the state with the given id.
+	 * @param id the id of the state
+	 * @param lower the new lower bound
+	 * @param upper the new upper bound
+	 */
+	public void setBounds(int id, double lower, double upper){
+		AtomicLongArray page = this.pages[id >> PAGEBITS];
+		int offset = (id & (PAGESIZE-1))*STRIDE;
+		page.set(offset, Double.doubleToRawLongBits(lower));
+		page.set(offset+1, Double.doubleToRawLongBits(upper));
+	}
+
+
+	/**
+	 * Returns whether the state with the given id is labeled solved.
+	 * @param id the id of the state
+	 * @return true if the state is labeled solved; false otherwise.
+	 */
+	public boolean isSolved(int id){
+		return this.pages[id >> PAGEBITS].get((id & (PAGESIZE-1))*STRIDE + 2) != 0L;
+	}
+
+
+	/**
+	 * Labels the state with the given id solved.
+	 * @param id the id of the state
+	 */
+	public void markSolved(int id){
+		if(this.pages[id >> PAGEBITS].compareAndSet((id & (PAGESIZE-1))*STRIDE + 2, 0L, 1L)){
+			this.numSolved.incrementAndGet();
+		}
+	}
+
+
+	/**
+	 * Returns the number of states in the table.
+	 * @return the number of states in the table.
+	 */
+	public int size(){
+		return this.size;
+	}
+
+
+	/**
+	 * Returns the number of states labeled solved.
+	 * @return the number of states labeled solved.
+	 */
+	public int numSolved(){
+		return this.numSolved.get();
+	}
+
+
+	/**
+	 * Returns the hashed states in the table.
+	 * @return the hashed states in the table.
+	 */
+	public synchronized List<StateHashTuple> getStates(){
+		return new ArrayList<StateHashTuple>(this.states);
+	}
+
+
+	/**
+	 * Removes all states from the table. This should not be called while other threads are using the table.
+	 */
+	public synchronized void clear(){
+		this.ids.clear();
+		this.states.clear();
+		this.pages = new AtomicLongArray[0];
+		this.size = 0;
+		this.numSolved.set(0);
+	}
+
+}
@@ -16,6 +16,7 @@ import burlap.behavior.statehashing.NameDependentStateHashFactory;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.MetricsRegistry;
 import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.State;
@@ -106,6 +107,17 @@ public class SparseSampling extends OOMDPPlanner implements QComputablePlanner{
 	protected boolean computeExactValueFunction = false;
 	
 	
+	/**
+	 * The counter of the value estimates of sparse sampling planners, reported when metrics are enabled in the {@link burlap.debugtools.MetricsRegistry}
+	 */
+	public static final MetricsRegistry.Counter VALUE_ESTIMATES = MetricsRegistry.counter("planning.sparseSampling.valueEstimates");
+	
+	/**
+	 * The timer of the planning calls of sparse sampling planners
+	 */
+	public static final MetricsRegistry.Timer PLANNING_TIME = MetricsRegistry.timer("planning.sparseSampling.planFromState");
+	
+	
 	/**
 	 * The tree nodes indexed by state and height.
 	 */
@@ -311,10 +323,14 @@ public class SparseSampling extends OOMDPPlanner implements QComputablePlanner{
 		
 		DPrint.cl(this.debugCode, "Beginning Planning.");
 		int oldUpdates = this.numUpdates;
+		long start = PLANNING_TIME.start();
 		
 		StateNode sn = this.getStateNode(initialState, this.h);
 		rootLevelQValues.put(sh, sn.estimateQs());
 		
+		PLANNING_TIME.stop(start);
+		VALUE_ESTIMATES.add(this.numUpdates - oldUpdates);
+		
 		DPrint.cl(this.debugCode, "Finished Planning with " + (this.numUpdates - oldUpdates) + " value esitmates; for a cumulative total of: " + this.numUpdates);
 		
 		if(this.forgetPreviousPlanResults){
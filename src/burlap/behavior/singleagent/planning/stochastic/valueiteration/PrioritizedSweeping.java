@@ -106,7 +106,7 @@ public class PrioritizedSweeping extends ValueIteration{
 			
 		}
 		
-		DPrint.cl(this.debugCode, "Finished planning with " + numBackups + " Bellman backups");
+		DPrint.cl(this.debugCode, "Finished planning with ", numBackups, " Bellman backups");
 		
 	}
 	
@@ -164,7 +164,7 @@ public class PrioritizedSweeping extends ValueIteration{
 			
 		}
 		
-		DPrint.cl(this.debugCode, "Finished reachability analysis; # states: " + mapToStateIndex.size());
+		DPrint.cl(this.debugCode, "Finished reachability analysis; # states: ", mapToStateIndex.size());
 		
 		this.foundReachableStates = true;
 		this.hasRunVI = false;
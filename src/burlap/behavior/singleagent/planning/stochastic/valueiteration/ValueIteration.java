@@ -12,6 +12,7 @@ import burlap.behavior.singleagent.planning.ValueFunctionPlanner;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.MetricsRegistry;
 import burlap.oomdp.core.Domain;
 import burlap.oomdp.core.State;
 import burlap.oomdp.core.TerminalFunction;
@@ -34,6 +35,22 @@ import burlap.oomdp.singleagent.RewardFunction;
  */
 public class ValueIteration extends ValueFunctionPlanner{
 
+	/**
+	 * The timer of the reachability analyses of value iteration, reported when metrics are enabled in the {@link burlap.debugtools.MetricsRegistry}
+	 */
+	public static final MetricsRegistry.Timer						REACHABILITY_TIME = MetricsRegistry.timer("planning.vi.reachability");
+	
+	/**
+	 * The timer of the value iteration sweeps that follow a reachability analysis
+	 */
+	public static final MetricsRegistry.Timer						SWEEPS_TIME = MetricsRegistry.timer("planning.vi.sweeps");
+	
+	/**
+	 * The gauge of the number of states found by the most recent reachability analysis
+	 */
+	public static final MetricsRegistry.Gauge						NUM_STATES = MetricsRegistry.gauge("planning.vi.states");
+	
+
 	/**
 	 * When the maximum change in the value function is smaller than this value, VI will terminate.
 	 */
@@ -90,6 +107,20 @@ public class ValueIteration extends ValueFunctionPlanner{
 	public void recomputeReachableStates(){
 		this.foundReachableStates = false;
 		this.transitionDynamics = new HashMap<StateHashTuple, List<ActionTransitions>>();
+		if(this.transitionStateStore != null){
+			this.transitionStateStore.clear();
+		}
+	}
+	
+	
+	/**
+	 * Signals that the reward function has changed (for instance, after a new one was set with {@link #setRf(burlap.oomdp.singleagent.RewardFunction)}),
+	 * so that the next call to {@link #planFromState(State)} reruns VI. Unlike {@link #resetPlannerResults()}, the reachable states, cached transition
+	 * dynamics, and value function are kept, so VI is warm started from the value function of the previous reward function, which
+	 * typically converges in far fewer passes when the reward function changed only slightly.
+	 */
+	public void rewardFunctionChanged(){
+		this.hasRunVI = false;
 	}
 	
 	
@@ -132,6 +163,7 @@ public class ValueIteration extends ValueFunctionPlanner{
 		}
 		
 		Set <StateHashTuple> states = mapToStateIndex.keySet();
+		long start = SWEEPS_TIME.start();
 		
 		int i = 0;
 		for(i = 0; i < this.maxIterations; i++){
@@ -151,7 +183,8 @@ public class ValueIteration extends ValueFunctionPlanner{
 			
 		}
 		
-		DPrint.cl(this.debugCode, "Passes: " + i);
+		SWEEPS_TIME.stop(start);
+		DPrint.cl(this.debugCode, "Passes: ", i);
 		
 		this.hasRunVI = true;
 		
@@ -175,6 +208,7 @@ public class ValueIteration extends ValueFunctionPlanner{
 		}
 		
 		DPrint.cl(this.debugCode, "Starting reachability analysis");
+		long start = REACHABILITY_TIME.start();
 		
 		//add to the open list
 		LinkedList <StateHashTuple> openList = new LinkedList<StateHashTuple>();
@@ -215,7 +249,9 @@ public class ValueIteration extends ValueFunctionPlanner{
 			
 		}
 		
-		DPrint.cl(this.debugCode, "Finished reachability analysis; # states: " + mapToStateIndex.size());
+		REACHABILITY_TIME.stop(start);
+		NUM_STATES.set(mapToStateIndex.size());
+		DPrint.cl(this.debugCode, "Finished reachability analysis; # states: ", mapToStateIndex.size());
 		
 		this.foundReachableStates = true;
 		this.hasRunVI = false;
@@ -7,9 +7,10 @@ import java.util.Map;
 import java.util.Set;
 
 import burlap.oomdp.core.Attribute;
+import burlap.oomdp.core.AttributeHandle;
+import burlap.oomdp.core.ObjectClass;
 import burlap.oomdp.core.ObjectInstance;
 import burlap.oomdp.core.State;
-import burlap.oomdp.core.Value;
 
 
 
@@ -51,6 +52,32 @@ public class DiscreteMaskHashingFactory extends DiscreteStateHashFactory {
 	}
 	
 	
+	/**
+	 * Returns the handles of the given attributes for an object class. When the attributes are all the attributes of the class, in the same order,
+	 * the cached handles of the class are returned.
+	 * @param oc the object class
+	 * @param atts the attributes
+	 * @return the handles of the attributes for the object class
+	 */
+	protected static AttributeHandle [] maskedHandles(ObjectClass oc, List <Attribute> atts){
+		AttributeHandle [] all = oc.getAttributeHandles();
+		if(all.length == atts.size()){
+			boolean same = true;
+			for(int i = 0; i < all.length && same; i++){
+				same = all[i].attribute.name.equals(atts.get(i).name);
+			}
+			if(same){
+				return all;
+			}
+		}
+		AttributeHandle [] handles = new AttributeHandle[atts.size()];
+		for(int i = 0; i < handles.length; i++){
+			handles[i] = oc.getAttributeHandle(atts.get(i).name);
+		}
+		return handles;
+	}
+	
+	
 	public class DiscreteMaskHashTuple extends DiscreteStateHashTuple{
 
 		public DiscreteMaskHashTuple(State s) {
@@ -99,6 +126,11 @@ public class DiscreteMaskHashingFactory extends DiscreteStateHashFactory {
 				if(theseObjects.size() != thoseObjects.size()){
 					return false;
 				}
+				if(theseObjects.isEmpty()){
+					continue;
+				}
+				
+				AttributeHandle [] handles = maskedHandles(theseObjects.get(0).getObjectClass(), attsToCheck);
 				
 				for(ObjectInstance o : theseObjects){
 					
@@ -108,7 +140,7 @@ public class DiscreteMaskHashingFactory extends DiscreteStateHashFactory {
 						if(matchedObjects.contains(ooname)){
 							continue;
 						}
-						if(this.objectsMatch(o, oo, attsToCheck)){
+						if(this.objectsMatch(o, oo, handles)){
 							foundMatch = true;
 							matchedObjects.add(ooname);
 							break;
@@ -131,11 +163,21 @@ public class DiscreteMaskHashingFactory extends DiscreteStateHashFactory {
 		
 		
 		protected boolean objectsMatch(ObjectInstance o, ObjectInstance oo, List <Attribute> attsToCheck){
+			return this.objectsMatch(o, oo, maskedHandles(o.getObjectClass(), attsToCheck));
+		}
+		
+		
+		/**
+		 * Returns whether two objects have equal values for the given attributes.
+		 * @param o an object
+		 * @param oo another object
+		 * @param handles the handles of the attributes to compare, as returned by {@link DiscreteMaskHashingFactory#maskedHandles(ObjectClass, List)}
+		 * @return true if the objects have equal values for all the given attributes; false otherwise.
+		 */
+		protected boolean objectsMatch(ObjectInstance o, ObjectInstance oo, AttributeHandle [] handles){
 			
-			for(Attribute att : attsToCheck){
-				Value ov = o.getValueForAttribute(att.name);
-				Value oov = oo.getValueForAttribute(att.name);
-				if(!ov.equals(oov)){
+			for(AttributeHandle h : handles){
+				if(!o.valueEquals(oo, h)){
 					return false;
 				}
 			}
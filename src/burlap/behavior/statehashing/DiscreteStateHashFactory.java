@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 
 import burlap.oomdp.core.Attribute;
+import burlap.oomdp.core.AttributeHandle;
 import burlap.oomdp.core.Attribute.AttributeType;
 import burlap.oomdp.core.ObjectClass;
 import burlap.oomdp.core.ObjectInstance;
@@ -150,17 +151,20 @@ public class DiscreteStateHashFactory implements StateHashFactory {
 		private int getIndexValue(ObjectInstance o, ObjectClass oc){
 			
 			List <Attribute> attributes = this.getAttributesForClass(oc);
+			//when hashing on all attributes, their values are read through the class's attribute handles rather than by name
+			AttributeHandle [] handles = attributes == oc.attributeList ? oc.getAttributeHandles() : null;
 			int index = 0;
 			int vol = 1;
-			for(Attribute att : attributes){
+			for(int i = 0; i < attributes.size(); i++){
+				Attribute att = attributes.get(i);
 				if(att.type == AttributeType.STRING){
-					index += o.getStringValForAttribute(att.name).hashCode()*vol;
+					index += (handles != null ? o.getStringValForAttribute(handles[i]) : o.getStringValForAttribute(att.name)).hashCode()*vol;
 				}
 				else if(att.type == AttributeType.INTARRAY){
 					index += this.intArrayCode(o.getIntArrayValue(att.name))*vol;
 				}
 				else{
-					index += o.getDiscValForAttribute(att.name)*vol;
+					index += (handles != null ? o.getDiscValForAttribute(handles[i]) : o.getDiscValForAttribute(att.name))*vol;
 				}
 				if(att.type==AttributeType.DISC || att.type == AttributeType.BOOLEAN){
 					vol *= att.discValues.size();
@@ -12,11 +12,11 @@ import java.util.Set;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
 import burlap.oomdp.core.Attribute;
+import burlap.oomdp.core.AttributeHandle;
 import burlap.oomdp.core.Attribute.AttributeType;
 import burlap.oomdp.core.ObjectClass;
 import burlap.oomdp.core.ObjectInstance;
 import burlap.oomdp.core.State;
-import burlap.oomdp.core.Value;
 
 
 /**
@@ -160,20 +160,23 @@ public class DiscretizingStateHashFactory implements StateHashFactory {
 		private int getIndexValue(ObjectInstance o, ObjectClass oc){
 			
 			List <Attribute> attributes = this.getAttributesForClass(oc);
+			//when hashing on all attributes, their values are read through the class's attribute handles rather than by name
+			AttributeHandle [] handles = attributes == oc.attributeList ? oc.getAttributeHandles() : null;
 			int index = 0;
 			int vol = 1;
-			for(Attribute att : attributes){
+			for(int h = 0; h < attributes.size(); h++){
 				
+				Attribute att = attributes.get(h);
 				if(att.type==AttributeType.DISC || att.type == AttributeType.BOOLEAN){
-					index += o.getDiscValForAttribute(att.name)*vol;
+					index += (handles != null ? o.getDiscValForAttribute(handles[h]) : o.getDiscValForAttribute(att.name))*vol;
 					vol *= att.discValues.size();
 				}
 				else if(att.type==AttributeType.INT){
-					index += o.getDiscValForAttribute(att.name)*vol;
+					index += (handles != null ? o.getDiscValForAttribute(handles[h]) : o.getDiscValForAttribute(att.name))*vol;
 					vol *= 31;
 				}
 				else if(att.type==AttributeType.STRING){
-					index += o.getStringValForAttribute(att.name).hashCode()*vol;
+					index += (handles != null ? o.getStringValForAttribute(handles[h]) : o.getStringValForAttribute(att.name)).hashCode()*vol;
 					vol *= 31;
 				}
 				else if(att.type==AttributeType.INTARRAY){
@@ -181,7 +184,7 @@ public class DiscretizingStateHashFactory implements StateHashFactory {
 					vol *= 31;
 				}
 				else if(att.type==AttributeType.REAL || att.type == AttributeType.REALUNBOUND){
-					index += this.getDiscrteizedValue(att, o.getRealValForAttribute(att.name))*vol;
+					index += this.getDiscrteizedValue(att, handles != null ? o.getRealValForAttribute(handles[h]) : o.getRealValForAttribute(att.name))*vol;
 					vol *= 31;
 				}
 				else if(att.type==AttributeType.DOUBLEARRAY){
@@ -335,12 +338,12 @@ public class DiscretizingStateHashFactory implements StateHashFactory {
 		 */
 		protected boolean objectsMatch(ObjectInstance o, ObjectInstance oo){
 			
-			for(Attribute att : o.getObjectClass().attributeList){
+			AttributeHandle [] handles = o.getObjectClass().getAttributeHandles();
+			for(int h = 0; h < handles.length; h++){
+				Attribute att = handles[h].attribute;
 				if(att.type == AttributeType.BOOLEAN || att.type == AttributeType.DISC || att.type == AttributeType.INT 
 						|| att.type == AttributeType.STRING || att.type == AttributeType.INTARRAY){
-					Value ov = o.getValueForAttribute(att.name);
-					Value oov = oo.getValueForAttribute(att.name);
-					if(!ov.equals(oov)){
+					if(!o.valueEquals(oo, handles[h])){
 						return false;
 					}
 				}
@@ -0,0 +1,176 @@
+package burlap.behavior.statehashing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import burlap.oomdp.core.ObjectInstance;
+import burlap.oomdp.core.State;
+
+
+/**
+ * A {@link StateHashFactory} that hash-conses the states it hashes: each distinct state is stored once, as a canonical {@link StateHashTuple},
+ * and hashing a state that is identical to a stored state returns the stored tuple instead of a new tuple of the input state. Code that retains
+ * the returned tuples, such as the cached transition dynamics of a {@link burlap.behavior.singleagent.planning.ValueFunctionPlanner}, therefore
+ * holds one {@link State} object for each distinct state rather than one copy for every time the state was generated.
+ * <p/>
+ * The hash values and equality of the tuples are defined by a source {@link StateHashFactory}. However, a state is only replaced by a stored
+ * state if the two states are identical, that is, if every object of the input state has an object of the same name in the stored state with the same
+ * values. A state that the source factory considers equal to a stored state, but that differs from it in its object names or in values that the source
+ * factory ignores (for instance, with a {@link DiscretizingStateHashFactory} or a {@link DiscreteMaskHashingFactory}), is returned in a new tuple of
+ * the input state, so that code that inspects the states of the returned tuples, such as reward functions, sees the same states that it would see
+ * with the source factory.
+ * <p/>
+ * Interned states are kept until {@link #clear()} is called, so the factory retains every distinct state it has hashed. It is meant to back a cache
+ * that retains those states anyway and that clears the factory when it is cleared, as {@link burlap.behavior.singleagent.planning.ValueFunctionPlanner}
+ * does with the successor states of its cached transitions; a factory that hashes states that are not otherwise retained should be cleared periodically.
+ * The canonical tuples are kept in a {@link ConcurrentHashMap}, so the factory can be shared by threads without locking.
+ * @author James MacGlashan
+ *
+ */
+public class InterningStateHashFactory implements StateHashFactory {
+
+	/**
+	 * The factory that defines the hash values and equality of states
+	 */
+	protected StateHashFactory										sourceFactory;
+
+	/**
+	 * Map from hashed states to their canonical tuple
+	 */
+	protected ConcurrentHashMap<StateHashTuple, StateHashTuple>		canonical;
+
+	/**
+	 * The number of states hashed with this factory
+	 */
+	protected AtomicLong											numLookups = new AtomicLong();
+
+	/**
+	 * The number of hashed states that were replaced with a canonical state
+	 */
+	protected AtomicLong											numHits = new AtomicLong();
+
+
+
+	/**
+	 * Initializes with the factory that defines the hash values and equality of states.
+	 * @param sourceFactory the factory used to hash states.
+	 */
+	public InterningStateHashFactory(StateHashFactory sourceFactory){
+		this.sourceFactory = sourceFactory;
+		this.canonical = new ConcurrentHashMap<StateHashTuple, StateHashTuple>();
+	}
+
+
+	/**
+	 * Returns the factory that defines the hash values and equality of states.
+	 * @return the factory that defines the hash values and equality of states.
+	 */
+	public StateHashFactory getSourceFactory(){
+		return this.sourceFactory;
+	}
+
+
+	/**
+	 * Returns the canonical tuple of the given state, interning the state if no equal state has been interned. If an equal state has been
+	 * interned, but is not identical to the given state, a new tuple of the given state is returned.
+	 */
+	@Override
+	public StateHashTuple hashState(State s){
+
+		StateHashTuple sh = this.sourceFactory.hashState(s);
+		this.numLookups.incrementAndGet();
+
+		StateHashTuple stored = this.canonical.get(sh);
+		if(stored == null){
+			stored = this.canonical.putIfAbsent(sh, sh);
+			if(stored == null){
+				return sh;
+			}
+		}
+
+		if(stored.s == s || identical(s, stored.s)){
+			this.numHits.incrementAndGet();
+			return stored;
+		}
+
+		return sh;
+	}
+
+
+	/**
+	 * Returns the number of interned states.
+	 * @return the number of interned states.
+	 */
+	public int size(){
+		return this.canonical.size();
+	}
+
+
+	/**
+	 * Returns the number of states hashed by this factory since it was created or last cleared.
+	 * @return the number of states hashed by this factory.
+	 */
+	public long getNumLookups(){
+		return this.numLookups.get();
+	}
+
+
+	/**
+	 * Returns the number of hashed states that were replaced by a canonical state, each of which is a state copy that code retaining the returned
+	 * tuples does not have to hold.
+	 * @return the number of hashed states that were replaced by a canonical state.
+	 */
+	public long getNumHits(){
+		return this.numHits.get();
+	}
+
+
+	/**
+	 * Removes all interned states and resets the lookup statistics.
+	 */
+	public void clear(){
+		this.canonical.clear();
+		this.numLookups.set(0);
+		this.numHits.set(0);
+	}
+
+
+	/**
+	 * Returns whether two states have the same objects, by name, with the same values.
+	 * @param s a state
+	 * @param o another state
+	 * @return true if the states have the same objects with the same values; false otherwise.
+	 */
+	protected static boolean identical(State s, State o){
+
+		if(s.numObservableObjects() != o.numObservableObjects() || s.numHiddenObjects() != o.numHiddenObjects()){
+			return false;
+		}
+
+		for(int i = 0; i < s.numObservableObjects(); i++){
+			if(!identicalObject(s.getObservableObjectAt(i), o)){
+				return false;
+			}
+		}
+		for(int i = 0; i < s.numHiddenObjects(); i++){
+			if(!identicalObject(s.getHiddenObjectAt(i), o)){
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Returns whether a state has an object with the same name and values as the given object.
+	 * @param ob the object
+	 * @param o the state
+	 * @return true if the state has an object with the same name and values as ob; false otherwise.
+	 */
+	private static boolean identicalObject(ObjectInstance ob, State o){
+		ObjectInstance oo = o.getObject(ob.getName());
+		return oo != null && ob.valueEquals(oo);
+	}
+
+}
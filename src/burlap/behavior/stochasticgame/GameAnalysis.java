@@ -8,9 +8,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.Set;
 
+import burlap.oomdp.auxiliary.EpisodeElementReader;
 import burlap.oomdp.auxiliary.StateParser;
 import burlap.oomdp.core.State;
 import burlap.oomdp.stochasticgames.GroundedSingleAction;
@@ -363,16 +363,43 @@ public class GameAnalysis {
 	 * @return an {@link GameAnalysis} object.
 	 */
 	public static GameAnalysis parseFileIntoGA(String path, SGDomain domain, StateParser sp){
+		return parseFileIntoGA(path, domain, sp, null);
+	}
+	
+	
+	/**
+	 * Reads a game that was written to a file and turns into a {@link GameAnalysis} object, reading one time step of the file at a time
+	 * and informing a listener after each time step is parsed, so that the game can be used while it is parsed.
+	 * @param path the path to the game file.
+	 * @param domain the stochastic games domain to which the states and actions belong
+	 * @param sp a state parser that can parse the state string representation in the file
+	 * @param listener the listener informed after each time step is parsed; may be null
+	 * @return an {@link GameAnalysis} object, which holds only the time steps parsed before the listener stopped parsing if it did.
+	 */
+	public static GameAnalysis parseFileIntoGA(String path, SGDomain domain, StateParser sp, ParseListener listener){
 		
-		//read whole file into string first
-		String fcont = null;
+		GameAnalysis ga = new GameAnalysis();
+		
+		EpisodeElementReader reader = new EpisodeElementReader(path);
 		try{
-			fcont = new Scanner(new File(path)).useDelimiter("\\Z").next();
-		}catch(Exception E){
-			System.out.println(E);
+			while(reader.next()){
+				State s = sp.stringToState(reader.getStateString());
+				if(reader.getActionString() != null){
+					ga.recordTransitionTo(parseStringIntoJointAction(reader.getActionString(), domain), s, parseStringIntoJointReward(reader.getRewardString()));
+				}
+				else{
+					ga.getStates().add(s);
+				}
+				if(listener != null && !listener.parsedTimeStep(ga, ga.getStates().size()-1)){
+					break;
+				}
+			}
+		}
+		finally{
+			reader.close();
 		}
 		
-		return parseStringIntoGameAnalysis(fcont, domain, sp);
+		return ga;
 	}
 	
 	
@@ -445,4 +472,24 @@ public class GameAnalysis {
 	}
 	
 	
+	
+	
+	/**
+	 * A listener that is informed as each time step of a game file is parsed by {@link GameAnalysis#parseFileIntoGA(String, SGDomain, StateParser, ParseListener)}.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface ParseListener{
+		
+		/**
+		 * Called after a time step has been parsed. The state of the time step has been added to the game along with the joint action taken in it,
+		 * unless it is the last state of the game.
+		 * @param ga the game parsed so far
+		 * @param t the time step that was parsed
+		 * @return true if parsing should continue; false if it should stop.
+		 */
+		public boolean parsedTimeStep(GameAnalysis ga, int t);
+		
+	}
+	
 }
@@ -21,8 +21,11 @@ import burlap.oomdp.auxiliary.StateParser;
 import burlap.oomdp.core.GroundedProp;
 import burlap.oomdp.core.PropositionalFunction;
 import burlap.oomdp.core.State;
-import burlap.oomdp.stochasticgames.JointAction;
 import burlap.oomdp.stochasticgames.SGDomain;
+import burlap.oomdp.visualizer.StreamingEpisodeLoader;
+import burlap.oomdp.visualizer.StreamingEpisodeLoader.LoadListener;
+import burlap.oomdp.visualizer.StreamingEpisodeLoader.LoadedEpisode;
+import burlap.oomdp.visualizer.StreamingEpisodeLoader.StepSink;
 import burlap.oomdp.visualizer.Visualizer;
 
 public class GameSequenceVisualizer extends JFrame {
@@ -53,6 +56,9 @@ private static final long serialVersionUID = 1L;
 	protected StateParser							sp;
 	
 	protected GameAnalysis							curGA;
+	protected StreamingEpisodeLoader<GameAnalysis>	loader;
+	protected LoadedEpisode<GameAnalysis>		curEpisode;
+	protected int									maxCachedEpisodes = 8;
 	protected DefaultListModel						iterationListModel;
 	
 	protected SGDomain								domain;
@@ -113,6 +119,7 @@ private static final long serialVersionUID = 1L;
 		
 		this.sp = sp;
 		
+		this.initLoader();
 		
 		this.initGUI();
 		
@@ -231,20 +238,49 @@ private static final long serialVersionUID = 1L;
 	}
 	
 	
-	private void setIterationListData(){
+	/**
+	 * Sets the maximum number of fully parsed games that are kept in memory, so that returning to them does not parse their files again.
+	 * @param maxCachedEpisodes the maximum number of fully parsed games kept in memory
+	 */
+	public void setMaxCachedEpisodes(int maxCachedEpisodes){
+		this.maxCachedEpisodes = maxCachedEpisodes;
+		if(this.loader != null){
+			this.loader.setMaxCachedEpisodes(maxCachedEpisodes);
+		}
+	}
+	
+	
+	/**
+	 * Creates the loader that parses game files in the background as they are selected.
+	 */
+	protected void initLoader(){
 		
-		//clear the old contents
-		iterationListModel.clear();
+		this.loader = new StreamingEpisodeLoader<GameAnalysis>(new StreamingEpisodeLoader.EpisodeParser<GameAnalysis>() {
+			
+			@Override
+			public GameAnalysis parse(String path, final StepSink sink) {
+				return GameAnalysis.parseFileIntoGA(path, domain, sp, new GameAnalysis.ParseListener() {
+					
+					@Override
+					public boolean parsedTimeStep(GameAnalysis ga, int t) {
+						//the label of a state is the joint action taken in it
+						String label = t < ga.getJointActions().size() ? ga.getJointAction(t).toString() : "final state";
+						return sink.addStep(ga.getState(t), label);
+					}
+				});
+			}
+		}, this.maxCachedEpisodes);
 		
+	}
+	
+	
+	private void appendIterationListData(){
 		
-		//add each action (which is taken in the state being renderd)
-		for(JointAction ja : curGA.getJointActions()){
-			iterationListModel.addElement(ja.toString());
+		//add the label (the action taken in the state) of each state parsed since the last update
+		for(int i = iterationListModel.size(); i < curEpisode.numStates(); i++){
+			iterationListModel.addElement(curEpisode.getLabel(i));
 		}
 		
-		//add the final state
-		iterationListModel.addElement("final state");
-		
 	}
 	
 	private void handleEpisodeSelection(ListSelectionEvent e){
@@ -252,20 +288,41 @@ private static final long serialVersionUID = 1L;
 		if (e.getValueIsAdjusting() == false) {
 
 			int ind = episodeList.getSelectedIndex();
-			//System.out.println("epsidoe id: " + ind);
        		if (ind != -1) {
        			
-				//System.out.println("Loading Episode File...");
-       			curGA = GameAnalysis.parseFileIntoGA(episodeFiles.get(ind), domain, sp);
-				//curEA = EpisodeAnalysis.readEpisodeFromFile(episodeFiles.get(ind));
-				//System.out.println("Finished Loading Episode File.");
-				
+       			//parse the game in the background and show its states as they are parsed
+       			iterationListModel.clear();
 				painter.updateState(new State()); //clear screen
-				this.setIterationListData();
 				
-			}
-			else{
-				//System.out.println("canceled selection");
+				curEpisode = loader.load(episodeFiles.get(ind), new LoadListener<GameAnalysis>() {
+					
+					@Override
+					public void stepsAvailable(LoadedEpisode<GameAnalysis> episode) {
+						if(episode == curEpisode){
+							appendIterationListData();
+						}
+					}
+					
+					@Override
+					public void loadFinished(LoadedEpisode<GameAnalysis> episode) {
+						if(episode == curEpisode){
+							curGA = episode.getResult();
+							appendIterationListData();
+						}
+					}
+					
+					@Override
+					public void loadFailed(LoadedEpisode<GameAnalysis> episode, RuntimeException ex) {
+						if(episode == curEpisode){
+							appendIterationListData();
+							propViewer.setText("Could not load " + episode.getPath() + ": " + ex);
+						}
+					}
+				});
+				
+				curGA = curEpisode.getResult();
+				this.appendIterationListData();
+				
 			}
 			
 		}
@@ -281,7 +338,7 @@ private static final long serialVersionUID = 1L;
 				//System.out.println("Changing visualization...");
 				int index = iterationList.getSelectedIndex();
 				
-				State curState = curGA.getState(index);
+				State curState = curEpisode.getState(index);
 				
 				
 				
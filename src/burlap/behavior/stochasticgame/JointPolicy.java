@@ -12,6 +12,7 @@ import burlap.oomdp.core.State;
 import burlap.oomdp.stochasticgames.Agent;
 import burlap.oomdp.stochasticgames.AgentType;
 import burlap.oomdp.stochasticgames.JointAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 import burlap.oomdp.stochasticgames.World;
 
 
@@ -38,6 +39,11 @@ public abstract class JointPolicy extends Policy {
 	 */
 	protected Map<String, AgentType>		agentsInJointPolicy;
 	
+	/**
+	 * Provides the joint action index of the agent definitions
+	 */
+	protected JointActionIndex.Provider		jaIndexProvider = new JointActionIndex.Provider();
+	
 	/**
 	 * The last synchronized joint action that was selected
 	 */
@@ -96,6 +102,18 @@ public abstract class JointPolicy extends Policy {
 	}
 	
 	
+	/**
+	 * Returns the {@link JointActionIndex} of the joint actions of the agents defined in this joint policy that applies to state s. Unlike
+	 * {@link #getAllJointActions(State)}, the index allows the joint actions of a state to be iterated over by their integer joint index without constructing
+	 * joint action objects. If none of the agents' actions are parameterized, the same index is returned for every state until the agent definitions change.
+	 * @param s the state in which joint actions will be queried
+	 * @return the {@link JointActionIndex} that applies to state s.
+	 */
+	public JointActionIndex getJointActionIndex(State s){
+		return this.jaIndexProvider.get(s, this.agentsInJointPolicy);
+	}
+	
+	
 	/**
 	 * Returns a map specifying the agents who contribute actions to this joint policy. The map goes from
 	 * agent names to their agent type.
@@ -15,6 +15,7 @@ import burlap.behavior.stochasticgame.mavaluefunction.JAQValue;
 import burlap.behavior.stochasticgame.mavaluefunction.MAQSourcePolicy;
 import burlap.behavior.stochasticgame.mavaluefunction.MultiAgentQSourceProvider;
 import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent;
+import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent.ArrayBackedQSource;
 import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent.HashBackedQSource;
 import burlap.behavior.stochasticgame.mavaluefunction.SGBackupOperator;
 import burlap.behavior.stochasticgame.mavaluefunction.policies.EGreedyMaxWellfare;
@@ -104,6 +105,11 @@ public class MultiAgentQLearning extends Agent implements MultiAgentQSourceProvi
 	 */
 	protected boolean									queryOtherAgentsQSource = true;
 	
+	/**
+	 * Whether the Q-sources created by this agent are {@link ArrayBackedQSource} objects rather than {@link HashBackedQSource} objects.
+	 */
+	protected boolean									useArrayBackedQSources = true;
+	
 	
 	/**
 	 * Whether the agent needs to update its Q-values from a recent experience
@@ -128,7 +134,8 @@ public class MultiAgentQLearning extends Agent implements MultiAgentQSourceProvi
 	
 	
 	/**
-	 * Initializes this Q-learning agent. This agent's Q-source will use a {@link HashBackedQSource} q-source and the learning policy is defaulted
+	 * Initializes this Q-learning agent. This agent's Q-source will use an {@link ArrayBackedQSource} q-source, whose rows are indexed by the joint actions of the agents in the world
+	 * (see {@link #setUseArrayBackedQSources(boolean)}), and the learning policy is defaulted
 	 * to an epsilon = 0.1 maximum wellfare ({@link EGreedyMaxWellfare}) derived policy. If queryOtherAgentsForTheirQValues is set to true, then this agent will
 	 * only store its own Q-values and will use the other agent's stored Q-values to determine theirs.
 	 * @param d the domain in which to perform learing
@@ -148,14 +155,15 @@ public class MultiAgentQLearning extends Agent implements MultiAgentQSourceProvi
 		this.backupOperator = backupOperator;
 		this.queryOtherAgentsQSource = queryOtherAgentsForTheirQValues;
 		
-		this.myQSource = new QSourceForSingleAgent.HashBackedQSource(this.hashingFactory, this.qInit);
+		this.myQSource = this.createQSource(null);
 		
 		this.learningPolicy = new PolicyFromJointPolicy(new EGreedyMaxWellfare(this, 0.1));
 	}
 	
 	
 	/**
-	 * Initializes this Q-learning agent. This agent's Q-source will use a {@link HashBackedQSource} q-source and the learning policy is defaulted
+	 * Initializes this Q-learning agent. This agent's Q-source will use an {@link ArrayBackedQSource} q-source, whose rows are indexed by the joint actions of the agents in the world
+	 * (see {@link #setUseArrayBackedQSources(boolean)}), and the learning policy is defaulted
 	 * to an epsilon = 0.1 maximum wellfare ({@link EGreedyMaxWellfare}) derived policy. If queryOtherAgentsForTheirQValues is set to true, then this agent will
 	 * only store its own Q-values and will use the other agent's stored Q-values to determine theirs.
 	 * @param d the domain in which to perform learing
@@ -175,12 +183,38 @@ public class MultiAgentQLearning extends Agent implements MultiAgentQSourceProvi
 		this.backupOperator = backupOperator;
 		this.queryOtherAgentsQSource = queryOtherAgentsForTheirQValues;
 		
-		this.myQSource = new QSourceForSingleAgent.HashBackedQSource(this.hashingFactory, this.qInit);
+		this.myQSource = this.createQSource(null);
 		
 		this.learningPolicy = new PolicyFromJointPolicy(new EGreedyMaxWellfare(this, 0.1));
 	}
 	
 	
+	/**
+	 * Sets whether this agent stores its Q-values in an {@link ArrayBackedQSource}, whose rows of Q-values are indexed by the joint actions of the agents in the world,
+	 * rather than in a {@link HashBackedQSource}. Array backed Q-sources are used by default; they let backup operators and joint policies read the Q-values
+	 * of a state as one row rather than looking up each joint action in a map. Setting this value replaces this agent's Q-source, discarding any Q-values learned, so it should be set before learning begins.
+	 * @param useArrayBackedQSources if true, then Q-values are stored in {@link ArrayBackedQSource} objects; if false, in {@link HashBackedQSource} objects.
+	 */
+	public void setUseArrayBackedQSources(boolean useArrayBackedQSources){
+		this.useArrayBackedQSources = useArrayBackedQSources;
+		this.myQSource = this.createQSource(null);
+		this.qSourceMap = null;
+	}
+	
+	
+	/**
+	 * Creates a new Q-source of the kind selected with {@link #setUseArrayBackedQSources(boolean)}.
+	 * @param agentDefinitions the agent definitions that index the Q-values of an {@link ArrayBackedQSource}; may be null if they are set later
+	 * @return a new Q-source
+	 */
+	protected QSourceForSingleAgent createQSource(Map<String, AgentType> agentDefinitions){
+		if(this.useArrayBackedQSources){
+			return new QSourceForSingleAgent.ArrayBackedQSource(this.hashingFactory, this.qInit, agentDefinitions);
+		}
+		return new QSourceForSingleAgent.HashBackedQSource(this.hashingFactory, this.qInit);
+	}
+	
+	
 	@Override
 	public void joinWorld(World w, AgentType as){
 		super.joinWorld(w, as);
@@ -217,6 +251,9 @@ public class MultiAgentQLearning extends Agent implements MultiAgentQSourceProvi
 	
 	@Override
 	public void gameStarting() {
+		if(this.myQSource instanceof ArrayBackedQSource){
+			((ArrayBackedQSource)this.myQSource).setAgentDefinitions(this.world.getAgentDefinitions());
+		}
 		if(this.qSourceMap == null){
 			if(this.queryOtherAgentsQSource){
 				this.qSourceMap = new MAQLControlledQSourceMap(this.world.getRegisteredAgents());
@@ -225,7 +262,7 @@ public class MultiAgentQLearning extends Agent implements MultiAgentQSourceProvi
 				Map<String, QSourceForSingleAgent> qSourceMapping = new HashMap<String, QSourceForSingleAgent>();
 				for(Agent a : this.world.getRegisteredAgents()){
 					if(a != this){
-						qSourceMapping.put(a.getAgentName(), new QSourceForSingleAgent.HashBackedQSource(this.hashingFactory, this.qInit));
+						qSourceMapping.put(a.getAgentName(), this.createQSource(this.world.getAgentDefinitions()));
 					}
 					else{
 						qSourceMapping.put(a.getAgentName(), this.myQSource);
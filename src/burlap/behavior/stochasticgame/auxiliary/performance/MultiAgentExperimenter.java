@@ -1,10 +1,20 @@
 package burlap.behavior.stochasticgame.auxiliary.performance;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import burlap.behavior.singleagent.auxiliary.performance.PerformanceMetric;
 import burlap.behavior.singleagent.auxiliary.performance.TrialMode;
 import burlap.behavior.stochasticgame.GameAnalysis;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.ParallelMatchEngine;
+import burlap.oomdp.core.State;
 import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.stochasticgames.JointAction;
 import burlap.oomdp.stochasticgames.World;
 import burlap.oomdp.stochasticgames.WorldGenerator;
 import burlap.oomdp.stochasticgames.WorldObserver;
@@ -24,7 +34,9 @@ import burlap.oomdp.stochasticgames.WorldObserver;
  * By default, the trial length will be interpreted as the number of episodes in a trial, but this interpreation can be changed with the
  * {@link #toggleTrialLengthInterpretation(boolean)}
  * <p/>
- * To start an experiment once everything is configured, use the {@link #startExperiment()} method.
+ * To start an experiment once everything is configured, use the {@link #startExperiment()} method. Trials can also be run concurrently
+ * on multiple threads with the {@link #startExperiment(int, long)} method, in which case each trial's rewards and episode ends are recorded and
+ * replayed into the performance plotter in trial order once all previous trials have been replayed.
  * 
  * 
  * @author James MacGlashan
@@ -250,6 +262,76 @@ public class MultiAgentExperimenter {
 	
 	
 	
+	/**
+	 * Starts the experiment and runs all trials for all agents with trials run concurrently on the given number of threads using a {@link ParallelMatchEngine}.
+	 * Each trial generates its own world and agents from this experimenter's {@link WorldGenerator} and {@link AgentFactoryAndType} objects, so these
+	 * must be safe to call concurrently and must not return objects that are shared among trials. The rewards and episode ends of each trial are recorded and
+	 * fed to the performance plotter in trial order, so the collected performance data is reproducible as described in {@link burlap.debugtools.RandomFactory#beginThreadScope(long)}.
+	 * @param nThreads the number of threads on which to run trials
+	 * @param seed the seed from which the random scope seed of each trial is derived
+	 */
+	public void startExperiment(int nThreads, long seed){
+		
+		if(this.completedExperiment){
+			System.out.println("Experiment was already run and has completed. If you want to run a new experiment create a new Experiment object.");
+			return;
+		}
+		
+		if(this.plotter == null){
+			
+			TrialMode trialMode = TrialMode.MOSTRECENTANDAVERAGE;
+			if(this.nTrials == 1){
+				trialMode = TrialMode.MOSTRECENTTTRIALONLY;
+			}
+			
+			this.plotter = new MultiAgentPerformancePlotter(this.tf, 500, 250, 2, 500, trialMode);
+				
+		}
+		
+		if(this.displayPlots){
+			this.plotter.startGUI();
+		}
+		
+		ParallelMatchEngine engine = new ParallelMatchEngine(nThreads, seed);
+		engine.run(this.nTrials, new ParallelMatchEngine.MatchTask<TrialRewardRecorder>() {
+			
+			@Override
+			public TrialRewardRecorder runMatch(int matchIndex) {
+				
+				World w = worldGenerator.generateWorld();
+				DPrint.toggleCode(w.getDebugId(), false);
+				TrialRewardRecorder recorder = new TrialRewardRecorder(tf);
+				w.addWorldObserver(recorder);
+				for(AgentFactoryAndType aft : agentFactoriesAndTypes){
+					aft.agentFactory.generateAgent().joinWorld(w, aft.at);
+				}
+				
+				if(trialLengthIsInEpisodes){
+					runEpisodewiseTrial(w);
+				}
+				else{
+					runStepwiseTrial(w);
+				}
+				
+				return recorder;
+			}
+		}, new ParallelMatchEngine.ResultCommitter<TrialRewardRecorder>() {
+			
+			@Override
+			public void commit(int matchIndex, TrialRewardRecorder result) {
+				DPrint.cl(debugCode, "Completed trial " + (matchIndex+1) + "/" + nTrials);
+				plotter.startNewTrial();
+				result.replay(plotter);
+			}
+		});
+		
+		this.plotter.endAllTrials();
+		
+	}
+	
+	
+	
+	
 	/**
 	 * Writes the step-wise and episode-wise data to CSV files.
 	 * The episode-wise data will be saved to the file <pathAndBaseNameToUse>Episodes.csv. The step-wise data will.
@@ -323,4 +405,93 @@ public class MultiAgentExperimenter {
 		
 	}
 	
+	
+	
+	/**
+	 * A {@link WorldObserver} that summarizes a trial for a {@link MultiAgentPerformancePlotter} as it is observed, keeping only each step's
+	 * joint reward and whether the step ended an episode, so that the states and joint actions of the trial are not kept in memory. The summary
+	 * can later be replayed into the plotter.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class TrialRewardRecorder implements WorldObserver{
+		
+		/**
+		 * The terminal function used to interpret the end of episodes
+		 */
+		protected TerminalFunction				tf;
+		
+		/**
+		 * The names of the agents, in the order of the columns of {@link #rewards}
+		 */
+		protected List<String>					agentNames = new ArrayList<String>();
+		
+		/**
+		 * The reward of each agent in each step, stored row-wise with one row per step
+		 */
+		protected double []						rewards = new double[64];
+		
+		/**
+		 * Which steps ended in a terminal state
+		 */
+		protected BitSet						terminalSteps = new BitSet();
+		
+		/**
+		 * The number of recorded steps
+		 */
+		protected int							numSteps = 0;
+		
+		
+		/**
+		 * Initializes.
+		 * @param tf the terminal function used to interpret the end of episodes
+		 */
+		public TrialRewardRecorder(TerminalFunction tf){
+			this.tf = tf;
+		}
+		
+		
+		@Override
+		public void observe(State s, JointAction ja, Map<String, Double> reward, State sp) {
+			
+			if(this.numSteps == 0 && this.agentNames.size() == 0){
+				this.agentNames.addAll(reward.keySet());
+			}
+			int nAgents = this.agentNames.size();
+			if(reward.size() != nAgents || !this.agentNames.containsAll(reward.keySet())){
+				throw new RuntimeException("Error: the agents observed in a trial changed. Unable to track performance with repsect to other agents.");
+			}
+			
+			int offset = this.numSteps * nAgents;
+			if(offset + nAgents > this.rewards.length){
+				this.rewards = Arrays.copyOf(this.rewards, Math.max(offset + nAgents, 2 * this.rewards.length));
+			}
+			for(int i = 0; i < nAgents; i++){
+				this.rewards[offset + i] = reward.get(this.agentNames.get(i));
+			}
+			if(this.tf.isTerminal(sp)){
+				this.terminalSteps.set(this.numSteps);
+			}
+			this.numSteps++;
+			
+		}
+		
+		
+		/**
+		 * Passes the recorded steps, in the order they were observed, to the given plotter.
+		 * @param plotter the plotter to which the recorded steps are passed
+		 */
+		public void replay(MultiAgentPerformancePlotter plotter){
+			int nAgents = this.agentNames.size();
+			Map<String, Double> reward = new HashMap<String, Double>(nAgents);
+			for(int t = 0; t < this.numSteps; t++){
+				for(int i = 0; i < nAgents; i++){
+					reward.put(this.agentNames.get(i), this.rewards[t*nAgents + i]);
+				}
+				plotter.observeStep(reward, this.terminalSteps.get(t));
+			}
+		}
+		
+	}
+	
 }
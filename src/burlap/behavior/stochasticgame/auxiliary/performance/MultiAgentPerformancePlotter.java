@@ -443,6 +443,22 @@ public class MultiAgentPerformancePlotter extends JFrame implements WorldObserve
 	synchronized public void observe(State s, JointAction ja, Map<String, Double> reward,
 			State sp) {
 		
+		if(!this.collectData){
+			return;
+		}
+		
+		this.observeStep(reward, this.tf.isTerminal(sp));
+		
+	}
+	
+	
+	/**
+	 * Records the joint reward of a step and whether the step ended an episode. This is used by {@link #observe(State, JointAction, Map, State)}
+	 * and by observers that summarize the steps of a trial without keeping its states, such as those of {@link MultiAgentExperimenter#startExperiment(int, long)}.
+	 * @param reward the joint reward received in the step
+	 * @param isTermainal whether the step ended in a terminal state
+	 */
+	synchronized protected void observeStep(Map<String, Double> reward, boolean isTermainal){
 		
 		if(!this.collectData){
 			return;
@@ -459,7 +475,6 @@ public class MultiAgentPerformancePlotter extends JFrame implements WorldObserve
 		this.freshStart = false;
 		
 		
-		boolean isTermainal = this.tf.isTerminal(sp);
 		
 		//update information for each agent
 		for(Map.Entry<String, Double> e : reward.entrySet()){
@@ -0,0 +1,38 @@
+package burlap.behavior.stochasticgame.mavaluefunction;
+
+import burlap.oomdp.core.State;
+import burlap.oomdp.stochasticgames.JointAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
+
+
+/**
+ * A {@link QSourceForSingleAgent} that stores the Q-values of each state in a double array indexed by the joint indices of a {@link JointActionIndex}.
+ * Clients that iterate over the joint actions of a state, such as backup operators and joint policies, can read the whole row of Q-values
+ * with {@link #getQRow(State, JointActionIndex)} instead of querying a {@link JAQValue} for each joint action. As for any {@link QSourceForSingleAgent},
+ * changing the q datamember of a {@link JAQValue} returned by {@link #getQValueFor(State, JointAction)} changes the stored Q-value, which is reflected
+ * by the rows subsequently returned; {@link #setQValue(State, JointAction, double)} changes it without retrieving its {@link JAQValue}.
+ * @author James MacGlashan
+ *
+ */
+public interface IndexedQSource extends QSourceForSingleAgent {
+
+
+	/**
+	 * Returns the stored row of Q-values for the given state, indexed by the joint indices of the given index, or null if the Q-values of the state
+	 * are indexed differently. The returned array is the stored row and should not be modified.
+	 * @param s the state
+	 * @param index the joint action index by which the caller will read the row
+	 * @return the stored row of Q-values, or null if the Q-values of the state are not indexed by the same joint indices as the given index.
+	 */
+	public double [] getQRow(State s, JointActionIndex index);
+
+
+	/**
+	 * Sets the Q-value of the given state and joint action.
+	 * @param s the state
+	 * @param ja the joint action
+	 * @param q the new Q-value
+	 */
+	public void setQValue(State s, JointAction ja, double q);
+
+}
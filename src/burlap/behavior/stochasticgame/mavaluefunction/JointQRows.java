@@ -0,0 +1,142 @@
+package burlap.behavior.stochasticgame.mavaluefunction;
+
+import burlap.oomdp.core.State;
+import burlap.oomdp.stochasticgames.JointActionIndex;
+
+
+/**
+ * Static methods for reading the Q-values of the joint actions of a state by their {@link JointActionIndex} joint indices. The Q-values are read directly
+ * from the stored rows of an {@link IndexedQSource}; for any other {@link QSourceForSingleAgent}, they are queried one joint action at a time
+ * using the joint action objects cached by the index.
+ * @author James MacGlashan
+ *
+ */
+public class JointQRows {
+
+	/**
+	 * Returns a row of the Q-values of the given agent's Q-source, indexed by the joint indices of the given index. Only the entries of the
+	 * given joint indices are guaranteed to be set. The returned array is either the Q-source's stored row or the calling thread's scratch row of the index
+	 * (see {@link JointActionIndex#scratch()}), which is overwritten by the thread's next call, so it should not be modified or kept.
+	 * @param source the Q-source of the agent
+	 * @param s the state
+	 * @param index the joint action index
+	 * @param jointIndices the joint indices whose Q-values are needed
+	 * @param n the number of joint indices in jointIndices
+	 * @return a row of Q-values indexed by joint index
+	 */
+	public static double [] getRow(QSourceForSingleAgent source, State s, JointActionIndex index, int [] jointIndices, int n){
+		return getRow(source, s, index, jointIndices, n, index.scratch().row);
+	}
+
+
+	/**
+	 * Returns a row of the Q-values of the given agent's Q-source, indexed by the joint indices of the given index. Only the entries of the
+	 * given joint indices are guaranteed to be set. The returned array is either the Q-source's stored row, which should not be modified, or
+	 * the given buffer, into which the Q-values are copied when the Q-source does not store rows for the index.
+	 * @param source the Q-source of the agent
+	 * @param s the state
+	 * @param index the joint action index
+	 * @param jointIndices the joint indices whose Q-values are needed
+	 * @param n the number of joint indices in jointIndices
+	 * @param buffer the array into which the Q-values are copied if needed; must be at least {@link JointActionIndex#size()} long
+	 * @return a row of Q-values indexed by joint index
+	 */
+	public static double [] getRow(QSourceForSingleAgent source, State s, JointActionIndex index, int [] jointIndices, int n, double [] buffer){
+		if(source instanceof IndexedQSource){
+			double [] row = ((IndexedQSource)source).getQRow(s, index);
+			if(row != null){
+				return row;
+			}
+		}
+		for(int k = 0; k < n; k++){
+			int j = jointIndices[k];
+			buffer[j] = source.getQValueFor(s, index.jointAction(j)).q;
+		}
+		return buffer;
+	}
+
+
+	/**
+	 * Returns the joint indices of the stage game of two agents in the given state: the joint index of each pair of the agents' actions that are applicable
+	 * in the state. The rows correspond to the row agent's applicable actions and the columns to the column agent's, both in the order of the agents' action lists.
+	 * @param s the state
+	 * @param index the joint action index of the two agents
+	 * @param rowAgent the name of the row agent
+	 * @param colAgent the name of the column agent
+	 * @return the joint index of each pair of applicable actions
+	 */
+	public static int [][] getBimatrixJointIndices(State s, JointActionIndex index, String rowAgent, String colAgent){
+
+		int rowAgentIndex = index.agentIndex(rowAgent);
+		int colAgentIndex = index.agentIndex(colAgent);
+
+		int [] rowActions = new int[index.numActions(rowAgentIndex)];
+		int [] colActions = new int[index.numActions(colAgentIndex)];
+		int nr = index.applicableAgentActions(s, rowAgentIndex, rowActions);
+		int nc = index.applicableAgentActions(s, colAgentIndex, colActions);
+
+		int [][] jointIndices = new int[nr][nc];
+		for(int i = 0; i < nr; i++){
+			for(int j = 0; j < nc; j++){
+				jointIndices[i][j] = rowActions[i]*index.stride(rowAgentIndex) + colActions[j]*index.stride(colAgentIndex);
+			}
+		}
+
+		return jointIndices;
+	}
+
+
+	/**
+	 * Returns the payoff matrices of the stage game of two agents in the given state: the Q-values of each agent for each pair of their actions
+	 * that are applicable in the state. The rows of the matrices correspond to the row agent's applicable actions and the columns to the column agent's,
+	 * both in the order of the agents' action lists.
+	 * @param s the state
+	 * @param index the joint action index of the two agents
+	 * @param rowAgent the name of the row agent
+	 * @param colAgent the name of the column agent
+	 * @param qSourceMap the Q-sources of the agents
+	 * @return a 3 dimensional array whose first element is the row agent's payoff matrix and whose second element is the column agent's payoff matrix.
+	 */
+	public static double [][][] getBimatrix(State s, JointActionIndex index, String rowAgent, String colAgent, AgentQSourceMap qSourceMap){
+		return getBimatrix(s, index, getBimatrixJointIndices(s, index, rowAgent, colAgent), rowAgent, colAgent, qSourceMap);
+	}
+
+
+	/**
+	 * Returns the payoff matrices of the stage game of two agents for the given matrix of joint indices, as returned by
+	 * {@link #getBimatrixJointIndices(State, JointActionIndex, String, String)}. The Q-values are gathered in the calling thread's scratch arrays of the index
+	 * (see {@link JointActionIndex#scratch()}).
+	 * @param s the state
+	 * @param index the joint action index of the two agents
+	 * @param jointIndices the joint index of each entry of the payoff matrices
+	 * @param rowAgent the name of the row agent
+	 * @param colAgent the name of the column agent
+	 * @param qSourceMap the Q-sources of the agents
+	 * @return a 3 dimensional array whose first element is the row agent's payoff matrix and whose second element is the column agent's payoff matrix.
+	 */
+	public static double [][][] getBimatrix(State s, JointActionIndex index, int [][] jointIndices, String rowAgent, String colAgent, AgentQSourceMap qSourceMap){
+
+		int nr = jointIndices.length;
+		int nc = nr > 0 ? jointIndices[0].length : 0;
+		JointActionIndex.Scratch scratch = index.scratch();
+		int [] flat = scratch.jointIndices;
+		for(int i = 0; i < nr; i++){
+			System.arraycopy(jointIndices[i], 0, flat, i*nc, nc);
+		}
+
+		double [] rowQs = getRow(qSourceMap.agentQSource(rowAgent), s, index, flat, nr*nc, scratch.row);
+		double [] colQs = getRow(qSourceMap.agentQSource(colAgent), s, index, flat, nr*nc, scratch.otherRow);
+
+		double [][] rowPayoff = new double[nr][nc];
+		double [][] colPayoff = new double[nr][nc];
+		for(int i = 0; i < nr; i++){
+			for(int j = 0; j < nc; j++){
+				rowPayoff[i][j] = rowQs[jointIndices[i][j]];
+				colPayoff[i][j] = colQs[jointIndices[i][j]];
+			}
+		}
+
+		return new double[][][]{rowPayoff, colPayoff};
+	}
+
+}
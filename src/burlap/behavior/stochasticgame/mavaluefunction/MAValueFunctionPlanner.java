@@ -91,6 +91,11 @@ public abstract class MAValueFunctionPlanner implements MultiAgentQSourceProvide
 	 */
 	protected boolean						planningStarted = false;
 	
+	/**
+	 * Whether all agents' values are backed up with a single joint backup when the backup operator is a {@link SGJointBackupOperator}.
+	 */
+	protected boolean						useJointBackups = true;
+	
 	
 	
 	
@@ -163,6 +168,17 @@ public abstract class MAValueFunctionPlanner implements MultiAgentQSourceProvide
 	}
 	
 	
+	/**
+	 * Sets whether all agents' values are backed up with a single joint backup when the backup operator is a {@link SGJointBackupOperator}.
+	 * Joint backups are used by default. If set to false, or if the backup operator is not a {@link SGJointBackupOperator}, each agent's value is backed up
+	 * with a separate call to the backup operator.
+	 * @param useJointBackups whether to use joint backups when available.
+	 */
+	public void setUseJointBackups(boolean useJointBackups){
+		this.useJointBackups = useJointBackups;
+	}
+	
+	
 	/**
 	 * Calling this method causes planning to be performed from State s.
 	 * @param s the state from which planning is to be performed.
@@ -177,7 +193,8 @@ public abstract class MAValueFunctionPlanner implements MultiAgentQSourceProvide
 	
 	
 	/**
-	 * Backups the state value function for all agent's value functions in state s.
+	 * Backups the state value function for all agent's value functions in state s. If the backup operator is a {@link SGJointBackupOperator}
+	 * and joint backups are enabled, all values are backed up with a single call to the operator.
 	 * @param s the state in which the value functions should be backed up.
 	 * @return the maximum value-function change from this backup.
 	 */
@@ -185,6 +202,19 @@ public abstract class MAValueFunctionPlanner implements MultiAgentQSourceProvide
 		
 		StateHashTuple sh = this.hashingFactory.hashState(s);
 		
+		if(this.useJointBackups && this.backupOperator instanceof SGJointBackupOperator){
+			Map<String, Double> newVals = ((SGJointBackupOperator)this.backupOperator).performJointBackup(s, this.agentDefinitions, this.qSources);
+			double maxChange = Double.NEGATIVE_INFINITY;
+			for(String agentName : this.agentDefinitions.keySet()){
+				BackupBasedQSource qsource = (BackupBasedQSource)this.qSources.agentQSource(agentName);
+				double oldVal = qsource.getValue(sh);
+				double newVal = newVals.get(agentName);
+				maxChange = Math.max(maxChange, Math.abs(newVal-oldVal));
+				qsource.setValue(sh, newVal);
+			}
+			return maxChange;
+		}
+		
 		double maxChange = Double.NEGATIVE_INFINITY;
 		for(String agentName : this.agentDefinitions.keySet()){
 			BackupBasedQSource qsource = (BackupBasedQSource)this.qSources.agentQSource(agentName);
@@ -201,6 +231,20 @@ public abstract class MAValueFunctionPlanner implements MultiAgentQSourceProvide
 	
 	
 	
+	/**
+	 * Returns the Q-value of the given Q-source's agent for the given state and joint action computed from tabulated transition dynamics,
+	 * or null if the dynamics of the state and joint action have not been tabulated, in which case the Q-value is computed from the joint action model
+	 * and joint reward function. This default implementation tabulates nothing and always returns null.
+	 * @param qSource the Q-source of the agent whose Q-value is queried
+	 * @param s the state
+	 * @param ja the joint action
+	 * @return the Q-value computed from tabulated dynamics, or null if the dynamics have not been tabulated.
+	 */
+	protected JAQValue tabulatedQValue(BackupBasedQSource qSource, State s, JointAction ja){
+		return null;
+	}
+	
+	
 	/**
 	 * A class for holding all of the transition dynamic information for a given joint action in a given state. This includes
 	 * state transitions as well as joint rewards. Information is stored as a triple consisting of the {@link JointAction},
@@ -263,7 +307,10 @@ public abstract class MAValueFunctionPlanner implements MultiAgentQSourceProvide
 		@Override
 		public JAQValue getQValueFor(State s, JointAction ja) {
 			
-			
+			JAQValue tabulated = MAValueFunctionPlanner.this.tabulatedQValue(this, s, ja);
+			if(tabulated != null){
+				return tabulated;
+			}
 			
 			JointActionTransitions jat = new JointActionTransitions(s, ja);
 			double sumQ = 0.;
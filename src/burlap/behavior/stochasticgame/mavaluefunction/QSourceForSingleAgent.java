@@ -7,14 +7,16 @@ import burlap.behavior.singleagent.ValueFunctionInitialization;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
 import burlap.oomdp.core.State;
+import burlap.oomdp.stochasticgames.AgentType;
 import burlap.oomdp.stochasticgames.JointAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 
 /**
  * And interface for objects that can store and retrive Q-value objects for a specific agent and state and joint action query. The 
  * {@link JAQValue} returned can have their q datamember directly modified to modify the Q-values stored and retreived in this object.
- * A hash-backed implementation is also provided in this interface definition.
+ * A hash-backed implementation and an array-backed implementation (which also implements {@link IndexedQSource}) are also provided in this interface definition.
  * @author James MacGlashan
  *
  */
@@ -112,4 +114,202 @@ public interface QSourceForSingleAgent {
 		
 	}
 	
+	
+	
+	/**
+	 * An implementation of the {@link QSourceForSingleAgent} interface that stores the Q-values of each state in a double array indexed by the joint indices
+	 * of a {@link JointActionIndex}. Hashed states are mapped to their row of Q-values and the Q-value of a joint action is looked up with its joint index, so
+	 * no map from joint actions is needed and clients can read a whole row with {@link #getQRow(State, JointActionIndex)}. The row of a state is
+	 * created, with all Q-values set by a {@link ValueFunctionInitialization}, the first time the state is queried.
+	 * <p/>
+	 * The joint action index is determined by the agent definitions, which must be set before Q-values are queried by joint action
+	 * (see {@link #setAgentDefinitions(Map)}). The {@link JAQValue} object returned by {@link #getQValueFor(State, JointAction)} for a joint action is created
+	 * the first time it is queried and is then the stored entry of the joint action, so changing its q datamember changes the stored Q-value, as
+	 * {@link #setQValue(State, JointAction, double)} does. The Q-values of entries are copied into the row whenever the row is read with {@link #getQRow(State, JointActionIndex)}.
+	 * @author James MacGlashan
+	 *
+	 */
+	public class ArrayBackedQSource implements IndexedQSource{
+
+		protected HashMap<StateHashTuple, QRow>							qValues;
+		protected StateHashFactory										hashingFactory;
+		protected ValueFunctionInitialization							qInit;
+		protected Map<String, AgentType>								agentDefinitions;
+		protected JointActionIndex.Provider								indexProvider = new JointActionIndex.Provider();
+		
+		
+		/**
+		 * Initializes with a given state hashing factory and value funciton initialization for Q-values. The agent definitions must be set
+		 * with {@link #setAgentDefinitions(Map)} before Q-values are queried by joint action.
+		 * @param hashingFactory the state hashing factory used to index states
+		 * @param qInit the value function intitliazaiton to use for previously unqueried states
+		 */
+		public ArrayBackedQSource(StateHashFactory hashingFactory, ValueFunctionInitialization qInit){
+			this(hashingFactory, qInit, null);
+		}
+		
+		
+		/**
+		 * Initializes with a given state hashing factory, value funciton initialization for Q-values, and agent definitions.
+		 * @param hashingFactory the state hashing factory used to index states
+		 * @param qInit the value function intitliazaiton to use for previously unqueried states
+		 * @param agentDefinitions the agent names and types whose joint actions index the Q-values
+		 */
+		public ArrayBackedQSource(StateHashFactory hashingFactory, ValueFunctionInitialization qInit, Map<String, AgentType> agentDefinitions){
+			this.qValues = new HashMap<StateHashTuple, QRow>();
+			this.hashingFactory = hashingFactory;
+			this.qInit = qInit;
+			this.agentDefinitions = agentDefinitions;
+		}
+		
+		
+		/**
+		 * Sets the agent definitions whose joint actions index the Q-values.
+		 * @param agentDefinitions the agent names and types whose joint actions index the Q-values
+		 */
+		public void setAgentDefinitions(Map<String, AgentType> agentDefinitions){
+			this.agentDefinitions = agentDefinitions;
+		}
+		
+		
+		@Override
+		public JAQValue getQValueFor(State s, JointAction ja) {
+			QRow row = this.getRow(s, null);
+			int j = this.jointIndex(row, s, ja);
+			if(row.entries == null){
+				row.entries = new JAQValue[row.q.length];
+			}
+			JAQValue entry = row.entries[j];
+			if(entry == null){
+				entry = new JAQValue(s, ja, row.q[j]);
+				row.entries[j] = entry;
+			}
+			return entry;
+		}
+		
+		
+		@Override
+		public void setQValue(State s, JointAction ja, double q) {
+			QRow row = this.getRow(s, null);
+			int j = this.jointIndex(row, s, ja);
+			row.q[j] = q;
+			if(row.entries != null && row.entries[j] != null){
+				row.entries[j].q = q;
+			}
+		}
+		
+		
+		@Override
+		public double [] getQRow(State s, JointActionIndex index) {
+			QRow row = this.getRow(s, index);
+			if(!row.index.sameIndexingAs(index)){
+				return null;
+			}
+			if(row.entries != null){
+				for(int j = 0; j < row.entries.length; j++){
+					if(row.entries[j] != null){
+						row.q[j] = row.entries[j].q;
+					}
+				}
+			}
+			return row.q;
+		}
+		
+		
+		/**
+		 * Returns the row of Q-values for the given state, creating it if the state has not previously been queried. A new row is indexed
+		 * by the index of the agent definitions or, if they have not been set, by the given index.
+		 * @param s the state for which the row is returned
+		 * @param index the index used for a new row if the agent definitions have not been set; may be null
+		 * @return the row of Q-values for the given state
+		 */
+		protected QRow getRow(State s, JointActionIndex index){
+			
+			StateHashTuple sh = this.hashingFactory.hashState(s);
+			QRow row = this.qValues.get(sh);
+			if(row == null){
+				if(this.agentDefinitions != null){
+					index = this.indexProvider.get(s, this.agentDefinitions);
+				}
+				else if(index == null){
+					throw new RuntimeException("The agent definitions of the array backed Q-source must be set before Q-values can be queried by joint action.");
+				}
+				row = new QRow(s, index);
+				for(int j = 0; j < row.q.length; j++){
+					row.q[j] = this.qInit.qValue(s, index.jointAction(j));
+				}
+				this.qValues.put(sh, row);
+			}
+			return row;
+			
+		}
+		
+		
+		/**
+		 * Returns the joint index of the given joint action in the given row, throwing a runtime exception if it is not indexed.
+		 * @param row the row of Q-values
+		 * @param s the state for which the joint action is queried
+		 * @param ja the joint action
+		 * @return the joint index of the joint action
+		 */
+		protected int jointIndex(QRow row, State s, JointAction ja){
+			
+			int j = row.index.jointIndex(ja);
+			
+			//first make sure it's not an object identifier difference between states that is causing a failure of matching
+			if(j == -1 && ja.isParameterized() && !ja.actionDomainIsObjectIdentifierDependent()){
+				j = row.index.jointIndex((JointAction)ja.translateParameters(s, row.s));
+			}
+			if(j == -1){
+				throw new RuntimeException("The joint action " + ja.toString() + " is not indexed by the agent definitions of the array backed Q-source.");
+			}
+			
+			return j;
+		}
+		
+		
+		/**
+		 * A row of Q-values for a state, indexed by the joint indices of a {@link JointActionIndex}.
+		 * @author James MacGlashan
+		 *
+		 */
+		protected class QRow{
+			
+			/**
+			 * The state in which the row was created
+			 */
+			public State				s;
+			
+			/**
+			 * The index of the joint actions
+			 */
+			public JointActionIndex		index;
+			
+			/**
+			 * The Q-value of each joint index
+			 */
+			public double []			q;
+			
+			/**
+			 * The entry returned by {@link ArrayBackedQSource#getQValueFor(State, JointAction)} for each joint index, which holds the Q-value
+			 * of the joint index once it is created; null until an entry of the row is first returned
+			 */
+			public JAQValue []			entries;
+			
+			
+			/**
+			 * Initializes a row with all Q-values set to zero.
+			 * @param s the state in which the row is created
+			 * @param index the index of the joint actions
+			 */
+			public QRow(State s, JointActionIndex index){
+				this.s = s;
+				this.index = index;
+				this.q = new double[index.size()];
+			}
+			
+		}
+		
+	}
+	
 }
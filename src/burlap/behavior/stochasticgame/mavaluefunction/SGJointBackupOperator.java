@@ -0,0 +1,29 @@
+package burlap.behavior.stochasticgame.mavaluefunction;
+
+import java.util.Map;
+
+import burlap.oomdp.core.State;
+import burlap.oomdp.stochasticgames.AgentType;
+
+
+/**
+ * A {@link SGBackupOperator} that can compute the backup for all agents at once. Solution concepts like correlated equilibria
+ * and minmax strategies are defined over the stage game of a state as a whole, so the equilibrium solved to back up one agent's value
+ * is the same one needed to back up every other agent's value. Performing the backup jointly allows the stage game to be
+ * built and solved once per state rather than once per agent. {@link MAValueFunctionPlanner} will use joint backups when its backup
+ * operator implements this interface.
+ * @author James MacGlashan
+ *
+ */
+public interface SGJointBackupOperator extends SGBackupOperator {
+
+	/**
+	 * Performs the backup for all agents in the given state.
+	 * @param s the state to back up
+	 * @param agentDefinitions the definitions of the agents in the game
+	 * @param qSourceMap the Q-values of all agents
+	 * @return a map from each agent's name to its backed up value.
+	 */
+	public Map<String, Double> performJointBackup(State s, Map<String, AgentType> agentDefinitions, AgentQSourceMap qSourceMap);
+	
+}
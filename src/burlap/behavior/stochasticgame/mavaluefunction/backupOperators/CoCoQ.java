@@ -1,29 +1,79 @@
 package burlap.behavior.stochasticgame.mavaluefunction.backupOperators;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
-import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent;
-import burlap.behavior.stochasticgame.mavaluefunction.SGBackupOperator;
+import burlap.behavior.stochasticgame.mavaluefunction.JointQRows;
+import burlap.behavior.stochasticgame.mavaluefunction.SGJointBackupOperator;
+import burlap.behavior.stochasticgame.solvers.EquilibriumCache;
 import burlap.behavior.stochasticgame.solvers.GeneralBimatrixSolverTools;
 import burlap.behavior.stochasticgame.solvers.MinMaxSolver;
 import burlap.oomdp.core.State;
 import burlap.oomdp.stochasticgames.AgentType;
-import burlap.oomdp.stochasticgames.GroundedSingleAction;
-import burlap.oomdp.stochasticgames.JointAction;
-import burlap.oomdp.stochasticgames.SingleAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 /**
  * The CoCoQ backup operator for sequential stochastic games [1].
  * <p/>
+ * This operator is a {@link SGJointBackupOperator}: since the minmax value of the zero-sum part of the game for one agent is the
+ * negation of the other agent's, both agents' values are computed from a single minmax solution. Solved minmax strategies are also
+ * stored in an {@link EquilibriumCache} keyed by the quantized payoffs of the zero-sum game. The cache can be disabled by providing a null cache.
+ * <p/>
  * 1. Sodomka, Eric, et al. "Coco-Q: Learning in Stochastic Games with Side Payments." Proceedings of the 30th International Conference on Machine Learning (ICML-13). 2013.
  * @author Esha Gosh, John Meehan, Michalis Michaelidis, and James MacGlashan
  *
  */
-public class CoCoQ implements SGBackupOperator {
+public class CoCoQ implements SGJointBackupOperator {
 
+	/**
+	 * The cache of solved stage games; null if caching is disabled.
+	 */
+	protected EquilibriumCache<double[][]> cache;
+	
+	
+	/**
+	 * Provides the joint action index used to iterate over the joint actions of a state.
+	 */
+	protected JointActionIndex.Provider jaIndexProvider = new JointActionIndex.Provider();
+	
+	
+	/**
+	 * Initializes an operator that caches minmax strategies with a default {@link EquilibriumCache}.
+	 */
+	public CoCoQ(){
+		this(new EquilibriumCache<double[][]>());
+	}
+	
+	
+	/**
+	 * Initializes an operator that uses the given cache of minmax strategies.
+	 * @param cache the cache of solved stage games to use; if null, every stage game is solved.
+	 */
+	public CoCoQ(EquilibriumCache<double[][]> cache){
+		this.cache = cache;
+	}
+	
+	
+	/**
+	 * Returns the cache of solved stage games, or null if caching is disabled.
+	 * @return the cache of solved stage games, or null if caching is disabled.
+	 */
+	public EquilibriumCache<double[][]> getCache(){
+		return this.cache;
+	}
+	
+	
+	/**
+	 * Sets the cache of solved stage games.
+	 * @param cache the cache of solved stage games to use; if null, every stage game is solved.
+	 */
+	public void setCache(EquilibriumCache<double[][]> cache){
+		this.cache = cache;
+	}
+	
 	
 	@Override
 	public double performBackup(State s, String forAgent, Map<String, AgentType> agentDefinitions, AgentQSourceMap qSourceMap) {
@@ -40,36 +90,26 @@ public class CoCoQ implements SGBackupOperator {
 		}
 		
 		
-		QSourceForSingleAgent forAgentQSource = qSourceMap.agentQSource(forAgent);
-		QSourceForSingleAgent otherAgentQSource = qSourceMap.agentQSource(otherAgentName);
-		
-		List<GroundedSingleAction> forAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, forAgent, agentDefinitions.get(forAgent).actions);
-		List<GroundedSingleAction> otherAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, otherAgentName, agentDefinitions.get(otherAgentName).actions);
+		JointActionIndex index = this.jaIndexProvider.get(s, agentDefinitions);
+		double [][][] payoffs = JointQRows.getBimatrix(s, index, forAgent, otherAgentName, qSourceMap);
 		
-		double [][] minMaxPayout = new double[forAgentGSAs.size()][otherAgentGSAs.size()];
+		double [][] minMaxPayout = MinMaxQ.minMaxPayout(payoffs);
 		
 		double maxmax = Double.NEGATIVE_INFINITY;
 		
-		for(int i = 0; i < forAgentGSAs.size(); i++){
-			for(int j = 0; j < otherAgentGSAs.size(); j++){
-				JointAction ja = new JointAction();
-				ja.addAction(forAgentGSAs.get(i));
-				ja.addAction(otherAgentGSAs.get(j));
-				
-				double q1 = forAgentQSource.getQValueFor(s, ja).q;
-				double q2 = otherAgentQSource.getQValueFor(s, ja).q;
-				
-				minMaxPayout[i][j] = (q1-q2)/2.;
-				
+		for(int i = 0; i < minMaxPayout.length; i++){
+			for(int j = 0; j < minMaxPayout[i].length; j++){
+				double q1 = payoffs[0][i][j];
+				double q2 = payoffs[1][i][j];
 				if(q1 + q2 > maxmax){
 					maxmax = q1+q2;
 				}
-				
 			}
 		}
 		
-		double [] forAgentStrat = MinMaxSolver.getRowPlayersStrategy(minMaxPayout);
-		double [] otherAgentStrat = MinMaxSolver.getColPlayersStrategy(GeneralBimatrixSolverTools.getNegatedMatrix(minMaxPayout));
+		double [][] strategies = MinMaxSolver.getRowAndColPlayersStrategies(minMaxPayout, this.cache);
+		double [] forAgentStrat = strategies[0];
+		double [] otherAgentStrat = strategies[1];
 		
 		double minmaxQ = GeneralBimatrixSolverTools.expectedPayoffs(minMaxPayout, GeneralBimatrixSolverTools.getNegatedMatrix(minMaxPayout), forAgentStrat, otherAgentStrat)[0];
 		
@@ -81,6 +121,46 @@ public class CoCoQ implements SGBackupOperator {
 	}
 	
 	
+	@Override
+	public Map<String, Double> performJointBackup(State s, Map<String, AgentType> agentDefinitions, AgentQSourceMap qSourceMap) {
+		
+		if(agentDefinitions.size() != 2){
+			throw new RuntimeException("CoCoQ only defined for two agents.");
+		}
+		
+		Iterator<String> agentNames = agentDefinitions.keySet().iterator();
+		String rowAgentName = agentNames.next();
+		String colAgentName = agentNames.next();
+		
+		JointActionIndex index = this.jaIndexProvider.get(s, agentDefinitions);
+		double [][][] payoffs = JointQRows.getBimatrix(s, index, rowAgentName, colAgentName, qSourceMap);
+		
+		double [][] minMaxPayout = MinMaxQ.minMaxPayout(payoffs);
+		
+		double maxmax = Double.NEGATIVE_INFINITY;
+		
+		for(int i = 0; i < minMaxPayout.length; i++){
+			for(int j = 0; j < minMaxPayout[i].length; j++){
+				double q1 = payoffs[0][i][j];
+				double q2 = payoffs[1][i][j];
+				if(q1 + q2 > maxmax){
+					maxmax = q1+q2;
+				}
+			}
+		}
+		
+		double [][] strategies = MinMaxSolver.getRowAndColPlayersStrategies(minMaxPayout, this.cache);
+		double minmaxQ = GeneralBimatrixSolverTools.expectedPayoffs(minMaxPayout, GeneralBimatrixSolverTools.getNegatedMatrix(minMaxPayout), strategies[0], strategies[1])[0];
+		
+		//the column agent's side payment is the negation of the row agent's
+		Map<String, Double> values = new HashMap<String, Double>(2);
+		values.put(rowAgentName, (maxmax/2.) + minmaxQ);
+		values.put(colAgentName, (maxmax/2.) - minmaxQ);
+		
+		return values;
+	}
+	
+	
 	
 	
 
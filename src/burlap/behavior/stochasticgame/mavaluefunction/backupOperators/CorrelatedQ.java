@@ -1,30 +1,37 @@
 package burlap.behavior.stochasticgame.mavaluefunction.backupOperators;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
-import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent;
-import burlap.behavior.stochasticgame.mavaluefunction.SGBackupOperator;
+import burlap.behavior.stochasticgame.mavaluefunction.JointQRows;
+import burlap.behavior.stochasticgame.mavaluefunction.SGJointBackupOperator;
 import burlap.behavior.stochasticgame.solvers.CorrelatedEquilibriumSolver;
 import burlap.behavior.stochasticgame.solvers.CorrelatedEquilibriumSolver.CorrelatedEquilibriumObjective;
+import burlap.behavior.stochasticgame.solvers.EquilibriumCache;
 import burlap.behavior.stochasticgame.solvers.GeneralBimatrixSolverTools;
 import burlap.oomdp.core.State;
 import burlap.oomdp.stochasticgames.AgentType;
-import burlap.oomdp.stochasticgames.GroundedSingleAction;
-import burlap.oomdp.stochasticgames.JointAction;
-import burlap.oomdp.stochasticgames.SingleAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 /**
  * A correlated Q backup operator [1] for using in stochastic game multi-agent Q-learning or dynamic programming.
+ * <p/>
+ * This operator is a {@link SGJointBackupOperator}, so when it is used for dynamic programming with a
+ * {@link burlap.behavior.stochasticgame.mavaluefunction.MAValueFunctionPlanner}, the stage game of a state is built once and a single
+ * correlated equilibrium is solved and shared by both agents (except for the libertarian objective, which by definition requires
+ * a separate equilibrium for each agent). Solved equilibria are also stored in an {@link EquilibriumCache}
+ * keyed by the quantized payoffs of the stage game, so that stage games that have not changed since they were last solved, or that are
+ * shared by multiple states, do not require solving a linear program. The cache can be disabled by providing a null cache.
  * 
  * <p/>
  * 1. Greenwald, Amy, Keith Hall, and Roberto Serrano. "Correlated Q-learning." ICML. Vol. 3. 2003.
  * @author James MacGlashan
  *
  */
-public class CorrelatedQ implements SGBackupOperator {
+public class CorrelatedQ implements SGJointBackupOperator {
 
 	/**
 	 * The correlated equilibrium objective to be solved.
@@ -33,11 +40,52 @@ public class CorrelatedQ implements SGBackupOperator {
 	
 	
 	/**
-	 * Initializes an operator for the given correlated equilibrium objective.
+	 * The cache of solved stage games; null if caching is disabled.
+	 */
+	protected EquilibriumCache<double[][]> cache;
+	
+	
+	/**
+	 * Provides the joint action index used to iterate over the joint actions of a state.
+	 */
+	protected JointActionIndex.Provider jaIndexProvider = new JointActionIndex.Provider();
+	
+	
+	/**
+	 * Initializes an operator for the given correlated equilibrium objective that caches equilibria with a default {@link EquilibriumCache}.
 	 * @param objectiveType the correlated equilibrium objective being solved.
 	 */
 	public CorrelatedQ(CorrelatedEquilibriumObjective objectiveType){
+		this(objectiveType, new EquilibriumCache<double[][]>());
+	}
+	
+	
+	/**
+	 * Initializes an operator for the given correlated equilibrium objective and equilibrium cache.
+	 * @param objectiveType the correlated equilibrium objective being solved.
+	 * @param cache the cache of solved stage games to use; if null, every stage game is solved.
+	 */
+	public CorrelatedQ(CorrelatedEquilibriumObjective objectiveType, EquilibriumCache<double[][]> cache){
 		this.objectiveType = objectiveType;
+		this.cache = cache;
+	}
+	
+	
+	/**
+	 * Returns the cache of solved stage games, or null if caching is disabled.
+	 * @return the cache of solved stage games, or null if caching is disabled.
+	 */
+	public EquilibriumCache<double[][]> getCache(){
+		return this.cache;
+	}
+	
+	
+	/**
+	 * Sets the cache of solved stage games.
+	 * @param cache the cache of solved stage games to use; if null, every stage game is solved.
+	 */
+	public void setCache(EquilibriumCache<double[][]> cache){
+		this.cache = cache;
 	}
 	
 	@Override
@@ -57,36 +105,53 @@ public class CorrelatedQ implements SGBackupOperator {
 		}
 		
 		
-		QSourceForSingleAgent forAgentQSource = qSourceMap.agentQSource(forAgent);
-		QSourceForSingleAgent otherAgentQSource = qSourceMap.agentQSource(otherAgentName);
+		JointActionIndex index = this.jaIndexProvider.get(s, agentDefinitions);
+		double [][][] payoffs = JointQRows.getBimatrix(s, index, forAgent, otherAgentName, qSourceMap);
+		double [][] forPlayerPaoyff = payoffs[0];
+		double [][] otherPlayerPaoyff = payoffs[1];
 		
-		List<GroundedSingleAction> forAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, forAgent, agentDefinitions.get(forAgent).actions);
-		List<GroundedSingleAction> otherAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, otherAgentName, agentDefinitions.get(otherAgentName).actions);
+		double [][] jointActionProbs = CorrelatedEquilibriumSolver.getCorrelatedEQJointStrategy(this.objectiveType, forPlayerPaoyff, otherPlayerPaoyff, this.cache);
+		double [] expectedValue = GeneralBimatrixSolverTools.expectedPayoffs(forPlayerPaoyff, otherPlayerPaoyff, jointActionProbs);
 		
-		double [][] forPlayerPaoyff = new double[forAgentGSAs.size()][otherAgentGSAs.size()];
-		double [][] otherPlayerPaoyff = new double[forAgentGSAs.size()][otherAgentGSAs.size()];
 		
+		return expectedValue[0];
+	}
+	
+	
+	@Override
+	public Map<String, Double> performJointBackup(State s, Map<String, AgentType> agentDefinitions, AgentQSourceMap qSourceMap) {
 		
-		for(int i = 0; i < forAgentGSAs.size(); i++){
-			for(int j = 0; j < otherAgentGSAs.size(); j++){
-				JointAction ja = new JointAction();
-				ja.addAction(forAgentGSAs.get(i));
-				ja.addAction(otherAgentGSAs.get(j));
-				
-				double q1 = forAgentQSource.getQValueFor(s, ja).q;
-				double q2 = otherAgentQSource.getQValueFor(s, ja).q;
-				
-				forPlayerPaoyff[i][j] = q1;
-				otherPlayerPaoyff[i][j] = q2;
-				
-			}
+		if(agentDefinitions.size() != 2){
+			throw new RuntimeException("Correlated Q only defined for two agents.");
 		}
 		
-		double [][] jointActionProbs = CorrelatedEquilibriumSolver.getCorrelatedEQJointStrategy(this.objectiveType, forPlayerPaoyff, otherPlayerPaoyff);
-		double [] expectedValue = GeneralBimatrixSolverTools.expectedPayoffs(forPlayerPaoyff, otherPlayerPaoyff, jointActionProbs);
+		Iterator<String> agentNames = agentDefinitions.keySet().iterator();
+		String rowAgentName = agentNames.next();
+		String colAgentName = agentNames.next();
 		
+		JointActionIndex index = this.jaIndexProvider.get(s, agentDefinitions);
+		double [][][] payoffs = JointQRows.getBimatrix(s, index, rowAgentName, colAgentName, qSourceMap);
+		double [][] rowPlayerPayoff = payoffs[0];
+		double [][] colPlayerPayoff = payoffs[1];
 		
-		return expectedValue[0];
+		Map<String, Double> values = new HashMap<String, Double>(2);
+		
+		double [][] jointActionProbs = CorrelatedEquilibriumSolver.getCorrelatedEQJointStrategy(this.objectiveType, rowPlayerPayoff, colPlayerPayoff, this.cache);
+		double [] expectedValue = GeneralBimatrixSolverTools.expectedPayoffs(rowPlayerPayoff, colPlayerPayoff, jointActionProbs);
+		values.put(rowAgentName, expectedValue[0]);
+		
+		if(this.objectiveType == CorrelatedEquilibriumObjective.LIBERTARIAN){
+			//each agent maximizes its own payoff, so the column agent needs its own equilibrium
+			double [][] colAsRowPayoff = GeneralBimatrixSolverTools.transposeMatrix(colPlayerPayoff);
+			double [][] rowAsColPayoff = GeneralBimatrixSolverTools.transposeMatrix(rowPlayerPayoff);
+			double [][] colJointActionProbs = CorrelatedEquilibriumSolver.getCorrelatedEQJointStrategy(this.objectiveType, colAsRowPayoff, rowAsColPayoff, this.cache);
+			values.put(colAgentName, GeneralBimatrixSolverTools.expectedPayoffs(colAsRowPayoff, rowAsColPayoff, colJointActionProbs)[0]);
+		}
+		else{
+			values.put(colAgentName, expectedValue[1]);
+		}
+		
+		return values;
 	}
 
 }
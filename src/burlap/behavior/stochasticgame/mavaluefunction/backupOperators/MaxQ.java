@@ -1,14 +1,13 @@
 package burlap.behavior.stochasticgame.mavaluefunction.backupOperators;
 
-import java.util.List;
 import java.util.Map;
 
 import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
-import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent;
+import burlap.behavior.stochasticgame.mavaluefunction.JointQRows;
 import burlap.behavior.stochasticgame.mavaluefunction.SGBackupOperator;
 import burlap.oomdp.core.State;
 import burlap.oomdp.stochasticgames.AgentType;
-import burlap.oomdp.stochasticgames.JointAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 /**
@@ -18,18 +17,25 @@ import burlap.oomdp.stochasticgames.JointAction;
  */
 public class MaxQ implements SGBackupOperator {
 
+	/**
+	 * Provides the joint action index used to iterate over the joint actions of a state.
+	 */
+	protected JointActionIndex.Provider jaIndexProvider = new JointActionIndex.Provider();
+	
+	
 	@Override
 	public double performBackup(State s, String forAgent, Map<String, AgentType> agentDefinitions, AgentQSourceMap qSourceMap) {
 		
-		List<JointAction> allJAs = JointAction.getAllJointActions(s, agentDefinitions);
+		JointActionIndex index = this.jaIndexProvider.get(s, agentDefinitions);
+		int [] jas = index.scratch().jointIndices;
+		int n = index.applicableJointActions(s, jas);
 		
 		double maxQ = Double.NEGATIVE_INFINITY;
 		
-		QSourceForSingleAgent myQs = qSourceMap.agentQSource(forAgent);
+		double [] qs = JointQRows.getRow(qSourceMap.agentQSource(forAgent), s, index, jas, n);
 		
-		for(JointAction ja : allJAs){
-			double q = myQs.getQValueFor(s, ja).q;
-			maxQ = Math.max(q, maxQ);
+		for(int k = 0; k < n; k++){
+			maxQ = Math.max(qs[jas[k]], maxQ);
 		}
 		
 		
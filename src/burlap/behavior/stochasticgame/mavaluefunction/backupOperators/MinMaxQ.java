@@ -1,28 +1,81 @@
 package burlap.behavior.stochasticgame.mavaluefunction.backupOperators;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
-import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent;
-import burlap.behavior.stochasticgame.mavaluefunction.SGBackupOperator;
+import burlap.behavior.stochasticgame.mavaluefunction.JointQRows;
+import burlap.behavior.stochasticgame.mavaluefunction.SGJointBackupOperator;
+import burlap.behavior.stochasticgame.solvers.EquilibriumCache;
 import burlap.behavior.stochasticgame.solvers.GeneralBimatrixSolverTools;
 import burlap.behavior.stochasticgame.solvers.MinMaxSolver;
 import burlap.oomdp.core.State;
 import burlap.oomdp.stochasticgames.AgentType;
-import burlap.oomdp.stochasticgames.GroundedSingleAction;
-import burlap.oomdp.stochasticgames.JointAction;
-import burlap.oomdp.stochasticgames.SingleAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 /**
  * A minmax operator. This operator is useful for zero sum two player games. If there are more than two players in the game, a runtime exception will be thrown.
  * Before solving the minmax strategy, the Q-values are transformed into a minmax game. Then the resulting minmax strategy is used to compute
  * the expected "payoff" using the true Q-values of the query agent, which is then returned as the new Q-value.
+ * <p/>
+ * This operator is a {@link SGJointBackupOperator}, so when it is used for dynamic programming with a
+ * {@link burlap.behavior.stochasticgame.mavaluefunction.MAValueFunctionPlanner}, the minmax game of a state is built and solved once
+ * and both agents' values are computed from the resulting strategies. Solved strategies are also stored in an {@link EquilibriumCache}
+ * keyed by the quantized payoffs of the minmax game, so that games that have not changed since they were last solved, or that are
+ * shared by multiple states, do not require solving a linear program. The cache can be disabled by providing a null cache.
  * @author James MacGlashan
  *
  */
-public class MinMaxQ implements SGBackupOperator {
+public class MinMaxQ implements SGJointBackupOperator {
+
+	/**
+	 * The cache of solved stage games; null if caching is disabled.
+	 */
+	protected EquilibriumCache<double[][]> cache;
+	
+	
+	/**
+	 * Provides the joint action index used to iterate over the joint actions of a state.
+	 */
+	protected JointActionIndex.Provider jaIndexProvider = new JointActionIndex.Provider();
+	
+	
+	/**
+	 * Initializes an operator that caches minmax strategies with a default {@link EquilibriumCache}.
+	 */
+	public MinMaxQ(){
+		this(new EquilibriumCache<double[][]>());
+	}
+	
+	
+	/**
+	 * Initializes an operator that uses the given cache of minmax strategies.
+	 * @param cache the cache of solved stage games to use; if null, every stage game is solved.
+	 */
+	public MinMaxQ(EquilibriumCache<double[][]> cache){
+		this.cache = cache;
+	}
+	
+	
+	/**
+	 * Returns the cache of solved stage games, or null if caching is disabled.
+	 * @return the cache of solved stage games, or null if caching is disabled.
+	 */
+	public EquilibriumCache<double[][]> getCache(){
+		return this.cache;
+	}
+	
+	
+	/**
+	 * Sets the cache of solved stage games.
+	 * @param cache the cache of solved stage games to use; if null, every stage game is solved.
+	 */
+	public void setCache(EquilibriumCache<double[][]> cache){
+		this.cache = cache;
+	}
+	
 
 	@Override
 	public double performBackup(State s, String forAgent,
@@ -40,41 +93,68 @@ public class MinMaxQ implements SGBackupOperator {
 			}
 		}
 		
-		QSourceForSingleAgent forAgentQSource = qSourceMap.agentQSource(forAgent);
-		QSourceForSingleAgent otherAgentQSource = qSourceMap.agentQSource(otherAgentName);
+		JointActionIndex index = this.jaIndexProvider.get(s, agentDefinitions);
+		double [][][] payoffs = JointQRows.getBimatrix(s, index, forAgent, otherAgentName, qSourceMap);
+		
+		//we can use true payoff for player 1 for both players, because we're ignoring the payout for the second player.
+		double [][] truePayout1 = payoffs[0];
+		double [][] payout1 = MinMaxQ.minMaxPayout(payoffs);
 		
-		List<GroundedSingleAction> forAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, forAgent, agentDefinitions.get(forAgent).actions);
-		List<GroundedSingleAction> otherAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, otherAgentName, agentDefinitions.get(otherAgentName).actions);
 		
-		double [][] payout1 = new double[forAgentGSAs.size()][otherAgentGSAs.size()];
+		double [][] strategies = MinMaxSolver.getRowAndColPlayersStrategies(payout1, this.cache);
+		double [] forAgentStrat = strategies[0];
+		double [] otherAgentStrat = strategies[1];
 		
-		double [][] truePayout1 = new double[forAgentGSAs.size()][otherAgentGSAs.size()];
+		double expectedpayoffforPlayer1 = GeneralBimatrixSolverTools.expectedPayoffs(truePayout1, truePayout1, forAgentStrat, otherAgentStrat)[0];
 		
-		for(int i = 0; i < forAgentGSAs.size(); i++){
-			for(int j = 0; j < otherAgentGSAs.size(); j++){
-				JointAction ja = new JointAction();
-				ja.addAction(forAgentGSAs.get(i));
-				ja.addAction(otherAgentGSAs.get(j));
-				
-				double q1 = forAgentQSource.getQValueFor(s, ja).q;
-				double q2 = otherAgentQSource.getQValueFor(s, ja).q;
-				
-				truePayout1[i][j] = q1;
-				payout1[i][j] = (q1-q2)/2.;
-				
-				
-			}
+		
+		return expectedpayoffforPlayer1;
+	}
+	
+	
+	@Override
+	public Map<String, Double> performJointBackup(State s, Map<String, AgentType> agentDefinitions, AgentQSourceMap qSourceMap) {
+		
+		if(agentDefinitions.size() != 2){
+			throw new RuntimeException("MinMax only defined for two agents.");
 		}
 		
+		Iterator<String> agentNames = agentDefinitions.keySet().iterator();
+		String rowAgentName = agentNames.next();
+		String colAgentName = agentNames.next();
 		
-		double [] forAgentStrat = MinMaxSolver.getRowPlayersStrategy(payout1);
-		double [] otherAgentStrat = MinMaxSolver.getColPlayersStrategy(GeneralBimatrixSolverTools.getNegatedMatrix(payout1));
+		JointActionIndex index = this.jaIndexProvider.get(s, agentDefinitions);
+		double [][][] payoffs = JointQRows.getBimatrix(s, index, rowAgentName, colAgentName, qSourceMap);
+		double [][] rowTruePayout = payoffs[0];
+		double [][] colTruePayout = payoffs[1];
+		double [][] minMaxPayout = MinMaxQ.minMaxPayout(payoffs);
 		
-		//we can use true payoff for player 1 for both players, because we're ignoring the payout for the second player.
-		double expectedpayoffforPlayer1 = GeneralBimatrixSolverTools.expectedPayoffs(truePayout1, truePayout1, forAgentStrat, otherAgentStrat)[0];
+		//the minmax game is zero-sum, so its strategies are the same from either agent's perspective
+		double [][] strategies = MinMaxSolver.getRowAndColPlayersStrategies(minMaxPayout, this.cache);
+		double [] expectedPayoffs = GeneralBimatrixSolverTools.expectedPayoffs(rowTruePayout, colTruePayout, strategies[0], strategies[1]);
 		
+		Map<String, Double> values = new HashMap<String, Double>(2);
+		values.put(rowAgentName, expectedPayoffs[0]);
+		values.put(colAgentName, expectedPayoffs[1]);
 		
-		return expectedpayoffforPlayer1;
+		return values;
+	}
+
+	
+	/**
+	 * Returns the payoff matrix of the zero-sum game in which the row agent's payoff is half the difference between the two agents' payoffs.
+	 * @param payoffs the row agent's and the column agent's payoff matrices
+	 * @return the payoff matrix of the zero-sum game for the row agent
+	 */
+	public static double [][] minMaxPayout(double [][][] payoffs){
+		double [][] minMaxPayout = new double[payoffs[0].length][];
+		for(int i = 0; i < minMaxPayout.length; i++){
+			minMaxPayout[i] = new double[payoffs[0][i].length];
+			for(int j = 0; j < minMaxPayout[i].length; j++){
+				minMaxPayout[i][j] = (payoffs[0][i][j] - payoffs[1][i][j])/2.;
+			}
+		}
+		return minMaxPayout;
 	}
 
 }
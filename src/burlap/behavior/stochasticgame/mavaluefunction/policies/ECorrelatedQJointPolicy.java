@@ -5,16 +5,14 @@ import java.util.List;
 
 import burlap.behavior.stochasticgame.JointPolicy;
 import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
+import burlap.behavior.stochasticgame.mavaluefunction.JointQRows;
 import burlap.behavior.stochasticgame.mavaluefunction.MAQSourcePolicy;
 import burlap.behavior.stochasticgame.mavaluefunction.MultiAgentQSourceProvider;
-import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent;
 import burlap.behavior.stochasticgame.solvers.CorrelatedEquilibriumSolver;
 import burlap.behavior.stochasticgame.solvers.CorrelatedEquilibriumSolver.CorrelatedEquilibriumObjective;
 import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.State;
-import burlap.oomdp.stochasticgames.GroundedSingleAction;
-import burlap.oomdp.stochasticgames.JointAction;
-import burlap.oomdp.stochasticgames.SingleAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 /**
@@ -98,42 +96,21 @@ public class ECorrelatedQJointPolicy extends MAQSourcePolicy {
 		
 		AgentQSourceMap qSourceMap = this.qSourceProvider.getQSources();
 		
-		QSourceForSingleAgent forAgentQSource = qSourceMap.agentQSource(targetAgentName);
-		QSourceForSingleAgent otherAgentQSource = qSourceMap.agentQSource(otherAgentName);
+		JointActionIndex index = this.getJointActionIndex(s);
+		int [][] jointIndices = JointQRows.getBimatrixJointIndices(s, index, targetAgentName, otherAgentName);
+		int nr = jointIndices.length;
+		int nc = nr > 0 ? jointIndices[0].length : 0;
 		
-		List<GroundedSingleAction> forAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, targetAgentName, this.agentsInJointPolicy.get(targetAgentName).actions);
-		List<GroundedSingleAction> otherAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, otherAgentName, this.agentsInJointPolicy.get(otherAgentName).actions);
+		double [][][] payoffs = JointQRows.getBimatrix(s, index, jointIndices, targetAgentName, otherAgentName, qSourceMap);
 		
-		double [][] payout1 = new double[forAgentGSAs.size()][otherAgentGSAs.size()];
-		double [][] payout2 = new double[forAgentGSAs.size()][otherAgentGSAs.size()];
+		double [][] outcomeProbability = CorrelatedEquilibriumSolver.getCorrelatedEQJointStrategy(objectiveType, payoffs[0], payoffs[1]);
 		
-		for(int i = 0; i < forAgentGSAs.size(); i++){
-			for(int j = 0; j < otherAgentGSAs.size(); j++){
-				JointAction ja = new JointAction();
-				ja.addAction(forAgentGSAs.get(i));
-				ja.addAction(otherAgentGSAs.get(j));
-				
-				double q1 = forAgentQSource.getQValueFor(s, ja).q;
-				double q2 = otherAgentQSource.getQValueFor(s, ja).q;
-				
-				payout1[i][j] = q1;
-				payout2[i][j] = q2;
-				
-				
-			}
-		}
-		
-		double [][] jointActionProbs = CorrelatedEquilibriumSolver.getCorrelatedEQJointStrategy(objectiveType, payout1, payout2);
-		
-		List<ActionProb> aps = new ArrayList<ActionProb>();
-		double eCont = this.epsilon / (forAgentGSAs.size() + otherAgentGSAs.size());
-		for(int i = 0; i < forAgentGSAs.size(); i++){
-			for(int j = 0; j < otherAgentGSAs.size(); j++){
-				JointAction ja = new JointAction();
-				ja.addAction(forAgentGSAs.get(i));
-				ja.addAction(otherAgentGSAs.get(j));
-				double p = eCont + ((1. - this.epsilon) * jointActionProbs[i][j]);
-				ActionProb ap = new ActionProb(ja, p);
+		List<ActionProb> aps = new ArrayList<ActionProb>(nr*nc);
+		double eCont = this.epsilon / (nr + nc);
+		for(int i = 0; i < nr; i++){
+			for(int j = 0; j < nc; j++){
+				double p = eCont + ((1. - this.epsilon) * outcomeProbability[i][j]);
+				ActionProb ap = new ActionProb(index.jointAction(jointIndices[i][j]), p);
 				aps.add(ap);
 			}
 		}
@@ -8,14 +8,13 @@ import burlap.behavior.singleagent.Policy;
 import burlap.behavior.stochasticgame.JointPolicy;
 import burlap.behavior.stochasticgame.agents.maql.MultiAgentQLearning;
 import burlap.behavior.stochasticgame.agents.mavf.MultiAgentVFPlanningAgent;
-import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
+import burlap.behavior.stochasticgame.mavaluefunction.JointQRows;
 import burlap.behavior.stochasticgame.mavaluefunction.MAQSourcePolicy;
 import burlap.behavior.stochasticgame.mavaluefunction.MultiAgentQSourceProvider;
-import burlap.datastructures.HashedAggregator;
 import burlap.debugtools.RandomFactory;
 import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.State;
-import burlap.oomdp.stochasticgames.JointAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 /**
@@ -77,91 +76,97 @@ public class EGreedyJointPolicy extends MAQSourcePolicy {
 	@Override
 	public AbstractGroundedAction getAction(State s) {
 		
-		List<JointAction> jas = this.getAllJointActions(s);
-		JointAction selected = null;
-		AgentQSourceMap qSources = this.qSourceProvider.getQSources();
+		JointActionIndex index = this.getJointActionIndex(s);
+		JointActionIndex.Scratch scratch = index.scratch();
+		int [] jas = scratch.jointIndices;
+		int n = index.applicableJointActions(s, jas);
+		int selected;
 		
 		
 		double r = rand.nextDouble();
 		if(r < this.epsilon){
-			selected = jas.get(rand.nextInt(jas.size()));
+			selected = jas[rand.nextInt(n)];
 		}
 		else{
-			List<JointAction> jasWithMax = new ArrayList<JointAction>(jas.size());
-			double maxQ = Double.NEGATIVE_INFINITY;
-			for(JointAction ja : jas){
-				
-				double q = qSources.agentQSource(this.targetAgentQName).getQValueFor(s, ja).q;
-
-				if(q == maxQ){
-					jasWithMax.add(ja);
-				}
-				else if(q > maxQ){
-					jasWithMax.clear();
-					jasWithMax.add(ja);
-					maxQ = q;
-				}
-			}
+			double [] qs = JointQRows.getRow(this.qSourceProvider.getQSources().agentQSource(this.targetAgentQName), s, index, jas, n);
+			int [] maxPositions = scratch.positions;
+			int nMax = this.maxJointActions(jas, n, qs, maxPositions);
 			
-			if(jasWithMax.size() == 1){
-				selected = jasWithMax.get(0);
+			if(nMax == 1){
+				selected = jas[maxPositions[0]];
 			}
 			else{
-				selected = jasWithMax.get(rand.nextInt(jasWithMax.size()));
+				selected = jas[maxPositions[rand.nextInt(nMax)]];
 			}
 			
 			
 		}
 		
-		return selected;
+		return index.jointAction(selected);
 	}
 
 	@Override
 	public List<ActionProb> getActionDistributionForState(State s) {
 		
-		List<JointAction> jas = this.getAllJointActions(s);
-		AgentQSourceMap qSources = this.qSourceProvider.getQSources();
+		JointActionIndex index = this.getJointActionIndex(s);
+		JointActionIndex.Scratch scratch = index.scratch();
+		int [] jas = scratch.jointIndices;
+		int n = index.applicableJointActions(s, jas);
 		
-		HashedAggregator<JointAction> sumProb = new HashedAggregator<JointAction>();
-		double eCont = this.epsilon / jas.size();
+		double [] probs = new double[n];
+		double eCont = this.epsilon / n;
 		
-		for(JointAction ja : jas){
-			sumProb.add(ja, eCont);
+		for(int k = 0; k < n; k++){
+			probs[k] = eCont;
 		}
 		
 		
-		List<JointAction> jasWithMax = new ArrayList<JointAction>(jas.size());
-		double maxQ = Double.NEGATIVE_INFINITY;
-		for(JointAction ja : jas){
-			
-			double q = qSources.agentQSource(this.targetAgentQName).getQValueFor(s, ja).q;
-
-			if(q == maxQ){
-				jasWithMax.add(ja);
-			}
-			else if(q > maxQ){
-				jasWithMax.clear();
-				jasWithMax.add(ja);
-				maxQ = q;
-			}
-		}
+		double [] qs = JointQRows.getRow(this.qSourceProvider.getQSources().agentQSource(this.targetAgentQName), s, index, jas, n);
+		int [] maxPositions = scratch.positions;
+		int nMax = this.maxJointActions(jas, n, qs, maxPositions);
 		
-		double maxCont = (1. - this.epsilon) / jasWithMax.size();
-		for(JointAction ja : jasWithMax){
-			sumProb.add(ja, maxCont);
+		double maxCont = (1. - this.epsilon) / nMax;
+		for(int k = 0; k < nMax; k++){
+			probs[maxPositions[k]] += maxCont;
 		}
 		
-		List<ActionProb> aps = new ArrayList<Policy.ActionProb>(jas.size());
-		for(JointAction ja : jas){
-			double p = sumProb.v(ja);
-			if(p > 0.){
-				aps.add(new ActionProb(ja, p));
+		List<ActionProb> aps = new ArrayList<Policy.ActionProb>(n);
+		for(int k = 0; k < n; k++){
+			if(probs[k] > 0.){
+				aps.add(new ActionProb(index.jointAction(jas[k]), probs[k]));
 			}
 		}
 		
 		return aps;
 		
 	}
+	
+	
+	/**
+	 * Finds the joint actions with the maximum Q-value.
+	 * @param jas the joint indices of the joint actions to consider
+	 * @param n the number of joint actions to consider
+	 * @param qs the row of Q-values indexed by joint index
+	 * @param maxPositions the array in which the positions in jas of the maximizing joint actions are stored
+	 * @return the number of maximizing joint actions
+	 */
+	protected int maxJointActions(int [] jas, int n, double [] qs, int [] maxPositions){
+		int nMax = 0;
+		double maxQ = Double.NEGATIVE_INFINITY;
+		for(int k = 0; k < n; k++){
+			
+			double q = qs[jas[k]];
+			
+			if(q > maxQ){
+				nMax = 0;
+				maxQ = q;
+			}
+			if(q == maxQ){
+				maxPositions[nMax++] = k;
+			}
+		}
+		return nMax;
+	}
 
 	@Override
 	public boolean isStochastic() {
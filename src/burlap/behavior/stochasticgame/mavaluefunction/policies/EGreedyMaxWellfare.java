@@ -9,13 +9,13 @@ import burlap.behavior.stochasticgame.JointPolicy;
 import burlap.behavior.stochasticgame.agents.maql.MultiAgentQLearning;
 import burlap.behavior.stochasticgame.agents.mavf.MultiAgentVFPlanningAgent;
 import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
+import burlap.behavior.stochasticgame.mavaluefunction.JointQRows;
 import burlap.behavior.stochasticgame.mavaluefunction.MAQSourcePolicy;
 import burlap.behavior.stochasticgame.mavaluefunction.MultiAgentQSourceProvider;
-import burlap.datastructures.HashedAggregator;
 import burlap.debugtools.RandomFactory;
 import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.State;
-import burlap.oomdp.stochasticgames.JointAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 /**
@@ -125,90 +125,108 @@ public class EGreedyMaxWellfare extends MAQSourcePolicy {
 	@Override
 	public AbstractGroundedAction getAction(State s) {
 		
-		List<JointAction> jas = this.getAllJointActions(s);
-		JointAction selected = null;
-		AgentQSourceMap qSources = this.qSourceProvider.getQSources();
+		JointActionIndex index = this.getJointActionIndex(s);
+		JointActionIndex.Scratch scratch = index.scratch();
+		int [] jas = scratch.jointIndices;
+		int n = index.applicableJointActions(s, jas);
+		int selected;
 		
 		double r = rand.nextDouble();
 		if(r < this.epsilon){
-			selected = jas.get(rand.nextInt(jas.size()));
+			selected = jas[rand.nextInt(n)];
 		}
 		else{
-			List<JointAction> jasWithMax = new ArrayList<JointAction>(jas.size());
-			double maxSumQ = Double.NEGATIVE_INFINITY;
-			for(JointAction ja : jas){
-				double sumQ = 0.;
-				for(String aname : ja.getAgentNames()){
-					sumQ += qSources.agentQSource(aname).getQValueFor(s, ja).q;
-				}
-				if(sumQ == maxSumQ && this.breakTiesRandomly){
-					jasWithMax.add(ja);
-				}
-				else if(sumQ > maxSumQ){
-					jasWithMax.clear();
-					jasWithMax.add(ja);
-					maxSumQ = sumQ;
-				}
-			}
+			int [] maxPositions = scratch.positions;
+			int nMax = this.maxWellfareJointActions(s, index, jas, n, maxPositions);
 			
-			if(jasWithMax.size() == 1){
-				selected = jasWithMax.get(0);
+			if(nMax == 1){
+				selected = jas[maxPositions[0]];
 			}
 			else{
-				selected = jasWithMax.get(rand.nextInt(jasWithMax.size()));
+				selected = jas[maxPositions[rand.nextInt(nMax)]];
 			}
 			
 		}
 		
 		
-		return selected;
+		return index.jointAction(selected);
 	}
 
 	@Override
 	public List<ActionProb> getActionDistributionForState(State s) {
 		
-		List<JointAction> jas = this.getAllJointActions(s);
-		AgentQSourceMap qSources = this.qSourceProvider.getQSources();
-		HashedAggregator<JointAction> sumProb = new HashedAggregator<JointAction>();
-		double eCont = this.epsilon / jas.size();
+		JointActionIndex index = this.getJointActionIndex(s);
+		JointActionIndex.Scratch scratch = index.scratch();
+		int [] jas = scratch.jointIndices;
+		int n = index.applicableJointActions(s, jas);
 		
-		for(JointAction ja : jas){
-			sumProb.add(ja, eCont);
-		}
+		double [] probs = new double[n];
+		double eCont = this.epsilon / n;
 		
-		List<JointAction> jasWithMax = new ArrayList<JointAction>(jas.size());
-		double maxSumQ = Double.NEGATIVE_INFINITY;
-		for(JointAction ja : jas){
-			double sumQ = 0.;
-			for(String aname : ja.getAgentNames()){
-				sumQ += qSources.agentQSource(aname).getQValueFor(s, ja).q;
-			}
-			if(sumQ == maxSumQ && this.breakTiesRandomly){
-				jasWithMax.add(ja);
-			}
-			else if(sumQ > maxSumQ){
-				jasWithMax.clear();
-				jasWithMax.add(ja);
-				maxSumQ = sumQ;
-			}
+		for(int k = 0; k < n; k++){
+			probs[k] = eCont;
 		}
 		
-		double maxCont = (1. - this.epsilon) / jasWithMax.size();
-		for(JointAction ja : jasWithMax){
-			sumProb.add(ja, maxCont);
+		int [] maxPositions = scratch.positions;
+		int nMax = this.maxWellfareJointActions(s, index, jas, n, maxPositions);
+		
+		double maxCont = (1. - this.epsilon) / nMax;
+		for(int k = 0; k < nMax; k++){
+			probs[maxPositions[k]] += maxCont;
 		}
 		
-		List<ActionProb> aps = new ArrayList<Policy.ActionProb>(jas.size());
-		for(JointAction ja : jas){
-			double p = sumProb.v(ja);
-			if(p > 0.){
-				aps.add(new ActionProb(ja, p));
+		List<ActionProb> aps = new ArrayList<Policy.ActionProb>(n);
+		for(int k = 0; k < n; k++){
+			if(probs[k] > 0.){
+				aps.add(new ActionProb(index.jointAction(jas[k]), probs[k]));
 			}
 		}
 		
 		return aps;
 		
 	}
+	
+	
+	/**
+	 * Finds the joint actions with the maximum sum of Q-values over all agents. If ties are not broken randomly, only the first
+	 * maximizing joint action is returned.
+	 * @param s the state
+	 * @param index the joint action index of the state
+	 * @param jas the joint indices of the joint actions to consider
+	 * @param n the number of joint actions to consider
+	 * @param maxPositions the array in which the positions in jas of the maximizing joint actions are stored
+	 * @return the number of maximizing joint actions
+	 */
+	protected int maxWellfareJointActions(State s, JointActionIndex index, int [] jas, int n, int [] maxPositions){
+		
+		AgentQSourceMap qSources = this.qSourceProvider.getQSources();
+		double [] sumQs = index.scratch().values;
+		for(int k = 0; k < n; k++){
+			sumQs[k] = 0.;
+		}
+		for(int i = 0; i < index.numAgents(); i++){
+			double [] qs = JointQRows.getRow(qSources.agentQSource(index.agentName(i)), s, index, jas, n);
+			for(int k = 0; k < n; k++){
+				sumQs[k] += qs[jas[k]];
+			}
+		}
+		
+		int nMax = 0;
+		double maxSumQ = Double.NEGATIVE_INFINITY;
+		for(int k = 0; k < n; k++){
+			double sumQ = sumQs[k];
+			if(sumQ == maxSumQ && this.breakTiesRandomly){
+				maxPositions[nMax++] = k;
+			}
+			else if(sumQ > maxSumQ){
+				nMax = 0;
+				maxPositions[nMax++] = k;
+				maxSumQ = sumQ;
+			}
+		}
+		
+		return nMax;
+	}
 
 	@Override
 	public boolean isStochastic() {
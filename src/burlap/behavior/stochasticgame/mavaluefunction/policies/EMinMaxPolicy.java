@@ -6,16 +6,15 @@ import java.util.List;
 import burlap.behavior.stochasticgame.JointPolicy;
 import burlap.behavior.stochasticgame.agents.maql.MultiAgentQLearning;
 import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
+import burlap.behavior.stochasticgame.mavaluefunction.JointQRows;
 import burlap.behavior.stochasticgame.mavaluefunction.MAQSourcePolicy;
 import burlap.behavior.stochasticgame.mavaluefunction.MultiAgentQSourceProvider;
-import burlap.behavior.stochasticgame.mavaluefunction.QSourceForSingleAgent;
+import burlap.behavior.stochasticgame.mavaluefunction.backupOperators.MinMaxQ;
 import burlap.behavior.stochasticgame.solvers.GeneralBimatrixSolverTools;
 import burlap.behavior.stochasticgame.solvers.MinMaxSolver;
 import burlap.oomdp.core.AbstractGroundedAction;
 import burlap.oomdp.core.State;
-import burlap.oomdp.stochasticgames.GroundedSingleAction;
-import burlap.oomdp.stochasticgames.JointAction;
-import burlap.oomdp.stochasticgames.SingleAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 
 
 /**
@@ -99,44 +98,23 @@ public class EMinMaxPolicy extends MAQSourcePolicy {
 		
 		AgentQSourceMap qSourceMap = this.qSourceProvider.getQSources();
 		
-		QSourceForSingleAgent forAgentQSource = qSourceMap.agentQSource(this.targetAgentQName);
-		QSourceForSingleAgent otherAgentQSource = qSourceMap.agentQSource(otherAgentName);
+		JointActionIndex index = this.getJointActionIndex(s);
+		int [][] jointIndices = JointQRows.getBimatrixJointIndices(s, index, this.targetAgentQName, otherAgentName);
+		int nr = jointIndices.length;
+		int nc = nr > 0 ? jointIndices[0].length : 0;
 		
-		List<GroundedSingleAction> forAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, this.targetAgentQName, this.agentsInJointPolicy.get(this.targetAgentQName).actions);
-		List<GroundedSingleAction> otherAgentGSAs = SingleAction.getAllPossibleGroundedSingleActions(s, otherAgentName, this.agentsInJointPolicy.get(otherAgentName).actions);
-		
-		double [][] payout1 = new double[forAgentGSAs.size()][otherAgentGSAs.size()];
-		
-		
-		for(int i = 0; i < forAgentGSAs.size(); i++){
-			for(int j = 0; j < otherAgentGSAs.size(); j++){
-				JointAction ja = new JointAction();
-				ja.addAction(forAgentGSAs.get(i));
-				ja.addAction(otherAgentGSAs.get(j));
-				
-				double q1 = forAgentQSource.getQValueFor(s, ja).q;
-				double q2 = otherAgentQSource.getQValueFor(s, ja).q;
-				
-				payout1[i][j] = (q1-q2)/2.;
-				
-				
-			}
-		}
+		double [][] payout1 = MinMaxQ.minMaxPayout(JointQRows.getBimatrix(s, index, jointIndices, this.targetAgentQName, otherAgentName, qSourceMap));
 		
 		double [] forAgentStrat = MinMaxSolver.getRowPlayersStrategy(payout1);
 		double [] otherAgentStrat = MinMaxSolver.getColPlayersStrategy(GeneralBimatrixSolverTools.getNegatedMatrix(payout1));
 		double[][] outcomeProbability = GeneralBimatrixSolverTools.jointActionProbabilities(forAgentStrat, otherAgentStrat);
 		
-		
-		List<ActionProb> aps = new ArrayList<ActionProb>();
-		double eCont = this.epsilon / (forAgentGSAs.size() + otherAgentGSAs.size());
-		for(int i = 0; i < forAgentGSAs.size(); i++){
-			for(int j = 0; j < otherAgentGSAs.size(); j++){
-				JointAction ja = new JointAction();
-				ja.addAction(forAgentGSAs.get(i));
-				ja.addAction(otherAgentGSAs.get(j));
+		List<ActionProb> aps = new ArrayList<ActionProb>(nr*nc);
+		double eCont = this.epsilon / (nr + nc);
+		for(int i = 0; i < nr; i++){
+			for(int j = 0; j < nc; j++){
 				double p = eCont + ((1. - this.epsilon) * outcomeProbability[i][j]);
-				ActionProb ap = new ActionProb(ja, p);
+				ActionProb ap = new ActionProb(index.jointAction(jointIndices[i][j]), p);
 				aps.add(ap);
 			}
 		}
@@ -1,22 +1,33 @@
 package burlap.behavior.stochasticgame.mavaluefunction.vfplanners;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
 
 import burlap.behavior.singleagent.ValueFunctionInitialization;
 import burlap.behavior.statehashing.StateHashFactory;
 import burlap.behavior.statehashing.StateHashTuple;
+import burlap.behavior.stochasticgame.mavaluefunction.AgentQSourceMap;
+import burlap.behavior.stochasticgame.mavaluefunction.IndexedQSource;
+import burlap.behavior.stochasticgame.mavaluefunction.JAQValue;
 import burlap.behavior.stochasticgame.mavaluefunction.MAValueFunctionPlanner;
 import burlap.behavior.stochasticgame.mavaluefunction.SGBackupOperator;
+import burlap.behavior.stochasticgame.mavaluefunction.SGJointBackupOperator;
 import burlap.debugtools.DPrint;
+import burlap.debugtools.MetricsRegistry;
+import burlap.debugtools.ParallelMatchEngine;
 import burlap.oomdp.core.State;
 import burlap.oomdp.core.TerminalFunction;
 import burlap.oomdp.core.TransitionProbability;
 import burlap.oomdp.stochasticgames.AgentType;
 import burlap.oomdp.stochasticgames.JointAction;
+import burlap.oomdp.stochasticgames.JointActionIndex;
 import burlap.oomdp.stochasticgames.JointActionModel;
 import burlap.oomdp.stochasticgames.JointReward;
 import burlap.oomdp.stochasticgames.SGDomain;
@@ -33,12 +44,45 @@ import burlap.oomdp.stochasticgames.SGDomain;
  * <p/>
  * Value iteration will continue until either the maximum change in Q-value is less than some user provided threshold or until a max number
  * of iterations have passed. 
+ * <p/>
+ * By default, value iteration uses compiled backups: before the first pass over a newly found state space, the successor state ids, transition probabilities,
+ * and each agent's rewards for every state and applicable joint action are computed once and frozen into a {@link CompiledGame} of primitive arrays, and
+ * the backup operator is then given Q-sources ({@link IndexedQSource} objects) whose rows of joint action Q-values are computed from those arrays, rather than
+ * querying the joint action model and joint reward function for every Q-value of every pass. The compiled tables are also used to answer Q-value queries
+ * of this planner's Q-sources for the states they contain. Compiled backups sweep states in the same order and perform the same arithmetic as uncompiled
+ * backups, so they produce the same values; they assume that the joint action model and joint reward function do not change after
+ * a state space has been compiled. Compiled backups can be disabled with {@link #toggleCompiledBackups(boolean)}.
+ * <p/>
+ * Compiled backups can also be run on multiple threads (see {@link #setNumThreads(int)}), in which case each pass backs up a partition of the states
+ * on each thread from the values of the previous pass (a Jacobi rather than Gauss-Seidel sweep), so no pass depends on how the states are
+ * divided among the threads; the values may differ slightly from those of a single threaded sweep. The backup operator must support concurrent calls
+ * (all backup operators provided with BURLAP do).
  * 
  * @author James MacGlashan
  *
  */
 public class MAValueIteration extends MAValueFunctionPlanner {
 
+	/**
+	 * The counter of state backups, each of which backs up the value of every agent in a state, reported when metrics are enabled in the {@link burlap.debugtools.MetricsRegistry}
+	 */
+	public static final MetricsRegistry.Counter					STATE_BACKUPS = MetricsRegistry.counter("planning.mavi.stateBackups");
+	
+	/**
+	 * The timer of the reachability analyses of multi-agent value iteration
+	 */
+	public static final MetricsRegistry.Timer					REACHABILITY_TIME = MetricsRegistry.timer("planning.mavi.reachability");
+	
+	/**
+	 * The timer of the value iteration sweeps of {@link #runVI()}
+	 */
+	public static final MetricsRegistry.Timer					SWEEPS_TIME = MetricsRegistry.timer("planning.mavi.sweeps");
+	
+	/**
+	 * The gauge of the number of states that have been found
+	 */
+	public static final MetricsRegistry.Gauge					NUM_STATES = MetricsRegistry.gauge("planning.mavi.states");
+	
 	/**
 	 * The set of states that have been found
 	 */
@@ -59,6 +103,31 @@ public class MAValueIteration extends MAValueFunctionPlanner {
 	 */
 	protected int debugCode = 88934789;
 	
+	/**
+	 * Whether backups are performed with compiled transition dynamics
+	 */
+	protected boolean useCompiledBackups = true;
+	
+	/**
+	 * The number of threads used to perform compiled backups
+	 */
+	protected int nThreads = 1;
+	
+	/**
+	 * The compiled transition dynamics of the current state space; null if they have not been compiled
+	 */
+	protected CompiledGame compiled = null;
+	
+	/**
+	 * The value of each agent (first index) for each compiled state (second index)
+	 */
+	protected double [][] values;
+	
+	/**
+	 * Provides the joint action index of each compiled state
+	 */
+	protected JointActionIndex.Provider jaIndexProvider = new JointActionIndex.Provider();
+	
 	
 	
 	/**
@@ -158,6 +227,39 @@ public class MAValueIteration extends MAValueFunctionPlanner {
 	
 	
 
+	/**
+	 * Sets whether backups are performed with compiled transition dynamics. Compiled backups are used by default.
+	 * @param useCompiledBackups whether backups are performed with compiled transition dynamics.
+	 */
+	public void toggleCompiledBackups(boolean useCompiledBackups){
+		this.useCompiledBackups = useCompiledBackups;
+		if(!useCompiledBackups){
+			this.compiled = null;
+		}
+	}
+	
+	
+	/**
+	 * Returns the number of threads used to perform compiled backups.
+	 * @return the number of threads used to perform compiled backups.
+	 */
+	public int getNumThreads(){
+		return nThreads;
+	}
+	
+	
+	/**
+	 * Sets the number of threads used to perform compiled backups. Uncompiled backups are always performed on the calling thread.
+	 * @param nThreads the number of threads used to perform compiled backups.
+	 */
+	public void setNumThreads(int nThreads){
+		if(nThreads < 1){
+			throw new RuntimeException("Value iteration requires at least one thread.");
+		}
+		this.nThreads = nThreads;
+	}
+	
+	
 	@Override
 	public void planFromState(State s) {
 		
@@ -182,6 +284,14 @@ public class MAValueIteration extends MAValueFunctionPlanner {
 			throw new RuntimeException("No states to iterate over. Note that state reacability needs to be performed before runVI() can be called. Consider using planFromState(State s) method instead or using the performStateReachabilityFrom(State s) method first.");
 		}
 		
+		long start = SWEEPS_TIME.start();
+		
+		if(this.useCompiledBackups){
+			this.runCompiledVI();
+			SWEEPS_TIME.stop(start);
+			return ;
+		}
+		
 		int i;
 		for(i = 0; i < this.maxIterations; i++){
 			
@@ -190,8 +300,11 @@ public class MAValueIteration extends MAValueFunctionPlanner {
 				double change = this.backupAllValueFunctions(sh.s);
 				maxChange = Math.max(change, maxChange);
 			}
+			STATE_BACKUPS.add(this.states.size());
 			
-			DPrint.cl(this.debugCode, "Finished pass: " + i + " with max change: " + maxChange);
+			if(DPrint.mode(this.debugCode)){
+				DPrint.cl(this.debugCode, "Finished pass: ", i, " with max change: ", maxChange);
+			}
 			
 			if(maxChange < this.maxDelta){
 				break ;
@@ -201,7 +314,8 @@ public class MAValueIteration extends MAValueFunctionPlanner {
 			
 		}
 		
-		DPrint.cl(this.debugCode, "Performed " + i + " passes.");
+		SWEEPS_TIME.stop(start);
+		DPrint.cl(this.debugCode, "Performed ", i, " passes.");
 		
 	}
 	
@@ -219,6 +333,7 @@ public class MAValueIteration extends MAValueFunctionPlanner {
 		}
 		
 		this.states.add(shi);
+		long start = REACHABILITY_TIME.start();
 		
 		LinkedList<StateHashTuple> openQueue = new LinkedList<StateHashTuple>();
 		openQueue.add(shi);
@@ -242,11 +357,579 @@ public class MAValueIteration extends MAValueFunctionPlanner {
 			
 		}
 		
+		REACHABILITY_TIME.stop(start);
+		NUM_STATES.set(this.states.size());
 		
-		DPrint.cl(this.debugCode, "Finished State reachability; " + this.states.size() + " unique states found.");
+		DPrint.cl(this.debugCode, "Finished State reachability; ", this.states.size(), " unique states found.");
 		
 		
 		return true;
 	}
 	
+	
+	
+	/**
+	 * Runs value iteration with compiled backups, compiling the state space first if it has changed since it was last compiled.
+	 */
+	protected void runCompiledVI(){
+		
+		if(this.compiled == null || this.compiled.states.length != this.states.size()){
+			this.compileGame();
+		}
+		this.loadValues();
+		
+		int n = this.compiled.states.length;
+		int i;
+		if(this.nThreads > 1 && n >= 2*this.nThreads){
+			i = this.runParallelPasses();
+		}
+		else{
+			CompiledQSourceMap qSources = new CompiledQSourceMap();
+			for(i = 0; i < this.maxIterations; i++){
+				
+				double maxChange = this.compiledSweep(0, n, this.values, this.values, qSources);
+				
+				if(DPrint.mode(this.debugCode)){
+					DPrint.cl(this.debugCode, "Finished pass: ", i, " with max change: ", maxChange);
+				}
+				
+				if(maxChange < this.maxDelta){
+					break ;
+				}
+				
+			}
+		}
+		
+		this.storeValues();
+		
+		DPrint.cl(this.debugCode, "Performed ", i, " passes.");
+		
+	}
+	
+	
+	/**
+	 * Backs up the values of all agents in the compiled states with ids in [lo, hi) from the values in vIn, storing the results in vOut.
+	 * @param lo the first state id to back up
+	 * @param hi one past the last state id to back up
+	 * @param vIn the values from which Q-values are computed
+	 * @param vOut the array in which backed up values are stored; may be vIn for an in place sweep
+	 * @param qSources the Q-source map given to the backup operator
+	 * @return the maximum value change
+	 */
+	protected double compiledSweep(int lo, int hi, double [][] vIn, double [][] vOut, CompiledQSourceMap qSources){
+		
+		CompiledGame c = this.compiled;
+		boolean joint = this.useJointBackups && this.backupOperator instanceof SGJointBackupOperator;
+		double maxChange = Double.NEGATIVE_INFINITY;
+		
+		for(int id = lo; id < hi; id++){
+			
+			State s = c.states[id].s;
+			qSources.setState(id, vIn);
+			
+			if(joint){
+				Map<String, Double> newVals = ((SGJointBackupOperator)this.backupOperator).performJointBackup(s, this.agentDefinitions, qSources);
+				for(int a = 0; a < c.agentNames.length; a++){
+					double newVal = newVals.get(c.agentNames[a]);
+					maxChange = Math.max(maxChange, Math.abs(newVal-vIn[a][id]));
+					vOut[a][id] = newVal;
+				}
+			}
+			else{
+				for(int a = 0; a < c.agentNames.length; a++){
+					double oldVal = vIn[a][id];
+					double newVal = this.backupOperator.performBackup(s, c.agentNames[a], this.agentDefinitions, qSources);
+					maxChange = Math.max(maxChange, Math.abs(newVal-oldVal));
+					vOut[a][id] = newVal;
+					if(vOut == vIn){
+						//later backups of this state must see the new value, as they would with uncompiled backups
+						qSources.invalidate();
+					}
+				}
+			}
+			
+		}
+		STATE_BACKUPS.add(hi - lo);
+		
+		return maxChange;
+	}
+	
+	
+	/**
+	 * Runs passes of compiled backups on {@link #nThreads} threads, each backing up a contiguous partition of the states from the previous pass's values.
+	 * @return the number of passes performed before convergence or the maximum number of iterations
+	 */
+	protected int runParallelPasses(){
+		
+		final int n = this.compiled.states.length;
+		final int na = this.compiled.agentNames.length;
+		final int nt = this.nThreads;
+		
+		if(this.maxIterations <= 0){
+			return 0;
+		}
+		
+		double [][] nextValues = new double[na][];
+		for(int a = 0; a < na; a++){
+			nextValues[a] = this.values[a].clone();
+		}
+		
+		final double [][][] vBuf = new double[][][]{this.values, nextValues};
+		final int [] cur = new int[]{0};
+		final int [] passes = new int[]{0};
+		final boolean [] done = new boolean[]{false};
+		final double [] partChange = new double[nt];
+		
+		final CyclicBarrier barrier = new CyclicBarrier(nt, new Runnable() {
+			@Override
+			public void run() {
+				double maxChange = Double.NEGATIVE_INFINITY;
+				for(double pc : partChange){
+					maxChange = Math.max(pc, maxChange);
+				}
+				cur[0] = 1 - cur[0];
+				if(DPrint.mode(MAValueIteration.this.debugCode)){
+					DPrint.cl(MAValueIteration.this.debugCode, "Finished pass: ", passes[0], " with max change: ", maxChange);
+				}
+				if(maxChange < MAValueIteration.this.maxDelta){
+					done[0] = true;
+				}
+				else{
+					passes[0]++;
+					if(passes[0] >= MAValueIteration.this.maxIterations){
+						done[0] = true;
+					}
+				}
+			}
+		});
+		
+		ParallelMatchEngine.runWorkers(nt, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int part) {
+				int lo = (int)((long)n * part / nt);
+				int hi = (int)((long)n * (part+1) / nt);
+				CompiledQSourceMap qSources = new CompiledQSourceMap();
+				while(true){
+					int c = cur[0];
+					partChange[part] = MAValueIteration.this.compiledSweep(lo, hi, vBuf[c], vBuf[1-c], qSources);
+					try {
+						barrier.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException("Interrupted during a parallel VI pass.", e);
+					} catch (BrokenBarrierException e) {
+						throw new RuntimeException("A parallel VI pass was aborted.", e);
+					}
+					if(done[0]){
+						return;
+					}
+				}
+			}
+		});
+		
+		this.values = vBuf[cur[0]];
+		
+		return passes[0];
+	}
+	
+	
+	/**
+	 * Compiles the current state space into a new {@link CompiledGame}. The states are assigned ids in the iteration order of the state set, so that
+	 * compiled sweeps back up states in the same order as uncompiled sweeps.
+	 */
+	protected void compileGame(){
+		
+		int n = this.states.size();
+		CompiledGame c = new CompiledGame();
+		c.agentNames = this.agentDefinitions.keySet().toArray(new String[this.agentDefinitions.size()]);
+		int na = c.agentNames.length;
+		c.states = new StateHashTuple[n];
+		c.ids = new HashMap<StateHashTuple, Integer>(n*2);
+		int i = 0;
+		for(StateHashTuple sh : this.states){
+			c.states[i] = sh;
+			c.ids.put(sh, i);
+			i++;
+		}
+		
+		c.terminal = new boolean[n];
+		c.indices = new JointActionIndex[n];
+		c.saStart = new int[n+1];
+		List<Integer> saJoint = new ArrayList<Integer>();
+		List<Integer> tStart = new ArrayList<Integer>();
+		List<Integer> tSucc = new ArrayList<Integer>();
+		List<Double> tProb = new ArrayList<Double>();
+		List<Double> tReward = new ArrayList<Double>();
+		
+		int [] jas = new int[0];
+		for(i = 0; i < n; i++){
+			State s = c.states[i].s;
+			c.terminal[i] = this.terminalFunction.isTerminal(s);
+			JointActionIndex index = this.jaIndexProvider.get(s, this.agentDefinitions);
+			c.indices[i] = index;
+			c.maxJointActions = Math.max(c.maxJointActions, index.size());
+			if(jas.length < index.size()){
+				jas = new int[index.size()];
+			}
+			int nja = index.applicableJointActions(s, jas);
+			c.saStart[i] = saJoint.size();
+			for(int k = 0; k < nja; k++){
+				saJoint.add(jas[k]);
+				tStart.add(tSucc.size());
+				if(c.terminal[i]){
+					//Q-values of terminal states are zero, so their transitions are never needed
+					continue;
+				}
+				JointAction ja = index.jointAction(jas[k]);
+				for(TransitionProbability tp : this.jointActionModel.transitionProbsFor(s, ja)){
+					Integer sid = c.ids.get(this.hashingFactory.hashState(tp.s));
+					if(sid == null){
+						throw new RuntimeException("Cannot compile the joint transition dynamics because a successor state was not found by the state reachability analysis.");
+					}
+					tSucc.add(sid);
+					tProb.add(tp.p);
+					Map<String, Double> jr = this.jointReward.reward(s, ja, tp.s);
+					for(int a = 0; a < na; a++){
+						tReward.add(jr.get(c.agentNames[a]));
+					}
+				}
+			}
+		}
+		c.saStart[n] = saJoint.size();
+		tStart.add(tSucc.size());
+		
+		c.saJoint = new int[saJoint.size()];
+		for(i = 0; i < c.saJoint.length; i++){
+			c.saJoint[i] = saJoint.get(i);
+		}
+		c.tStart = new int[tStart.size()];
+		for(i = 0; i < c.tStart.length; i++){
+			c.tStart[i] = tStart.get(i);
+		}
+		c.tSucc = new int[tSucc.size()];
+		c.tProb = new double[tSucc.size()];
+		for(i = 0; i < c.tSucc.length; i++){
+			c.tSucc[i] = tSucc.get(i);
+			c.tProb[i] = tProb.get(i);
+		}
+		c.tReward = new double[tReward.size()];
+		for(i = 0; i < c.tReward.length; i++){
+			c.tReward[i] = tReward.get(i);
+		}
+		
+		this.compiled = c;
+		
+		DPrint.cl(this.debugCode, "Compiled ", n, " states with ", c.saJoint.length, " joint actions and ", c.tSucc.length, " transitions.");
+		
+	}
+	
+	
+	/**
+	 * Loads the value of each agent in each compiled state from this planner's Q-sources.
+	 */
+	protected void loadValues(){
+		CompiledGame c = this.compiled;
+		this.values = new double[c.agentNames.length][c.states.length];
+		for(int a = 0; a < c.agentNames.length; a++){
+			BackupBasedQSource qsource = (BackupBasedQSource)this.qSources.agentQSource(c.agentNames[a]);
+			for(int i = 0; i < c.states.length; i++){
+				this.values[a][i] = qsource.getValue(c.states[i]);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Stores the value of each agent in each compiled state in this planner's Q-sources.
+	 */
+	protected void storeValues(){
+		CompiledGame c = this.compiled;
+		for(int a = 0; a < c.agentNames.length; a++){
+			BackupBasedQSource qsource = (BackupBasedQSource)this.qSources.agentQSource(c.agentNames[a]);
+			for(int i = 0; i < c.states.length; i++){
+				qsource.setValue(c.states[i], this.values[a][i]);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Computes the Q-value of the given agent for each applicable joint action of the given compiled state.
+	 * @param id the compiled state id
+	 * @param agent the index of the agent in the compiled agent names
+	 * @param v the values of each agent in each compiled state
+	 * @param row the array in which the Q-values are stored, indexed by joint index
+	 */
+	protected void compiledQRow(int id, int agent, double [][] v, double [] row){
+		CompiledGame c = this.compiled;
+		int na = c.agentNames.length;
+		double [] va = v[agent];
+		for(int sa = c.saStart[id]; sa < c.saStart[id+1]; sa++){
+			double sumQ = 0.;
+			for(int t = c.tStart[sa]; t < c.tStart[sa+1]; t++){
+				double contribution = c.tReward[t*na + agent] + this.discount*va[c.tSucc[t]];
+				sumQ += c.tProb[t]*contribution;
+			}
+			row[c.saJoint[sa]] = sumQ;
+		}
+	}
+	
+	
+	@Override
+	protected JAQValue tabulatedQValue(BackupBasedQSource qSource, State s, JointAction ja){
+		
+		CompiledGame c = this.compiled;
+		if(c == null){
+			return null;
+		}
+		StateHashTuple sh = this.hashingFactory.hashState(s);
+		Integer id = c.ids.get(sh);
+		if(id == null){
+			return null;
+		}
+		int j = c.indices[id].jointIndex(ja);
+		if(j == -1){
+			return null;
+		}
+		int agent = -1;
+		for(int a = 0; a < c.agentNames.length; a++){
+			if(this.qSources.agentQSource(c.agentNames[a]) == qSource){
+				agent = a;
+				break;
+			}
+		}
+		if(agent == -1){
+			return null;
+		}
+		
+		int na = c.agentNames.length;
+		for(int sa = c.saStart[id]; sa < c.saStart[id+1]; sa++){
+			if(c.saJoint[sa] == j){
+				double sumQ = 0.;
+				for(int t = c.tStart[sa]; t < c.tStart[sa+1]; t++){
+					double contribution = c.tReward[t*na + agent] + this.discount*qSource.getValue(c.states[c.tSucc[t]]);
+					sumQ += c.tProb[t]*contribution;
+				}
+				return new JAQValue(s, ja, sumQ);
+			}
+		}
+		
+		return null;
+	}
+	
+	
+	
+	/**
+	 * The frozen transition dynamics of a state space: for each state, the joint index of each applicable joint action and, for each
+	 * state and joint action, the successor state ids, transition probabilities, and each agent's reward. Terminal states have
+	 * no transitions.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class CompiledGame{
+		
+		/**
+		 * The names of the agents, indexing the agent dimension of rewards and values
+		 */
+		public String []				agentNames;
+		
+		/**
+		 * The hashed state of each state id
+		 */
+		public StateHashTuple []		states;
+		
+		/**
+		 * The id of each hashed state
+		 */
+		public Map<StateHashTuple, Integer>	ids;
+		
+		/**
+		 * Whether each state is terminal
+		 */
+		public boolean []				terminal;
+		
+		/**
+		 * The joint action index of each state
+		 */
+		public JointActionIndex []		indices;
+		
+		/**
+		 * The largest joint action index size of any state
+		 */
+		public int						maxJointActions;
+		
+		/**
+		 * The first state-joint action entry of each state; has one extra element
+		 */
+		public int []					saStart;
+		
+		/**
+		 * The joint index of each state-joint action entry
+		 */
+		public int []					saJoint;
+		
+		/**
+		 * The first transition of each state-joint action entry; has one extra element
+		 */
+		public int []					tStart;
+		
+		/**
+		 * The successor state id of each transition
+		 */
+		public int []					tSucc;
+		
+		/**
+		 * The probability of each transition
+		 */
+		public double []				tProb;
+		
+		/**
+		 * The reward of each agent for each transition, stored at transition*numAgents + agent
+		 */
+		public double []				tReward;
+		
+	}
+	
+	
+	
+	/**
+	 * The Q-sources given to the backup operator during a compiled sweep. They provide the rows of Q-values of the state being backed up,
+	 * computed from the compiled dynamics when they are first requested. Each sweeping thread uses its own map.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected class CompiledQSourceMap implements AgentQSourceMap{
+		
+		/**
+		 * The Q-source of each agent by name
+		 */
+		protected Map<String, CompiledQSource>	sources;
+		
+		/**
+		 * The id of the state being backed up
+		 */
+		protected int							stateId;
+		
+		/**
+		 * The values from which Q-values are computed
+		 */
+		protected double [][]					v;
+		
+		
+		/**
+		 * Initializes the Q-sources of all agents.
+		 */
+		public CompiledQSourceMap(){
+			String [] names = MAValueIteration.this.compiled.agentNames;
+			this.sources = new HashMap<String, CompiledQSource>(names.length);
+			for(int a = 0; a < names.length; a++){
+				this.sources.put(names[a], new CompiledQSource(a, MAValueIteration.this.compiled.maxJointActions));
+			}
+		}
+		
+		
+		/**
+		 * Sets the state being backed up and the values from which its Q-values are computed.
+		 * @param stateId the id of the state being backed up
+		 * @param v the values from which Q-values are computed
+		 */
+		public void setState(int stateId, double [][] v){
+			this.stateId = stateId;
+			this.v = v;
+			this.invalidate();
+		}
+		
+		
+		/**
+		 * Marks the Q-value rows of all agents as needing to be recomputed.
+		 */
+		public void invalidate(){
+			for(CompiledQSource source : this.sources.values()){
+				source.fresh = false;
+			}
+		}
+		
+		
+		@Override
+		public CompiledQSource agentQSource(String agentName) {
+			return this.sources.get(agentName);
+		}
+		
+		
+		
+		/**
+		 * The Q-source of one agent for the state being backed up. Its Q-values cannot be set, so the {@link JAQValue} objects it returns are copies.
+		 * @author James MacGlashan
+		 *
+		 */
+		protected class CompiledQSource implements IndexedQSource{
+			
+			/**
+			 * The index of the agent in the compiled agent names
+			 */
+			protected int			agent;
+			
+			/**
+			 * The Q-value row of the state being backed up
+			 */
+			protected double []		row;
+			
+			/**
+			 * Whether the row holds the Q-values of the state being backed up
+			 */
+			protected boolean		fresh = false;
+			
+			
+			/**
+			 * Initializes.
+			 * @param agent the index of the agent in the compiled agent names
+			 * @param rowSize the size of the Q-value row
+			 */
+			public CompiledQSource(int agent, int rowSize){
+				this.agent = agent;
+				this.row = new double[rowSize];
+			}
+			
+			
+			@Override
+			public JAQValue getQValueFor(State s, JointAction ja) {
+				int j = MAValueIteration.this.compiled.indices[CompiledQSourceMap.this.stateId].jointIndex(ja);
+				if(j == -1){
+					throw new RuntimeException("The joint action " + ja.toString() + " is not applicable in the state being backed up.");
+				}
+				return new JAQValue(s, ja, this.getRow()[j]);
+			}
+			
+			
+			@Override
+			public double [] getQRow(State s, JointActionIndex index) {
+				if(!MAValueIteration.this.compiled.indices[CompiledQSourceMap.this.stateId].sameIndexingAs(index)){
+					return null;
+				}
+				return this.getRow();
+			}
+			
+			
+			@Override
+			public void setQValue(State s, JointAction ja, double q) {
+				throw new RuntimeException("The Q-values of a compiled value iteration backup cannot be set.");
+			}
+			
+			
+			/**
+			 * Returns the Q-value row of the state being backed up, computing it if needed.
+			 * @return the Q-value row of the state being backed up
+			 */
+			protected double [] getRow(){
+				if(!this.fresh){
+					MAValueIteration.this.compiledQRow(CompiledQSourceMap.this.stateId, this.agent, CompiledQSourceMap.this.v, this.row);
+					this.fresh = true;
+				}
+				return this.row;
+			}
+			
+		}
+		
+	}
+	
 }
@@ -5,8 +5,6 @@ import org.apache.log4j.LogManager;
 
 import scpsolver.constraints.LinearBiggerThanEqualsConstraint;
 import scpsolver.constraints.LinearEqualsConstraint;
-import scpsolver.lpsolver.LinearProgramSolver;
-import scpsolver.lpsolver.SolverFactory;
 import scpsolver.problems.LinearProgram;
 
 import com.joptimizer.optimizers.LPOptimizationRequest;
@@ -29,7 +27,8 @@ import com.joptimizer.optimizers.LPPrimalDualMethod;
  * to use to get the equilibrium is the {@link #getCorrelatedEQJointStrategy(CorrelatedEquilibriumObjective, double[][], double[][])} method.
  * 
  * <p/>
- * This class depends on the SCPSolver library.
+ * The linear programs can be solved either with the SCPSolver library or with the pure Java {@link DenseSimplexSolver}, which is
+ * selected with the {@link #setBackend(LPSolverBackend)} method.
  * 
  * 
  * <p/>
@@ -52,6 +51,30 @@ public class CorrelatedEquilibriumSolver {
 		UTILITARIAN, EGALITARIAN, REPUBLICAN, LIBERTARIAN
 	}
 	
+	/**
+	 * The linear program solver backend used to solve correlated equilibrium problems.
+	 */
+	protected static volatile LPSolverBackend backend = LPSolverBackend.SCPSOLVER;
+	
+	
+	/**
+	 * Sets the linear program solver backend used to solve correlated equilibrium problems. The default is {@link LPSolverBackend#SCPSOLVER}.
+	 * @param backend the linear program solver backend to use.
+	 */
+	public static void setBackend(LPSolverBackend backend){
+		CorrelatedEquilibriumSolver.backend = backend;
+	}
+	
+	
+	/**
+	 * Returns the linear program solver backend used to solve correlated equilibrium problems.
+	 * @return the linear program solver backend used to solve correlated equilibrium problems.
+	 */
+	public static LPSolverBackend getBackend(){
+		return CorrelatedEquilibriumSolver.backend;
+	}
+	
+	
 	public static void main(String [] args){
 		
 		double [][] chickenRow = new double[][]{
@@ -123,6 +146,35 @@ public class CorrelatedEquilibriumSolver {
 	}
 	
 	
+	/**
+	 * Returns the correlated equilibrium joint strategy in a 2D double matrix, like {@link #getCorrelatedEQJointStrategy(CorrelatedEquilibriumObjective, double[][], double[][])},
+	 * except that the solution is first looked up in the provided cache by the quantized signature of the objective and payoffs. If a solution is cached,
+	 * it is returned without solving any linear program; otherwise the linear program is solved and the solution is cached. The returned matrix
+	 * is shared with the cache and should not be modified.
+	 * @param objectiveType the maximizing objective for the correlated equilibrium being solved.
+	 * @param payoffRow the payoff for the player whose actions correspond to the rows of the matrix
+	 * @param payoffCol the payoff for the player whose actions correspond to the columns of the matrix
+	 * @param cache the cache of previously solved stage games; if null, the equilibrium is always solved.
+	 * @return the correlated equilibrium joint strategy as a 2D double matrix.
+	 */
+	public static double [][] getCorrelatedEQJointStrategy(CorrelatedEquilibriumObjective objectiveType, double [][] payoffRow, double [][] payoffCol, EquilibriumCache<double[][]> cache){
+		
+		if(cache == null){
+			return getCorrelatedEQJointStrategy(objectiveType, payoffRow, payoffCol);
+		}
+		
+		EquilibriumCache.GameSignature signature = cache.signature(objectiveType.ordinal()+1, payoffRow, payoffCol);
+		double [][] jointActionProbs = cache.get(signature);
+		if(jointActionProbs == null){
+			jointActionProbs = getCorrelatedEQJointStrategy(objectiveType, payoffRow, payoffCol);
+			cache.put(signature, jointActionProbs);
+		}
+		
+		return jointActionProbs;
+		
+	}
+	
+	
 	/**
 	 * Returns the correlated equilibrium joint strategy in a 2D double matrix for the Utilitarian objective. 
 	 * @param payoffRow the payoff for the player whose actions correspond to the rows of the matrix
@@ -136,6 +188,9 @@ public class CorrelatedEquilibriumSolver {
 		int n = nRows * nCols;
 		
 		double [] c = getUtilitarianObjective(payoffRow, payoffCol);
+		if(backend == LPSolverBackend.DENSESIMPLEX){
+			return runDenseLPAndGetJointActionProbs(c, payoffRow, payoffCol, false);
+		}
 		LinearProgram lp = new LinearProgram(c);
 		
 		int cCount = 0;
@@ -159,6 +214,9 @@ public class CorrelatedEquilibriumSolver {
 		int n = (nRows * nCols) + 1; //1 auxiliary variable
 		
 		double [] c = getEgalitarianObjective(payoffRow, payoffCol);
+		if(backend == LPSolverBackend.DENSESIMPLEX){
+			return runDenseLPAndGetJointActionProbs(c, payoffRow, payoffCol, true);
+		}
 		LinearProgram lp = new LinearProgram(c);
 		
 		int cCount = 0;
@@ -198,6 +256,14 @@ public class CorrelatedEquilibriumSolver {
 		int nCols = payoffRow[0].length;
 		int n = nRows * nCols;
 		
+		if(backend == LPSolverBackend.DENSESIMPLEX){
+			double [][] rowSol = runDenseLPAndGetJointActionProbs(getRepublicanObjective(payoffRow), payoffRow, payoffCol, false);
+			double [][] colSol = runDenseLPAndGetJointActionProbs(getRepublicanObjective(payoffCol), payoffRow, payoffCol, false);
+			double rowSolVal = GeneralBimatrixSolverTools.expectedPayoffs(payoffRow, payoffCol, rowSol)[0];
+			double colSolVal = GeneralBimatrixSolverTools.expectedPayoffs(payoffRow, payoffCol, colSol)[0];
+			return rowSolVal > colSolVal ? rowSol : colSol;
+		}
+		
 		//check row player solution value
 		double [] cRow = getRepublicanObjective(payoffRow);
 		LinearProgram lpRow = new LinearProgram(cRow);
@@ -241,6 +307,9 @@ public class CorrelatedEquilibriumSolver {
 		
 		//check row player solution value
 		double [] cRow = getRepublicanObjective(payoffRow);
+		if(backend == LPSolverBackend.DENSESIMPLEX){
+			return runDenseLPAndGetJointActionProbs(cRow, payoffRow, payoffCol, false);
+		}
 		LinearProgram lpRow = new LinearProgram(cRow);
 		
 		int cCount = 0;
@@ -265,6 +334,9 @@ public class CorrelatedEquilibriumSolver {
 		
 		//check row player solution value
 		double [] cRow = getRepublicanObjective(payoffCol);
+		if(backend == LPSolverBackend.DENSESIMPLEX){
+			return runDenseLPAndGetJointActionProbs(cRow, payoffRow, payoffCol, false);
+		}
 		LinearProgram lpRow = new LinearProgram(cRow);
 		
 		int cCount = 0;
@@ -288,8 +360,7 @@ public class CorrelatedEquilibriumSolver {
 		int nn = nRows*nCols;
 		
 		lp.setMinProblem(false); 
-		LinearProgramSolver solver = SolverFactory.newDefault(); 
-		double[] sol = solver.solve(lp);
+		double[] sol = GeneralBimatrixSolverTools.solveWithSCPSolver(lp);
 		
 		double [][] jointActionProbs = new double[nRows][nCols];
 		for(int i = 0; i < nn; i++){
@@ -301,6 +372,95 @@ public class CorrelatedEquilibriumSolver {
 		return jointActionProbs;
 	}
 	
+	/**
+	 * Solves a correlated equilibrium linear program with the {@link DenseSimplexSolver} and returns the result in the form of the 2D double matrix joint strategy.
+	 * The rationality constraints are expressed as less than or equal to zero constraints and the non-negativity of the joint action variables
+	 * is implicit, so that the only constraint that requires the first phase of the simplex method is the constraint that the
+	 * joint action probabilities sum to 1.
+	 * @param objective the objective coefficients of the joint action variables (and the auxiliary variable, if present)
+	 * @param payoffRow the payoffs for the row player
+	 * @param payoffCol the payoffs for the col player
+	 * @param egalitarianAux whether the last variable is the free egalitarian auxiliary variable that is bound above by each player's expected payoff.
+	 * @return a 2D double representing the joint strategy for the given correlated equilibrium problem.
+	 */
+	protected static double [][] runDenseLPAndGetJointActionProbs(double [] objective, double [][] payoffRow, double [][] payoffCol, boolean egalitarianAux){
+		
+		int nRows = payoffRow.length;
+		int nCols = payoffRow[0].length;
+		int nn = nRows*nCols;
+		int n = egalitarianAux ? nn+1 : nn;
+		
+		int nConstraints = nRows*(nRows-1) + nCols*(nCols-1) + 1 + (egalitarianAux ? 2 : 0);
+		double [][] A = new double[nConstraints][n];
+		int [] types = new int[nConstraints];
+		double [] b = new double[nConstraints];
+		
+		int cCount = 0;
+		
+		//player 1 rationality constraints, negated into <= 0 form
+		for(int a1 = 0; a1 < nRows; a1++){
+			for(int a1prime = 0; a1prime < nRows; a1prime++){
+				if(a1prime == a1){
+					continue;
+				}
+				for(int a2 = 0; a2 < nCols; a2++){
+					A[cCount][jointIndex(a1, a2, nCols)] = payoffRow[a1prime][a2] - payoffRow[a1][a2];
+				}
+				types[cCount] = DenseSimplexSolver.LE;
+				cCount++;
+			}
+		}
+		
+		//player 2 rationality constraints, negated into <= 0 form
+		for(int a2 = 0; a2 < nCols; a2++){
+			for(int a2prime = 0; a2prime < nCols; a2prime++){
+				if(a2prime == a2){
+					continue;
+				}
+				for(int a1 = 0; a1 < nRows; a1++){
+					A[cCount][jointIndex(a1, a2, nCols)] = payoffCol[a1][a2prime] - payoffCol[a1][a2];
+				}
+				types[cCount] = DenseSimplexSolver.LE;
+				cCount++;
+			}
+		}
+		
+		//sum to 1 constraint
+		for(int i = 0; i < nn; i++){
+			A[cCount][i] = 1.;
+		}
+		types[cCount] = DenseSimplexSolver.EQ;
+		b[cCount] = 1.;
+		cCount++;
+		
+		boolean [] free = null;
+		if(egalitarianAux){
+			//the aux variable must be no greater than either player's expected payoff
+			for(int i = 0; i < nn; i++){
+				int [] rc = rowCol(i, nCols);
+				A[cCount][i] = -payoffRow[rc[0]][rc[1]];
+				A[cCount+1][i] = -payoffCol[rc[0]][rc[1]];
+			}
+			A[cCount][nn] = 1.;
+			A[cCount+1][nn] = 1.;
+			types[cCount] = DenseSimplexSolver.LE;
+			types[cCount+1] = DenseSimplexSolver.LE;
+			free = new boolean[n];
+			free[nn] = true;
+		}
+		
+		double [] sol = DenseSimplexSolver.getThreadSolver().maximize(objective, A, types, b, free);
+		
+		double [][] jointActionProbs = new double[nRows][nCols];
+		for(int i = 0; i < nn; i++){
+			int [] rc = rowCol(i, nCols);
+			jointActionProbs[rc[0]][rc[1]] = sol[i];
+		}
+		
+		return jointActionProbs;
+	}
+	
+	
 	/**
 	 * Adds the common LP constraints for the correlated equilribum problem: rationalaity constraits (no agent has a motivation to diverge
 	 * from a joint policy selection), the probability of all joint action variables must sum to 1, and all joint action variables are lower
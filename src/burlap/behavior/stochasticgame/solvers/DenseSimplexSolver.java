@@ -0,0 +1,520 @@
+package burlap.behavior.stochasticgame.solvers;
+
+import java.util.Arrays;
+
+
+/**
+ * A pure Java dense tableau simplex solver for the small linear programs that arise when solving stage games, such as minmax
+ * and correlated equilibrium problems for games with a handful of actions per player. Unlike general purpose solvers, this
+ * solver requires no native libraries and no per-problem setup objects: the tableau is stored in a single array that is reused
+ * (and only grown) across calls, so solving a problem allocates little more than the returned solution.
+ * <p/>
+ * Problems are of the form: maximize c*x subject to rows A[i]*x (&lt;=, &gt;=, or =) b[i], where each variable is either non-negative
+ * or free. The two-phase method is used, so problems without an obvious feasible starting point (such as those with equality constraints)
+ * are supported. Stage game problems are highly degenerate (most constraints have a zero right hand side), so the right hand side of each inequality
+ * constraint is perturbed by a small distinct amount while pivoting, and the solution is then recomputed from the final basis for the
+ * unperturbed constraints. Pivots also prefer large pivot elements for numerical stability, and Bland's rule is used whenever the objective stops improving
+ * so that the solver cannot cycle.
+ * <p/>
+ * After a successful solve, the optimal objective value and the dual values (shadow prices) of the constraints can be queried. The dual
+ * value of a constraint is the rate at which the optimal objective value increases as the constraint's right hand side increases.
+ * <p/>
+ * Instances are not thread safe; use the {@link #getThreadSolver()} method to get a solver instance dedicated to the calling thread.
+ * @author James MacGlashan
+ *
+ */
+public class DenseSimplexSolver {
+
+	/**
+	 * Constraint type for a less than or equal to constraint
+	 */
+	public static final int						LE = 0;
+
+	/**
+	 * Constraint type for a greater than or equal to constraint
+	 */
+	public static final int						GE = 1;
+
+	/**
+	 * Constraint type for an equality constraint
+	 */
+	public static final int						EQ = 2;
+
+
+	/**
+	 * The tolerance used for pivot selection and optimality tests
+	 */
+	protected double							epsilon = 1e-9;
+
+	/**
+	 * The relative size of the right hand side perturbation applied to inequality constraints to prevent degenerate pivots
+	 */
+	protected double							perturbation = 1e-7;
+
+	/**
+	 * The tableau, stored row major. The last row is the objective row of reduced costs and the last column is the right hand side.
+	 */
+	protected double []							tableau = new double[0];
+
+	/**
+	 * The column of the basic variable of each row
+	 */
+	protected int []							basis = new int[0];
+
+	/**
+	 * The number of columns in the current tableau
+	 */
+	protected int								nCols;
+
+	/**
+	 * The optimal objective value of the last solved problem
+	 */
+	protected double							objectiveValue;
+
+	/**
+	 * The dual values of the constraints of the last solved problem
+	 */
+	protected double []							duals;
+
+
+	/**
+	 * The solver instance of each thread
+	 */
+	protected static final ThreadLocal<DenseSimplexSolver>	threadSolvers = new ThreadLocal<DenseSimplexSolver>(){
+		@Override
+		protected DenseSimplexSolver initialValue(){
+			return new DenseSimplexSolver();
+		}
+	};
+
+
+	/**
+	 * Returns a solver instance dedicated to the calling thread.
+	 * @return a solver instance dedicated to the calling thread.
+	 */
+	public static DenseSimplexSolver getThreadSolver(){
+		return threadSolvers.get();
+	}
+
+
+	/**
+	 * Sets the relative size of the right hand side perturbation applied to inequality constraints to prevent degenerate pivots. The perturbation
+	 * only affects which basis is found; the returned solution is recomputed for the unperturbed constraints. The default is 1e-7.
+	 * @param perturbation the relative size of the right hand side perturbation.
+	 */
+	public void setPerturbation(double perturbation){
+		this.perturbation = perturbation;
+	}
+
+
+	/**
+	 * Sets the tolerance used for pivot selection and optimality tests. The default is 1e-9.
+	 * @param epsilon the tolerance used for pivot selection and optimality tests.
+	 */
+	public void setEpsilon(double epsilon){
+		this.epsilon = epsilon;
+	}
+
+
+	/**
+	 * Returns the optimal objective value of the last solved problem.
+	 * @return the optimal objective value of the last solved problem.
+	 */
+	public double getObjectiveValue(){
+		return this.objectiveValue;
+	}
+
+
+	/**
+	 * Returns the dual values of the constraints of the last solved problem, in the order of the constraints.
+	 * @return the dual values of the constraints of the last solved problem.
+	 */
+	public double [] getDuals(){
+		return this.duals;
+	}
+
+
+	/**
+	 * Solves the linear program that maximizes c*x subject to the given constraints and x &gt;= 0.
+	 * @param c the objective coefficients
+	 * @param A the constraint coefficient matrix; row i holds the coefficients of constraint i
+	 * @param types the type of each constraint: {@link #LE}, {@link #GE}, or {@link #EQ}
+	 * @param b the right hand side of each constraint
+	 * @return the optimal solution
+	 */
+	public double [] maximize(double [] c, double [][] A, int [] types, double [] b){
+		return this.maximize(c, A, types, b, null);
+	}
+
+
+	/**
+	 * Solves the linear program that maximizes c*x subject to the given constraints, where every variable that is not marked free is non-negative.
+	 * A runtime exception is thrown if the problem is infeasible or unbounded.
+	 * @param c the objective coefficients
+	 * @param A the constraint coefficient matrix; row i holds the coefficients of constraint i
+	 * @param types the type of each constraint: {@link #LE}, {@link #GE}, or {@link #EQ}
+	 * @param b the right hand side of each constraint
+	 * @param free which variables are free (unbounded below); may be null if all variables are non-negative.
+	 * @return the optimal solution
+	 */
+	public double [] maximize(double [] c, double [][] A, int [] types, double [] b, boolean [] free){
+
+		int m = A.length;
+		int nv = c.length;
+
+		//free variables are split into a positive and negative part; the negative parts are appended after the structural variables
+		int nFree = 0;
+		int [] negCol = new int[nv];
+		for(int j = 0; j < nv; j++){
+			if(free != null && free[j]){
+				negCol[j] = nv + nFree;
+				nFree++;
+			}
+			else{
+				negCol[j] = -1;
+			}
+		}
+		int nStruct = nv + nFree;
+
+		//rows are normalized to have a non-negative right hand side, which may flip their type
+		int nSurplus = 0;
+		for(int i = 0; i < m; i++){
+			if(this.normalizedType(types[i], b[i]) == GE){
+				nSurplus++;
+			}
+		}
+
+		int surplusStart = nStruct;
+		int unitStart = surplusStart + nSurplus;
+		int rhs = unitStart + m;
+		this.nCols = rhs + 1;
+
+		int size = (m+1)*this.nCols;
+		if(this.tableau.length < size){
+			this.tableau = new double[size];
+		}
+		else{
+			Arrays.fill(this.tableau, 0, size, 0.);
+		}
+		if(this.basis.length < m){
+			this.basis = new int[m];
+		}
+
+		double [] t = this.tableau;
+		int nc = this.nCols;
+		double scale = Math.max(1., this.maxAbs(b));
+		boolean hasArtificial = false;
+		int surplusCol = surplusStart;
+		for(int i = 0; i < m; i++){
+			double sign = b[i] < 0. ? -1. : 1.;
+			int row = i*nc;
+			for(int j = 0; j < nv; j++){
+				t[row+j] = sign*A[i][j];
+				if(negCol[j] != -1){
+					t[row+negCol[j]] = -sign*A[i][j];
+				}
+			}
+			int type = this.normalizedType(types[i], b[i]);
+			if(type == GE){
+				t[row+surplusCol] = -1.;
+				surplusCol++;
+			}
+			if(type != LE){
+				hasArtificial = true;
+			}
+			t[row+unitStart+i] = 1.;
+			t[row+rhs] = sign*b[i];
+			if(type != EQ){
+				//distinct perturbations of inequality constraints make ties in the ratio test, and the tiny pivots they invite, unlikely
+				t[row+rhs] += this.perturbation*scale*(1. + ((i*0.6180339887498949) % 1.));
+			}
+			this.basis[i] = unitStart+i;
+		}
+
+		int objRow = m*nc;
+
+		//phase 1: maximize the negated sum of the artificial variables
+		if(hasArtificial){
+			for(int i = 0; i < m; i++){
+				if(this.normalizedType(types[i], b[i]) == LE){
+					continue;
+				}
+				int row = i*nc;
+				for(int j = 0; j < nc; j++){
+					t[objRow+j] -= t[row+j];
+				}
+				t[objRow+unitStart+i] = 0.;
+			}
+			this.runSimplex(m, unitStart, types, b);
+			if(t[objRow+rhs] < -this.epsilon*Math.max(1., this.maxAbs(b))){
+				throw new RuntimeException("Linear program is infeasible.");
+			}
+			this.driveOutArtificials(m, unitStart, types, b);
+		}
+
+		//phase 2: compute the reduced costs of the original objective for the current basis
+		for(int j = 0; j < nc; j++){
+			t[objRow+j] = 0.;
+		}
+		for(int j = 0; j < nv; j++){
+			t[objRow+j] = -c[j];
+			if(negCol[j] != -1){
+				t[objRow+negCol[j]] = c[j];
+			}
+		}
+		for(int i = 0; i < m; i++){
+			int bc = this.basis[i];
+			double cb = this.structuralCost(bc, c, negCol, nv, nStruct);
+			if(cb != 0.){
+				int row = i*nc;
+				for(int j = 0; j < nc; j++){
+					t[objRow+j] += cb*t[row+j];
+				}
+			}
+		}
+
+		this.runSimplex(m, unitStart, types, b);
+
+		//remove the perturbation by recomputing the basic solution for the original right hand side; the unit columns hold the basis inverse
+		double [] xB = new double[m];
+		double objectiveValue = 0.;
+		for(int i = 0; i < m; i++){
+			int row = i*nc;
+			double v = 0.;
+			for(int k = 0; k < m; k++){
+				double bk = b[k] < 0. ? -b[k] : b[k];
+				v += t[row+unitStart+k]*bk;
+			}
+			xB[i] = Math.max(v, 0.);
+			objectiveValue += this.structuralCost(this.basis[i], c, negCol, nv, nStruct)*xB[i];
+		}
+
+		//read out the solution
+		double [] x = new double[nv];
+		for(int i = 0; i < m; i++){
+			int bc = this.basis[i];
+			double v = xB[i];
+			if(bc < nv){
+				x[bc] += v;
+			}
+			else if(bc < nStruct){
+				for(int j = 0; j < nv; j++){
+					if(negCol[j] == bc){
+						x[j] -= v;
+						break;
+					}
+				}
+			}
+		}
+
+		this.objectiveValue = objectiveValue;
+		this.duals = new double[m];
+		for(int i = 0; i < m; i++){
+			double sign = b[i] < 0. ? -1. : 1.;
+			this.duals[i] = sign*t[objRow+unitStart+i];
+		}
+
+		return x;
+	}
+
+
+	/**
+	 * Runs simplex iterations on the tableau until the objective row has no negative reduced costs. Dantzig's rule is used to select the
+	 * entering column until the objective stops improving, after which Bland's rule is used. Artificial columns
+	 * (unit columns of rows that are not less than or equal to constraints) are never selected to enter the basis.
+	 * @param m the number of constraint rows
+	 * @param unitStart the first unit column
+	 * @param types the original constraint types
+	 * @param b the original right hand side
+	 */
+	protected void runSimplex(int m, int unitStart, int [] types, double [] b){
+
+		double [] t = this.tableau;
+		int nc = this.nCols;
+		int rhs = nc-1;
+		int objRow = m*nc;
+
+		int nStalled = 0;
+		boolean bland = false;
+		double bestObjective = t[objRow+rhs];
+		int maxIterations = 50*(m + nc);
+		for(int iter = 0; iter < maxIterations; iter++){
+
+			//use the most negative reduced cost to enter, but switch to Bland's rule (lowest index) for the rest of the run
+			//if the objective stops improving, to prevent cycling
+			if(t[objRow+rhs] > bestObjective + this.epsilon){
+				bestObjective = t[objRow+rhs];
+				nStalled = 0;
+			}
+			else{
+				nStalled++;
+				if(nStalled > m){
+					bland = true;
+				}
+			}
+			int enter = -1;
+			double mostNegative = -this.epsilon;
+			for(int j = 0; j < rhs; j++){
+				if(j >= unitStart && this.normalizedType(types[j-unitStart], b[j-unitStart]) != LE){
+					continue;
+				}
+				if(t[objRow+j] < mostNegative){
+					enter = j;
+					if(bland){
+						break;
+					}
+					mostNegative = t[objRow+j];
+				}
+			}
+			if(enter == -1){
+				return;
+			}
+
+			//two pass ratio test: find the minimum ratio with a small tolerance, then among the rows within it
+			//pick the largest pivot element for numerical stability (or the lowest index basic variable under Bland's rule)
+			double maxRatio = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < m; i++){
+				double a = t[i*nc+enter];
+				if(a > this.epsilon){
+					maxRatio = Math.min(maxRatio, (Math.max(t[i*nc+rhs], 0.) + this.epsilon) / a);
+				}
+			}
+			if(maxRatio == Double.POSITIVE_INFINITY){
+				throw new RuntimeException("Linear program is unbounded.");
+			}
+
+			int leave = -1;
+			for(int i = 0; i < m; i++){
+				double a = t[i*nc+enter];
+				if(a > this.epsilon && Math.max(t[i*nc+rhs], 0.) / a <= maxRatio){
+					if(leave == -1 || (bland ? this.basis[i] < this.basis[leave] : a > t[leave*nc+enter])){
+						leave = i;
+					}
+				}
+			}
+
+			this.pivot(m, leave, enter);
+
+		}
+
+		throw new RuntimeException("Simplex did not converge.");
+
+	}
+
+
+	/**
+	 * After phase 1, pivots any artificial variables that remain basic (at value zero) out of the basis when possible.
+	 * Rows whose artificial variable cannot be pivoted out are redundant and are left as is.
+	 * @param m the number of constraint rows
+	 * @param unitStart the first unit column
+	 * @param types the original constraint types
+	 * @param b the original right hand side
+	 */
+	protected void driveOutArtificials(int m, int unitStart, int [] types, double [] b){
+
+		double [] t = this.tableau;
+		int nc = this.nCols;
+		for(int i = 0; i < m; i++){
+			int bc = this.basis[i];
+			if(bc < unitStart || this.normalizedType(types[bc-unitStart], b[bc-unitStart]) == LE){
+				continue;
+			}
+			for(int j = 0; j < unitStart; j++){
+				if(Math.abs(t[i*nc+j]) > this.epsilon){
+					this.pivot(m, i, j);
+					break;
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * Pivots the tableau so that the given column enters the basis in the given row.
+	 * @param m the number of constraint rows
+	 * @param row the pivot row
+	 * @param col the pivot column
+	 */
+	protected void pivot(int m, int row, int col){
+
+		double [] t = this.tableau;
+		int nc = this.nCols;
+		int prow = row*nc;
+		double pv = t[prow+col];
+		for(int j = 0; j < nc; j++){
+			t[prow+j] /= pv;
+		}
+		t[prow+col] = 1.;
+
+		for(int i = 0; i <= m; i++){
+			if(i == row){
+				continue;
+			}
+			int r = i*nc;
+			double f = t[r+col];
+			if(f != 0.){
+				for(int j = 0; j < nc; j++){
+					t[r+j] -= f*t[prow+j];
+				}
+				t[r+col] = 0.;
+			}
+		}
+
+		this.basis[row] = col;
+
+	}
+
+
+	/**
+	 * Returns the objective coefficient of the given tableau column.
+	 * @param col the tableau column
+	 * @param c the objective coefficients of the original variables
+	 * @param negCol the column of the negative part of each free variable, or -1 for non-negative variables
+	 * @param nv the number of original variables
+	 * @param nStruct the number of structural columns
+	 * @return the objective coefficient of the given tableau column.
+	 */
+	protected double structuralCost(int col, double [] c, int [] negCol, int nv, int nStruct){
+		if(col < nv){
+			return c[col];
+		}
+		if(col < nStruct){
+			for(int j = 0; j < nv; j++){
+				if(negCol[j] == col){
+					return -c[j];
+				}
+			}
+		}
+		return 0.;
+	}
+
+
+	/**
+	 * Returns the type of a constraint after it is normalized to have a non-negative right hand side.
+	 * @param type the original constraint type
+	 * @param b the original right hand side
+	 * @return the type of the normalized constraint.
+	 */
+	protected int normalizedType(int type, double b){
+		if(b >= 0. || type == EQ){
+			return type;
+		}
+		return type == LE ? GE : LE;
+	}
+
+
+	/**
+	 * Returns the maximum absolute value in an array.
+	 * @param a the array
+	 * @return the maximum absolute value in the array.
+	 */
+	protected double maxAbs(double [] a){
+		double mx = 0.;
+		for(double d : a){
+			mx = Math.max(mx, Math.abs(d));
+		}
+		return mx;
+	}
+
+}
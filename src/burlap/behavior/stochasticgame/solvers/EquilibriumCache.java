@@ -0,0 +1,244 @@
+package burlap.behavior.stochasticgame.solvers;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A bounded cache of solutions to bimatrix (or single matrix) stage games, keyed by a quantized signature of the game's payoff matrices.
+ * Each payoff is quantized by dividing it by a quantum and rounding to the nearest integer, so two stage games whose payoffs all
+ * agree to within about the quantum share the same signature and therefore the same cached solution. This is useful in
+ * stochastic game value iteration and learning, where the stage game of a state often stops changing (or changes only
+ * by numerical noise) long before the algorithm terminates, and where many states may share identical stage games. A cache hit
+ * avoids solving a linear program altogether.
+ * <p/>
+ * Since a cached solution is a solution for a game whose payoffs may differ from the query game by up to the quantum, the quantum
+ * should be set small relative to the payoff scale. Cached solutions are shared among all clients of the cache, so they should not be modified.
+ * When the cache exceeds its maximum size, the least recently used solution is evicted. The cache is thread safe.
+ * @author James MacGlashan
+ *
+ * @param <T> the type of the cached game solution.
+ */
+public class EquilibriumCache <T> {
+
+	/**
+	 * The default quantum used to discretize payoffs
+	 */
+	public static final double				DEFAULTQUANTUM = 1e-8;
+
+	/**
+	 * The default maximum number of cached solutions
+	 */
+	public static final int					DEFAULTMAXSIZE = 10000;
+
+
+	/**
+	 * The quantum used to discretize payoffs
+	 */
+	protected double						quantum;
+
+	/**
+	 * The maximum number of cached solutions
+	 */
+	protected int							maxSize;
+
+	/**
+	 * The cached solutions in least recently used order
+	 */
+	protected LinkedHashMap<GameSignature, T>	solutions;
+
+	/**
+	 * The number of cache queries that returned a solution
+	 */
+	protected long							numHits = 0;
+
+	/**
+	 * The number of cache queries that did not return a solution
+	 */
+	protected long							numMisses = 0;
+
+
+	/**
+	 * Initializes with the default quantum and maximum size.
+	 */
+	public EquilibriumCache(){
+		this(DEFAULTQUANTUM, DEFAULTMAXSIZE);
+	}
+
+
+	/**
+	 * Initializes.
+	 * @param quantum the quantum used to discretize payoffs; payoffs that agree to within about this value are treated as identical.
+	 * @param maxSize the maximum number of cached solutions.
+	 */
+	public EquilibriumCache(double quantum, final int maxSize){
+		if(quantum <= 0.){
+			throw new RuntimeException("The payoff quantum of an equilibrium cache must be positive.");
+		}
+		this.quantum = quantum;
+		this.maxSize = maxSize;
+		this.solutions = new LinkedHashMap<GameSignature, T>(16, 0.75f, true){
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<GameSignature, T> eldest){
+				return this.size() > maxSize;
+			}
+		};
+	}
+
+
+	/**
+	 * Returns the quantized signature of the given payoff matrices. The signature also depends on the order of the matrices.
+	 * @param payoffs the payoff matrices of the game.
+	 * @return the quantized signature of the given payoff matrices.
+	 */
+	public GameSignature signature(double [][]...payoffs){
+		return this.signature(0, payoffs);
+	}
+
+
+	/**
+	 * Returns the quantized signature of the given payoff matrices for a solution concept identified by the given tag. Games with
+	 * the same payoffs but different tags have different signatures, which allows one cache to store the solutions of different
+	 * solution concepts. The signature also depends on the order of the matrices.
+	 * @param tag the identifier of the solution concept
+	 * @param payoffs the payoff matrices of the game.
+	 * @return the quantized signature of the given payoff matrices.
+	 */
+	public GameSignature signature(int tag, double [][]...payoffs){
+		int n = 1;
+		for(double [][] m : payoffs){
+			n += 1 + m.length*m[0].length;
+		}
+		long [] q = new long[n];
+		q[0] = tag;
+		int ind = 1;
+		for(double [][] m : payoffs){
+			q[ind] = ((long)m.length << 32) | m[0].length;
+			ind++;
+			for(int i = 0; i < m.length; i++){
+				for(int j = 0; j < m[i].length; j++){
+					q[ind] = Math.round(m[i][j] / this.quantum);
+					ind++;
+				}
+			}
+		}
+		return new GameSignature(q);
+	}
+
+
+	/**
+	 * Returns the cached solution for the given signature, or null if there is none.
+	 * @param signature the signature of the game
+	 * @return the cached solution for the given signature, or null if there is none.
+	 */
+	public synchronized T get(GameSignature signature){
+		T sol = this.solutions.get(signature);
+		if(sol != null){
+			this.numHits++;
+		}
+		else{
+			this.numMisses++;
+		}
+		return sol;
+	}
+
+
+	/**
+	 * Caches the solution for the game with the given signature.
+	 * @param signature the signature of the game
+	 * @param solution the solution of the game
+	 */
+	public synchronized void put(GameSignature signature, T solution){
+		this.solutions.put(signature, solution);
+	}
+
+
+	/**
+	 * Returns the number of cache queries that returned a solution.
+	 * @return the number of cache queries that returned a solution.
+	 */
+	public synchronized long getNumHits(){
+		return this.numHits;
+	}
+
+
+	/**
+	 * Returns the number of cache queries that did not return a solution.
+	 * @return the number of cache queries that did not return a solution.
+	 */
+	public synchronized long getNumMisses(){
+		return this.numMisses;
+	}
+
+
+	/**
+	 * Returns the number of cached solutions.
+	 * @return the number of cached solutions.
+	 */
+	public synchronized int size(){
+		return this.solutions.size();
+	}
+
+
+	/**
+	 * Removes all cached solutions and resets the hit and miss counts.
+	 */
+	public synchronized void clear(){
+		this.solutions.clear();
+		this.numHits = 0;
+		this.numMisses = 0;
+	}
+
+
+
+	/**
+	 * The quantized signature of a stage game's payoff matrices.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class GameSignature{
+
+		/**
+		 * The matrix dimensions and quantized payoffs
+		 */
+		protected long [] quantized;
+
+		/**
+		 * The cached hash code
+		 */
+		protected int hashCode;
+
+
+		/**
+		 * Initializes.
+		 * @param quantized the matrix dimensions and quantized payoffs
+		 */
+		public GameSignature(long [] quantized){
+			this.quantized = quantized;
+			this.hashCode = Arrays.hashCode(quantized);
+		}
+
+		@Override
+		public int hashCode(){
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object other){
+			if(this == other){
+				return true;
+			}
+			if(!(other instanceof GameSignature)){
+				return false;
+			}
+			GameSignature o = (GameSignature)other;
+			return this.hashCode == o.hashCode && Arrays.equals(this.quantized, o.quantized);
+		}
+
+	}
+
+}
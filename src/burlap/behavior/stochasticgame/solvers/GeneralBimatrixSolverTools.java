@@ -1,5 +1,8 @@
 package burlap.behavior.stochasticgame.solvers;
 
+import scpsolver.lpsolver.LinearProgramSolver;
+import scpsolver.lpsolver.SolverFactory;
+import scpsolver.problems.LinearProgram;
 
 /**
  * A class holding static methods for performing common operations on bimatrix games.
@@ -9,6 +12,18 @@ package burlap.behavior.stochasticgame.solvers;
 public class GeneralBimatrixSolverTools {
 	
 	
+	/**
+	 * Solves the given linear program with the SCPSolver library's default solver. The SCPSolver solvers are not thread safe,
+	 * so calls are serialized, which lets solvers that use SCPSolver be called from multiple threads.
+	 * @param lp the linear program to solve
+	 * @return the solution of the linear program
+	 */
+	public static synchronized double [] solveWithSCPSolver(LinearProgram lp){
+		LinearProgramSolver solver = SolverFactory.newDefault();
+		return solver.solve(lp);
+	}
+	
+	
 	/**
 	 * Computes the expected payoff for each player in a bimatrix game according to their strategies. 
 	 * @param payoffRowPlayer the payoff for player 1. Rows are player 1's actions; columns player 2's.
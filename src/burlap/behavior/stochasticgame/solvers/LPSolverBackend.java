@@ -0,0 +1,15 @@
+package burlap.behavior.stochasticgame.solvers;
+
+
+/**
+ * The linear program solvers that can be used by the {@link MinMaxSolver} and {@link CorrelatedEquilibriumSolver}.
+ * SCPSOLVER uses the SCPSolver library with its default (native LPSolve) solver pack. DENSESIMPLEX uses the pure Java
+ * {@link DenseSimplexSolver}, which avoids native call and per-problem setup overhead and is typically much faster for
+ * the small stage games that arise in stochastic games. With the DENSESIMPLEX backend, two player two action minmax
+ * problems are solved in closed form without any linear program.
+ * @author James MacGlashan
+ *
+ */
+public enum LPSolverBackend {
+	SCPSOLVER, DENSESIMPLEX
+}
@@ -1,14 +1,86 @@
 package burlap.behavior.stochasticgame.solvers;
 
 import scpsolver.constraints.LinearBiggerThanEqualsConstraint;
-import scpsolver.lpsolver.LinearProgramSolver;
-import scpsolver.lpsolver.SolverFactory;
 import scpsolver.problems.LinearProgram;
 
+/**
+ * This class provides static methods for solving the minmax strategies of two player zero-sum games represented as a payoff matrix.
+ * The linear programs can be solved either with the SCPSolver library or with the pure Java {@link DenseSimplexSolver}, which is
+ * selected with the {@link #setBackend(LPSolverBackend)} method. With the {@link LPSolverBackend#DENSESIMPLEX} backend, the strategies of both players
+ * are recovered from a single linear program (one player's strategy from the primal solution and the other's from the dual solution), and
+ * games in which each player has two actions are solved in closed form.
+ * @author James MacGlashan
+ *
+ */
 public class MinMaxSolver {
 
+	/**
+	 * The linear program solver backend used to solve minmax problems.
+	 */
+	protected static volatile LPSolverBackend backend = LPSolverBackend.SCPSOLVER;
+	
+	
+	/**
+	 * Sets the linear program solver backend used to solve minmax problems. The default is {@link LPSolverBackend#SCPSOLVER}.
+	 * @param backend the linear program solver backend to use.
+	 */
+	public static void setBackend(LPSolverBackend backend){
+		MinMaxSolver.backend = backend;
+	}
+	
+	
+	/**
+	 * Returns the linear program solver backend used to solve minmax problems.
+	 * @return the linear program solver backend used to solve minmax problems.
+	 */
+	public static LPSolverBackend getBackend(){
+		return MinMaxSolver.backend;
+	}
+	
+	
+	/**
+	 * The tag that identifies minmax solutions in an {@link EquilibriumCache}
+	 */
+	public static final int CACHETAG = -1;
 	
 	
+	/**
+	 * Computes the minmax strategies of both players of the zero-sum game defined by the given payoff matrix. The solution is first looked up
+	 * in the provided cache by the quantized signature of the payoff matrix. If a solution is cached, it is returned without solving any linear
+	 * program; otherwise the strategies are solved and cached. The returned arrays are shared with the cache and should not be modified.
+	 * @param payoffMatrix payoffs for the row player; the column player's payoffs are their negation.
+	 * @param cache the cache of previously solved games; if null, the strategies are always solved.
+	 * @return a 2D double array whose first element is the row player's strategy and whose second element is the column player's strategy.
+	 */
+	public static double [][] getRowAndColPlayersStrategies(double [][] payoffMatrix, EquilibriumCache<double[][]> cache){
+		
+		EquilibriumCache.GameSignature signature = null;
+		if(cache != null){
+			signature = cache.signature(CACHETAG, payoffMatrix);
+			double [][] cached = cache.get(signature);
+			if(cached != null){
+				return cached;
+			}
+		}
+		
+		double [][] strategies;
+		if(backend == LPSolverBackend.DENSESIMPLEX){
+			strategies = solveZeroSumDense(payoffMatrix);
+		}
+		else{
+			strategies = new double[][]{
+					getRowPlayersStrategy(payoffMatrix), 
+					getColPlayersStrategy(GeneralBimatrixSolverTools.getNegatedMatrix(payoffMatrix))};
+		}
+		
+		if(cache != null){
+			cache.put(signature, strategies);
+		}
+		
+		return strategies;
+		
+	}
+	
 	
 	/**
 	 * Computes the minmax strategy for the row player of the given payoff matrix.
@@ -31,6 +103,10 @@ public class MinMaxSolver {
 	 */
 	public static double [] getColPlayersStrategy(double [][] payoffMatrix){
 		
+		if(backend == LPSolverBackend.DENSESIMPLEX){
+			return solveZeroSumDense(GeneralBimatrixSolverTools.transposeMatrix(payoffMatrix))[0];
+		}
+		
 		//get positive matrix (finds the minimum value and adds -min + 1 to all elements)
 		double [][] G = GeneralBimatrixSolverTools.getPositiveMatrix(payoffMatrix);
 		
@@ -52,8 +128,7 @@ public class MinMaxSolver {
 		
 		//solve it
 		lp.setMinProblem(true);
-		LinearProgramSolver solver = SolverFactory.newDefault(); 
-		double[] sol = solver.solve(lp);
+		double[] sol = GeneralBimatrixSolverTools.solveWithSCPSolver(lp);
 		
 		//convert LP solution into probability vector.
 		double z = 0.;
@@ -73,6 +148,92 @@ public class MinMaxSolver {
 	}
 	
 	
+	/**
+	 * Computes the minmax strategies of both players of the zero-sum game defined by the given payoff matrix using the {@link DenseSimplexSolver}.
+	 * The payoffs are shifted to be positive and the linear program in which the column player maximizes the sum of its scaled strategy
+	 * subject to the row player's payoffs being at most one is solved. The normalized solution is the column player's strategy and the normalized
+	 * dual solution is the row player's strategy. Games in which each player has two actions are solved in closed form instead.
+	 * @param payoffMatrix payoffs for the row player; the column player's payoffs are their negation.
+	 * @return a 2D double array whose first element is the row player's strategy and whose second element is the column player's strategy.
+	 */
+	public static double [][] solveZeroSumDense(double [][] payoffMatrix){
+		
+		if(payoffMatrix.length == 2 && payoffMatrix[0].length == 2){
+			return solveZeroSum2x2(payoffMatrix);
+		}
+		
+		double [][] G = GeneralBimatrixSolverTools.getPositiveMatrix(payoffMatrix);
+		int nRows = G.length;
+		int nCols = G[0].length;
+		
+		int [] types = new int[nRows];
+		double [] b = GeneralBimatrixSolverTools.constantDoubleArray(1., nRows);
+		for(int i = 0; i < nRows; i++){
+			types[i] = DenseSimplexSolver.LE;
+		}
+		
+		DenseSimplexSolver solver = DenseSimplexSolver.getThreadSolver();
+		double [] colStrategy = solver.maximize(GeneralBimatrixSolverTools.constantDoubleArray(1., nCols), G, types, b);
+		double [] rowStrategy = solver.getDuals();
+		
+		return new double[][]{normalizeStrategy(rowStrategy), normalizeStrategy(colStrategy)};
+	}
 	
 	
+	/**
+	 * Computes the minmax strategies of both players of a zero-sum game in which each player has two actions in closed form. If the game has a pure
+	 * strategy saddle point, the corresponding pure strategies are returned; otherwise each player mixes so that the other player is indifferent between
+	 * their actions.
+	 * @param payoffMatrix the 2x2 payoffs for the row player; the column player's payoffs are their negation.
+	 * @return a 2D double array whose first element is the row player's strategy and whose second element is the column player's strategy.
+	 */
+	public static double [][] solveZeroSum2x2(double [][] payoffMatrix){
+		
+		double a = payoffMatrix[0][0];
+		double b = payoffMatrix[0][1];
+		double c = payoffMatrix[1][0];
+		double d = payoffMatrix[1][1];
+		
+		//check for a saddle point: an entry that is the minimum of its row and the maximum of its column
+		for(int i = 0; i < 2; i++){
+			for(int j = 0; j < 2; j++){
+				double v = payoffMatrix[i][j];
+				if(v <= payoffMatrix[i][1-j] && v >= payoffMatrix[1-i][j]){
+					double [] rowStrategy = new double[2];
+					double [] colStrategy = new double[2];
+					rowStrategy[i] = 1.;
+					colStrategy[j] = 1.;
+					return new double[][]{rowStrategy, colStrategy};
+				}
+			}
+		}
+		
+		//without a saddle point, the denominator is nonzero
+		double denom = a - b - c + d;
+		double p = (d - c) / denom;
+		double q = (d - b) / denom;
+		
+		return new double[][]{new double[]{p, 1.-p}, new double[]{q, 1.-q}};
+	}
+	
+	
+	/**
+	 * Clamps negative values of a scaled strategy to zero and normalizes it into a probability distribution, in place.
+	 * @param strategy the scaled strategy
+	 * @return the normalized strategy
+	 */
+	protected static double [] normalizeStrategy(double [] strategy){
+		double z = 0.;
+		for(int i = 0; i < strategy.length; i++){
+			if(strategy[i] < 0.){
+				strategy[i] = 0.;
+			}
+			z += strategy[i];
+		}
+		for(int i = 0; i < strategy.length; i++){
+			strategy[i] /= z;
+		}
+		return strategy;
+	}
+	
 }
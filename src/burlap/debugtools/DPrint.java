@@ -1,26 +1,61 @@
 package burlap.debugtools;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
  * A class for managing debug print statements. Different debug print statements can be associated with different debug ids and enabling or disabling
  * print commands for that debug id can be performed from any class
+ * <p/>
+ * Messages that are expensive to build should be passed to the methods that take the parts of a message, such as {@link #cl(int, Object...)},
+ * which concatenate the string representations of the parts only if the debug code is enabled, or to {@link #cf(int, String, Object...)},
+ * which formats its arguments only if the debug code is enabled. A part may be a {@link Message}, whose text is built only when it is printed.
+ * Code that would also have to compute the parts of a message can first check {@link #mode(int)}, which is a lock-free array look up.
+ * <p/>
+ * By default, messages are printed to {@link System#out} by the thread that prints them. With {@link #toggleAsynchronous(boolean)}, messages
+ * are instead queued and printed in batches by a background thread, so that printing does not block the caller; {@link #flush()}
+ * waits until all queued messages have been printed. The text of a message is always built by the calling thread, so the objects
+ * it describes may be modified after the print call returns.
  * @author James MacGlashan
  *
  */
 public class DPrint {
 	/**
-	 * data structure keeping track of which debugCodes are allowed to print
+	 * The print mode of each debug code that has been set, in an immutable open addressing table that is replaced when a code is set
 	 */
-	static Map<Integer, Boolean> 	debugCodes = new HashMap<Integer, Boolean>();
+	static volatile CodeTable		debugCodes = new CodeTable(new int[16], new byte[16], 0);
 	
 	/**
 	 * Boolean which indicates that previously unset debug codes will by default be allowed to print
 	 * Setting this value to false will cause all otherwise unspecified debug values to not print
 	 */
-	static boolean					universalPrint = true;
+	static volatile boolean			universalPrint = true;
+	
+	/**
+	 * The queue of messages to print when printing is asynchronous; null when printing is synchronous
+	 */
+	static volatile LinkedBlockingQueue<Object>	asyncQueue = null;
+	
+	/**
+	 * Held for reading while a message is queued and for writing while the queue is replaced, so that no message is queued after the
+	 * queue has been drained
+	 */
+	static final ReentrantReadWriteLock	queueLock = new ReentrantReadWriteLock();
+	
+	/**
+	 * The thread that prints queued messages when printing is asynchronous
+	 */
+	static AsyncPrinter				asyncPrinter = null;
+	
+	/**
+	 * Whether the shutdown hook that prints the queued messages has been installed
+	 */
+	static boolean					shutdownHookInstalled = false;
 	
 	
 	/**
@@ -37,8 +72,107 @@ public class DPrint {
 	 * @param c the print debug code to set
 	 * @param mode true indicates that print calls to that code will print; false means that they will not
 	 */
-	public static void toggleCode(int c, boolean mode){
-		debugCodes.put(c, mode);
+	public static synchronized void toggleCode(int c, boolean mode){
+		debugCodes = debugCodes.with(c, mode);
+	}
+	
+	
+	/**
+	 * Sets whether messages are printed asynchronously by a background thread, so that print calls do not block on {@link System#out}.
+	 * When asynchronous printing is disabled, the messages that are queued are printed first. Messages that are still queued when the
+	 * JVM shuts down are printed by a shutdown hook.
+	 * @param asynchronous true if messages should be printed by a background thread; false if they should be printed by the calling thread.
+	 */
+	public static synchronized void toggleAsynchronous(boolean asynchronous){
+		if(asynchronous == (asyncQueue != null)){
+			return;
+		}
+		if(asynchronous){
+			if(!shutdownHookInstalled){
+				Runtime.getRuntime().addShutdownHook(new Thread(){
+					@Override
+					public void run(){
+						DPrint.flush();
+					}
+				});
+				shutdownHookInstalled = true;
+			}
+			asyncPrinter = new AsyncPrinter(new LinkedBlockingQueue<Object>());
+			asyncPrinter.start();
+			setQueue(asyncPrinter.queue);
+		}
+		else{
+			//new messages are printed synchronously while the queued messages are printed
+			LinkedBlockingQueue<Object> queue = setQueue(null);
+			awaitPrinted(queue);
+			asyncPrinter.interrupt();
+			asyncPrinter = null;
+		}
+	}
+	
+	
+	/**
+	 * Waits until all messages that have been queued for asynchronous printing have been printed. Returns immediately if printing is synchronous.
+	 */
+	public static void flush(){
+		CountDownLatch printed = new CountDownLatch(1);
+		if(enqueue(printed)){
+			await(printed);
+		}
+	}
+	
+	
+	/**
+	 * Replaces the queue of messages once every message that is being queued has been queued.
+	 * @return the previous queue
+	 */
+	private static LinkedBlockingQueue<Object> setQueue(LinkedBlockingQueue<Object> queue){
+		queueLock.writeLock().lock();
+		try {
+			LinkedBlockingQueue<Object> previous = asyncQueue;
+			asyncQueue = queue;
+			return previous;
+		} finally {
+			queueLock.writeLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * Queues a message if printing is asynchronous.
+	 * @return true if the message was queued; false if printing is synchronous.
+	 */
+	private static boolean enqueue(Object o){
+		if(asyncQueue == null){
+			return false;
+		}
+		queueLock.readLock().lock();
+		try {
+			LinkedBlockingQueue<Object> queue = asyncQueue;
+			if(queue == null){
+				return false;
+			}
+			queue.offer(o);
+			return true;
+		} finally {
+			queueLock.readLock().unlock();
+		}
+	}
+	
+	
+	private static void awaitPrinted(LinkedBlockingQueue<Object> queue){
+		CountDownLatch printed = new CountDownLatch(1);
+		queue.offer(printed);
+		await(printed);
+	}
+	
+	
+	private static void await(CountDownLatch printed){
+		try {
+			printed.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
 	
 	
@@ -57,7 +191,7 @@ public class DPrint {
 	 */
 	public static void u(String s){
 		if(universalPrint){
-			System.out.print(s);
+			print(s);
 		}
 	}
 	
@@ -69,7 +203,7 @@ public class DPrint {
 	 */
 	public static void uf(String s, Object...args){
 		if(universalPrint){
-			System.out.printf(s, args);
+			print(String.format(s, args));
 		}
 	}
 	
@@ -79,7 +213,22 @@ public class DPrint {
 	 * @param s the string to print
 	 */
 	public static void cl(int c, String s){
-		c(c, s+"\n");
+		if(mode(c)){
+			print(s+"\n");
+		}
+	}
+	
+	
+	/**
+	 * A print line command for the given debug code that prints the concatenation of the string representations of the given parts.
+	 * The parts are only converted to strings if the debug code is set to print.
+	 * @param c the debug code under which printing should be performed
+	 * @param parts the parts of the message to print
+	 */
+	public static void cl(int c, Object...parts){
+		if(mode(c)){
+			print(concatenate(parts).append('\n').toString());
+		}
 	}
 	
 	
@@ -89,13 +238,21 @@ public class DPrint {
 	 * @param s the string to print
 	 */
 	public static void c(int c, String s){
-		Boolean m = debugCodes.get(c);
-		boolean mb = universalPrint;
-		if(m != null){
-			mb = m;
+		if(mode(c)){
+			print(s);
 		}
-		if(mb){
-			System.out.print(s);
+	}
+	
+	
+	/**
+	 * A print command for the given debug code that prints the concatenation of the string representations of the given parts.
+	 * The parts are only converted to strings if the debug code is set to print.
+	 * @param c the debug code under which printing should be performed
+	 * @param parts the parts of the message to print
+	 */
+	public static void c(int c, Object...parts){
+		if(mode(c)){
+			print(concatenate(parts).toString());
 		}
 	}
 	
@@ -108,13 +265,8 @@ public class DPrint {
 	 * @param args the arguments for the formatted string
 	 */
 	public static void cf(int c, String s, Object...args){
-		Boolean m = debugCodes.get(c);
-		boolean mb = universalPrint;
-		if(m != null){
-			mb = m;
-		}
-		if(mb){
-			System.out.printf(s,args);
+		if(mode(c)){
+			print(String.format(s, args));
 		}
 	}
 	
@@ -125,12 +277,188 @@ public class DPrint {
 	 * @return true if printing to that debug code is allowed; false if it is not allowed.
 	 */
 	public static boolean mode(int c){
-		Boolean m = debugCodes.get(c);
-		boolean mb = universalPrint;
-		if(m != null){
-			mb = m;
+		byte m = debugCodes.get(c);
+		if(m == CodeTable.UNSET){
+			return universalPrint;
+		}
+		return m == CodeTable.ON;
+	}
+	
+	
+	
+	private static StringBuilder concatenate(Object [] parts){
+		StringBuilder buf = new StringBuilder();
+		for(Object p : parts){
+			buf.append(p);
+		}
+		return buf;
+	}
+	
+	
+	/**
+	 * Prints a message to {@link System#out}, or queues it if printing is asynchronous.
+	 * @param s the message
+	 */
+	private static void print(String s){
+		if(!enqueue(s)){
+			System.out.print(s);
+		}
+	}
+	
+	
+	
+	/**
+	 * A message whose text is built only if it is printed, for messages that are not simply the string representation of an object. Pass it
+	 * as a part to a method such as {@link DPrint#cl(int, Object...)}.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static abstract class Message{
+		
+		/**
+		 * Builds the text of this message.
+		 * @return the text of this message.
+		 */
+		public abstract String build();
+		
+		@Override
+		public String toString(){
+			return this.build();
+		}
+		
+	}
+	
+	
+	
+	/**
+	 * An immutable open addressing hash table from debug codes to their print mode, so that looking up the mode of a code neither locks
+	 * nor boxes the code.
+	 * @author James MacGlashan
+	 *
+	 */
+	static class CodeTable{
+		
+		static final byte UNSET = 0;
+		static final byte ON = 1;
+		static final byte OFF = 2;
+		
+		final int []	codes;
+		final byte []	modes;
+		int				size;
+		
+		CodeTable(int [] codes, byte [] modes, int size){
+			this.codes = codes;
+			this.modes = modes;
+			this.size = size;
+		}
+		
+		byte get(int c){
+			int mask = this.codes.length - 1;
+			for(int i = mix(c) & mask; ; i = (i + 1) & mask){
+				byte m = this.modes[i];
+				if(m == UNSET || this.codes[i] == c){
+					return m;
+				}
+			}
+		}
+		
+		/**
+		 * Returns a copy of this table in which the given code has the given mode.
+		 */
+		CodeTable with(int c, boolean mode){
+			int n = this.codes.length;
+			if(2 * (this.size + 1) > n){
+				n *= 2;
+			}
+			CodeTable t = new CodeTable(new int[n], new byte[n], 0);
+			for(int i = 0; i < this.codes.length; i++){
+				if(this.modes[i] != UNSET){
+					t.put(this.codes[i], this.modes[i]);
+				}
+			}
+			t.put(c, mode ? ON : OFF);
+			return t;
+		}
+		
+		private int put(int c, byte m){
+			int mask = this.codes.length - 1;
+			for(int i = mix(c) & mask; ; i = (i + 1) & mask){
+				if(this.modes[i] == UNSET || this.codes[i] == c){
+					if(this.modes[i] == UNSET){
+						this.size++;
+					}
+					this.codes[i] = c;
+					this.modes[i] = m;
+					return i;
+				}
+			}
+		}
+		
+		private static int mix(int c){
+			int h = c * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+		
+	}
+	
+	
+	
+	/**
+	 * The daemon thread that prints queued messages in batches until it is interrupted.
+	 * @author James MacGlashan
+	 *
+	 */
+	static class AsyncPrinter extends Thread{
+		
+		final LinkedBlockingQueue<Object>	queue;
+		
+		AsyncPrinter(LinkedBlockingQueue<Object> queue){
+			super("DPrint printer");
+			this.queue = queue;
+			this.setDaemon(true);
+		}
+		
+		@Override
+		public void run(){
+			List<Object> batch = new ArrayList<Object>();
+			while(true){
+				try {
+					batch.add(this.queue.take());
+				} catch (InterruptedException e) {
+					this.queue.drainTo(batch);
+					this.printBatch(batch);
+					return;
+				}
+				this.queue.drainTo(batch);
+				this.printBatch(batch);
+				batch.clear();
+			}
+		}
+		
+		/**
+		 * Prints the messages of a batch with one write, and releases the callers of {@link DPrint#flush()} whose markers are in the batch.
+		 */
+		void printBatch(List<Object> batch){
+			StringBuilder buf = new StringBuilder();
+			List<CountDownLatch> flushed = new ArrayList<CountDownLatch>();
+			for(Object o : batch){
+				if(o instanceof CountDownLatch){
+					flushed.add((CountDownLatch)o);
+				}
+				else{
+					buf.append((String)o);
+				}
+			}
+			if(buf.length() > 0){
+				PrintStream out = System.out;
+				out.print(buf);
+				out.flush();
+			}
+			for(CountDownLatch l : flushed){
+				l.countDown();
+			}
 		}
-		return mb;
+		
 	}
 
 }
@@ -0,0 +1,741 @@
+package burlap.debugtools;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A global registry of named counters, gauges, and timers to which planners and learning agents report their operational statistics, such as the number of
+ * Bellman backups, expanded search nodes, generated transitions, rollouts, and episode steps, the sizes of their tables, and the time spent in
+ * each phase or per decision. Like {@link DPrint}, the registry is accessed statically: a class looks up its metrics once, typically into static fields,
+ * with {@link #counter(String)}, {@link #gauge(String)}, and {@link #timer(String)}, and updates them as it runs. Metrics with the same name are the same
+ * object, so all instances of a class, and different classes that report the same quantity, add to the same metric.
+ * <p/>
+ * Metrics are disabled by default, in which case updating a metric only reads a flag and timers do not read the clock; they are enabled with
+ * {@link #setEnabled(boolean)}. Counters and timers are striped over several cells that are summed when they are read, so threads that update the same
+ * metric concurrently, such as the workers of a parallel planner, rarely contend. Timers also record a histogram of their durations, with one bucket
+ * for each power of two of nanoseconds, from which approximate percentiles are reported.
+ * <p/>
+ * The current values of all metrics can be written as JSON with {@link #writeJSON(Writer)} or as CSV with {@link #writeCSV(Writer, boolean)}, and
+ * {@link #startPeriodicExport(String, long, boolean)} starts a thread that appends a snapshot to a file at a fixed period, one JSON object per line or
+ * one CSV row per metric.
+ * @author James MacGlashan
+ *
+ */
+public class MetricsRegistry {
+
+	/**
+	 * Whether metrics are recorded
+	 */
+	private static volatile boolean							enabled = false;
+
+	/**
+	 * The registered metrics, ordered by name
+	 */
+	private static final Map<String, Metric>				metrics = new TreeMap<String, Metric>();
+
+	/**
+	 * The thread that periodically exports snapshots; null if none is running
+	 */
+	private static PeriodicExporter							exporter = null;
+
+	/**
+	 * The number of cells over which counters and timers are striped; a power of two
+	 */
+	private static final int								nStripes = stripeCount();
+
+	/**
+	 * The spacing of cells in the striped arrays, so that the cells of different threads are on different cache lines
+	 */
+	private static final int								cellSpacing = 8;
+
+
+
+	private MetricsRegistry(){
+		//static use only
+	}
+
+
+	/**
+	 * Sets whether metrics are recorded. Metrics keep their values when recording is disabled.
+	 * @param enabled true if metrics should be recorded; false otherwise.
+	 */
+	public static void setEnabled(boolean enabled){
+		MetricsRegistry.enabled = enabled;
+	}
+
+
+	/**
+	 * Returns whether metrics are recorded.
+	 * @return true if metrics are recorded; false otherwise.
+	 */
+	public static boolean isEnabled(){
+		return enabled;
+	}
+
+
+	/**
+	 * Returns the counter with the given name, registering it if it does not exist. A runtime exception is thrown if a metric of a different type
+	 * is registered with the name.
+	 * @param name the name of the counter
+	 * @return the counter with the given name
+	 */
+	public static Counter counter(String name){
+		synchronized(metrics){
+			Metric m = metrics.get(name);
+			if(m == null){
+				m = new Counter(name);
+				metrics.put(name, m);
+			}
+			return (Counter)checkType(m, Counter.class);
+		}
+	}
+
+
+	/**
+	 * Returns the gauge with the given name, registering it if it does not exist. A runtime exception is thrown if a metric of a different type
+	 * is registered with the name.
+	 * @param name the name of the gauge
+	 * @return the gauge with the given name
+	 */
+	public static Gauge gauge(String name){
+		synchronized(metrics){
+			Metric m = metrics.get(name);
+			if(m == null){
+				m = new Gauge(name);
+				metrics.put(name, m);
+			}
+			return (Gauge)checkType(m, Gauge.class);
+		}
+	}
+
+
+	/**
+	 * Returns the timer with the given name, registering it if it does not exist. A runtime exception is thrown if a metric of a different type
+	 * is registered with the name.
+	 * @param name the name of the timer
+	 * @return the timer with the given name
+	 */
+	public static Timer timer(String name){
+		synchronized(metrics){
+			Metric m = metrics.get(name);
+			if(m == null){
+				m = new Timer(name);
+				metrics.put(name, m);
+			}
+			return (Timer)checkType(m, Timer.class);
+		}
+	}
+
+
+	/**
+	 * Resets the values of all registered metrics to zero. The metrics remain registered.
+	 */
+	public static void reset(){
+		for(Metric m : registered()){
+			m.reset();
+		}
+	}
+
+
+	/**
+	 * Returns a snapshot of the current values of all registered metrics, ordered by name.
+	 * @return a snapshot of the current values of all registered metrics.
+	 */
+	public static List<MetricSnapshot> snapshot(){
+		List<Metric> ms = registered();
+		List<MetricSnapshot> snapshots = new ArrayList<MetricSnapshot>(ms.size());
+		for(Metric m : ms){
+			snapshots.add(m.snapshot());
+		}
+		return snapshots;
+	}
+
+
+	/**
+	 * Writes the current values of all registered metrics as a single line JSON object of the form
+	 * <code>{"timestamp":millis,"metrics":{"name":{"type":"counter","value":v},...}}</code>. Timer durations are given in milliseconds for their totals and in microseconds
+	 * for their mean, percentiles, and maximum.
+	 * @param out the writer to which the JSON object is written
+	 * @throws IOException if the writer throws an exception
+	 */
+	public static void writeJSON(Writer out) throws IOException{
+
+		List<MetricSnapshot> snapshots = snapshot();
+		StringBuilder buf = new StringBuilder();
+		buf.append("{\"timestamp\":").append(System.currentTimeMillis()).append(",\"metrics\":{");
+		for(int i = 0; i < snapshots.size(); i++){
+			MetricSnapshot s = snapshots.get(i);
+			if(i > 0){
+				buf.append(',');
+			}
+			buf.append('"').append(jsonEscape(s.name)).append("\":{\"type\":\"").append(s.type).append('"');
+			if(s.type.equals(Timer.TYPE)){
+				buf.append(",\"count\":").append(s.count)
+					.append(",\"totalMillis\":").append(s.totalNanos / 1e6)
+					.append(",\"meanMicros\":").append(s.meanMicros())
+					.append(",\"p50Micros\":").append(s.p50Nanos / 1e3)
+					.append(",\"p90Micros\":").append(s.p90Nanos / 1e3)
+					.append(",\"p99Micros\":").append(s.p99Nanos / 1e3)
+					.append(",\"maxMicros\":").append(s.maxNanos / 1e3);
+			}
+			else{
+				buf.append(",\"value\":").append(s.value);
+			}
+			buf.append('}');
+		}
+		buf.append("}}\n");
+		out.write(buf.toString());
+		out.flush();
+
+	}
+
+
+	/**
+	 * Writes the current values of all registered metrics as CSV, one row per metric with the columns
+	 * <code>timestamp,name,type,value,count,totalMillis,meanMicros,p50Micros,p90Micros,p99Micros,maxMicros</code>. The timer columns are empty for
+	 * counters and gauges, and the value column is empty for timers.
+	 * @param out the writer to which the rows are written
+	 * @param header whether a header row should be written first
+	 * @throws IOException if the writer throws an exception
+	 */
+	public static void writeCSV(Writer out, boolean header) throws IOException{
+
+		List<MetricSnapshot> snapshots = snapshot();
+		long timestamp = System.currentTimeMillis();
+		StringBuilder buf = new StringBuilder();
+		if(header){
+			buf.append("timestamp,name,type,value,count,totalMillis,meanMicros,p50Micros,p90Micros,p99Micros,maxMicros\n");
+		}
+		for(MetricSnapshot s : snapshots){
+			buf.append(timestamp).append(',').append(csvEscape(s.name)).append(',').append(s.type).append(',');
+			if(s.type.equals(Timer.TYPE)){
+				buf.append(',').append(s.count)
+					.append(',').append(s.totalNanos / 1e6)
+					.append(',').append(s.meanMicros())
+					.append(',').append(s.p50Nanos / 1e3)
+					.append(',').append(s.p90Nanos / 1e3)
+					.append(',').append(s.p99Nanos / 1e3)
+					.append(',').append(s.maxNanos / 1e3);
+			}
+			else{
+				buf.append(s.value).append(",,,,,,,");
+			}
+			buf.append('\n');
+		}
+		out.write(buf.toString());
+		out.flush();
+
+	}
+
+
+	/**
+	 * Starts a daemon thread that appends a snapshot of all metrics to the given file every periodMillis milliseconds, and once more when
+	 * {@link #stopPeriodicExport()} is called. Any periodic export that is already running is stopped first.
+	 * @param path the path of the file to which snapshots are appended
+	 * @param periodMillis the period between snapshots in milliseconds
+	 * @param json true if snapshots should be written as JSON objects, one per line; false if they should be written as CSV rows
+	 */
+	public static synchronized void startPeriodicExport(String path, long periodMillis, boolean json){
+		if(periodMillis <= 0){
+			throw new RuntimeException("The period of metric exports must be positive.");
+		}
+		stopPeriodicExport();
+		exporter = new PeriodicExporter(path, periodMillis, json);
+		exporter.start();
+	}
+
+
+	/**
+	 * Stops the periodic export thread, if one is running, after it writes a final snapshot.
+	 */
+	public static synchronized void stopPeriodicExport(){
+		if(exporter != null){
+			exporter.interrupt();
+			try {
+				exporter.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exporter = null;
+		}
+	}
+
+
+
+
+	/**
+	 * Returns the registered metrics in the order of their names.
+	 * @return the registered metrics.
+	 */
+	private static List<Metric> registered(){
+		synchronized(metrics){
+			return new ArrayList<Metric>(metrics.values());
+		}
+	}
+
+
+	private static Metric checkType(Metric m, Class<? extends Metric> type){
+		if(!type.isInstance(m)){
+			throw new RuntimeException("The metric " + m.name + " is already registered as a " + m.type() + ".");
+		}
+		return m;
+	}
+
+
+	private static int stripeCount(){
+		int n = 1;
+		int target = Math.min(64, 2 * Runtime.getRuntime().availableProcessors());
+		while(n < target){
+			n <<= 1;
+		}
+		return n;
+	}
+
+
+	/**
+	 * Returns the offset of the calling thread's cell in a striped array.
+	 * @return the offset of the calling thread's cell.
+	 */
+	private static int cell(){
+		long id = Thread.currentThread().getId();
+		return ((int)(id ^ (id >>> 16)) & (nStripes - 1)) * cellSpacing;
+	}
+
+
+	private static long sum(AtomicLongArray cells){
+		long sum = 0;
+		for(int i = 0; i < cells.length(); i += cellSpacing){
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+
+	private static void zero(AtomicLongArray cells){
+		for(int i = 0; i < cells.length(); i++){
+			cells.set(i, 0);
+		}
+	}
+
+
+	private static String jsonEscape(String s){
+		StringBuilder buf = new StringBuilder(s.length());
+		for(int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\'){
+				buf.append('\\').append(c);
+			}
+			else if(c < 0x20){
+				buf.append(String.format("\\u%04x", (int)c));
+			}
+			else{
+				buf.append(c);
+			}
+		}
+		return buf.toString();
+	}
+
+
+	private static String csvEscape(String s){
+		if(s.indexOf(',') == -1 && s.indexOf('"') == -1 && s.indexOf('\n') == -1){
+			return s;
+		}
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+
+
+
+
+	/**
+	 * A named metric.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static abstract class Metric{
+
+		/**
+		 * The name of the metric
+		 */
+		protected final String		name;
+
+		protected Metric(String name){
+			this.name = name;
+		}
+
+		/**
+		 * Returns the name of this metric.
+		 * @return the name of this metric.
+		 */
+		public String getName(){
+			return this.name;
+		}
+
+		/**
+		 * Returns the name of the type of this metric.
+		 * @return the name of the type of this metric.
+		 */
+		public abstract String type();
+
+		/**
+		 * Resets this metric to zero.
+		 */
+		public abstract void reset();
+
+		/**
+		 * Returns a snapshot of the current value of this metric.
+		 * @return a snapshot of the current value of this metric.
+		 */
+		public abstract MetricSnapshot snapshot();
+
+	}
+
+
+	/**
+	 * A counter of events, such as Bellman backups, that is incremented by many threads.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class Counter extends Metric{
+
+		public static final String		TYPE = "counter";
+
+		private final AtomicLongArray	cells = new AtomicLongArray(nStripes * cellSpacing);
+
+		protected Counter(String name){
+			super(name);
+		}
+
+		/**
+		 * Increments this counter by one if metrics are enabled.
+		 */
+		public void increment(){
+			if(enabled){
+				this.cells.getAndIncrement(cell());
+			}
+		}
+
+		/**
+		 * Adds n to this counter if metrics are enabled.
+		 * @param n the amount to add
+		 */
+		public void add(long n){
+			if(enabled){
+				this.cells.getAndAdd(cell(), n);
+			}
+		}
+
+		/**
+		 * Returns the current count.
+		 * @return the current count.
+		 */
+		public long get(){
+			return sum(this.cells);
+		}
+
+		@Override
+		public String type(){
+			return TYPE;
+		}
+
+		@Override
+		public void reset(){
+			zero(this.cells);
+		}
+
+		@Override
+		public MetricSnapshot snapshot(){
+			MetricSnapshot s = new MetricSnapshot(this.name, TYPE);
+			s.value = this.get();
+			return s;
+		}
+
+	}
+
+
+	/**
+	 * A gauge that holds the most recently reported value of a quantity, such as the size of a table.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class Gauge extends Metric{
+
+		public static final String		TYPE = "gauge";
+
+		private volatile long			value = 0;
+
+		protected Gauge(String name){
+			super(name);
+		}
+
+		/**
+		 * Sets the value of this gauge if metrics are enabled.
+		 * @param value the value
+		 */
+		public void set(long value){
+			if(enabled){
+				this.value = value;
+			}
+		}
+
+		/**
+		 * Returns the current value.
+		 * @return the current value.
+		 */
+		public long get(){
+			return this.value;
+		}
+
+		@Override
+		public String type(){
+			return TYPE;
+		}
+
+		@Override
+		public void reset(){
+			this.value = 0;
+		}
+
+		@Override
+		public MetricSnapshot snapshot(){
+			MetricSnapshot s = new MetricSnapshot(this.name, TYPE);
+			s.value = this.value;
+			return s;
+		}
+
+	}
+
+
+	/**
+	 * A timer that records the number, total, maximum, and a histogram of the durations of a repeated operation, such as a planning phase or the
+	 * selection of an action. A duration is recorded by passing the value returned by {@link #start()} to {@link #stop(long)}:
+	 * <p/>
+	 * <code>long t = timer.start(); ... timer.stop(t);</code>
+	 * <p/>
+	 * When metrics are disabled, {@link #start()} returns 0 without reading the clock and {@link #stop(long)} ignores a start time of 0.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class Timer extends Metric{
+
+		public static final String		TYPE = "timer";
+
+		private final AtomicLongArray	counts = new AtomicLongArray(nStripes * cellSpacing);
+		private final AtomicLongArray	totals = new AtomicLongArray(nStripes * cellSpacing);
+		private final AtomicLongArray	buckets = new AtomicLongArray(64);
+		private final AtomicLong		max = new AtomicLong(0);
+
+		protected Timer(String name){
+			super(name);
+		}
+
+		/**
+		 * Returns the start time of a duration to pass to {@link #stop(long)}, or 0 if metrics are disabled.
+		 * @return the start time in nanoseconds, or 0 if metrics are disabled.
+		 */
+		public long start(){
+			return enabled ? System.nanoTime() : 0L;
+		}
+
+		/**
+		 * Records the duration since the given start time, unless it is 0.
+		 * @param start the start time returned by {@link #start()}
+		 */
+		public void stop(long start){
+			if(start != 0L){
+				this.record(System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Records a duration if metrics are enabled.
+		 * @param nanos the duration in nanoseconds
+		 */
+		public void record(long nanos){
+			if(!enabled){
+				return;
+			}
+			if(nanos < 0){
+				nanos = 0;
+			}
+			int c = cell();
+			this.counts.getAndIncrement(c);
+			this.totals.getAndAdd(c, nanos);
+			this.buckets.getAndIncrement(63 - Long.numberOfLeadingZeros(nanos | 1L));
+			long m = this.max.get();
+			while(nanos > m && !this.max.compareAndSet(m, nanos)){
+				m = this.max.get();
+			}
+		}
+
+		/**
+		 * Returns the number of recorded durations.
+		 * @return the number of recorded durations.
+		 */
+		public long getCount(){
+			return sum(this.counts);
+		}
+
+		/**
+		 * Returns the sum of the recorded durations in nanoseconds.
+		 * @return the sum of the recorded durations in nanoseconds.
+		 */
+		public long getTotalNanos(){
+			return sum(this.totals);
+		}
+
+		@Override
+		public String type(){
+			return TYPE;
+		}
+
+		@Override
+		public void reset(){
+			zero(this.counts);
+			zero(this.totals);
+			zero(this.buckets);
+			this.max.set(0);
+		}
+
+		@Override
+		public MetricSnapshot snapshot(){
+			MetricSnapshot s = new MetricSnapshot(this.name, TYPE);
+			s.count = this.getCount();
+			s.totalNanos = this.getTotalNanos();
+			s.maxNanos = this.max.get();
+			long [] hist = new long[this.buckets.length()];
+			long n = 0;
+			for(int i = 0; i < hist.length; i++){
+				hist[i] = this.buckets.get(i);
+				n += hist[i];
+			}
+			s.p50Nanos = percentile(hist, n, 0.5, s.maxNanos);
+			s.p90Nanos = percentile(hist, n, 0.9, s.maxNanos);
+			s.p99Nanos = percentile(hist, n, 0.99, s.maxNanos);
+			return s;
+		}
+
+		/**
+		 * Returns an upper bound of the given percentile of a histogram with power of two buckets: the upper limit of the bucket that contains it,
+		 * capped at the maximum recorded duration.
+		 */
+		private static long percentile(long [] hist, long n, double p, long maxNanos){
+			if(n == 0){
+				return 0;
+			}
+			long rank = (long)Math.ceil(p * n);
+			long cum = 0;
+			for(int i = 0; i < hist.length; i++){
+				cum += hist[i];
+				if(cum >= rank){
+					long upper = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+					return Math.min(upper, maxNanos);
+				}
+			}
+			return maxNanos;
+		}
+
+	}
+
+
+	/**
+	 * The value of a metric at the time a snapshot was taken. Counters and gauges set only the value; timers set the count, total, maximum, and
+	 * approximate percentiles of their durations.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class MetricSnapshot{
+
+		public final String		name;
+		public final String		type;
+		public long				value;
+		public long				count;
+		public long				totalNanos;
+		public long				maxNanos;
+		public long				p50Nanos;
+		public long				p90Nanos;
+		public long				p99Nanos;
+
+		public MetricSnapshot(String name, String type){
+			this.name = name;
+			this.type = type;
+		}
+
+		/**
+		 * Returns the mean duration of a timer in microseconds, or 0 if no durations were recorded.
+		 * @return the mean duration in microseconds.
+		 */
+		public double meanMicros(){
+			return this.count == 0 ? 0. : (this.totalNanos / 1e3) / this.count;
+		}
+
+	}
+
+
+	/**
+	 * A daemon thread that appends a snapshot of all metrics to a file at a fixed period until it is interrupted.
+	 * @author James MacGlashan
+	 *
+	 */
+	private static class PeriodicExporter extends Thread{
+
+		private final String		path;
+		private final long			periodMillis;
+		private final boolean		json;
+		private boolean				wroteHeader = false;
+
+		public PeriodicExporter(String path, long periodMillis, boolean json){
+			super("MetricsRegistry exporter");
+			this.path = path;
+			this.periodMillis = periodMillis;
+			this.json = json;
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run(){
+			boolean running = true;
+			while(running){
+				try {
+					Thread.sleep(this.periodMillis);
+				} catch (InterruptedException e) {
+					running = false;
+				}
+				this.export();
+			}
+		}
+
+		private void export(){
+			Writer out = null;
+			try {
+				out = new FileWriter(this.path, true);
+				if(this.json){
+					writeJSON(out);
+				}
+				else{
+					writeCSV(out, !this.wroteHeader);
+					this.wroteHeader = true;
+				}
+			} catch (IOException e) {
+				System.err.println("Could not export metrics to " + this.path + ": " + e.getMessage());
+			} finally {
+				if(out != null){
+					try {
+						out.close();
+					} catch (IOException e) {
+						//nothing more to do
+					}
+				}
+			}
+		}
+
+	}
+
+}
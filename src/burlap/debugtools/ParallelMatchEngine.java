@@ -0,0 +1,398 @@
+package burlap.debugtools;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Runs a number of independent matches (for instance, the games of a tournament or the trials of an experiment) on multiple threads.
+ * Each match is run by a {@link MatchTask} that should construct everything it mutates, such as its {@link burlap.oomdp.stochasticgames.World} and agents, so that
+ * matches running on different threads share no state. Each match is run inside a {@link RandomFactory} thread scope whose seed is derived from
+ * this engine's base seed and the index of the match (see {@link #matchSeed(int)}), and the result of each match is passed to a {@link ResultCommitter}
+ * strictly in the order of the match indices, so the results are reproducible as described in {@link RandomFactory#beginThreadScope(long)}.
+ * Commits are never run concurrently, so the committer does not need to be thread safe. Results are committed as soon as all matches with
+ * a lower index have been committed, so the committer may be run by any of the worker threads, including the calling thread, which runs matches too.
+ * <p/>
+ * If any match throws an exception, the remaining unstarted matches are skipped and the first exception is rethrown by {@link #run(int, MatchTask, ResultCommitter)}
+ * after all workers finish.
+ * <p/>
+ * {@link #run(int, MatchTaskFactory, ResultCommitter, StopCondition)} additionally lets each worker thread create its own {@link MatchTask}, for matches
+ * that use objects which are not thread safe, and lets the matches stop early once the committed results satisfy a {@link StopCondition}.
+ * <p/>
+ * The static methods {@link #runIndexed(int, int, IndexedTask)} and {@link #runWorkers(int, IndexedTask)} provide the same thread handling
+ * for other work that is divided among threads.
+ * @author James MacGlashan
+ *
+ */
+public class ParallelMatchEngine {
+
+	/**
+	 * The number of threads used to run matches
+	 */
+	protected int						nThreads;
+
+	/**
+	 * The seed from which the seed of each match is derived
+	 */
+	protected long						baseSeed;
+
+
+	/**
+	 * Initializes.
+	 * @param nThreads the number of threads used to run matches
+	 * @param baseSeed the seed from which the seed of each match is derived
+	 */
+	public ParallelMatchEngine(int nThreads, long baseSeed){
+		if(nThreads < 1){
+			throw new RuntimeException("A parallel match engine requires at least one thread.");
+		}
+		this.nThreads = nThreads;
+		this.baseSeed = baseSeed;
+	}
+
+
+	/**
+	 * Returns the number of threads used to run matches.
+	 * @return the number of threads used to run matches.
+	 */
+	public int getNumThreads(){
+		return nThreads;
+	}
+
+
+	/**
+	 * Sets the number of threads used to run matches.
+	 * @param nThreads the number of threads used to run matches.
+	 */
+	public void setNumThreads(int nThreads){
+		if(nThreads < 1){
+			throw new RuntimeException("A parallel match engine requires at least one thread.");
+		}
+		this.nThreads = nThreads;
+	}
+
+
+	/**
+	 * Returns the seed from which the seed of each match is derived.
+	 * @return the seed from which the seed of each match is derived.
+	 */
+	public long getBaseSeed(){
+		return baseSeed;
+	}
+
+
+	/**
+	 * Sets the seed from which the seed of each match is derived.
+	 * @param baseSeed the seed from which the seed of each match is derived.
+	 */
+	public void setBaseSeed(long baseSeed){
+		this.baseSeed = baseSeed;
+	}
+
+
+	/**
+	 * Returns the random scope seed used for the match with the given index, which is derived with {@link RandomFactory#deriveSeed(long, long)}.
+	 * Running a match sequentially inside a {@link RandomFactory} thread scope begun with this seed reproduces the result this engine produces for it.
+	 * @param matchIndex the index of the match
+	 * @return the random scope seed of the match
+	 */
+	public long matchSeed(int matchIndex){
+		return RandomFactory.deriveSeed(this.baseSeed, matchIndex);
+	}
+
+
+	/**
+	 * Runs matches 0 through numMatches-1 and commits their results in index order. Returns once all results have been committed.
+	 * @param numMatches the number of matches to run
+	 * @param task the task that runs a single match
+	 * @param committer the committer that receives the result of each match in index order; may be null
+	 * @param <R> the type of a match result
+	 */
+	public <R> void run(int numMatches, final MatchTask<R> task, ResultCommitter<R> committer){
+		this.run(numMatches, new MatchTaskFactory<R>() {
+			@Override
+			public MatchTask<R> createTask(int workerIndex) {
+				return task;
+			}
+		}, committer, null);
+	}
+
+
+	/**
+	 * Runs matches 0 through numMatches-1 with a task created by each worker thread, and commits their results in index order until the stop condition
+	 * is met. The stop condition is checked after each commit; once it is met, no further matches are started and the results of the matches
+	 * that are still running are discarded. Returns once all workers have finished.
+	 * @param numMatches the maximum number of matches to run
+	 * @param tasks the factory that each worker thread calls once, before it runs any match, to create the task with which it runs matches
+	 * @param committer the committer that receives the result of each match in index order; may be null
+	 * @param stop the condition after which no further results are committed; may be null to run all matches
+	 * @param <R> the type of a match result
+	 */
+	public <R> void run(final int numMatches, final MatchTaskFactory<R> tasks, final ResultCommitter<R> committer, final StopCondition stop){
+
+		final Object [] results = new Object[numMatches];
+		final boolean [] finished = new boolean[numMatches];
+		final AtomicInteger nextMatch = new AtomicInteger(0);
+		final int [] nextCommit = new int[]{0};
+		final boolean [] halted = new boolean[]{false};
+
+		runWorkers(Math.min(this.nThreads, numMatches), new IndexedTask() {
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public void run(int workerIndex) {
+
+				boolean completed = false;
+				try{
+					MatchTask<R> task = tasks.createTask(workerIndex);
+					int i;
+					while((i = nextMatch.getAndIncrement()) < numMatches){
+
+						synchronized(results){
+							if(halted[0]){
+								break;
+							}
+						}
+
+						R result;
+						RandomFactory.beginThreadScope(ParallelMatchEngine.this.matchSeed(i));
+						try{
+							result = task.runMatch(i);
+						}
+						finally{
+							RandomFactory.endThreadScope();
+						}
+
+						synchronized(results){
+							if(halted[0]){
+								break;
+							}
+							results[i] = result;
+							finished[i] = true;
+							while(nextCommit[0] < numMatches && finished[nextCommit[0]] && !halted[0]){
+								int c = nextCommit[0];
+								if(committer != null){
+									committer.commit(c, (R)results[c]);
+								}
+								results[c] = null;
+								nextCommit[0]++;
+								halted[0] = stop != null && stop.shouldStop();
+							}
+						}
+
+					}
+					completed = true;
+				}
+				finally{
+					if(!completed){
+						synchronized(results){
+							halted[0] = true;
+						}
+					}
+				}
+
+			}
+		});
+
+	}
+
+
+	/**
+	 * Runs a task for indices 0 through numTasks-1 on up to nThreads threads, each thread taking the next unstarted index when it finishes one.
+	 * The calling thread is one of the threads. If any task throws an exception, the remaining unstarted tasks are skipped and the first exception
+	 * is rethrown once all threads have finished. The tasks are not run in random scopes; tasks that use random generators should begin
+	 * a scope of their own (see {@link RandomFactory#beginThreadScope(long)}).
+	 * @param numTasks the number of tasks to run
+	 * @param nThreads the maximum number of threads on which to run them
+	 * @param task the task to run for each index
+	 */
+	public static void runIndexed(final int numTasks, int nThreads, final IndexedTask task){
+		final AtomicInteger next = new AtomicInteger(0);
+		runWorkers(Math.min(nThreads, numTasks), new IndexedTask() {
+			@Override
+			public void run(int workerIndex) {
+				boolean completed = false;
+				try{
+					int i;
+					while((i = next.getAndIncrement()) < numTasks){
+						task.run(i);
+					}
+					completed = true;
+				}
+				finally{
+					if(!completed){
+						next.set(numTasks);
+					}
+				}
+			}
+		});
+	}
+
+
+	/**
+	 * Runs a worker for indices 0 through nThreads-1, each on its own thread, and returns once all of them have finished. The calling thread
+	 * runs worker 0. If any worker throws an exception, the first one is rethrown once all workers have finished; workers that should stop
+	 * when another fails must check for that themselves.
+	 * @param nThreads the number of workers to run
+	 * @param worker the worker to run for each index
+	 */
+	public static void runWorkers(int nThreads, final IndexedTask worker){
+
+		if(nThreads < 1){
+			return;
+		}
+
+		final Throwable [] failure = new Throwable[1];
+		Thread [] threads = new Thread[nThreads-1];
+		for(int w = 1; w < nThreads; w++){
+			final int workerIndex = w;
+			threads[w-1] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try{
+						worker.run(workerIndex);
+					}
+					catch(Throwable e){
+						synchronized(failure){
+							if(failure[0] == null){
+								failure[0] = e;
+							}
+						}
+					}
+				}
+			});
+			threads[w-1].start();
+		}
+
+		try{
+			worker.run(0);
+		}
+		catch(Throwable e){
+			synchronized(failure){
+				if(failure[0] == null){
+					failure[0] = e;
+				}
+			}
+		}
+
+		for(Thread t : threads){
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for worker threads to finish.", e);
+			}
+		}
+
+		synchronized(failure){
+			if(failure[0] != null){
+				rethrow(failure[0]);
+			}
+		}
+
+	}
+
+
+	/**
+	 * Rethrows an exception caught from a task: runtime exceptions and errors are thrown as they are, and other exceptions are wrapped in a runtime exception.
+	 * @param e the exception to rethrow
+	 */
+	public static void rethrow(Throwable e){
+		if(e instanceof RuntimeException){
+			throw (RuntimeException)e;
+		}
+		if(e instanceof Error){
+			throw (Error)e;
+		}
+		throw new RuntimeException(e);
+	}
+
+
+
+	/**
+	 * A task that is run for each of a range of indices, such as the tasks of {@link ParallelMatchEngine#runIndexed(int, int, IndexedTask)}
+	 * or the workers of {@link ParallelMatchEngine#runWorkers(int, IndexedTask)}.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface IndexedTask{
+
+		/**
+		 * Runs the task for the given index.
+		 * @param index the index
+		 */
+		public void run(int index);
+
+	}
+
+
+	/**
+	 * A task that runs a single match. The task may be run concurrently for different match indices, so it should construct
+	 * everything it mutates for each match.
+	 * @author James MacGlashan
+	 *
+	 * @param <R> the type of a match result
+	 */
+	public static interface MatchTask <R>{
+
+		/**
+		 * Runs the match with the given index and returns its result.
+		 * @param matchIndex the index of the match
+		 * @return the result of the match
+		 */
+		public R runMatch(int matchIndex);
+
+	}
+
+
+	/**
+	 * Creates the {@link MatchTask} with which a worker thread runs its matches, so that each thread can use its own copies of objects that are not thread safe.
+	 * @author James MacGlashan
+	 *
+	 * @param <R> the type of a match result
+	 */
+	public static interface MatchTaskFactory <R>{
+
+		/**
+		 * Returns the task with which the worker thread with the given index runs its matches. It is called once by each worker thread, before the thread runs any match.
+		 * @param workerIndex the index of the worker thread
+		 * @return the task with which the worker thread runs its matches
+		 */
+		public MatchTask<R> createTask(int workerIndex);
+
+	}
+
+
+	/**
+	 * Decides, after each result is committed, whether no further matches should be run.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface StopCondition{
+
+		/**
+		 * Returns whether no further matches should be run. It is called after each commit, by the thread that made the commit, and never concurrently with a commit.
+		 * @return true if no further matches should be run; false otherwise.
+		 */
+		public boolean shouldStop();
+
+	}
+
+
+	/**
+	 * Receives the results of matches in index order. Commits are never run concurrently.
+	 * @author James MacGlashan
+	 *
+	 * @param <R> the type of a match result
+	 */
+	public static interface ResultCommitter <R>{
+
+		/**
+		 * Commits the result of the match with the given index.
+		 * @param matchIndex the index of the match
+		 * @param result the result of the match
+		 */
+		public void commit(int matchIndex, R result);
+
+	}
+
+}
@@ -14,6 +14,13 @@ import java.util.*;
  * To synchronize, just seed either a mapped random generator or the default in the
  * main method and use the get method to retrieve the random object for all other
  * classes. To break the fixed sequence, just construct it without a seed
+ * <p/>
+ * When independent tasks are run concurrently (for instance, multiple games in a tournament), sharing the same random generators
+ * makes the random sequence each task sees depend on how the threads are scheduled. To make each task reproducible, a thread can
+ * begin a random scope with {@link #beginThreadScope(long)}. Until {@link #endThreadScope()} is called, all of the static methods of this class that are
+ * called from that thread use a separate set of generators, and generators that are requested without a seed are seeded deterministically from the scope seed
+ * and their id. Objects that retrieve their generator inside the scope therefore produce the same sequence regardless of what other threads do.
+ * Scopes may be nested; ending a scope restores the scope that was active when it began.
  * 
  * 
  * @author James MacGlashan
@@ -23,6 +30,21 @@ public class RandomFactory {
 
 	private static RandomFactory factory = new RandomFactory();
 	
+	/**
+	 * The random factory of each thread that has begun a thread scope
+	 */
+	private static final ThreadLocal<RandomFactory> threadFactories = new ThreadLocal<RandomFactory>();
+	
+	/**
+	 * The seed from which the generators of a thread scoped factory that are not explicitly seeded are seeded; null for the global factory
+	 */
+	Long scopeSeed = null;
+	
+	/**
+	 * The thread scoped factory that was active when this thread scoped factory's scope began; null if there was none
+	 */
+	RandomFactory outerScope = null;
+	
 	/**
 	 * A default random number generator
 	 */
@@ -62,12 +84,85 @@ public class RandomFactory {
 	}
 	
 	
+	/**
+	 * Begins a random scope for the calling thread. Until {@link #endThreadScope()} is called, all static methods of this class called from this thread
+	 * use a separate set of random generators, and generators that are not explicitly seeded are seeded deterministically from the given seed and their id.
+	 * If the thread is already in a random scope, the new scope is nested in it.
+	 * <p/>
+	 * Scopes are what make the multi-threaded classes of BURLAP reproducible. Independent tasks that are run concurrently produce exactly the
+	 * same results for any number of threads, and in any thread schedule, when three conditions hold: each task runs inside its own scope whose seed depends only
+	 * on the task (for instance, a seed derived with {@link #deriveSeed(long, long)} from a base seed and the index of the task); the objects the
+	 * task uses retrieve their random generators from this factory while the task runs, rather than keeping a generator they retrieved when they
+	 * were constructed; and the results of the tasks are combined in task order. {@link ParallelMatchEngine} runs its tasks this way.
+	 * @param seed the seed of the scope
+	 */
+	public static void beginThreadScope(long seed){
+		RandomFactory scoped = new RandomFactory();
+		scoped.scopeSeed = seed;
+		scoped.outerScope = threadFactories.get();
+		threadFactories.set(scoped);
+	}
+	
+	
+	/**
+	 * Ends the innermost random scope of the calling thread, if any, so that the static methods of this class once again use the generators
+	 * of the enclosing scope, or the global random generators if there is no enclosing scope.
+	 */
+	public static void endThreadScope(){
+		RandomFactory scoped = threadFactories.get();
+		if(scoped != null && scoped.outerScope != null){
+			threadFactories.set(scoped.outerScope);
+		}
+		else{
+			threadFactories.remove();
+		}
+	}
+	
+	
+	/**
+	 * Returns a seed derived from a base seed and an index, such as the index of a task, for the random scope of the task. Consecutive indices
+	 * get well spread seeds, so derived seeds can also be derived from again to index along more than one dimension.
+	 * @param seed the base seed
+	 * @param index the index
+	 * @return the derived seed
+	 */
+	public static long deriveSeed(long seed, long index){
+		//SplitMix64 finalizer
+		long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	
+	/**
+	 * Returns whether the calling thread is in a random scope started with {@link #beginThreadScope(long)}.
+	 * @return true if the calling thread is in a random scope; false otherwise.
+	 */
+	public static boolean inThreadScope(){
+		return threadFactories.get() != null;
+	}
+	
+	
+	/**
+	 * Returns the random factory used by the static methods for the calling thread: the thread's scoped factory if it has begun a random scope, and the global factory otherwise.
+	 * @return the random factory used by the static methods for the calling thread.
+	 */
+	private static RandomFactory current(){
+		RandomFactory scoped = threadFactories.get();
+		if(scoped != null){
+			return scoped;
+		}
+		return factory;
+	}
+	
+	
 	/**
 	 * Returns the default random number generator.
 	 * @return the default random number generator.
 	 */
 	public static Random getDefault(){
-		return factory.ingetDefault();
+		return current().ingetDefault();
 	}
 	
 	/**
@@ -76,7 +171,7 @@ public class RandomFactory {
 	 * @return the default random number generator
 	 */
 	public static Random seedDefault(long seed){
-		return factory.inseedDefault(seed);
+		return current().inseedDefault(seed);
 	}
 	
 	
@@ -86,7 +181,7 @@ public class RandomFactory {
 	 * @return the default random generator
 	 */
 	public static Random getOrSeedDefault(long seed){
-		return factory.ingetOrSeedDefault(seed);
+		return current().ingetOrSeedDefault(seed);
 	}
 	
 	/**
@@ -95,7 +190,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random getMapped(int id){
-		return factory.ingetMapped(id);
+		return current().ingetMapped(id);
 	}
 	
 	
@@ -106,7 +201,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random seedMapped(int id, long seed){
-		return factory.inseedMapped(id, seed);
+		return current().inseedMapped(id, seed);
 	}
 	
 	
@@ -117,7 +212,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random getOrSeedMapped(int id, long seed){
-		return factory.ingetOrSeedMapped(id, seed);
+		return current().ingetOrSeedMapped(id, seed);
 	}
 	
 	
@@ -128,7 +223,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random getMapped(String id){
-		return factory.ingetMapped(id);
+		return current().ingetMapped(id);
 	}
 	
 	
@@ -139,7 +234,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random seedMapped(String id, long seed){
-		return factory.inseedMapped(id, seed);
+		return current().inseedMapped(id, seed);
 	}
 	
 	
@@ -150,7 +245,7 @@ public class RandomFactory {
 	 * @return the random generator
 	 */
 	public static Random getOrSeedMapped(String id, long seed){
-		return factory.ingetOrSeedMapped(id, seed);
+		return current().ingetOrSeedMapped(id, seed);
 	}
 	
 	
@@ -179,7 +274,7 @@ public class RandomFactory {
 	 */
 	public Random ingetDefault(){
 		if(defaultRandom_ == null){
-			defaultRandom_ = new Random();
+			defaultRandom_ = this.newUnseededRandom("default");
 		}
 		return defaultRandom_;
 	}
@@ -221,7 +316,7 @@ public class RandomFactory {
 			return r;
 		}
 		else{
-			r = new Random();
+			r = this.newUnseededRandom(id);
 			intMapped.put(id, r);
 		}
 		return r;
@@ -272,7 +367,7 @@ public class RandomFactory {
 			return r;
 		}
 		else{
-			r = new Random();
+			r = this.newUnseededRandom(id);
 			stringMapped.put(id, r);
 		}
 		return r;
@@ -311,4 +406,18 @@ public class RandomFactory {
 	}
 	
 	
+	/**
+	 * Returns a new random generator for a request that did not specify a seed. For the global factory, the generator is unseeded;
+	 * for a thread scoped factory, it is seeded from the scope seed and the given id.
+	 * @param id the id of the requested generator
+	 * @return a new random generator.
+	 */
+	protected Random newUnseededRandom(Object id){
+		if(this.scopeSeed == null){
+			return new Random();
+		}
+		return new Random(this.scopeSeed ^ (id.hashCode() * 0x9E3779B97F4A7C15L));
+	}
+	
+	
 }
@@ -173,6 +173,17 @@ public class CartPoleDomain implements DomainGenerator {
 	protected boolean 						useCorrectModel = true;
 	
 	
+	/**
+	 * Resolves the handles of the attributes used by the classic physics model, in the order x, velocity, angle, angle velocity
+	 */
+	protected AttributeHandle.Resolver		classicModelAttributes = new AttributeHandle.Resolver(ATTX, ATTV, ATTANGLE, ATTANGLEV);
+	
+	/**
+	 * Resolves the handles of the attributes used by the correct physics model, in the order x, velocity, angle, angle velocity, normal force sign
+	 */
+	protected AttributeHandle.Resolver		correctModelAttributes = new AttributeHandle.Resolver(ATTX, ATTV, ATTANGLE, ATTANGLEV, ATTNORMSGN);
+	
+	
 	
 	@Override
 	public Domain generateDomain() {
@@ -311,10 +322,11 @@ public class CartPoleDomain implements DomainGenerator {
 	public State moveClassicModel(State s, double dir){
 		
 		ObjectInstance cartPole = s.getFirstObjectOfClass(CLASSCARTPOLE);
-		double x0 = cartPole.getRealValForAttribute(ATTX);
-		double xv0 = cartPole.getRealValForAttribute(ATTV);
-		double a0 = cartPole.getRealValForAttribute(ATTANGLE);
-		double av0 = cartPole.getRealValForAttribute(ATTANGLEV);
+		AttributeHandle [] atts = this.classicModelAttributes.resolve(cartPole.getObjectClass());
+		double x0 = cartPole.getRealValForAttribute(atts[0]);
+		double xv0 = cartPole.getRealValForAttribute(atts[1]);
+		double a0 = cartPole.getRealValForAttribute(atts[2]);
+		double av0 = cartPole.getRealValForAttribute(atts[3]);
 		
 		double f = dir * this.movementForceMag;
 		
@@ -379,11 +391,11 @@ public class CartPoleDomain implements DomainGenerator {
 		
 		//set new values
 		if(this.isFiniteTrack){
-			cartPole.setValue(ATTX, xf);
+			cartPole.setValue(atts[0], xf);
 		}
-		cartPole.setValue(ATTV, xvf);
-		cartPole.setValue(ATTANGLE, af);
-		cartPole.setValue(ATTANGLEV, avf);
+		cartPole.setValue(atts[1], xvf);
+		cartPole.setValue(atts[2], af);
+		cartPole.setValue(atts[3], avf);
 		
 		
 		return s;
@@ -401,11 +413,12 @@ public class CartPoleDomain implements DomainGenerator {
 	public State moveCorrectModel(State s, double dir){
 		
 		ObjectInstance cartPole = s.getFirstObjectOfClass(CLASSCARTPOLE);
-		double x0 = cartPole.getRealValForAttribute(ATTX);
-		double xv0 = cartPole.getRealValForAttribute(ATTV);
-		double a0 = cartPole.getRealValForAttribute(ATTANGLE);
-		double av0 = cartPole.getRealValForAttribute(ATTANGLEV);
-		double nsgn0 = cartPole.getRealValForAttribute(ATTNORMSGN);
+		AttributeHandle [] atts = this.correctModelAttributes.resolve(cartPole.getObjectClass());
+		double x0 = cartPole.getRealValForAttribute(atts[0]);
+		double xv0 = cartPole.getRealValForAttribute(atts[1]);
+		double a0 = cartPole.getRealValForAttribute(atts[2]);
+		double av0 = cartPole.getRealValForAttribute(atts[3]);
+		double nsgn0 = cartPole.getRealValForAttribute(atts[4]);
 		
 		double f = dir * this.movementForceMag;
 		
@@ -448,12 +461,12 @@ public class CartPoleDomain implements DomainGenerator {
 		
 		//set new values
 		if(this.isFiniteTrack){
-			cartPole.setValue(ATTX, xf);
+			cartPole.setValue(atts[0], xf);
 		}
-		cartPole.setValue(ATTV, xvf);
-		cartPole.setValue(ATTANGLE, af);
-		cartPole.setValue(ATTANGLEV, avf);
-		cartPole.setValue(ATTNORMSGN, n);
+		cartPole.setValue(atts[1], xvf);
+		cartPole.setValue(atts[2], af);
+		cartPole.setValue(atts[3], avf);
+		cartPole.setValue(atts[4], n);
 		
 		
 		
@@ -61,6 +61,11 @@ public class GraphDefinedDomain implements DomainGenerator {
 	 */
 	protected Map<Integer, Map<Integer, Set<NodeTransitionProbibility>>>	transitionDynamics;
 	
+	/**
+	 * The inverse of the transition dynamics: for each result node and action, the set of source nodes that can transition to it.
+	 */
+	protected Map<Integer, Map<Integer, Set<Integer>>>						predecessorDynamics;
+	
 
 	/**
 	 * Initializes the generator to create a domain with the given number of state nodes in it.
@@ -70,9 +75,11 @@ public class GraphDefinedDomain implements DomainGenerator {
 		this.numNodes = numNodes;
 		this.maxActions = 0;
 		this.transitionDynamics = new HashMap<Integer, Map<Integer,Set<NodeTransitionProbibility>>>();
+		this.predecessorDynamics = new HashMap<Integer, Map<Integer,Set<Integer>>>();
 		
 		for(int i = 0; i < this.numNodes; i++){
 			this.transitionDynamics.put(i, new HashMap<Integer,Set<NodeTransitionProbibility>>());
+			this.predecessorDynamics.put(i, new HashMap<Integer, Set<Integer>>());
 		}
 		
 	}
@@ -101,6 +108,14 @@ public class GraphDefinedDomain implements DomainGenerator {
 			actionMap.put(action, nts);
 		}
 		nts.add(ntp);
+		
+		Map<Integer, Set<Integer>> predActionMap = this.predecessorDynamics.get(tNode);
+		Set<Integer> preds = predActionMap.get(action);
+		if(preds == null){
+			preds = new HashSet<Integer>();
+			predActionMap.put(action, preds);
+		}
+		preds.add(srcNode);
 
 	}
 	
@@ -309,6 +324,37 @@ public class GraphDefinedDomain implements DomainGenerator {
 		}
 		
 		
+		@Override
+		public boolean supportsPredecessors(){
+			return true;
+		}
+		
+		
+		@Override
+		public List<State> getPredecessors(State st, String [] params){
+			
+			List <State> result = new ArrayList<State>();
+			
+			ObjectInstance o = st.getObjectsOfTrueClass(CLASSAGENT).get(0);
+			int n = o.getDiscValForAttribute(ATTNODE);
+			
+			Set<Integer> preds = predecessorDynamics.get(n).get(aId);
+			if(preds == null){
+				return result;
+			}
+			
+			for(Integer pn : preds){
+				State ps = st.copy();
+				ObjectInstance po = ps.getObjectsOfTrueClass(CLASSAGENT).get(0);
+				po.setValue(ATTNODE, pn);
+				result.add(ps);
+			}
+			
+			return result;
+			
+		}
+		
+		
 		
 		
 	}
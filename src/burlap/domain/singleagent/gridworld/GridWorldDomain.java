@@ -604,6 +604,24 @@ public class GridWorldDomain implements DomainGenerator {
 		int ax = agent.getDiscValForAttribute(ATTX);
 		int ay = agent.getDiscValForAttribute(ATTY);
 		
+		int [] np = this.movementResult(ax, ay, xd, yd);
+		
+		agent.setValue(ATTX, np[0]);
+		agent.setValue(ATTY, np[1]);
+	}
+	
+	
+	/**
+	 * Returns the position in which the agent ends up if it attempts to move from the given position in the given direction,
+	 * taking into account walls and blocks
+	 * @param ax the current X position of the agent
+	 * @param ay the current Y position of the agent
+	 * @param xd the change in X position the agent attempts
+	 * @param yd the change in Y position the agent attempts
+	 * @return the resulting position; the first index is the X position and the second the Y position.
+	 */
+	protected int [] movementResult(int ax, int ay, int xd, int yd){
+		
 		int nx = ax+xd;
 		int ny = ay+yd;
 		
@@ -615,8 +633,7 @@ public class GridWorldDomain implements DomainGenerator {
 			ny = ay;
 		}
 		
-		agent.setValue(ATTX, nx);
-		agent.setValue(ATTY, ny);
+		return new int[]{nx, ny};
 	}
 	
 	/**
@@ -738,6 +755,57 @@ public class GridWorldDomain implements DomainGenerator {
 			return transitions;
 		}
 		
+		@Override
+		public boolean supportsPredecessors(){
+			return true;
+		}
+		
+		@Override
+		public List<State> getPredecessors(State st, String [] params){
+			
+			ObjectInstance agent = st.getObjectsOfTrueClass(CLASSAGENT).get(0);
+			int ax = agent.getDiscValForAttribute(ATTX);
+			int ay = agent.getDiscValForAttribute(ATTY);
+			
+			//a predecessor either moved into this cell or bumped into a wall from it
+			List <int[]> positions = new ArrayList<int[]>();
+			for(int i = 0; i < directionProbs.length; i++){
+				if(directionProbs[i] == 0.){
+					continue; //cannot transition in this direction
+				}
+				int [] dcomps = GridWorldDomain.this.movementDirectionFromIndex(i);
+				int [][] candidates = new int[][]{{ax-dcomps[0], ay-dcomps[1]}, {ax, ay}};
+				for(int [] c : candidates){
+					if(c[0] < 0 || c[0] >= GridWorldDomain.this.width || c[1] < 0 || c[1] >= GridWorldDomain.this.height || GridWorldDomain.this.map[c[0]][c[1]] == 1){
+						continue;
+					}
+					int [] res = GridWorldDomain.this.movementResult(c[0], c[1], dcomps[0], dcomps[1]);
+					if(res[0] != ax || res[1] != ay){
+						continue;
+					}
+					boolean isNew = true;
+					for(int [] p : positions){
+						if(p[0] == c[0] && p[1] == c[1]){
+							isNew = false;
+							break;
+						}
+					}
+					if(isNew){
+						positions.add(c);
+					}
+				}
+			}
+			
+			List <State> predecessors = new ArrayList<State>(positions.size());
+			for(int [] p : positions){
+				State ps = st.copy();
+				GridWorldDomain.setAgent(ps, p[0], p[1]);
+				predecessors.add(ps);
+			}
+			
+			return predecessors;
+		}
+		
 		
 		
 	}
@@ -203,6 +203,22 @@ public class LunarLanderDomain implements DomainGenerator {
 	protected double						anginc = Math.PI/20.;
 	
 	
+	/**
+	 * Resolves the handles of the lander's attributes used by the physics simulation, in the order angle, x, y, x velocity, y velocity
+	 */
+	protected AttributeHandle.Resolver		agentAttributes = new AttributeHandle.Resolver(AATTNAME, XATTNAME, YATTNAME, VXATTNAME, VYATTNAME);
+	
+	/**
+	 * Resolves the handles of the obstacles' attributes used by the physics simulation, in the order left, right, bottom, top
+	 */
+	protected AttributeHandle.Resolver		obstacleAttributes = new AttributeHandle.Resolver(LATTNAME, RATTNAME, BATTNAME, TATTNAME);
+	
+	/**
+	 * Resolves the handles of the landing pad's attributes used by the physics simulation, in the order left, right, bottom, top
+	 */
+	protected AttributeHandle.Resolver		padAttributes = new AttributeHandle.Resolver(LATTNAME, RATTNAME, BATTNAME, TATTNAME);
+	
+	
 	
 	/**
 	 * This method will launch a visual explorer for the lunar lander domain. It will use the default
@@ -682,7 +698,8 @@ public class LunarLanderDomain implements DomainGenerator {
 	protected void incAngle(State s, double dir){
 		
 		ObjectInstance agent = s.getObjectsOfTrueClass(AGENTCLASS).get(0);
-		double curA = agent.getRealValForAttribute(AATTNAME);
+		AttributeHandle angAtt = this.agentAttributes.resolve(agent.getObjectClass())[0];
+		double curA = agent.getRealValForAttribute(angAtt);
 		
 		double newa = curA + (dir * anginc);
 		if(newa > angmax){
@@ -692,7 +709,7 @@ public class LunarLanderDomain implements DomainGenerator {
 			newa = -angmax;
 		}
 		
-		agent.setValue(AATTNAME, newa);
+		agent.setValue(angAtt, newa);
 		
 	}
 	
@@ -708,11 +725,12 @@ public class LunarLanderDomain implements DomainGenerator {
 		double tt = ti*ti;
 		
 		ObjectInstance agent = s.getObjectsOfTrueClass(AGENTCLASS).get(0);
-		double ang = agent.getRealValForAttribute(AATTNAME);
-		double x = agent.getRealValForAttribute(XATTNAME);
-		double y = agent.getRealValForAttribute(YATTNAME);
-		double vx = agent.getRealValForAttribute(VXATTNAME);
-		double vy = agent.getRealValForAttribute(VYATTNAME);
+		AttributeHandle [] atts = this.agentAttributes.resolve(agent.getObjectClass());
+		double ang = agent.getRealValForAttribute(atts[0]);
+		double x = agent.getRealValForAttribute(atts[1]);
+		double y = agent.getRealValForAttribute(atts[2]);
+		double vx = agent.getRealValForAttribute(atts[3]);
+		double vy = agent.getRealValForAttribute(atts[4]);
 		
 		double worldAngle = (Math.PI/2.) - ang;
 		
@@ -770,10 +788,11 @@ public class LunarLanderDomain implements DomainGenerator {
 		//check for collisions
 		List <ObjectInstance> obstacles = s.getObjectsOfTrueClass(OBSTACLECLASS);
 		for(ObjectInstance o : obstacles){
-			double l = o.getRealValForAttribute(LATTNAME);
-			double r = o.getRealValForAttribute(RATTNAME);
-			double b = o.getRealValForAttribute(BATTNAME);
-			double t = o.getRealValForAttribute(TATTNAME);
+			AttributeHandle [] oatts = this.obstacleAttributes.resolve(o.getObjectClass());
+			double l = o.getRealValForAttribute(oatts[0]);
+			double r = o.getRealValForAttribute(oatts[1]);
+			double b = o.getRealValForAttribute(oatts[2]);
+			double t = o.getRealValForAttribute(oatts[3]);
 			
 			//are we intersecting?
 			if(nx > l && nx < r && ny >= b && ny < t){
@@ -812,10 +831,11 @@ public class LunarLanderDomain implements DomainGenerator {
 		
 		//check the pad collision
 		ObjectInstance pad = s.getObjectsOfTrueClass(PADCLASS).get(0);
-		double l = pad.getRealValForAttribute(LATTNAME);
-		double r = pad.getRealValForAttribute(RATTNAME);
-		double b = pad.getRealValForAttribute(BATTNAME);
-		double t = pad.getRealValForAttribute(TATTNAME);
+		AttributeHandle [] patts = this.padAttributes.resolve(pad.getObjectClass());
+		double l = pad.getRealValForAttribute(patts[0]);
+		double r = pad.getRealValForAttribute(patts[1]);
+		double b = pad.getRealValForAttribute(patts[2]);
+		double t = pad.getRealValForAttribute(patts[3]);
 		
 		//did we collide?
 		if(nx > l && nx < r && ny >= b && ny < t){
@@ -849,11 +869,11 @@ public class LunarLanderDomain implements DomainGenerator {
 		
 		
 		//now set the new values
-		agent.setValue(XATTNAME, nx);
-		agent.setValue(YATTNAME, ny);
-		agent.setValue(VXATTNAME, nvx);
-		agent.setValue(VYATTNAME, nvy);
-		agent.setValue(AATTNAME, nang);
+		agent.setValue(atts[1], nx);
+		agent.setValue(atts[2], ny);
+		agent.setValue(atts[3], nvx);
+		agent.setValue(atts[4], nvy);
+		agent.setValue(atts[0], nang);
 		
 		
 	}
@@ -101,6 +101,12 @@ public class MountainCar implements DomainGenerator {
 	public double							timeDelta = 1.;
 	
 	
+	/**
+	 * Resolves the handles of the agent's position and velocity attributes used by the physics simulation
+	 */
+	protected AttributeHandle.Resolver		agentAttributes = new AttributeHandle.Resolver(ATTX, ATTV);
+	
+	
 	@Override
 	public Domain generateDomain() {
 		
@@ -139,9 +145,12 @@ public class MountainCar implements DomainGenerator {
 		
 		
 		ObjectInstance agent = s.getFirstObjectOfClass(CLASSAGENT);
+		AttributeHandle [] atts = this.agentAttributes.resolve(agent.getObjectClass());
+		AttributeHandle xAtt = atts[0];
+		AttributeHandle vAtt = atts[1];
 		
-		double p0 = agent.getRealValForAttribute(ATTX);
-		double v0 = agent.getRealValForAttribute(ATTV);
+		double p0 = agent.getRealValForAttribute(xAtt);
+		double v0 = agent.getRealValForAttribute(vAtt);
 		
 		double netAccel = (acceleration * dir) - (gravity * Math.cos(this.cosScale*p0));
 		
@@ -165,8 +174,8 @@ public class MountainCar implements DomainGenerator {
 			v1 = 0.;
 		}
 		
-		agent.setValue(ATTX, p1);
-		agent.setValue(ATTV, v1);
+		agent.setValue(xAtt, p1);
+		agent.setValue(vAtt, v1);
 		
 		return s;
 		
@@ -1,12 +1,12 @@
 package burlap.domain.stochasticgames.gridgame;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 
 import burlap.debugtools.RandomFactory;
@@ -25,22 +25,35 @@ import burlap.oomdp.stochasticgames.JointActionModel;
  * If two agents adjacent agents try to move into each others locations, no one will move. If an agent tries
  * to move into a cell that the other agent is leaving, then they both will move. If two agents try to move into the same location,
  * then only one of them will randomly make it, while the other will be unmoved in their position.
+ * <p/>
+ * Random outcomes are sampled from the generator returned by {@link RandomFactory#getMapped(int)} with id 0 at the time of sampling,
+ * so that a single mechanics object can be shared by worlds that run concurrently in their own {@link RandomFactory} thread scopes.
+ * <p/>
+ * Transition distributions are generated on small int arrays: the walls of a state are compiled once per wall layout into a {@link WallTable}
+ * that gives the wall type crossed by any move in constant time, the location outcomes of the agents are enumerated and their swaps and
+ * collisions resolved without building intermediate lists, and outcomes that place the agents in the same locations are merged through
+ * a hash map. The resulting distributions are the same as those of the original enumeration, which is still available as
+ * {@link #transitionProbsByEnumeration(State, JointAction)} (probabilities may differ by floating point rounding, because the probability
+ * of each collision outcome is computed directly rather than summed from duplicate outcomes).
  * @author James MacGlashan
  *
  */
 public class GridGameStandardMechanics extends JointActionModel {
 
-	Random 						rand;
 	Domain						domain;
 	double						pMoveThroughSWall;
 	
+	/**
+	 * The wall table of the most recently seen wall layout
+	 */
+	protected volatile WallTable	wallTable;
+	
 	
 	/**
 	 * Initializes the mechanics for the given domain and sets the semi-wall pass through probability to 0.5;
 	 * @param d the domain object
 	 */
 	public GridGameStandardMechanics(Domain d){
-		rand = RandomFactory.getMapped(0);
 		domain = d;
 		pMoveThroughSWall = 0.5;
 	}
@@ -52,7 +65,6 @@ public class GridGameStandardMechanics extends JointActionModel {
 	 * @param semiWallPassThroughProb the probability that an agent will pass through a semi-wall.
 	 */
 	public GridGameStandardMechanics(Domain d, double semiWallPassThroughProb){
-		rand = RandomFactory.getMapped(0);
 		domain = d;
 		pMoveThroughSWall = semiWallPassThroughProb;
 	}
@@ -60,6 +72,169 @@ public class GridGameStandardMechanics extends JointActionModel {
 	@Override
 	public List<TransitionProbability> transitionProbsFor(State s, JointAction ja) {
 		
+		List <GroundedSingleAction> gsas = ja.getActionList();
+		int n = gsas.size();
+		
+		int [] x0 = new int[n];
+		int [] y0 = new int[n];
+		int [] dx = new int[n];
+		int [] dy = new int[n];
+		boolean [] noop = new boolean[n];
+		for(int i = 0; i < n; i++){
+			GroundedSingleAction gsa = gsas.get(i);
+			ObjectInstance agent = s.getObject(gsa.actingAgent);
+			x0[i] = agent.getDiscValForAttribute(GridGame.ATTX);
+			y0[i] = agent.getDiscValForAttribute(GridGame.ATTY);
+			Location2 delta = this.attemptedDelta(gsa.action.actionName);
+			dx[i] = delta.x;
+			dy[i] = delta.y;
+			noop[i] = gsa.action.actionName.equals(GridGame.ACTIONNOOP);
+		}
+		
+		//the one or two possible location outcomes of each agent's movement from wall collisions
+		WallTable walls = this.getWallTable(s);
+		int [] nOutcomes = new int[n];
+		int [][] ox = new int[n][2];
+		int [][] oy = new int[n][2];
+		double [][] op = new double[n][2];
+		for(int i = 0; i < n; i++){
+			int x1 = x0[i] + dx[i];
+			int y1 = y0[i] + dy[i];
+			boolean blocked = false;
+			for(int j = 0; j < n; j++){
+				if(noop[j] && x1 == x0[j] && y1 == y0[j]){
+					blocked = true;
+					break;
+				}
+			}
+			int wc = (blocked || (dx[i] == 0 && dy[i] == 0)) ? 0 : walls.collision(x0[i], y0[i], dx[i], dy[i]);
+			if(blocked || wc == 1){
+				//definitely cannot move to desired position
+				this.setOutcome(ox, oy, op, i, 0, x0[i], y0[i], 1.);
+				nOutcomes[i] = 1;
+			}
+			else if(wc == 2){
+				//agent moves through the semi-wall with some probability
+				this.setOutcome(ox, oy, op, i, 0, x1, y1, this.pMoveThroughSWall);
+				this.setOutcome(ox, oy, op, i, 1, x0[i], y0[i], 1.-this.pMoveThroughSWall);
+				nOutcomes[i] = 2;
+			}
+			else{
+				this.setOutcome(ox, oy, op, i, 0, x1, y1, 1.);
+				nOutcomes[i] = 1;
+			}
+		}
+		
+		Map<LocationSetKey, Integer> outcomeIds = new HashMap<LocationSetKey, Integer>();
+		List<int[]> outcomeLocs = new ArrayList<int[]>();
+		List<Double> outcomeProbs = new ArrayList<Double>();
+		
+		int [] px = new int[n];
+		int [] py = new int[n];
+		int [] fx = new int[n];
+		int [] fy = new int[n];
+		int [] choice = new int[n];
+		int [] group = new int[n];
+		int [] groupSize = new int[n];
+		int [] groupMembers = new int[n*n];
+		int [] winner = new int[n];
+		
+		boolean moreLocationSets = true;
+		while(moreLocationSets){
+			
+			double setProb = 1.;
+			for(int i = 0; i < n; i++){
+				px[i] = ox[i][choice[i]];
+				py[i] = oy[i][choice[i]];
+				setProb *= op[i][choice[i]];
+			}
+			
+			//resolve collisions from attempted swaps, which is deterministic
+			this.resolvePositionSwaps(x0, y0, px, py);
+			
+			//then enumerate the stochastic outcomes of agents competing for the same cell
+			int nGroups = this.collisionGroups(px, py, group, groupSize, groupMembers);
+			double collisionProb = 1.;
+			for(int g = 0; g < nGroups; g++){
+				collisionProb /= groupSize[g];
+				winner[g] = 0;
+			}
+			
+			boolean moreWinnerAssignments = true;
+			while(moreWinnerAssignments){
+				
+				for(int i = 0; i < n; i++){
+					if(group[i] == -1 || groupMembers[group[i]*n + winner[group[i]]] == i){
+						fx[i] = px[i];
+						fy[i] = py[i];
+					}
+					else{
+						//this agent lost and stays in place
+						fx[i] = x0[i];
+						fy[i] = y0[i];
+					}
+				}
+				this.pushBackCollisions(x0, y0, fx, fy);
+				
+				int [] locs = new int[2*n];
+				for(int i = 0; i < n; i++){
+					locs[2*i] = fx[i];
+					locs[2*i+1] = fy[i];
+				}
+				LocationSetKey key = new LocationSetKey(locs);
+				Integer id = outcomeIds.get(key);
+				if(id == null){
+					outcomeIds.put(key, outcomeLocs.size());
+					outcomeLocs.add(locs);
+					outcomeProbs.add(setProb * collisionProb);
+				}
+				else{
+					outcomeProbs.set(id, outcomeProbs.get(id) + setProb * collisionProb);
+				}
+				
+				moreWinnerAssignments = this.increment(winner, groupSize, nGroups);
+			}
+			
+			moreLocationSets = this.increment(choice, nOutcomes, n);
+		}
+		
+		
+		//turn the distinct outcomes into states
+		List <TransitionProbability> tps = new ArrayList<TransitionProbability>(outcomeLocs.size());
+		double totalProb = 0.;
+		for(int k = 0; k < outcomeLocs.size(); k++){
+			int [] locs = outcomeLocs.get(k);
+			State ns = s.copy();
+			for(int i = 0; i < n; i++){
+				if(locs[2*i] != x0[i] || locs[2*i+1] != y0[i]){
+					ObjectInstance agent = ns.getObject(gsas.get(i).actingAgent);
+					agent.setValue(GridGame.ATTX, locs[2*i]);
+					agent.setValue(GridGame.ATTY, locs[2*i+1]);
+				}
+			}
+			double p = outcomeProbs.get(k);
+			tps.add(new TransitionProbability(ns, p));
+			totalProb += p;
+		}
+		
+		if(Math.abs(1. - totalProb) > 0.000000000001){
+			throw new RuntimeException("Error, transition probabilities do not sum to 1");
+		}
+		
+		return tps;
+	}
+	
+	
+	/**
+	 * Returns the transition distribution of the given joint action by enumerating the location outcomes of the agents as lists of {@link Location2} objects,
+	 * scanning the wall objects of the state for every movement, and merging duplicate outcome states pairwise. This is the original, slower
+	 * implementation of {@link #transitionProbsFor(State, JointAction)}; it is kept as a reference against which the results of that method can be compared.
+	 * @param s the state in which the joint action is taken
+	 * @param ja the joint action
+	 * @return the transition distribution of the joint action
+	 */
+	public List<TransitionProbability> transitionProbsByEnumeration(State s, JointAction ja) {
+		
 		List <TransitionProbability> tps = new ArrayList<TransitionProbability>();
 		
 		List <GroundedSingleAction> gsas = ja.getActionList();
@@ -413,7 +588,7 @@ public class GridGameStandardMechanics extends JointActionModel {
 				continue; //already resolved winner
 			}
 			List <Integer> competitors = collissionSets.get(agentId);
-			int winner = competitors.get(rand.nextInt(competitors.size()));
+			int winner = competitors.get(RandomFactory.getMapped(0).nextInt(competitors.size()));
 			for(Integer a2 : competitors){
 				winners.put(a2, winner);
 			}
@@ -487,11 +662,14 @@ public class GridGameStandardMechanics extends JointActionModel {
 			}
 		}
 		
-		if(delta.x != 0 && !reset){
+		//only scan the walls (which may sample semi-wall crossings) if the wall table says the move crosses one
+		boolean crossesWall = (delta.x != 0 || delta.y != 0) && this.getWallTable(s).collision(p0.x, p0.y, delta.x, delta.y) != 0;
+		
+		if(delta.x != 0 && !reset && crossesWall){
 			reset = this.sampleWallCollision(p0, delta, s.getObjectsOfTrueClass(GridGame.CLASSDIMVWALL), true);
 		}
 		
-		if(delta.y != 0 && !reset){
+		if(delta.y != 0 && !reset && crossesWall){
 			reset = this.sampleWallCollision(p0, delta, s.getObjectsOfTrueClass(GridGame.CLASSDIMHWALL), false);
 		}
 		
@@ -589,7 +767,7 @@ public class GridGameStandardMechanics extends JointActionModel {
 					return true;
 				}
 				else if(wt == 1){ //stochastic wall
-					double roll = rand.nextDouble();
+					double roll = RandomFactory.getMapped(0).nextDouble();
 					if(roll > pMoveThroughSWall){
 						return true;
 					}
@@ -795,6 +973,200 @@ public class GridGameStandardMechanics extends JointActionModel {
 	
 	
 	
+	/**
+	 * Returns the wall table of the walls in the given state, reusing the table of the previous call if the walls have not changed.
+	 * @param s the state whose walls are returned
+	 * @return the wall table of the walls in the state
+	 */
+	protected WallTable getWallTable(State s){
+		List<ObjectInstance> vWalls = s.getObjectsOfTrueClass(GridGame.CLASSDIMVWALL);
+		List<ObjectInstance> hWalls = s.getObjectsOfTrueClass(GridGame.CLASSDIMHWALL);
+		int [] signature = new int[2 + 4*(vWalls.size() + hWalls.size())];
+		signature[0] = vWalls.size();
+		signature[1] = hWalls.size();
+		int k = 2;
+		for(ObjectInstance w : vWalls){
+			k = WallTable.addToSignature(signature, k, w);
+		}
+		for(ObjectInstance w : hWalls){
+			k = WallTable.addToSignature(signature, k, w);
+		}
+		
+		WallTable table = this.wallTable;
+		if(table == null || !Arrays.equals(table.signature, signature)){
+			table = new WallTable(signature);
+			this.wallTable = table;
+		}
+		
+		return table;
+	}
+	
+	
+	/**
+	 * Stores a location outcome of an agent.
+	 */
+	protected void setOutcome(int [][] ox, int [][] oy, double [][] op, int agent, int slot, int x, int y, double p){
+		ox[agent][slot] = x;
+		oy[agent][slot] = y;
+		op[agent][slot] = p;
+	}
+	
+	
+	/**
+	 * Advances an odometer of counters, the last of which changes fastest.
+	 * @param counters the counters
+	 * @param limits the exclusive limit of each counter
+	 * @param n the number of counters
+	 * @return false if the counters have wrapped around to all zeros; true otherwise.
+	 */
+	protected boolean increment(int [] counters, int [] limits, int n){
+		for(int i = n-1; i >= 0; i--){
+			counters[i]++;
+			if(counters[i] < limits[i]){
+				return true;
+			}
+			counters[i] = 0;
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * The int array version of {@link #resolvePositionSwaps(List, List)}: agents that try to move into each others locations stay in place,
+	 * as do any agents that, as a result, try to move into the location of an agent that stayed in place. The desired locations are modified in place.
+	 * @param x0 the original x positions of the agents
+	 * @param y0 the original y positions of the agents
+	 * @param px the desired x positions of the agents
+	 * @param py the desired y positions of the agents
+	 */
+	protected void resolvePositionSwaps(int [] x0, int [] y0, int [] px, int [] py){
+		
+		int n = x0.length;
+		int [] noopX = new int[3*n];
+		int [] noopY = new int[3*n];
+		int nNoops = 0;
+		
+		for(int i = 0; i < n; i++){
+			int dpx = px[i];
+			int dpy = py[i];
+			for(int j = i+1; j < n; j++){
+				if(x0[i] == px[j] && y0[i] == py[j] && dpx == x0[j] && dpy == y0[j]){
+					//swap collision!
+					px[i] = x0[i];
+					py[i] = y0[i];
+					px[j] = x0[j];
+					py[j] = y0[j];
+					noopX[nNoops] = x0[i];
+					noopY[nNoops] = y0[i];
+					nNoops++;
+					noopX[nNoops] = x0[j];
+					noopY[nNoops] = y0[j];
+					nNoops++;
+					break;
+				}
+			}
+		}
+		
+		//back up the forced noops to agents that want to move into their locations
+		boolean needsUpdating = nNoops > 0;
+		while(needsUpdating){
+			needsUpdating = false;
+			for(int i = 0; i < n; i++){
+				if(px[i] == x0[i] && py[i] == y0[i]){
+					continue;
+				}
+				for(int k = 0; k < nNoops; k++){
+					if(px[i] == noopX[k] && py[i] == noopY[k]){
+						px[i] = x0[i];
+						py[i] = y0[i];
+						noopX[nNoops] = x0[i];
+						noopY[nNoops] = y0[i];
+						nNoops++;
+						needsUpdating = true;
+						break;
+					}
+				}
+			}
+		}
+		
+	}
+	
+	
+	/**
+	 * Finds the groups of agents that are trying to move into the same cell.
+	 * @param px the desired x positions of the agents
+	 * @param py the desired y positions of the agents
+	 * @param group filled with the group of each agent, or -1 for agents that do not compete for their cell
+	 * @param groupSize filled with the number of agents in each group
+	 * @param groupMembers filled with the agents of each group in increasing order; the members of group g start at g*n
+	 * @return the number of groups
+	 */
+	protected int collisionGroups(int [] px, int [] py, int [] group, int [] groupSize, int [] groupMembers){
+		
+		int n = px.length;
+		Arrays.fill(group, -1);
+		int nGroups = 0;
+		for(int i = 0; i < n; i++){
+			if(group[i] != -1){
+				continue;
+			}
+			int size = 1;
+			for(int j = i+1; j < n; j++){
+				if(group[j] == -1 && px[i] == px[j] && py[i] == py[j]){
+					group[j] = nGroups;
+					groupMembers[nGroups*n + size] = j;
+					size++;
+				}
+			}
+			if(size > 1){
+				group[i] = nGroups;
+				groupMembers[nGroups*n] = i;
+				groupSize[nGroups] = size;
+				nGroups++;
+			}
+		}
+		
+		return nGroups;
+	}
+	
+	
+	/**
+	 * Pushes agents that are still competing for a cell after the winners of collisions have been decided back to their original
+	 * locations, until no two agents are in the same cell. The final locations are modified in place.
+	 * @param x0 the original x positions of the agents
+	 * @param y0 the original y positions of the agents
+	 * @param fx the final x positions of the agents
+	 * @param fy the final y positions of the agents
+	 */
+	protected void pushBackCollisions(int [] x0, int [] y0, int [] fx, int [] fy){
+		
+		int n = x0.length;
+		boolean [] collides = new boolean[n];
+		boolean anyCollisions = true;
+		while(anyCollisions){
+			anyCollisions = false;
+			for(int i = 0; i < n; i++){
+				for(int j = i+1; j < n; j++){
+					if(fx[i] == fx[j] && fy[i] == fy[j]){
+						collides[i] = true;
+						collides[j] = true;
+						anyCollisions = true;
+					}
+				}
+			}
+			for(int i = 0; i < n; i++){
+				if(collides[i]){
+					fx[i] = x0[i];
+					fy[i] = y0[i];
+					collides[i] = false;
+				}
+			}
+		}
+		
+	}
+	
+	
+	
 	/**
 	 * Iterates through a list of transition probability objects and combines any that refer to the same state
 	 * @param srcTPs and initial list of transition probability objects
@@ -999,4 +1371,174 @@ public class GridGameStandardMechanics extends JointActionModel {
 		
 	}
 
+	
+	/**
+	 * The walls of a state compiled into tables that give, for each wall boundary line and each cell along it, the type of the first
+	 * wall in the state's wall list that blocks a move across the boundary at that cell. Vertical walls at position p are crossed by moves between
+	 * columns p-1 and p; horizontal walls at position p by moves between rows p-1 and p. Walls whose type is neither solid nor semi-wall
+	 * are ignored, as they are by {@link GridGameStandardMechanics#wallCollision(Location2, Location2, List, boolean)}. Tables are immutable, so they can
+	 * be shared by threads.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class WallTable{
+		
+		/**
+		 * The number of vertical and horizontal walls followed by the position, end points, and type of each wall
+		 */
+		protected int []		signature;
+		
+		/**
+		 * The collision code of each vertical boundary (first index, offset by vMinP) and y position (second index, offset by vMinA)
+		 */
+		protected byte [][]		vCodes;
+		protected int			vMinP;
+		protected int			vMinA;
+		
+		/**
+		 * The collision code of each horizontal boundary (first index, offset by hMinP) and x position (second index, offset by hMinA)
+		 */
+		protected byte [][]		hCodes;
+		protected int			hMinP;
+		protected int			hMinA;
+		
+		
+		/**
+		 * Compiles the walls described by the given signature.
+		 * @param signature the number of vertical and horizontal walls followed by the position, end points, and type of each wall
+		 */
+		public WallTable(int [] signature){
+			this.signature = signature;
+			int nv = signature[0];
+			int nh = signature[1];
+			
+			this.vMinP = minOf(signature, 2, nv, 0);
+			this.vMinA = minOf(signature, 2, nv, 1);
+			this.vCodes = codes(signature, 2, nv, this.vMinP, this.vMinA);
+			
+			this.hMinP = minOf(signature, 2 + 4*nv, nh, 0);
+			this.hMinA = minOf(signature, 2 + 4*nv, nh, 1);
+			this.hCodes = codes(signature, 2 + 4*nv, nh, this.hMinP, this.hMinA);
+		}
+		
+		
+		/**
+		 * Returns the wall collision of a move, coded as by {@link GridGameStandardMechanics#wallCollision(Location2, Location2, List, boolean)}.
+		 * @param x the x position of the agent
+		 * @param y the y position of the agent
+		 * @param dx the attempted change in x position
+		 * @param dy the attempted change in y position
+		 * @return 0 if there is no collision with a wall, 1 if there is a collision with a solid wall, 2 if there is a potential collision with a semi-wall
+		 */
+		public int collision(int x, int y, int dx, int dy){
+			if(dx != 0){
+				return code(this.vCodes, (dx < 0 ? x : x+1) - this.vMinP, y - this.vMinA);
+			}
+			else if(dy != 0){
+				return code(this.hCodes, (dy < 0 ? y : y+1) - this.hMinP, x - this.hMinA);
+			}
+			return 0;
+		}
+		
+		
+		/**
+		 * Writes the position, end points, and type of the given wall into a signature.
+		 * @param signature the signature
+		 * @param k the position at which to write
+		 * @param w the wall
+		 * @return the position after the written values
+		 */
+		protected static int addToSignature(int [] signature, int k, ObjectInstance w){
+			signature[k] = w.getDiscValForAttribute(GridGame.ATTP);
+			signature[k+1] = w.getDiscValForAttribute(GridGame.ATTE1);
+			signature[k+2] = w.getDiscValForAttribute(GridGame.ATTE2);
+			signature[k+3] = w.getDiscValForAttribute(GridGame.ATTWT);
+			return k+4;
+		}
+		
+		
+		protected static int code(byte [][] codes, int p, int a){
+			if(p < 0 || p >= codes.length || a < 0 || a >= codes[p].length){
+				return 0;
+			}
+			return codes[p][a];
+		}
+		
+		
+		/**
+		 * Returns the minimum position (field 0) or first end point (field 1) of the walls at the given signature offset.
+		 */
+		protected static int minOf(int [] signature, int offset, int nWalls, int field){
+			int min = Integer.MAX_VALUE;
+			for(int i = 0; i < nWalls; i++){
+				min = Math.min(min, signature[offset + 4*i + field]);
+			}
+			return min;
+		}
+		
+		
+		protected static byte [][] codes(int [] signature, int offset, int nWalls, int minP, int minA){
+			int maxP = minP-1;
+			int maxA = minA-1;
+			for(int i = 0; i < nWalls; i++){
+				maxP = Math.max(maxP, signature[offset + 4*i]);
+				maxA = Math.max(maxA, signature[offset + 4*i + 2]);
+			}
+			if(nWalls == 0){
+				return new byte[0][0];
+			}
+			byte [][] codes = new byte[maxP - minP + 1][Math.max(0, maxA - minA + 1)];
+			for(int i = 0; i < nWalls; i++){
+				int k = offset + 4*i;
+				int wt = signature[k+3];
+				if(wt != 0 && wt != 1){
+					continue;
+				}
+				byte [] line = codes[signature[k] - minP];
+				for(int a = signature[k+1]; a <= signature[k+2]; a++){
+					if(line[a - minA] == 0){
+						line[a - minA] = (byte)(wt == 0 ? 1 : 2);
+					}
+				}
+			}
+			return codes;
+		}
+		
+	}
+	
+	
+	/**
+	 * The locations of all agents in a transition outcome, used to merge outcomes that place the agents in the same locations.
+	 * @author James MacGlashan
+	 *
+	 */
+	protected static class LocationSetKey{
+		
+		/**
+		 * The x and y position of each agent
+		 */
+		protected int []	locs;
+		protected int		hashCode;
+		
+		
+		public LocationSetKey(int [] locs){
+			this.locs = locs;
+			this.hashCode = Arrays.hashCode(locs);
+		}
+		
+		@Override
+		public int hashCode(){
+			return this.hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof LocationSetKey)){
+				return false;
+			}
+			return Arrays.equals(this.locs, ((LocationSetKey)o).locs);
+		}
+		
+	}
+	
 }
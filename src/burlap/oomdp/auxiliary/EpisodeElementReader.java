@@ -0,0 +1,146 @@
+package burlap.oomdp.auxiliary;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+
+/**
+ * Reads the elements of an episode or game file, as written by {@link burlap.behavior.singleagent.EpisodeAnalysis#writeToFile(String, StateParser)}
+ * and {@link burlap.behavior.stochasticgame.GameAnalysis#writeToFile(String, StateParser)}, one at a time, so that a file can be parsed without
+ * reading all of it into memory first. Each element of the file has the form
+ * <br/>
+ * #EL#<br/>
+ * state string<br/>
+ * #ES#<br/>
+ * action string<br/>
+ * reward string
+ * <br/>
+ * where the action and reward strings are omitted for the last element. After each successful call to {@link #next()}, the strings of the element that was read
+ * are returned by {@link #getStateString()}, {@link #getActionString()} and {@link #getRewardString()}; the action and reward strings are null if the element
+ * is the last of the file.
+ * @author James MacGlashan
+ *
+ */
+public class EpisodeElementReader {
+
+	/**
+	 * The line that starts an element
+	 */
+	public static final String			ELEMENT_START = "#EL#";
+
+	/**
+	 * The line that ends the state string of an element
+	 */
+	public static final String			STATE_END = "#ES#";
+
+
+	protected BufferedReader			reader;
+	protected String					path;
+
+	protected String					stateString = null;
+	protected String					actionString = null;
+	protected String					rewardString = null;
+
+
+	/**
+	 * Opens a file for reading.
+	 * @param path the path to the episode or game file
+	 */
+	public EpisodeElementReader(String path){
+		this.path = path;
+		try {
+			this.reader = new BufferedReader(new FileReader(path));
+		} catch (IOException e) {
+			throw new RuntimeException("Could not open episode file " + path, e);
+		}
+	}
+
+
+	/**
+	 * Reads the next element of the file.
+	 * @return true if an element was read; false if the end of the file was reached.
+	 */
+	public boolean next(){
+
+		try {
+
+			String line = this.reader.readLine();
+			while(line != null && !line.equals(ELEMENT_START)){
+				line = this.reader.readLine();
+			}
+			if(line == null){
+				return false;
+			}
+
+			StringBuilder buf = new StringBuilder(256);
+			boolean first = true;
+			line = this.reader.readLine();
+			while(line != null && !line.equals(STATE_END)){
+				if(!first){
+					buf.append("\n");
+				}
+				buf.append(line);
+				first = false;
+				line = this.reader.readLine();
+			}
+			if(line == null){
+				throw new RuntimeException("Episode file " + this.path + " ends before the end of a state.");
+			}
+			this.stateString = buf.toString();
+
+			this.actionString = this.reader.readLine();
+			this.rewardString = this.actionString != null ? this.reader.readLine() : null;
+			if(this.rewardString == null){
+				//the last element has no action and reward, though it may be followed by an empty line
+				this.actionString = null;
+			}
+
+			return true;
+
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read episode file " + this.path, e);
+		}
+
+	}
+
+
+	/**
+	 * Returns the state string of the last element read.
+	 * @return the state string of the last element read.
+	 */
+	public String getStateString(){
+		return this.stateString;
+	}
+
+
+	/**
+	 * Returns the action string of the last element read.
+	 * @return the action string of the last element read; null if it is the last element of the file.
+	 */
+	public String getActionString(){
+		return this.actionString;
+	}
+
+
+	/**
+	 * Returns the reward string of the last element read.
+	 * @return the reward string of the last element read; null if it is the last element of the file.
+	 */
+	public String getRewardString(){
+		return this.rewardString;
+	}
+
+
+	/**
+	 * Closes the file.
+	 */
+	public void close(){
+		try {
+			this.reader.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not close episode file " + this.path, e);
+		}
+	}
+
+}
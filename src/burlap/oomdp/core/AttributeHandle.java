@@ -0,0 +1,140 @@
+package burlap.oomdp.core;
+
+import burlap.oomdp.core.Attribute.AttributeType;
+
+
+/**
+ * A handle to an attribute of an {@link ObjectClass} that has been resolved to the index at which {@link ObjectInstance} objects of that class
+ * store the attribute's value. The handle methods of {@link ObjectInstance}, such as {@link ObjectInstance#getRealValForAttribute(AttributeHandle)}
+ * and {@link ObjectInstance#setValue(AttributeHandle, double)}, use the index directly instead of looking up the attribute by name, and the getters
+ * do not copy any {@link Value} objects, so handles should be used by code that repeatedly accesses the same attributes, such as domain dynamics.
+ * Handles are resolved with {@link ObjectClass#getAttributeHandle(String)} and can be kept for the lifetime of the object class.
+ * <p/>
+ * A handle may also be used with object instances of a different {@link ObjectClass} object that has an attribute of the same name (for example,
+ * a copy of the domain), in which case the attribute is looked up by name, as it is if the attributes of the handle's object class
+ * have been replaced with {@link ObjectClass#setAttributes(java.util.List)} since the handle was resolved.
+ * <p/>
+ * The {@link Resolver} class can be used to resolve and cache the handles of a set of attributes for the object class of the objects that code
+ * operates on, when that class is not known in advance.
+ * @author James MacGlashan
+ *
+ */
+public class AttributeHandle {
+
+	/**
+	 * The object class for which this handle was resolved
+	 */
+	public final ObjectClass			objectClass;
+
+	/**
+	 * The attribute
+	 */
+	public final Attribute				attribute;
+
+	/**
+	 * The type of the attribute
+	 */
+	public final AttributeType			type;
+
+	/**
+	 * The index at which object instances of the object class store the attribute's value
+	 */
+	public final int					index;
+
+	/**
+	 * The attribute layout version of the object class when this handle was resolved
+	 */
+	protected final int					layoutVersion;
+
+
+	/**
+	 * Resolves the handle of the attribute with the given name of the given object class. A runtime exception is thrown if the object class
+	 * is not defined by an attribute with the given name.
+	 * @param objectClass the object class
+	 * @param attName the name of the attribute
+	 */
+	public AttributeHandle(ObjectClass objectClass, String attName){
+		this.objectClass = objectClass;
+		this.index = objectClass.attributeIndex(attName);
+		this.attribute = objectClass.attributeList.get(this.index);
+		this.type = this.attribute.type;
+		this.layoutVersion = objectClass.attributeLayoutVersion;
+	}
+
+
+	/**
+	 * Returns the name of the attribute.
+	 * @return the name of the attribute.
+	 */
+	public String name(){
+		return this.attribute.name;
+	}
+
+
+	/**
+	 * Returns the index at which object instances of the given object class store the value of this handle's attribute.
+	 * @param oc the object class of an object instance
+	 * @return the index of this handle's attribute in the object instances of the object class.
+	 */
+	public int indexIn(ObjectClass oc){
+		if(oc == this.objectClass && oc.attributeLayoutVersion == this.layoutVersion){
+			return this.index;
+		}
+		return oc.attributeIndex(this.attribute.name);
+	}
+
+
+
+	/**
+	 * Resolves the handles of a fixed list of attribute names for an object class, caching the handles of the most recently
+	 * resolved object class so that code that receives object instances of the same class can resolve them once.
+	 * Resolvers can be shared by threads.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class Resolver{
+
+		/**
+		 * The names of the attributes
+		 */
+		protected String []						attNames;
+
+		/**
+		 * The handles of the most recently resolved object class
+		 */
+		protected volatile AttributeHandle []	handles;
+
+
+		/**
+		 * Initializes for the given attribute names.
+		 * @param attNames the names of the attributes; at least one name must be given.
+		 */
+		public Resolver(String... attNames){
+			if(attNames.length == 0){
+				throw new RuntimeException("An attribute handle resolver needs at least one attribute name.");
+			}
+			this.attNames = attNames.clone();
+		}
+
+
+		/**
+		 * Returns the handles of this resolver's attribute names for the given object class, in the order in which the names were given.
+		 * The returned array should not be modified.
+		 * @param oc the object class
+		 * @return the handles of the attributes of the object class
+		 */
+		public AttributeHandle [] resolve(ObjectClass oc){
+			AttributeHandle [] h = this.handles;
+			if(h == null || h[0].objectClass != oc || h[0].layoutVersion != oc.attributeLayoutVersion){
+				h = new AttributeHandle[this.attNames.length];
+				for(int i = 0; i < h.length; i++){
+					h[i] = new AttributeHandle(oc, this.attNames[i]);
+				}
+				this.handles = h;
+			}
+			return h;
+		}
+
+	}
+
+}
@@ -22,6 +22,9 @@ public class ObjectClass {
 	public List <Integer>					observableAttributeIndices;		//feature vector index of only attributes that are observable to the world
 	public boolean							hidden;							//whether this is a hidden object class from the agent, but defines the state space
 	
+	protected int							attributeLayoutVersion = 0;		//incremented when attribute indices may change, invalidating AttributeHandles
+	protected AttributeHandle []			attributeHandles;				//the handles of all attributes in index order; null until requested
+	
 	
 	/**
 	 * Initializes the attribute indexing data structures, connects this object class
@@ -100,6 +103,8 @@ public class ObjectClass {
 		observableAttributeIndices.clear();
 		attributeMap.clear();
 		attributeIndex.clear();
+		attributeLayoutVersion++;
+		attributeHandles = null;
 		
 		for(Attribute att: atts){
 			this.addAttribute(att);
@@ -129,6 +134,8 @@ public class ObjectClass {
 			observableAttributeIndices.add(ind);
 		}
 		
+		attributeHandles = null;
+		
 	}
 	
 	
@@ -165,6 +172,35 @@ public class ObjectClass {
 	}
 	
 	
+	/**
+	 * Returns a handle to the attribute with the given name, which object instances of this class can use to access the attribute's
+	 * value without looking it up by name. A runtime exception is thrown if this object class is not defined by an attribute named attName.
+	 * @param attName the name of the attribute
+	 * @return a handle to the attribute with name attName
+	 */
+	public AttributeHandle getAttributeHandle(String attName){
+		return new AttributeHandle(this, attName);
+	}
+	
+	
+	/**
+	 * Returns the handles of all the attributes that define this object class, in the order of {@link #attributeList}. The returned
+	 * array is cached and should not be modified.
+	 * @return the handles of all the attributes that define this object class
+	 */
+	public AttributeHandle [] getAttributeHandles(){
+		AttributeHandle [] handles = this.attributeHandles;
+		if(handles == null){
+			handles = new AttributeHandle[attributeList.size()];
+			for(int i = 0; i < handles.length; i++){
+				handles[i] = new AttributeHandle(this, attributeList.get(i).name);
+			}
+			this.attributeHandles = handles;
+		}
+		return handles;
+	}
+	
+	
 	/**
 	 * Returns the number of attributes that define this object class.
 	 * @return the number of attributes that define this object class.
@@ -1,6 +1,7 @@
 package burlap.oomdp.core;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import burlap.oomdp.core.Attribute.AttributeType;
 
@@ -18,6 +19,7 @@ public class ObjectInstance {
 	protected ObjectClass					obClass;			//object class to which this object belongs
 	protected String						name;				//name of the object for disambiguation
 	protected List <Value>					values;				//the values for each attribute
+	protected AtomicBoolean					sharedValues;		//whether the values list is shared with copies of this object and must be cloned before it is modified; the flag is shared by every object instance that shares the list
 	
 	
 	
@@ -39,6 +41,13 @@ public class ObjectInstance {
 	/**
 	 * Creates a new object instance that is a deep copy of the specified object instance's values.
 	 * The object class and name is a shallow copy.
+	 * <p/>
+	 * The copy is made lazily: the new object instance shares its list of values with the source until either of them is
+	 * modified, at which point the modified object instance clones the list. Since value objects are never modified in place
+	 * (the setters replace them with modified copies), the two object instances behave as independent deep copies, but copying
+	 * a state whose objects are mostly left unchanged, as {@link burlap.oomdp.singleagent.Action#performAction(State, String[])} does,
+	 * does not copy the values of the unchanged objects. The flag that marks the list as shared is held by the list's owners together rather than by the
+	 * source, so the source is not written to and may be copied by multiple threads at the same time.
 	 * @param o the source object instance from which this will object will copy.
 	 */
 	public ObjectInstance(ObjectInstance o){
@@ -46,7 +55,11 @@ public class ObjectInstance {
 		this.obClass = o.obClass;
 		this.name = o.name;
 		
-		this.values = new ArrayList <Value>(o.values);
+		this.values = o.values;
+		this.sharedValues = o.sharedValues;
+		if(!this.sharedValues.get()){
+			this.sharedValues.set(true);
+		}
 			
 	}
 	
@@ -70,10 +83,24 @@ public class ObjectInstance {
 		for(Attribute att : obClass.attributeList){
 			values.add(att.valueConstructor());
 		}
+		sharedValues = new AtomicBoolean(false);
 		
 	}
 	
 	
+	/**
+	 * Returns the list of values of this object instance for modification, first cloning it if it is shared with a copy of this object instance.
+	 * @return the list of values of this object instance, which is not shared with any other object instance.
+	 */
+	protected List <Value> writableValues(){
+		if(sharedValues.get()){
+			values = new ArrayList <Value>(values);
+			sharedValues = new AtomicBoolean(false);
+		}
+		return values;
+	}
+	
+	
 	/**
 	 * Sets the name of this object instance.
 	 * @param name the name for this object instance.
@@ -93,7 +120,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.setValue(v);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 		
 	}
 	
@@ -108,7 +135,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.setValue(v);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	/**
@@ -121,7 +148,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.setValue(v);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	/**
@@ -134,7 +161,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.setValue(v);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	/**
@@ -147,7 +174,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.setValue(v);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	/**
@@ -160,7 +187,43 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.setValue(v);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
+	}
+	
+	/**
+	 * Sets the value of the attribute of the given handle for this object instance.
+	 * @param att the handle of the attribute whose value is to be set.
+	 * @param v the double rep value to which the attribute of this object instance should be set.
+	 */
+	public void setValue(AttributeHandle att, double v){
+		int ind = att.indexIn(obClass);
+		Value newValue = values.get(ind).copy();
+		newValue.setValue(v);
+		this.writableValues().set(ind, newValue);
+	}
+	
+	/**
+	 * Sets the value of the attribute of the given handle for this object instance.
+	 * @param att the handle of the attribute whose value is to be set.
+	 * @param v the int rep value to which the attribute of this object instance should be set.
+	 */
+	public void setValue(AttributeHandle att, int v){
+		int ind = att.indexIn(obClass);
+		Value newValue = values.get(ind).copy();
+		newValue.setValue(v);
+		this.writableValues().set(ind, newValue);
+	}
+	
+	/**
+	 * Sets the value of the attribute of the given handle for this object instance.
+	 * @param att the handle of the attribute whose value is to be set.
+	 * @param v the boolean rep value to which the attribute of this object instance should be set.
+	 */
+	public void setValue(AttributeHandle att, boolean v){
+		int ind = att.indexIn(obClass);
+		Value newValue = values.get(ind).copy();
+		newValue.setValue(v);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	/**
@@ -174,7 +237,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.addRelationalTarget(target);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	/**
@@ -189,7 +252,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.addAllRelationalTargets(targets);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	/**
@@ -201,7 +264,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.clearRelationTargets();
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	/**
@@ -214,7 +277,7 @@ public class ObjectInstance {
 		Value value = values.get(ind);
 		Value newValue = value.copy();
 		newValue.removeRelationalTarget(target);
-		values.set(ind, newValue);
+		this.writableValues().set(ind, newValue);
 	}
 	
 	
@@ -304,6 +367,54 @@ public class ObjectInstance {
 	
 	
 	
+	/**
+	 * Returns the double value assignment for the real-valued attribute of the given handle.
+	 * Will throw a runtime exception is the attribute is not of type REAL or REALUNBOUNDED
+	 * @param att the handle of the attribute whose value should be returned
+	 * @return the double value assignment for the real-valued attribute.
+	 */
+	public double getRealValForAttribute(AttributeHandle att){
+		return values.get(att.indexIn(obClass)).getRealVal();
+	}
+	
+	/**
+	 * Returns the double value for the attribute of the given handle, casting int values to doubles as {@link #getNumericValForAttribute(String)} does.
+	 * @param att the handle of the attribute whose value should be returned
+	 * @return a double value assignment for the attribute; casting occurs if the attribute is not real-valued.
+	 */
+	public double getNumericValForAttribute(AttributeHandle att){
+		return values.get(att.indexIn(obClass)).getNumericRepresentation();
+	}
+	
+	/**
+	 * Returns the int value assignment for the discrete-valued attribute of the given handle.
+	 * Will throw a runtime exception is the attribute is not of type DISC
+	 * @param att the handle of the attribute whose value should be returned
+	 * @return the int value assignment for the discrete-valued attribute.
+	 */
+	public int getDiscValForAttribute(AttributeHandle att){
+		return values.get(att.indexIn(obClass)).getDiscVal();
+	}
+	
+	/**
+	 * Returns the string value representation for the attribute of the given handle.
+	 * @param att the handle of the attribute whose value should be returned
+	 * @return the string value assignment for the attribute.
+	 */
+	public String getStringValForAttribute(AttributeHandle att){
+		return values.get(att.indexIn(obClass)).getStringVal();
+	}
+	
+	/**
+	 * Returns the boolean value of the attribute of the given handle (only defined for boolean attributes, int, and disc values).
+	 * @param att the handle of the attribute whose value should be returned
+	 * @return true if the value for the attribute evaluates to true, false otherwise.
+	 */
+	public boolean getBooleanValue(AttributeHandle att){
+		return values.get(att.indexIn(obClass)).getBooleanValue();
+	}
+	
+	
 	/**
 	 * Returns the set of all relational targets to which the relational attribute named attName is set.
 	 * If attName is a single target relational attribute, then it will return a set of at most cardinality one.
@@ -440,10 +551,17 @@ public class ObjectInstance {
 		if(!obClass.name.equals(obj.obClass.name)){
 			return false;
 		}
-	
-		for(Value v : values){
 		
-			Value ov = obj.getValueForAttribute(v.attName());
+		if(values == obj.values){
+			return true; //copies that share their unmodified values
+		}
+		
+		//objects of the same class store their values at the same indices, so no lookup or copy is needed
+		boolean sameLayout = obClass == obj.obClass && values.size() == obj.values.size();
+		for(int i = 0; i < values.size(); i++){
+			
+			Value v = values.get(i);
+			Value ov = sameLayout ? obj.values.get(i) : obj.values.get(obj.obClass.attributeIndex(v.attName()));
 			if(!v.equals(ov)){
 				return false;
 			}
@@ -455,6 +573,18 @@ public class ObjectInstance {
 	}
 	
 	
+	/**
+	 * Returns true if the value of the attribute of the given handle in this object instance is the same as it is in the target object instance.
+	 * No values are copied.
+	 * @param obj the object instance against which this object instance should be compared.
+	 * @param att the handle of the attribute to compare.
+	 * @return true if this object instance and obj have identical value assignments for the attribute; false otherwise.
+	 */
+	public boolean valueEquals(ObjectInstance obj, AttributeHandle att){
+		return values.get(att.indexIn(obClass)).equals(obj.values.get(att.indexIn(obj.obClass)));
+	}
+	
+	
 	public int hashCode(){
 		return name.hashCode();
 	}
@@ -49,15 +49,43 @@ public class State {
 	public State(State s){
 		
 		
-		this.initDataStructures();
+		//the source's objects have unique names, so they are indexed directly into presized structures rather than with addObject
+		int n = s.objectInstances.size() + s.hiddenObjectInstances.size();
+		this.objectInstances = new ArrayList <ObjectInstance>(s.objectInstances.size());
+		this.hiddenObjectInstances = new ArrayList <ObjectInstance>(s.hiddenObjectInstances.size());
+		this.objectMap = new HashMap <String, ObjectInstance>(Math.max(16, (int)(n / 0.75f) + 1));
+		this.objectIndexByTrueClass = new HashMap <String, List <ObjectInstance>>(Math.max(16, (int)(s.objectIndexByTrueClass.size() / 0.75f) + 1));
 		
 		for(ObjectInstance o : s.objectInstances){
-			this.addObject(o.copy());
+			this.addCopiedObject(o.copy(), this.objectInstances, s);
 		}
 		
 		for(ObjectInstance o : s.hiddenObjectInstances){
-			this.addObject(o.copy());
+			this.addCopiedObject(o.copy(), this.hiddenObjectInstances, s);
+		}
+		
+	}
+	
+	
+	/**
+	 * Adds the copy of an object instance of a source state to this state's data structures during copy construction.
+	 * @param o the copied object instance
+	 * @param instanceList the observable or hidden object instance list of this state to which the copy should be added
+	 * @param source the state being copied
+	 */
+	private void addCopiedObject(ObjectInstance o, List <ObjectInstance> instanceList, State source){
+		
+		objectMap.put(o.getName(), o);
+		instanceList.add(o);
+		
+		String otclass = o.getTrueClassName();
+		List <ObjectInstance> classList = objectIndexByTrueClass.get(otclass);
+		if(classList == null){
+			List <ObjectInstance> sourceList = source.objectIndexByTrueClass.get(otclass);
+			classList = new ArrayList <ObjectInstance>(sourceList != null ? sourceList.size() : 10);
+			objectIndexByTrueClass.put(otclass, classList);
 		}
+		classList.add(o);
 		
 	}
 	
@@ -56,6 +56,12 @@ public abstract class Action {
 	protected List<ActionObserver>		actionObservers = new ArrayList<ActionObserver>();
 	
 	
+	/**
+	 * An optional generator of the predecessor states of this action, used by regression search planners. By default no generator is specified.
+	 */
+	protected PredecessorGenerator		predecessorGenerator = null;
+	
+	
 	public Action(){
 		//should not be called directly, but may be useful for subclasses of Action
 	}
@@ -194,6 +200,26 @@ public abstract class Action {
 	}
 	
 	
+	/**
+	 * Sets the {@link PredecessorGenerator} that defines the inverse transition dynamics of this action. Set to null to remove it.
+	 * @param predecessorGenerator the generator that will be used to compute the predecessor states of this action.
+	 */
+	public void setPredecessorGenerator(PredecessorGenerator predecessorGenerator){
+		this.predecessorGenerator = predecessorGenerator;
+	}
+	
+	
+	/**
+	 * Returns whether predecessor states can be computed for this action with the {@link #getPredecessors(State, String[])} method.
+	 * By default this returns true only if a {@link PredecessorGenerator} has been set; actions that override {@link #getPredecessors(State, String[])}
+	 * directly should also override this method.
+	 * @return true if this action can compute its predecessor states; false otherwise.
+	 */
+	public boolean supportsPredecessors(){
+		return this.predecessorGenerator != null;
+	}
+	
+	
 	/**
 	 * Returns true if this action can be applied in this specified state with the specified parameters.
 	 * Default behavior is that an action can be applied in any state, but the {@link #applicableInState(State, String [])}
@@ -306,6 +332,26 @@ public abstract class Action {
 	}
 
 
+	/**
+	 * Returns the states from which applying this action with the given parameters could produce the state s. This is the inverse
+	 * of the transition dynamics and is used by regression and bidirectional search planners. The returned list may over-approximate
+	 * the true predecessors, but should never omit one. By default this method queries the {@link PredecessorGenerator}
+	 * set with {@link #setPredecessorGenerator(PredecessorGenerator)} and throws an UnsupportedOperationException if none was set.
+	 * Actions that know their own inverse dynamics may instead override this method (and {@link #supportsPredecessors()}).
+	 * @param s the state produced by this action
+	 * @param params a String array specifying the action object parameters
+	 * @return a List of the possible predecessor states of s
+	 */
+	public List<State> getPredecessors(State s, String [] params){
+		if(this.predecessorGenerator == null){
+			throw new UnsupportedOperationException("Predecessor states for action " + this.getName() + " were requested, but no " +
+					"PredecessorGenerator has been set. Please set one with setPredecessorGenerator or override the " +
+					"getPredecessors(State, String[] params) method for this action.");
+		}
+		return this.predecessorGenerator.getPredecessors(this, s, params);
+	}
+
+
 	/**
 	 * Returns the transition dynamics by assuming the action to be deterministic and wrapping the result of a
 	 * {@link #performAction(burlap.oomdp.core.State, String[])} method with a 1.0 probable {@link TransitionProbability}
@@ -360,6 +406,31 @@ public abstract class Action {
 	}
 	
 	
+	/**
+	 * Returns all possible groundings of this action for the objects in the provided {@link State} without checking
+	 * whether they are applicable in it. This is useful for regression search, in which the groundings of an action that produced
+	 * a state are needed, but applicability can only be checked in the (unknown) predecessor state.
+	 * @param s the {@link State} whose objects will be used to ground this action's parameters.
+	 * @return a list of all groundings of this {@link Action} object for the objects in the given {@link State}
+	 */
+	public List<GroundedAction> getAllGroundedActionsIgnoringApplicability(State s){
+		
+		List <GroundedAction> res = new ArrayList<GroundedAction>();
+		if(this.parameterClasses.length == 0){
+			res.add(new GroundedAction(this, ""));
+			return res;
+		}
+		
+		List <List <String>> bindings = s.getPossibleBindingsGivenParamOrderGroups(this.getParameterClasses(), this.getParameterOrderGroups());
+		for(List <String> params : bindings){
+			res.add(new GroundedAction(this, params.toArray(new String[params.size()])));
+		}
+		
+		return res;
+		
+	}
+	
+	
 	/**
 	 * Returns all {@link GroundedAction}s that are applicable in the given {@link State} for all {@link Action} objects in the provided list. This method
 	 * operates by calling the {@link #getAllApplicableGroundedActions(State)} method on each action and adding all the results
@@ -0,0 +1,33 @@
+package burlap.oomdp.singleagent;
+
+import java.util.List;
+
+import burlap.oomdp.core.State;
+
+
+/**
+ * A PredecessorGenerator defines the inverse of an {@link Action}'s transition dynamics. Given a state s and a grounding
+ * of the action, it returns the states from which applying the action could have produced s. Predecessor generators
+ * are used by regression and bidirectional search planners, such as
+ * {@link burlap.behavior.singleagent.planning.deterministic.uninformed.bfs.BidirectionalBFS}, to search backwards from goal states.
+ * <p/>
+ * The returned states may over-approximate the true set of predecessors (that is, include states from which the action
+ * would not actually produce s), since planners that use them verify each predecessor by executing the action in it. However,
+ * they must not omit any true predecessor or the search may fail to find a solution that exists.
+ * A generator can be attached to an action with the {@link Action#setPredecessorGenerator(PredecessorGenerator)} method.
+ * @author James MacGlashan
+ *
+ */
+public interface PredecessorGenerator {
+
+	/**
+	 * Returns the states from which applying the given action with the given parameters could produce the state s.
+	 * The input state s should not be modified.
+	 * @param a the action whose predecessors are to be returned
+	 * @param s the state that was produced by the action
+	 * @param params a String array specifying the action object parameters
+	 * @return a list of the possible predecessor states of s.
+	 */
+	public List<State> getPredecessors(Action a, State s, String [] params);
+
+}
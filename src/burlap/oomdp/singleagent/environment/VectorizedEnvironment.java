@@ -0,0 +1,577 @@
+package burlap.oomdp.singleagent.environment;
+
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import burlap.behavior.singleagent.Policy;
+import burlap.debugtools.ParallelMatchEngine;
+import burlap.debugtools.RandomFactory;
+import burlap.oomdp.auxiliary.StateGenerator;
+import burlap.oomdp.core.AbstractGroundedAction;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.singleagent.Action;
+import burlap.oomdp.singleagent.GroundedAction;
+import burlap.oomdp.singleagent.RewardFunction;
+
+
+/**
+ * An environment that holds K independent copies of a domain's state and steps all of them with one call, for algorithms that collect
+ * many samples, such as LSPI data collection. Each copy is stepped by executing its action with {@link GroundedAction#executeIn(State)}
+ * and rewarded with the environment's {@link RewardFunction}. When a copy reaches a terminal state, or takes the maximum number of
+ * steps of an episode, it is reset to a new initial state drawn from a {@link StateGenerator}, so every copy always has a state from which
+ * it can be stepped. Generated states that are terminal are discarded and generated again, up to a maximum number of attempts
+ * (see {@link #setMaxResetAttempts(int)}), after which a runtime exception is thrown.
+ * <p/>
+ * The copies can be stepped in parallel by splitting them into contiguous blocks, one for each thread. Every step of a copy, including the
+ * selection of its action and any reset that follows, is run inside a {@link RandomFactory} thread scope whose seed is derived from the
+ * environment's base seed, the index of the copy and the number of steps the copy has taken, so the transitions are reproducible
+ * as described in {@link RandomFactory#beginThreadScope(long)}.
+ * <p/>
+ * The transitions of a step are reported in a {@link StepBatch} whose arrays are indexed by copy. The batch is reused by the following step,
+ * so code that keeps its contents must copy them. {@link #run(int, ActionSelector, StepListener)} steps the copies a number of times with the same
+ * threads and passes each batch to a {@link StepListener}, which is never called concurrently.
+ * @author James MacGlashan
+ *
+ */
+public class VectorizedEnvironment {
+
+	/**
+	 * The generator of the initial states of the copies
+	 */
+	protected StateGenerator		sg;
+
+	/**
+	 * The reward function of transitions
+	 */
+	protected RewardFunction		rf;
+
+	/**
+	 * The terminal function after which copies are reset
+	 */
+	protected TerminalFunction		tf;
+
+	/**
+	 * The maximum number of steps of an episode of a copy before it is reset; unbounded if not positive
+	 */
+	protected int					maxEpisodeSteps = 0;
+
+	/**
+	 * The maximum number of initial states generated for a reset of a copy before giving up because all of them were terminal
+	 */
+	protected int					maxResetAttempts = 100;
+
+	/**
+	 * The number of threads used to step the copies
+	 */
+	protected int					nThreads = 1;
+
+	/**
+	 * The seed from which the random scope seeds of the steps of the copies are derived
+	 */
+	protected long					baseSeed;
+
+	/**
+	 * The current state of each copy
+	 */
+	protected State []				states;
+
+	/**
+	 * The number of steps taken in the current episode of each copy
+	 */
+	protected int []				episodeSteps;
+
+	/**
+	 * The number of random scopes begun for each copy, from which the seed of the copy's next scope is derived
+	 */
+	protected long []				scopeCounts;
+
+	/**
+	 * The transitions of the last step
+	 */
+	protected StepBatch				batch;
+
+
+
+	/**
+	 * Initializes with copies whose initial states are drawn from the given state generator. The base seed is drawn from the
+	 * {@link RandomFactory} default generator.
+	 * @param sg the generator of the initial states of the copies
+	 * @param rf the reward function of transitions
+	 * @param tf the terminal function after which copies are reset
+	 * @param numCopies the number of copies
+	 */
+	public VectorizedEnvironment(StateGenerator sg, RewardFunction rf, TerminalFunction tf, int numCopies){
+		this(sg, rf, tf, numCopies, RandomFactory.getMapped(0).nextLong());
+	}
+
+
+	/**
+	 * Initializes with copies whose initial states are drawn from the given state generator.
+	 * @param sg the generator of the initial states of the copies
+	 * @param rf the reward function of transitions
+	 * @param tf the terminal function after which copies are reset
+	 * @param numCopies the number of copies
+	 * @param baseSeed the seed from which the random scope seeds of the steps of the copies are derived
+	 */
+	public VectorizedEnvironment(StateGenerator sg, RewardFunction rf, TerminalFunction tf, int numCopies, long baseSeed){
+		if(numCopies < 1){
+			throw new RuntimeException("A vectorized environment requires at least one copy.");
+		}
+		this.sg = sg;
+		this.rf = rf;
+		this.tf = tf;
+		this.baseSeed = baseSeed;
+		this.states = new State[numCopies];
+		this.episodeSteps = new int[numCopies];
+		this.scopeCounts = new long[numCopies];
+		this.batch = new StepBatch(numCopies);
+		this.resetAll();
+	}
+
+
+	/**
+	 * Returns the number of copies.
+	 * @return the number of copies.
+	 */
+	public int numCopies(){
+		return this.states.length;
+	}
+
+
+	/**
+	 * Returns the current state of a copy.
+	 * @param i the index of the copy
+	 * @return the current state of the copy.
+	 */
+	public State getState(int i){
+		return this.states[i];
+	}
+
+
+	/**
+	 * Returns the number of steps taken in the current episode of a copy.
+	 * @param i the index of the copy
+	 * @return the number of steps taken in the current episode of the copy.
+	 */
+	public int getEpisodeSteps(int i){
+		return this.episodeSteps[i];
+	}
+
+
+	/**
+	 * Sets the maximum number of steps of an episode of a copy, after which the copy is reset even if its state is not terminal.
+	 * @param maxEpisodeSteps the maximum number of steps of an episode; unbounded if not positive.
+	 */
+	public void setMaxEpisodeSteps(int maxEpisodeSteps){
+		this.maxEpisodeSteps = maxEpisodeSteps;
+	}
+
+
+	/**
+	 * Sets the maximum number of initial states generated for a reset of a copy. Generated states that are terminal are discarded;
+	 * if this many states are generated and all of them are terminal, the reset throws a runtime exception.
+	 * @param maxResetAttempts the maximum number of initial states generated for a reset
+	 */
+	public void setMaxResetAttempts(int maxResetAttempts){
+		if(maxResetAttempts < 1){
+			throw new RuntimeException("A vectorized environment requires at least one reset attempt.");
+		}
+		this.maxResetAttempts = maxResetAttempts;
+	}
+
+
+	/**
+	 * Sets the number of threads used to step the copies.
+	 * @param nThreads the number of threads used to step the copies.
+	 */
+	public void setNumThreads(int nThreads){
+		if(nThreads < 1){
+			throw new RuntimeException("A vectorized environment requires at least one thread.");
+		}
+		this.nThreads = nThreads;
+	}
+
+
+	/**
+	 * Returns the transitions of the last step, which are replaced by the next step.
+	 * @return the transitions of the last step.
+	 */
+	public StepBatch getLastStep(){
+		return this.batch;
+	}
+
+
+	/**
+	 * Resets every copy to a new initial state.
+	 */
+	public void resetAll(){
+		for(int i = 0; i < this.states.length; i++){
+			this.reset(i);
+		}
+	}
+
+
+	/**
+	 * Resets a copy to a new initial state drawn from the state generator.
+	 * @param i the index of the copy
+	 */
+	public void reset(int i){
+		RandomFactory.beginThreadScope(this.nextScopeSeed(i));
+		try{
+			this.resetInScope(i);
+		}
+		finally{
+			RandomFactory.endThreadScope();
+		}
+	}
+
+
+	/**
+	 * Steps every copy once with the given actions.
+	 * @param actions the action of each copy, indexed by copy
+	 * @return the transitions of the step, which are replaced by the next step
+	 */
+	public StepBatch step(final GroundedAction [] actions){
+		if(actions.length != this.states.length){
+			throw new RuntimeException("Expected an action for each of the " + this.states.length + " copies, but " + actions.length + " were given.");
+		}
+		return this.step(new ActionSelector() {
+			@Override
+			public GroundedAction selectAction(int copy, State s) {
+				return actions[copy];
+			}
+		});
+	}
+
+
+	/**
+	 * Steps every copy once with the actions chosen by an action selector.
+	 * @param selector the selector of the action of each copy
+	 * @return the transitions of the step, which are replaced by the next step
+	 */
+	public StepBatch step(ActionSelector selector){
+		this.run(1, selector, null);
+		return this.batch;
+	}
+
+
+	/**
+	 * Steps every copy the given number of times with the actions chosen by an action selector, and passes the transitions of each step
+	 * to a listener. When more than one thread is used, the same threads run all of the steps and wait for each other between steps,
+	 * and the listener is called by the last thread to finish a step.
+	 * @param numSteps the number of times every copy is stepped
+	 * @param selector the selector of the action of each copy, which must be thread safe if more than one thread is used
+	 * @param listener the listener that is passed the transitions of each step; may be null
+	 */
+	public void run(final int numSteps, final ActionSelector selector, final StepListener listener){
+
+		if(numSteps <= 0){
+			return;
+		}
+
+		final int k = this.states.length;
+		final int nt = Math.min(this.nThreads, k);
+
+		if(nt == 1){
+			for(int t = 0; t < numSteps; t++){
+				this.stepCopies(0, k, selector);
+				if(listener != null){
+					listener.stepped(this.batch);
+				}
+			}
+			return;
+		}
+
+		final int [] steps = new int[]{0};
+		final boolean [] done = new boolean[]{false};
+		final Throwable [] failure = new Throwable[1];
+
+		final CyclicBarrier barrier = new CyclicBarrier(nt, new Runnable() {
+			@Override
+			public void run() {
+				if(failure[0] == null && listener != null){
+					try{
+						listener.stepped(VectorizedEnvironment.this.batch);
+					}
+					catch(Throwable e){
+						failure[0] = e;
+					}
+				}
+				steps[0]++;
+				if(failure[0] != null || steps[0] >= numSteps){
+					done[0] = true;
+				}
+			}
+		});
+
+		ParallelMatchEngine.runWorkers(nt, new ParallelMatchEngine.IndexedTask() {
+			@Override
+			public void run(int w) {
+				int lo = (int)((long)k * w / nt);
+				int hi = (int)((long)k * (w+1) / nt);
+				while(true){
+					try{
+						VectorizedEnvironment.this.stepCopies(lo, hi, selector);
+					}
+					catch(Throwable e){
+						synchronized(failure){
+							if(failure[0] == null){
+								failure[0] = e;
+							}
+						}
+					}
+					try {
+						barrier.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException("Interrupted during a vectorized environment step.", e);
+					} catch (BrokenBarrierException e) {
+						throw new RuntimeException("A vectorized environment step was aborted.", e);
+					}
+					if(done[0]){
+						return;
+					}
+				}
+			}
+		});
+
+		if(failure[0] != null){
+			ParallelMatchEngine.rethrow(failure[0]);
+		}
+
+	}
+
+
+	/**
+	 * Steps the copies with indices lo (inclusive) through hi (exclusive) once and records their transitions in the batch.
+	 * @param lo the index of the first copy
+	 * @param hi one more than the index of the last copy
+	 * @param selector the selector of the action of each copy
+	 */
+	protected void stepCopies(int lo, int hi, ActionSelector selector){
+		StepBatch b = this.batch;
+		for(int i = lo; i < hi; i++){
+			RandomFactory.beginThreadScope(this.nextScopeSeed(i));
+			try{
+				State s = this.states[i];
+				GroundedAction ga = selector.selectAction(i, s);
+				State sp = ga.executeIn(s);
+				double r = this.rf.reward(s, ga, sp);
+				this.episodeSteps[i]++;
+
+				b.states[i] = s;
+				b.actions[i] = ga;
+				b.rewards[i] = r;
+				b.nextStates[i] = sp;
+				b.terminated[i] = this.tf.isTerminal(sp);
+				b.truncated[i] = !b.terminated[i] && this.maxEpisodeSteps > 0 && this.episodeSteps[i] >= this.maxEpisodeSteps;
+
+				if(b.terminated[i] || b.truncated[i]){
+					this.resetInScope(i);
+				}
+				else{
+					this.states[i] = sp;
+				}
+			}
+			finally{
+				RandomFactory.endThreadScope();
+			}
+		}
+	}
+
+
+	/**
+	 * Resets a copy in the random scope of the calling thread, generating states until one is not terminal. The state generator is called by one thread at a time.
+	 */
+	protected void resetInScope(int i){
+		State s = null;
+		for(int attempt = 0; attempt < this.maxResetAttempts; attempt++){
+			State gen;
+			synchronized(this.sg){
+				gen = this.sg.generateState();
+			}
+			if(!this.tf.isTerminal(gen)){
+				s = gen;
+				break;
+			}
+		}
+		if(s == null){
+			throw new RuntimeException("Could not reset copy " + i + " of the vectorized environment: all " + this.maxResetAttempts + " generated initial states were terminal.");
+		}
+		this.states[i] = s;
+		this.episodeSteps[i] = 0;
+	}
+
+
+	/**
+	 * Returns the seed of the next random scope of a copy.
+	 */
+	protected long nextScopeSeed(int i){
+		return RandomFactory.deriveSeed(RandomFactory.deriveSeed(this.baseSeed, i), ++this.scopeCounts[i]);
+	}
+
+
+
+	/**
+	 * The transitions of one step of every copy, indexed by copy. If a copy was reset after its transition, the state of the copy in the
+	 * following step is the new initial state rather than the next state of this transition.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class StepBatch{
+
+		/**
+		 * The state of each copy from which it was stepped
+		 */
+		public final State []			states;
+
+		/**
+		 * The action each copy took
+		 */
+		public final GroundedAction []	actions;
+
+		/**
+		 * The reward of each copy's transition
+		 */
+		public final double []			rewards;
+
+		/**
+		 * The state each copy transitioned to
+		 */
+		public final State []			nextStates;
+
+		/**
+		 * Whether each copy transitioned to a terminal state
+		 */
+		public final boolean []			terminated;
+
+		/**
+		 * Whether each copy reached the maximum number of steps of an episode without transitioning to a terminal state
+		 */
+		public final boolean []			truncated;
+
+
+		protected StepBatch(int numCopies){
+			this.states = new State[numCopies];
+			this.actions = new GroundedAction[numCopies];
+			this.rewards = new double[numCopies];
+			this.nextStates = new State[numCopies];
+			this.terminated = new boolean[numCopies];
+			this.truncated = new boolean[numCopies];
+		}
+
+
+		/**
+		 * Returns the number of copies.
+		 * @return the number of copies.
+		 */
+		public int size(){
+			return this.states.length;
+		}
+
+	}
+
+
+
+	/**
+	 * Selects the action of each copy of a {@link VectorizedEnvironment} when it is stepped. The selector is called inside the random scope
+	 * of the copy's step, and is called concurrently for different copies if the environment uses more than one thread.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface ActionSelector{
+
+		/**
+		 * Returns the action that a copy takes in its current state.
+		 * @param copy the index of the copy
+		 * @param s the current state of the copy
+		 * @return the action that the copy takes
+		 */
+		public GroundedAction selectAction(int copy, State s);
+
+	}
+
+
+	/**
+	 * Is passed the transitions of each step of a {@link VectorizedEnvironment#run(int, ActionSelector, StepListener)} call. Calls are never concurrent.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface StepListener{
+
+		/**
+		 * Called after every copy has been stepped.
+		 * @param batch the transitions of the step, which are replaced by the next step
+		 */
+		public void stepped(StepBatch batch);
+
+	}
+
+
+
+	/**
+	 * An action selector that chooses uniformly at random among the applicable groundings of a list of actions.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class UniformRandomSelector implements ActionSelector{
+
+		/**
+		 * The actions from which the actions of copies are chosen
+		 */
+		protected List<Action>	actions;
+
+		/**
+		 * Initializes.
+		 * @param actions the actions from which the actions of copies are chosen.
+		 */
+		public UniformRandomSelector(List<Action> actions){
+			this.actions = actions;
+		}
+
+		@Override
+		public GroundedAction selectAction(int copy, State s) {
+			List<GroundedAction> gas = Action.getAllApplicableGroundedActionsFromActionList(this.actions, s);
+			return gas.get(RandomFactory.getMapped(0).nextInt(gas.size()));
+		}
+
+	}
+
+
+	/**
+	 * An action selector that follows a {@link Policy}, which must be thread safe if the environment uses more than one thread.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class PolicySelector implements ActionSelector{
+
+		/**
+		 * The policy that is followed
+		 */
+		protected Policy		p;
+
+		/**
+		 * Initializes.
+		 * @param p the policy that is followed.
+		 */
+		public PolicySelector(Policy p){
+			this.p = p;
+		}
+
+		@Override
+		public GroundedAction selectAction(int copy, State s) {
+			AbstractGroundedAction aga = this.p.getAction(s);
+			if(aga == null){
+				throw new Policy.PolicyUndefinedException();
+			}
+			if(!(aga instanceof GroundedAction)){
+				throw new RuntimeException("cannot folow policy for non-single agent actions");
+			}
+			return (GroundedAction)aga;
+		}
+
+	}
+
+}
@@ -270,7 +270,7 @@ public class JointAction extends AbstractGroundedAction implements Iterable<Grou
 	
 		
 		//get all joint actions from all combinations of individual actions
-		List<JointAction> allJointActions = new LinkedList<JointAction>();
+		List<JointAction> allJointActions = new ArrayList<JointAction>();
 		allJointActionsHelper(individualActionChoices, 0, new LinkedList<GroundedSingleAction>(), allJointActions);
 		
 		
@@ -292,7 +292,7 @@ public class JointAction extends AbstractGroundedAction implements Iterable<Grou
 		
 		
 		//get all joint actions from all combinations of individual actions
-		List<JointAction> allJointActions = new LinkedList<JointAction>();
+		List<JointAction> allJointActions = new ArrayList<JointAction>();
 		allJointActionsHelper(individualActionChoices, 0, new LinkedList<GroundedSingleAction>(), allJointActions);
 		
 		
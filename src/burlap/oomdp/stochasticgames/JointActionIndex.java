@@ -0,0 +1,550 @@
+package burlap.oomdp.stochasticgames;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+import burlap.oomdp.core.State;
+
+
+/**
+ * Maps each joint action of a set of agents to a dense integer in [0, {@link #size()}) with a mixed-radix encoding of the index of each agent's action.
+ * Agents are ordered by the iteration order of the agent definitions (the same order in which {@link JointAction#getAllJointActions(State, Map)} combines
+ * their actions, so joint actions are enumerated in the same order by both) and the last agent varies fastest, so for two agents
+ * the joint index of the row agent's action i and the column agent's action j is i*n + j, where n is the number of column agent actions.
+ * Because joint actions are identified by integers, multi-agent Q-values can be stored in double arrays indexed by the joint index and the joint actions
+ * of a state can be iterated over without constructing any {@link JointAction} objects. A {@link JointAction} object for each joint index is
+ * constructed once, when the index is created, and is returned by {@link #jointAction(int)}.
+ * <p/>
+ * If none of the agents' actions are parameterized, the set of grounded actions of each agent does not depend on the state, so a single
+ * state independent index (created with {@link #JointActionIndex(Map)}) can be used for every state. Such an index includes actions that are not applicable
+ * in every state, so the joint actions applicable in a given state should be retrieved with {@link #applicableJointActions(State, int[])}.
+ * If any action is parameterized, an index must be grounded in a specific state with {@link #JointActionIndex(State, Map)}, in which case
+ * every indexed joint action is applicable in that state. The {@link Provider} class returns the appropriate index for a state and reuses a
+ * state independent index whenever it can.
+ * <p/>
+ * Indices are immutable after construction, so they may be shared by multiple threads. Each thread that iterates over the joint actions of an index
+ * can reuse the index's scratch arrays for that thread (see {@link #scratch()}) rather than allocating arrays for every query.
+ * @author James MacGlashan
+ *
+ */
+public class JointActionIndex {
+
+	/**
+	 * The names of the agents, in index order
+	 */
+	protected String []								agentNames;
+
+	/**
+	 * The grounded actions of each agent, indexed by agent index and then action index
+	 */
+	protected GroundedSingleAction [][]				agentActions;
+
+	/**
+	 * The action index of each grounded action of each agent
+	 */
+	protected List<Map<GroundedSingleAction, Integer>>	actionIds;
+
+	/**
+	 * The multiplier of each agent's action index in the joint index
+	 */
+	protected int []								strides;
+
+	/**
+	 * The joint action of each joint index
+	 */
+	protected JointAction []						jointActions;
+
+	/**
+	 * Whether this index is independent of the state
+	 */
+	protected boolean								stateIndependent;
+
+	/**
+	 * The position of each agent's first action in the applicability array of a {@link Scratch}
+	 */
+	protected int []								actionOffsets;
+
+	/**
+	 * The scratch arrays of each thread that uses this index
+	 */
+	protected final ThreadLocal<Scratch>			scratch = new ThreadLocal<Scratch>();
+
+
+	/**
+	 * Creates a state independent index over all the actions of the given agents. None of the agents' actions may be parameterized.
+	 * @param agentDefinitions the agent names and their types
+	 */
+	public JointActionIndex(Map<String, AgentType> agentDefinitions){
+		if(!JointActionIndex.hasStateIndependentGroundings(agentDefinitions)){
+			throw new RuntimeException("A state independent joint action index cannot be created for agents with parameterized actions.");
+		}
+		Map<String, List<GroundedSingleAction>> groundings = new LinkedHashMap<String, List<GroundedSingleAction>>();
+		for(Map.Entry<String, AgentType> e : agentDefinitions.entrySet()){
+			List<GroundedSingleAction> gsas = new ArrayList<GroundedSingleAction>(e.getValue().actions.size());
+			for(SingleAction sa : e.getValue().actions){
+				gsas.add(new GroundedSingleAction(e.getKey(), sa, new String[]{}));
+			}
+			groundings.put(e.getKey(), gsas);
+		}
+		this.init(groundings, true);
+	}
+
+
+	/**
+	 * Creates an index over the joint actions of the given agents that are applicable in the given state.
+	 * @param s the state in which actions are grounded
+	 * @param agentDefinitions the agent names and their types
+	 */
+	public JointActionIndex(State s, Map<String, AgentType> agentDefinitions){
+		Map<String, List<GroundedSingleAction>> groundings = new LinkedHashMap<String, List<GroundedSingleAction>>();
+		for(Map.Entry<String, AgentType> e : agentDefinitions.entrySet()){
+			groundings.put(e.getKey(), SingleAction.getAllPossibleGroundedSingleActions(s, e.getKey(), e.getValue().actions));
+		}
+		this.init(groundings, false);
+	}
+
+
+	/**
+	 * Returns whether a state independent index can be created for the given agents, which is the case when none of their actions are parameterized.
+	 * @param agentDefinitions the agent names and their types
+	 * @return true if none of the agents' actions are parameterized; false otherwise.
+	 */
+	public static boolean hasStateIndependentGroundings(Map<String, AgentType> agentDefinitions){
+		for(AgentType at : agentDefinitions.values()){
+			for(SingleAction sa : at.actions){
+				if(sa.isPamaeterized()){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Sets up the agent and action tables and the joint actions.
+	 * @param groundings the grounded actions of each agent, in agent order
+	 * @param stateIndependent whether the index is state independent
+	 */
+	protected void init(Map<String, List<GroundedSingleAction>> groundings, boolean stateIndependent){
+
+		int n = groundings.size();
+		this.stateIndependent = stateIndependent;
+		this.agentNames = new String[n];
+		this.agentActions = new GroundedSingleAction[n][];
+		this.actionIds = new ArrayList<Map<GroundedSingleAction,Integer>>(n);
+		this.strides = new int[n];
+
+		int i = 0;
+		for(Map.Entry<String, List<GroundedSingleAction>> e : groundings.entrySet()){
+			this.agentNames[i] = e.getKey();
+			this.agentActions[i] = e.getValue().toArray(new GroundedSingleAction[e.getValue().size()]);
+			Map<GroundedSingleAction, Integer> ids = new HashMap<GroundedSingleAction, Integer>(this.agentActions[i].length);
+			for(int a = 0; a < this.agentActions[i].length; a++){
+				ids.put(this.agentActions[i][a], a);
+			}
+			this.actionIds.add(ids);
+			i++;
+		}
+
+		int size = 1;
+		for(i = n-1; i >= 0; i--){
+			this.strides[i] = size;
+			size *= this.agentActions[i].length;
+		}
+
+		this.actionOffsets = new int[n+1];
+		for(i = 0; i < n; i++){
+			this.actionOffsets[i+1] = this.actionOffsets[i] + this.agentActions[i].length;
+		}
+
+		this.jointActions = new JointAction[size];
+		for(int j = 0; j < size; j++){
+			JointAction ja = new JointAction();
+			for(i = 0; i < n; i++){
+				ja.addAction(this.agentActions[i][this.actionIndex(j, i)]);
+			}
+			this.jointActions[j] = ja;
+		}
+
+	}
+
+
+	/**
+	 * Returns the number of joint actions.
+	 * @return the number of joint actions.
+	 */
+	public int size(){
+		return this.jointActions.length;
+	}
+
+
+	/**
+	 * Returns whether this index is independent of the state.
+	 * @return true if this index can be used in any state; false if it only applies to the state in which it was grounded.
+	 */
+	public boolean isStateIndependent(){
+		return this.stateIndependent;
+	}
+
+
+	/**
+	 * Returns the number of agents.
+	 * @return the number of agents.
+	 */
+	public int numAgents(){
+		return this.agentNames.length;
+	}
+
+
+	/**
+	 * Returns the name of the agent with the given agent index.
+	 * @param agent the agent index
+	 * @return the name of the agent
+	 */
+	public String agentName(int agent){
+		return this.agentNames[agent];
+	}
+
+
+	/**
+	 * Returns the agent index of the agent with the given name, or -1 if the agent is not indexed.
+	 * @param agentName the name of the agent
+	 * @return the agent index of the agent, or -1 if the agent is not indexed.
+	 */
+	public int agentIndex(String agentName){
+		for(int i = 0; i < this.agentNames.length; i++){
+			if(this.agentNames[i].equals(agentName)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the number of actions of the given agent.
+	 * @param agent the agent index
+	 * @return the number of actions of the agent
+	 */
+	public int numActions(int agent){
+		return this.agentActions[agent].length;
+	}
+
+
+	/**
+	 * Returns the grounded action of the given agent with the given action index.
+	 * @param agent the agent index
+	 * @param action the action index
+	 * @return the grounded action
+	 */
+	public GroundedSingleAction agentAction(int agent, int action){
+		return this.agentActions[agent][action];
+	}
+
+
+	/**
+	 * Returns the multiplier of the given agent's action index in the joint index.
+	 * @param agent the agent index
+	 * @return the multiplier of the agent's action index in the joint index
+	 */
+	public int stride(int agent){
+		return this.strides[agent];
+	}
+
+
+	/**
+	 * Returns the action index of the given agent in the joint action with the given joint index.
+	 * @param jointIndex the joint index
+	 * @param agent the agent index
+	 * @return the action index of the agent
+	 */
+	public int actionIndex(int jointIndex, int agent){
+		return (jointIndex / this.strides[agent]) % this.agentActions[agent].length;
+	}
+
+
+	/**
+	 * Returns the joint index of the joint action in which each agent takes the action with the given action index.
+	 * @param actionIndices the action index of each agent, in agent index order
+	 * @return the joint index
+	 */
+	public int jointIndex(int [] actionIndices){
+		int j = 0;
+		for(int i = 0; i < actionIndices.length; i++){
+			j += actionIndices[i] * this.strides[i];
+		}
+		return j;
+	}
+
+
+	/**
+	 * Returns the joint index of the given joint action, or -1 if the joint action is not indexed.
+	 * @param ja the joint action
+	 * @return the joint index of the joint action, or -1 if it is not indexed.
+	 */
+	public int jointIndex(JointAction ja){
+		if(ja.size() != this.agentNames.length){
+			return -1;
+		}
+		int j = 0;
+		for(int i = 0; i < this.agentNames.length; i++){
+			GroundedSingleAction gsa = ja.action(this.agentNames[i]);
+			if(gsa == null){
+				return -1;
+			}
+			Integer a = this.actionIds.get(i).get(gsa);
+			if(a == null){
+				return -1;
+			}
+			j += a * this.strides[i];
+		}
+		return j;
+	}
+
+
+	/**
+	 * Returns the joint action with the given joint index. The same object is returned by every call, so it should not be modified.
+	 * @param jointIndex the joint index
+	 * @return the joint action
+	 */
+	public JointAction jointAction(int jointIndex){
+		return this.jointActions[jointIndex];
+	}
+
+
+	/**
+	 * Fills the given array with the action indices of the given agent's actions that are applicable in the given state, in increasing order.
+	 * @param s the state
+	 * @param agent the agent index
+	 * @param out the array to fill; must be at least as long as the number of actions of the agent
+	 * @return the number of applicable actions
+	 */
+	public int applicableAgentActions(State s, int agent, int [] out){
+		GroundedSingleAction [] gsas = this.agentActions[agent];
+		if(!this.stateIndependent){
+			for(int a = 0; a < gsas.length; a++){
+				out[a] = a;
+			}
+			return gsas.length;
+		}
+		int n = 0;
+		for(int a = 0; a < gsas.length; a++){
+			if(gsas[a].action.isApplicableInState(s, gsas[a].actingAgent, gsas[a].params)){
+				out[n++] = a;
+			}
+		}
+		return n;
+	}
+
+
+	/**
+	 * Fills the given array with the joint indices of the joint actions that are applicable in the given state, in increasing order.
+	 * @param s the state
+	 * @param out the array to fill; must be at least {@link #size()} long
+	 * @return the number of applicable joint actions
+	 */
+	public int applicableJointActions(State s, int [] out){
+
+		if(!this.stateIndependent){
+			for(int j = 0; j < this.jointActions.length; j++){
+				out[j] = j;
+			}
+			return this.jointActions.length;
+		}
+
+		boolean [] applicable = this.scratch().applicable;
+		boolean all = true;
+		for(int i = 0; i < this.agentNames.length; i++){
+			GroundedSingleAction [] gsas = this.agentActions[i];
+			int offset = this.actionOffsets[i];
+			for(int a = 0; a < gsas.length; a++){
+				applicable[offset+a] = gsas[a].action.isApplicableInState(s, gsas[a].actingAgent, gsas[a].params);
+				all &= applicable[offset+a];
+			}
+		}
+
+		int n = 0;
+		for(int j = 0; j < this.jointActions.length; j++){
+			boolean app = all;
+			if(!all){
+				app = true;
+				for(int i = 0; i < this.agentNames.length && app; i++){
+					app = applicable[this.actionOffsets[i] + this.actionIndex(j, i)];
+				}
+			}
+			if(app){
+				out[n++] = j;
+			}
+		}
+
+		return n;
+	}
+
+
+	/**
+	 * Returns the scratch arrays of the calling thread for this index, creating them the first time the thread asks for them. The arrays are
+	 * reused by every later call on the same thread, so their contents are only valid until the thread's next query that uses them.
+	 * @return the scratch arrays of the calling thread
+	 */
+	public Scratch scratch(){
+		Scratch sc = this.scratch.get();
+		if(sc == null){
+			sc = new Scratch(this.jointActions.length, this.actionOffsets[this.agentNames.length]);
+			this.scratch.set(sc);
+		}
+		return sc;
+	}
+
+
+	/**
+	 * Returns whether this index and the given index have the same agents and actions, and therefore assign the same joint index to every joint action.
+	 * @param o the other index
+	 * @return true if the indices assign the same joint index to every joint action; false otherwise.
+	 */
+	public boolean sameIndexingAs(JointActionIndex o){
+		if(this == o){
+			return true;
+		}
+		if(o == null || this.agentNames.length != o.agentNames.length || this.jointActions.length != o.jointActions.length){
+			return false;
+		}
+		for(int i = 0; i < this.agentNames.length; i++){
+			if(!this.agentNames[i].equals(o.agentNames[i]) || this.agentActions[i].length != o.agentActions[i].length){
+				return false;
+			}
+			for(int a = 0; a < this.agentActions[i].length; a++){
+				if(!this.agentActions[i][a].equals(o.agentActions[i][a])){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+
+
+	/**
+	 * Arrays, sized for a {@link JointActionIndex}, that a thread reuses when it iterates over the joint actions of the index so that
+	 * backups and action selection do not allocate. The arrays of one thread are returned by {@link JointActionIndex#scratch()}.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class Scratch{
+
+		/**
+		 * Joint indices, such as the applicable joint actions of a state; {@link JointActionIndex#size()} long
+		 */
+		public final int []			jointIndices;
+
+		/**
+		 * Positions in {@link #jointIndices}, such as those of the maximizing joint actions; {@link JointActionIndex#size()} long
+		 */
+		public final int []			positions;
+
+		/**
+		 * A row of values indexed by joint index; {@link JointActionIndex#size()} long
+		 */
+		public final double []		row;
+
+		/**
+		 * A second row of values indexed by joint index, for queries that need two rows at once; {@link JointActionIndex#size()} long
+		 */
+		public final double []		otherRow;
+
+		/**
+		 * Values indexed by position in {@link #jointIndices}; {@link JointActionIndex#size()} long
+		 */
+		public final double []		values;
+
+		/**
+		 * The applicability of each action of each agent, used by {@link JointActionIndex#applicableJointActions(State, int[])}
+		 */
+		protected final boolean []	applicable;
+
+
+		/**
+		 * Initializes.
+		 * @param size the number of joint actions of the index
+		 * @param numActions the total number of actions of all agents of the index
+		 */
+		protected Scratch(int size, int numActions){
+			this.jointIndices = new int[size];
+			this.positions = new int[size];
+			this.row = new double[size];
+			this.otherRow = new double[size];
+			this.values = new double[size];
+			this.applicable = new boolean[numActions];
+		}
+
+	}
+
+
+
+	/**
+	 * Returns the {@link JointActionIndex} to use for a state and set of agent definitions. If none of the agents' actions are parameterized,
+	 * a state independent index is created once and returned for every state until the agent definitions change (agent definitions are
+	 * considered unchanged if they map the same agent names to agent types with the same action lists, even if the map itself is a different object).
+	 * Otherwise, a new index grounded in the queried state is returned. A provider may be queried by multiple threads.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static class Provider{
+
+		/**
+		 * The agent definitions of the cached index
+		 */
+		protected Map<String, AgentType>		agentDefinitions;
+
+		/**
+		 * The cached state independent index; null if the agent definitions require state grounded indices
+		 */
+		protected JointActionIndex				index;
+
+
+		/**
+		 * Returns the joint action index to use for the given state and agents.
+		 * @param s the state
+		 * @param agentDefinitions the agent names and their types
+		 * @return the joint action index to use
+		 */
+		public synchronized JointActionIndex get(State s, Map<String, AgentType> agentDefinitions){
+			if(!this.sameDefinitions(agentDefinitions)){
+				Map<String, AgentType> copy = new LinkedHashMap<String, AgentType>(agentDefinitions.size());
+				for(Map.Entry<String, AgentType> e : agentDefinitions.entrySet()){
+					copy.put(e.getKey(), e.getValue());
+				}
+				this.agentDefinitions = copy;
+				this.index = JointActionIndex.hasStateIndependentGroundings(copy) ? new JointActionIndex(copy) : null;
+			}
+			if(this.index != null){
+				return this.index;
+			}
+			return new JointActionIndex(s, agentDefinitions);
+		}
+
+
+		/**
+		 * Returns whether the given agent definitions are the same as those of the cached index.
+		 * @param agentDefinitions the agent definitions
+		 * @return true if they are the same as those of the cached index; false otherwise.
+		 */
+		protected boolean sameDefinitions(Map<String, AgentType> agentDefinitions){
+			if(this.agentDefinitions == null || this.agentDefinitions.size() != agentDefinitions.size()){
+				return false;
+			}
+			for(Map.Entry<String, AgentType> e : agentDefinitions.entrySet()){
+				AgentType at = this.agentDefinitions.get(e.getKey());
+				if(at == null || (at != e.getValue() && at.actions != e.getValue().actions)){
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -215,7 +215,9 @@ public class World {
 			a.gameTerminated();
 		}
 		
-		DPrint.cl(debugId, currentState.getCompleteStateDescription());
+		if(DPrint.mode(debugId)){
+			DPrint.cl(debugId, currentState);
+		}
 		
 		this.isRecordingGame = false;
 		
@@ -247,7 +249,9 @@ public class World {
 			a.gameTerminated();
 		}
 		
-		DPrint.cl(debugId, currentState.getCompleteStateDescription());
+		if(DPrint.mode(debugId)){
+			DPrint.cl(debugId, currentState);
+		}
 		
 		this.isRecordingGame = false;
 		
@@ -320,7 +324,9 @@ public class World {
 		this.lastJointAction = ja;
 		
 		
-		DPrint.cl(debugId, ja.toString());
+		if(DPrint.mode(debugId)){
+			DPrint.cl(debugId, ja);
+		}
 		
 		
 		//now that we have the joint action, perform it
@@ -328,7 +334,9 @@ public class World {
 		State abstractedPrime = this.abstractionForAgents.abstraction(sp);
 		Map<String, Double> jointReward = jointRewardModel.reward(currentState, ja, sp);
 		
-		DPrint.cl(debugId, jointReward.toString());
+		if(DPrint.mode(debugId)){
+			DPrint.cl(debugId, jointReward);
+		}
 		
 		//index reward
 		for(String aname : jointReward.keySet()){
@@ -369,14 +377,18 @@ public class World {
 		
 		this.lastJointAction = (JointAction)jp.getAction(this.currentState);
 		
-		DPrint.cl(debugId, this.lastJointAction.toString());
+		if(DPrint.mode(debugId)){
+			DPrint.cl(debugId, this.lastJointAction);
+		}
 		
 		
 		//now that we have the joint action, perform it
 		State sp = worldModel.performJointAction(currentState, this.lastJointAction);
 		Map<String, Double> jointReward = jointRewardModel.reward(currentState, this.lastJointAction, sp);
 		
-		DPrint.cl(debugId, jointReward.toString());
+		if(DPrint.mode(debugId)){
+			DPrint.cl(debugId, jointReward);
+		}
 		
 		//index reward
 		for(String aname : jointReward.keySet()){
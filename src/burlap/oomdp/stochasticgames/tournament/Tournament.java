@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 
 import burlap.debugtools.DPrint;
+import burlap.debugtools.ParallelMatchEngine;
 import burlap.debugtools.RandomFactory;
 import burlap.oomdp.stochasticgames.Agent;
 import burlap.oomdp.stochasticgames.AgentFactory;
@@ -20,6 +21,10 @@ import burlap.oomdp.stochasticgames.WorldGenerator;
  * running a tournament of many agents in 2-player games like iterated prisoner's dilemma. The Tournament class requires
  * a list of agents, a world generator and a match selector. The MatchSelector determines which agents will be matched up
  * in a game, which {@link burlap.oomdp.stochasticgames.AgentType} role they will play as and how many matches there will be.
+ * <p/>
+ * Tournaments can also be run on multiple threads with {@link #runTournament(int, long)}, which uses a {@link ParallelMatchEngine} to play
+ * the matches concurrently. In that case, each match generates its own world and agents, and the tournament results are reproducible
+ * as described in {@link RandomFactory#beginThreadScope(long)}.
  * @author James MacGlashan
  *
  */
@@ -214,5 +219,91 @@ public class Tournament {
 		}
 		
 	}
+	
+	
+	/**
+	 * Runs the tournament with its matches played concurrently on the given number of threads. The match selector is first queried
+	 * for all matches, which are then played by a {@link ParallelMatchEngine}. Each match generates its own world and agents from
+	 * this tournament's {@link WorldGenerator} and {@link AgentFactory} objects, so these must be safe to call concurrently and
+	 * must not return objects that are shared among matches. Each match is played in its own {@link RandomFactory} thread scope, and
+	 * match rewards are added to the tournament results in match order.
+	 * @param nThreads the number of threads on which to play matches
+	 * @param seed the seed from which the random scope seed of each match is derived
+	 */
+	public void runTournament(int nThreads, long seed){
+		
+		selector.resetMatchSelections();
+		
+		final List<List<MatchEntry>> matches = new ArrayList<List<MatchEntry>>();
+		List<MatchEntry> match = null;
+		while((match = selector.getNextMatch()) != null){
+			matches.add(new ArrayList<MatchEntry>(match));
+		}
+		
+		ParallelMatchEngine engine = new ParallelMatchEngine(nThreads, seed);
+		engine.run(matches.size(), new ParallelMatchEngine.MatchTask<Map<Integer, Double>>() {
+			
+			@Override
+			public Map<Integer, Double> runMatch(int matchIndex) {
+				return Tournament.this.playMatch(matches.get(matchIndex));
+			}
+		}, new ParallelMatchEngine.ResultCommitter<Map<Integer, Double>>() {
+			
+			@Override
+			public void commit(int matchIndex, Map<Integer, Double> result) {
+				StringBuilder buf = new StringBuilder();
+				for(MatchEntry me : matches.get(matchIndex)){
+					buf.append(me.agentId).append(" ");
+				}
+				DPrint.cl(debugId, buf.toString());
+				for(Map.Entry<Integer, Double> e : result.entrySet()){
+					int aId = e.getKey();
+					tournamentCumulatedReward.set(aId, e.getValue() + tournamentCumulatedReward.get(aId));
+				}
+			}
+		});
+		
+	}
+	
+	
+	/**
+	 * Plays a single match in a newly generated world with newly generated agents and returns the cumulative reward
+	 * each participating agent received in the match.
+	 * @param match the entrants of the match
+	 * @return a map from the tournament index of each participating agent to its cumulative reward in the match
+	 */
+	protected Map<Integer, Double> playMatch(List<MatchEntry> match){
+		
+		World w = worldGenerator.generateWorld();
+		
+		//shuffle entrants
+		Collections.shuffle(match, RandomFactory.getMapped(0));
+		
+		Map<String, Integer> agentNameToId = new HashMap<String, Integer>();
+		
+		//have the matched agents join the world
+		for(MatchEntry me : match){
+			Agent a = agents.get(me.agentId).generateAgent();
+			a.joinWorld(w, me.agentType);
+			agentNameToId.put(a.getAgentName(), me.agentId);
+		}
+		
+		//run the game
+		for(int i = 0; i < this.numGames; i++){
+			w.runGame(maxStages);
+		}
+		
+		//collect results; an agent may be entered more than once in a match
+		Map<Integer, Double> matchRewards = new HashMap<Integer, Double>();
+		for(String aname : agentNameToId.keySet()){
+			int aId = agentNameToId.get(aname);
+			Double prev = matchRewards.get(aId);
+			double gameCumR = w.getCumulativeRewardForAgent(aname);
+			matchRewards.put(aId, prev == null ? gameCumR : prev + gameCumR);
+		}
+		
+		return matchRewards;
+		
+	}
 
 }
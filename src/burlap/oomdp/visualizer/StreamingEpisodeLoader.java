@@ -0,0 +1,391 @@
+package burlap.oomdp.visualizer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+import burlap.oomdp.core.State;
+
+
+/**
+ * Loads episode files for visualizers, such as {@link burlap.behavior.singleagent.EpisodeSequenceVisualizer}, that let a user browse a directory of
+ * episodes. An episode is parsed in a background thread when it is requested, and its states are made available while it is parsed, so that the
+ * beginning of a long episode can be viewed before the rest of it has been read. Only one episode is parsed at a time: requesting a different episode
+ * cancels the parsing of the previous one. Fully parsed episodes are kept in a least recently used cache of a bounded number of episodes, so
+ * returning to a recently viewed episode does not parse it again, while browsing many episodes does not keep all of them in memory.
+ * <p/>
+ * The {@link LoadListener} given with a request is informed on the Swing event dispatch thread as states become available and when parsing
+ * finishes, so it may update Swing components directly.
+ * @author James MacGlashan
+ *
+ * @param <E> the type of the object into which an episode file is parsed, such as an {@link burlap.behavior.singleagent.EpisodeAnalysis}.
+ */
+public class StreamingEpisodeLoader<E> {
+
+	/**
+	 * The parser of episode files
+	 */
+	protected EpisodeParser<E>							parser;
+
+	/**
+	 * The maximum number of fully parsed episodes that are cached
+	 */
+	protected int										maxCachedEpisodes;
+
+	/**
+	 * The fully parsed episodes, in least recently used order
+	 */
+	protected LinkedHashMap<String, LoadedEpisode<E>>	cache;
+
+	/**
+	 * The episode being parsed; null if none is
+	 */
+	protected LoadedEpisode<E>							loading = null;
+
+	/**
+	 * The minimum time in milliseconds between two notifications that new states of an episode are available
+	 */
+	protected long										notificationInterval = 100;
+
+
+
+	/**
+	 * Initializes.
+	 * @param parser the parser of episode files
+	 * @param maxCachedEpisodes the maximum number of fully parsed episodes that are cached
+	 */
+	public StreamingEpisodeLoader(EpisodeParser<E> parser, int maxCachedEpisodes){
+		this.parser = parser;
+		this.maxCachedEpisodes = maxCachedEpisodes;
+		this.cache = new LinkedHashMap<String, LoadedEpisode<E>>(16, 0.75f, true){
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, LoadedEpisode<E>> eldest){
+				return this.size() > StreamingEpisodeLoader.this.maxCachedEpisodes;
+			}
+		};
+	}
+
+
+	/**
+	 * Sets the maximum number of fully parsed episodes that are cached, removing the least recently used episodes if more are cached.
+	 * @param maxCachedEpisodes the maximum number of fully parsed episodes that are cached
+	 */
+	public synchronized void setMaxCachedEpisodes(int maxCachedEpisodes){
+		this.maxCachedEpisodes = maxCachedEpisodes;
+		while(this.cache.size() > maxCachedEpisodes){
+			this.cache.remove(this.cache.keySet().iterator().next());
+		}
+	}
+
+
+	/**
+	 * Sets the minimum time between two notifications that new states of an episode are available.
+	 * @param notificationInterval the minimum time in milliseconds between two notifications
+	 */
+	public void setNotificationInterval(long notificationInterval){
+		this.notificationInterval = notificationInterval;
+	}
+
+
+	/**
+	 * Removes all cached episodes.
+	 */
+	public synchronized void clearCache(){
+		this.cache.clear();
+	}
+
+
+	/**
+	 * Returns the episode stored in a file. If the episode is cached, it is returned fully parsed and the listener is not informed. Otherwise it is
+	 * parsed in a background thread, and the returned episode holds the states parsed so far; the listener is then informed as more states become available
+	 * and when parsing finishes. If another episode is being parsed, its parsing is cancelled.
+	 * @param path the path to the episode file
+	 * @param listener the listener informed on the event dispatch thread as the episode is parsed; may be null
+	 * @return the episode, which may not be fully parsed.
+	 */
+	public synchronized LoadedEpisode<E> load(String path, LoadListener<E> listener){
+
+		LoadedEpisode<E> cached = this.cache.get(path);
+		if(cached != null){
+			return cached;
+		}
+
+		if(this.loading != null){
+			if(this.loading.path.equals(path)){
+				this.loading.listener = listener;
+				return this.loading;
+			}
+			this.loading.cancelled = true;
+		}
+
+		final LoadedEpisode<E> episode = new LoadedEpisode<E>(path, listener);
+		this.loading = episode;
+
+		Thread parserThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				StreamingEpisodeLoader.this.parse(episode);
+			}
+		}, "Episode loader");
+		parserThread.setDaemon(true);
+		parserThread.start();
+
+		return episode;
+
+	}
+
+
+	/**
+	 * Parses an episode, notifying its listener as states become available, and caches it if it is fully parsed.
+	 * @param episode the episode to parse
+	 */
+	protected void parse(final LoadedEpisode<E> episode){
+
+		try{
+			E result = this.parser.parse(episode.path, new StepSink() {
+
+				@Override
+				public boolean addStep(State s, String label) {
+					if(episode.cancelled){
+						return false;
+					}
+					episode.add(s, label);
+					long now = System.currentTimeMillis();
+					if(now - episode.lastNotification >= StreamingEpisodeLoader.this.notificationInterval){
+						episode.lastNotification = now;
+						StreamingEpisodeLoader.this.notifyStepsAvailable(episode);
+					}
+					return true;
+				}
+			});
+
+			synchronized(this){
+				if(this.loading == episode){
+					this.loading = null;
+				}
+				if(episode.cancelled){
+					return;
+				}
+				episode.finish(result, null);
+				this.cache.put(episode.path, episode);
+			}
+
+		}catch(RuntimeException e){
+			synchronized(this){
+				if(this.loading == episode){
+					this.loading = null;
+				}
+			}
+			episode.finish(null, e);
+			if(episode.cancelled){
+				return;
+			}
+		}
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				LoadListener<E> listener = episode.listener;
+				if(listener == null){
+					return;
+				}
+				if(episode.getError() != null){
+					listener.loadFailed(episode, episode.getError());
+				}
+				else{
+					listener.loadFinished(episode);
+				}
+			}
+		});
+
+	}
+
+
+	/**
+	 * Informs the listener of an episode on the event dispatch thread that new states are available.
+	 * @param episode the episode
+	 */
+	protected void notifyStepsAvailable(final LoadedEpisode<E> episode){
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				LoadListener<E> listener = episode.listener;
+				if(listener != null && !episode.cancelled){
+					listener.stepsAvailable(episode);
+				}
+			}
+		});
+	}
+
+
+
+	/**
+	 * Parses an episode file, adding each state to a {@link StepSink} as soon as it is parsed.
+	 * @author James MacGlashan
+	 *
+	 * @param <E> the type of the object into which an episode file is parsed
+	 */
+	public static interface EpisodeParser<E>{
+
+		/**
+		 * Parses an episode file. If the sink returns false when a state is added, parsing should stop.
+		 * @param path the path to the episode file
+		 * @param sink the sink to which each parsed state is added
+		 * @return the parsed episode.
+		 */
+		public E parse(String path, StepSink sink);
+
+	}
+
+
+	/**
+	 * Receives the states of an episode as it is parsed.
+	 * @author James MacGlashan
+	 *
+	 */
+	public static interface StepSink{
+
+		/**
+		 * Adds the next state of an episode.
+		 * @param s the state
+		 * @param label the label to show for the state, such as the action taken in it
+		 * @return true if parsing should continue; false if it should stop.
+		 */
+		public boolean addStep(State s, String label);
+
+	}
+
+
+	/**
+	 * Informed on the event dispatch thread as an episode is loaded.
+	 * @author James MacGlashan
+	 *
+	 * @param <E> the type of the object into which an episode file is parsed
+	 */
+	public static interface LoadListener<E>{
+
+		/**
+		 * Called when more states of the episode have been parsed.
+		 * @param episode the episode
+		 */
+		public void stepsAvailable(LoadedEpisode<E> episode);
+
+		/**
+		 * Called when the episode has been fully parsed.
+		 * @param episode the episode
+		 */
+		public void loadFinished(LoadedEpisode<E> episode);
+
+		/**
+		 * Called when parsing the episode failed.
+		 * @param episode the episode, which holds the states parsed before the failure
+		 * @param e the exception that caused the failure
+		 */
+		public void loadFailed(LoadedEpisode<E> episode, RuntimeException e);
+
+	}
+
+
+	/**
+	 * An episode that is being or has been loaded. Its states and their labels can be read from any thread while it is parsed.
+	 * @author James MacGlashan
+	 *
+	 * @param <E> the type of the object into which an episode file is parsed
+	 */
+	public static class LoadedEpisode<E>{
+
+		protected final String				path;
+		protected volatile LoadListener<E>	listener;
+		protected volatile boolean			cancelled = false;
+		protected long						lastNotification = 0;
+
+		protected List<State>				states = new ArrayList<State>();
+		protected List<String>				labels = new ArrayList<String>();
+		protected boolean					complete = false;
+		protected E							result = null;
+		protected RuntimeException			error = null;
+
+
+		protected LoadedEpisode(String path, LoadListener<E> listener){
+			this.path = path;
+			this.listener = listener;
+		}
+
+		/**
+		 * Returns the path to the episode file.
+		 * @return the path to the episode file.
+		 */
+		public String getPath(){
+			return this.path;
+		}
+
+		/**
+		 * Returns the number of states parsed so far.
+		 * @return the number of states parsed so far.
+		 */
+		public synchronized int numStates(){
+			return this.states.size();
+		}
+
+		/**
+		 * Returns a parsed state.
+		 * @param t the time step of the state
+		 * @return the state at time step t.
+		 */
+		public synchronized State getState(int t){
+			return this.states.get(t);
+		}
+
+		/**
+		 * Returns the label of a parsed state.
+		 * @param t the time step of the state
+		 * @return the label of the state at time step t.
+		 */
+		public synchronized String getLabel(int t){
+			return this.labels.get(t);
+		}
+
+		/**
+		 * Returns whether the episode has been fully parsed.
+		 * @return true if the episode has been fully parsed; false otherwise.
+		 */
+		public synchronized boolean isComplete(){
+			return this.complete;
+		}
+
+		/**
+		 * Returns the object into which the episode was parsed.
+		 * @return the object into which the episode was parsed; null if it has not been fully parsed.
+		 */
+		public synchronized E getResult(){
+			return this.result;
+		}
+
+		/**
+		 * Returns the exception that caused parsing to fail.
+		 * @return the exception that caused parsing to fail; null if it did not fail.
+		 */
+		public synchronized RuntimeException getError(){
+			return this.error;
+		}
+
+		protected synchronized void add(State s, String label){
+			this.states.add(s);
+			this.labels.add(label);
+		}
+
+		protected synchronized void finish(E result, RuntimeException error){
+			this.result = result;
+			this.error = error;
+			this.complete = error == null;
+		}
+
+	}
+
+}
@@ -0,0 +1,100 @@
+package burlap.testing;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import burlap.behavior.singleagent.learnbydemo.mlirl.commonrfs.LinearStateDifferentiableRF;
+import burlap.behavior.singleagent.learnbydemo.mlirl.differentiableplanners.DifferentiableVI;
+import burlap.behavior.singleagent.vfa.StateToFeatureVectorGenerator;
+import burlap.behavior.statehashing.DiscreteStateHashFactory;
+import burlap.domain.singleagent.gridworld.GridWorldDomain;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.ObjectInstance;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.singleagent.GroundedAction;
+import burlap.oomdp.singleagent.common.SinglePFTF;
+
+public class TestDifferentiableVI {
+	public static final double gamma = 0.9;
+	public static final double beta = 2.;
+	public static final double [] parameters = new double[]{0.3, -0.2, 1.};
+	Domain domain;
+	TerminalFunction tf;
+	State initialState;
+
+	@Before
+	public void setup() {
+		GridWorldDomain gw = new GridWorldDomain(4, 4);
+		gw.setProbSucceedTransitionDynamics(0.8);
+		this.domain = gw.generateDomain();
+		this.tf = new SinglePFTF(this.domain.getPropFunction(GridWorldDomain.PFATLOCATION));
+		this.initialState = GridWorldDomain.getOneAgentOneLocationState(this.domain);
+		GridWorldDomain.setAgent(this.initialState, 0, 0);
+		GridWorldDomain.setLocation(this.initialState, 0, 3, 3);
+	}
+
+	@Test
+	public void testGradientsMatchFiniteDifferences() {
+		for(int nThreads = 1; nThreads <= 3; nThreads += 2){
+			DifferentiableVI planner = this.plan(parameters, nThreads, true);
+			double [] vGradient = planner.getValueGradient(this.initialState);
+			GroundedAction east = new GroundedAction(this.domain.getAction(GridWorldDomain.ACTIONEAST), new String[]{});
+			double [] qGradient = planner.getQGradient(this.initialState, east).gradient;
+
+			double eps = 1e-5;
+			for(int j = 0; j < parameters.length; j++){
+				double [] plus = parameters.clone();
+				double [] minus = parameters.clone();
+				plus[j] += eps;
+				minus[j] -= eps;
+				DifferentiableVI pp = this.plan(plus, nThreads, true);
+				DifferentiableVI pm = this.plan(minus, nThreads, true);
+				double vDiff = (pp.value(this.initialState) - pm.value(this.initialState)) / (2*eps);
+				double qDiff = (pp.getQ(this.initialState, east).q - pm.getQ(this.initialState, east).q) / (2*eps);
+				Assert.assertEquals(vDiff, vGradient[j], 1e-4);
+				Assert.assertEquals(qDiff, qGradient[j], 1e-4);
+			}
+		}
+	}
+
+	@Test
+	public void testUncachedDynamicsMatchCompiled() {
+		DifferentiableVI compiled = this.plan(parameters, 1, true);
+		DifferentiableVI interpreted = this.plan(parameters, 3, false);
+		Assert.assertEquals(compiled.value(this.initialState), interpreted.value(this.initialState), 1e-6);
+		Assert.assertArrayEquals(compiled.getValueGradient(this.initialState), interpreted.getValueGradient(this.initialState), 1e-6);
+	}
+
+	protected DifferentiableVI plan(double [] params, int nThreads, boolean cacheTransitions) {
+		LinearStateDifferentiableRF rf = new LinearStateDifferentiableRF(new AgentFeatures(), parameters.length);
+		rf.setParameters(params.clone());
+		DifferentiableVI planner = new DifferentiableVI(this.domain, rf, this.tf, gamma, beta, new DiscreteStateHashFactory(), 1e-10, 5000);
+		planner.setNumThreads(nThreads);
+		planner.toggleUseCachedTransitionDynamics(cacheTransitions);
+		planner.toggleDebugPrinting(false);
+		planner.planFromState(this.initialState);
+		return planner;
+	}
+
+	/**
+	 * The normalized position of the agent and whether it is in the goal corner.
+	 */
+	protected static class AgentFeatures implements StateToFeatureVectorGenerator {
+
+		@Override
+		public double[] generateFeatureVectorFrom(State s) {
+			ObjectInstance agent = s.getFirstObjectOfClass(GridWorldDomain.CLASSAGENT);
+			int x = agent.getDiscValForAttribute(GridWorldDomain.ATTX);
+			int y = agent.getDiscValForAttribute(GridWorldDomain.ATTY);
+			return new double[]{x / 3., y / 3., x == 3 && y == 3 ? 1. : 0.};
+		}
+	}
+
+	@After
+	public void teardown() {
+
+	}
+}
@@ -0,0 +1,116 @@
+package burlap.testing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import burlap.domain.stochasticgames.gridgame.GridGame;
+import burlap.domain.stochasticgames.gridgame.GridGameStandardMechanics;
+import burlap.oomdp.core.ObjectInstance;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TransitionProbability;
+import burlap.oomdp.stochasticgames.AgentType;
+import burlap.oomdp.stochasticgames.JointAction;
+import burlap.oomdp.stochasticgames.SGDomain;
+
+public class TestGridGameMechanics {
+	public static final double delta = 1e-12;
+	SGDomain domain;
+	AgentType agentType;
+
+	@Before
+	public void setup() {
+		GridGame gg = new GridGame();
+		this.domain = (SGDomain)gg.generateDomain();
+		this.agentType = new AgentType(GridGame.CLASSAGENT, this.domain.getObjectClass(GridGame.CLASSAGENT), this.domain.getSingleActions());
+	}
+
+	@Test
+	public void testTransitionsMatchEnumeration() {
+		Random rand = new Random(11);
+		GridGameStandardMechanics [] allMechanics = new GridGameStandardMechanics[]{
+				new GridGameStandardMechanics(this.domain), new GridGameStandardMechanics(this.domain, 0.3)};
+		for(GridGameStandardMechanics mechanics : allMechanics){
+			for(int nAgents = 2; nAgents <= 4; nAgents++){
+				for(int i = 0; i < 5; i++){
+					State s = this.randomState(nAgents, rand);
+					for(JointAction ja : JointAction.getAllJointActions(s, this.agentDefinitions(s))){
+						this.assertMatchesEnumeration(mechanics, s, ja);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testStandardGamesMatchEnumeration() {
+		GridGameStandardMechanics mechanics = new GridGameStandardMechanics(this.domain);
+		State [] states = new State[]{GridGame.getCorrdinationGameInitialState(this.domain), GridGame.getPrisonersDilemmaInitialState(this.domain),
+				GridGame.getFriendFoeInitialState(this.domain), GridGame.getIncredibleInitialState(this.domain), GridGame.getTurkeyInitialState(this.domain)};
+		for(State s : states){
+			for(JointAction ja : JointAction.getAllJointActions(s, this.agentDefinitions(s))){
+				this.assertMatchesEnumeration(mechanics, s, ja);
+			}
+		}
+	}
+
+	protected void assertMatchesEnumeration(GridGameStandardMechanics mechanics, State s, JointAction ja) {
+		Map<String, Double> fast = this.locationDistribution(mechanics.transitionProbsFor(s, ja));
+		Map<String, Double> enumerated = this.locationDistribution(mechanics.transitionProbsByEnumeration(s, ja));
+		Assert.assertEquals(enumerated.keySet(), fast.keySet());
+		for(Map.Entry<String, Double> e : enumerated.entrySet()){
+			Assert.assertEquals(e.getValue(), fast.get(e.getKey()), delta);
+		}
+	}
+
+	protected State randomState(int nAgents, Random rand) {
+		//5x5 grid with a solid and a semi-wall; agents are crowded into the lower left 3x3 corner so that their movements collide
+		State s = GridGame.getCleanState(this.domain, nAgents, 0, 3, 3, 5, 5);
+		GridGame.setVerticalWall(s, 2, 2, 1, 2, 0);
+		GridGame.setHorizontalWall(s, 2, 2, 0, 2, 1);
+
+		boolean [] occupied = new boolean[9];
+		for(int i = 0; i < nAgents; i++){
+			int cell = rand.nextInt(9);
+			while(occupied[cell]){
+				cell = rand.nextInt(9);
+			}
+			occupied[cell] = true;
+			GridGame.setAgent(s, i, cell % 3, cell / 3, i);
+		}
+		return s;
+	}
+
+	protected Map<String, AgentType> agentDefinitions(State s) {
+		Map<String, AgentType> agentDefinitions = new HashMap<String, AgentType>();
+		for(ObjectInstance agent : s.getObjectsOfTrueClass(GridGame.CLASSAGENT)){
+			agentDefinitions.put(agent.getName(), this.agentType);
+		}
+		return agentDefinitions;
+	}
+
+	protected Map<String, Double> locationDistribution(List<TransitionProbability> tps) {
+		Map<String, Double> dist = new HashMap<String, Double>();
+		for(TransitionProbability tp : tps){
+			StringBuilder key = new StringBuilder();
+			for(ObjectInstance agent : tp.s.getObjectsOfTrueClass(GridGame.CLASSAGENT)){
+				key.append(agent.getName()).append(':').append(agent.getDiscValForAttribute(GridGame.ATTX)).append(',')
+					.append(agent.getDiscValForAttribute(GridGame.ATTY)).append(';');
+			}
+			Double p = dist.get(key.toString());
+			dist.put(key.toString(), (p == null ? 0. : p) + tp.p);
+		}
+		return dist;
+	}
+
+	@After
+	public void teardown() {
+
+	}
+}
@@ -0,0 +1,140 @@
+package burlap.testing;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import burlap.debugtools.MetricsRegistry;
+
+public class TestMetricsRegistry {
+
+	@Before
+	public void setup() {
+		MetricsRegistry.reset();
+		MetricsRegistry.setEnabled(true);
+	}
+
+	@Test
+	public void testCounterSumsAcrossThreads() throws InterruptedException {
+		final MetricsRegistry.Counter counter = MetricsRegistry.counter("test.threadedCounter");
+		Thread [] threads = new Thread[8];
+		for(int t = 0; t < threads.length; t++){
+			threads[t] = new Thread(){
+				@Override
+				public void run() {
+					for(int i = 0; i < 10000; i++){
+						counter.increment();
+					}
+					counter.add(5);
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread t : threads){
+			t.join();
+		}
+		Assert.assertEquals(8 * 10005, counter.get());
+		Assert.assertSame(counter, MetricsRegistry.counter("test.threadedCounter"));
+	}
+
+	@Test
+	public void testTimerHistogramBuckets() {
+		MetricsRegistry.Timer timer = MetricsRegistry.timer("test.histogramTimer");
+		for(int i = 0; i < 90; i++){
+			timer.record(1000);
+		}
+		for(int i = 0; i < 10; i++){
+			timer.record(1000000);
+		}
+		MetricsRegistry.MetricSnapshot s = timer.snapshot();
+		Assert.assertEquals(100, s.count);
+		Assert.assertEquals(90 * 1000L + 10 * 1000000L, s.totalNanos);
+		Assert.assertEquals(1000000, s.maxNanos);
+		//1000ns is in the bucket [512, 1023]; 1000000ns is in the bucket [524288, 1048575], capped at the maximum
+		Assert.assertEquals(1023, s.p50Nanos);
+		Assert.assertEquals(1023, s.p90Nanos);
+		Assert.assertEquals(1000000, s.p99Nanos);
+
+		timer.reset();
+		timer.record(0);
+		timer.record(1);
+		s = timer.snapshot();
+		Assert.assertEquals(2, s.count);
+		Assert.assertEquals(1, s.p99Nanos);
+	}
+
+	@Test
+	public void testDisabledIsNoOp() {
+		MetricsRegistry.Counter counter = MetricsRegistry.counter("test.disabledCounter");
+		MetricsRegistry.Gauge gauge = MetricsRegistry.gauge("test.disabledGauge");
+		MetricsRegistry.Timer timer = MetricsRegistry.timer("test.disabledTimer");
+		counter.increment();
+		gauge.set(7);
+
+		MetricsRegistry.setEnabled(false);
+		counter.increment();
+		counter.add(10);
+		gauge.set(3);
+		long start = timer.start();
+		Assert.assertEquals(0L, start);
+		timer.stop(start);
+		timer.record(1000);
+
+		Assert.assertEquals(1, counter.get());
+		Assert.assertEquals(7, gauge.get());
+		Assert.assertEquals(0, timer.getCount());
+		Assert.assertEquals(0, timer.getTotalNanos());
+	}
+
+	@Test
+	public void testExportFormats() throws IOException {
+		MetricsRegistry.counter("test.export.counter").add(3);
+		MetricsRegistry.gauge("test.export,gauge").set(4);
+		MetricsRegistry.timer("test.export.timer").record(2000000);
+
+		StringWriter json = new StringWriter();
+		MetricsRegistry.writeJSON(json);
+		String j = json.toString();
+		Assert.assertTrue(j.matches("\\{\"timestamp\":\\d+,\"metrics\":\\{.*\\}\\}\n"));
+		Assert.assertEquals(1, j.split("\n").length);
+		Assert.assertTrue(j.contains("\"test.export.counter\":{\"type\":\"counter\",\"value\":3}"));
+		Assert.assertTrue(j.contains("\"test.export,gauge\":{\"type\":\"gauge\",\"value\":4}"));
+		Assert.assertTrue(j.contains("\"test.export.timer\":{\"type\":\"timer\",\"count\":1,\"totalMillis\":2.0,\"meanMicros\":2000.0,"
+				+ "\"p50Micros\":2000.0,\"p90Micros\":2000.0,\"p99Micros\":2000.0,\"maxMicros\":2000.0}"));
+
+		StringWriter csv = new StringWriter();
+		MetricsRegistry.writeCSV(csv, true);
+		String [] rows = csv.toString().split("\n");
+		Assert.assertEquals("timestamp,name,type,value,count,totalMillis,meanMicros,p50Micros,p90Micros,p99Micros,maxMicros", rows[0]);
+		Assert.assertEquals(MetricsRegistry.snapshot().size() + 1, rows.length);
+		Assert.assertTrue(this.hasRow(rows, "\\d+,test\\.export\\.counter,counter,3,,,,,,,"));
+		Assert.assertTrue(this.hasRow(rows, "\\d+,\"test\\.export,gauge\",gauge,4,,,,,,,"));
+		Assert.assertTrue(this.hasRow(rows, "\\d+,test\\.export\\.timer,timer,,1,2\\.0,2000\\.0,2000\\.0,2000\\.0,2000\\.0,2000\\.0"));
+		for(String row : rows){
+			Assert.assertEquals(10, row.replaceAll("\"[^\"]*\"", "").replaceAll("[^,]", "").length());
+		}
+
+		csv = new StringWriter();
+		MetricsRegistry.writeCSV(csv, false);
+		Assert.assertFalse(csv.toString().startsWith("timestamp"));
+	}
+
+	protected boolean hasRow(String [] rows, String regex) {
+		for(String row : rows){
+			if(row.matches(regex)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@After
+	public void teardown() {
+		MetricsRegistry.setEnabled(false);
+		MetricsRegistry.reset();
+	}
+}
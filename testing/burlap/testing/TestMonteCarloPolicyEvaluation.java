@@ -0,0 +1,169 @@
+package burlap.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import burlap.behavior.singleagent.EpisodeAnalysis;
+import burlap.behavior.singleagent.MonteCarloPolicyEvaluation;
+import burlap.behavior.singleagent.Policy;
+import burlap.debugtools.RandomFactory;
+import burlap.domain.singleagent.gridworld.GridWorldDomain;
+import burlap.oomdp.core.AbstractGroundedAction;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.State;
+import burlap.oomdp.core.TerminalFunction;
+import burlap.oomdp.singleagent.Action;
+import burlap.oomdp.singleagent.GroundedAction;
+import burlap.oomdp.singleagent.RewardFunction;
+import burlap.oomdp.singleagent.common.SinglePFTF;
+import burlap.oomdp.singleagent.common.UniformCostRF;
+
+public class TestMonteCarloPolicyEvaluation {
+	public static final double delta = 0.000001;
+	Domain domain;
+	RewardFunction rf;
+	TerminalFunction tf;
+	State initialState;
+
+	@Before
+	public void setup() {
+		GridWorldDomain gw = new GridWorldDomain(5, 5);
+		gw.setProbSucceedTransitionDynamics(1.0);
+		this.domain = gw.generateDomain();
+		this.rf = new UniformCostRF();
+		this.tf = new SinglePFTF(this.domain.getPropFunction(GridWorldDomain.PFATLOCATION));
+		this.initialState = GridWorldDomain.getOneAgentOneLocationState(this.domain);
+		GridWorldDomain.setAgent(this.initialState, 0, 0);
+		GridWorldDomain.setLocation(this.initialState, 0, 4, 4);
+	}
+
+	@Test
+	public void testResultsIndependentOfThreads() {
+		List<double[]> sequential = this.rolloutSequence(1, 0., 40);
+		List<double[]> parallel = this.rolloutSequence(4, 0., 40);
+		Assert.assertEquals(40, sequential.size());
+		Assert.assertEquals(sequential.size(), parallel.size());
+		for(int i = 0; i < sequential.size(); i++){
+			Assert.assertArrayEquals(sequential.get(i), parallel.get(i), 0.);
+		}
+	}
+
+	@Test
+	public void testEarlyStopping() {
+		for(int nThreads = 1; nThreads <= 4; nThreads += 3){
+			MonteCarloPolicyEvaluation mc = new MonteCarloPolicyEvaluation(this.rf, this.tf, 0.99, 100, nThreads, 7);
+			mc.setTargetCIWidth(1000.);
+			mc.setMinRollouts(10);
+			MonteCarloPolicyEvaluation.Result result = mc.evaluate(new RandomWalk(this.domain.getActions()), this.initialState, 200);
+			Assert.assertTrue(result.stoppedEarly());
+			Assert.assertEquals(10, result.numRollouts());
+		}
+
+		MonteCarloPolicyEvaluation mc = new MonteCarloPolicyEvaluation(this.rf, this.tf, 0.99, 100, 4, 7);
+		MonteCarloPolicyEvaluation.Result result = mc.evaluate(new RandomWalk(this.domain.getActions()), this.initialState, 50);
+		Assert.assertFalse(result.stoppedEarly());
+		Assert.assertEquals(50, result.numRollouts());
+	}
+
+	@Test
+	public void testStepLimitMatchesEvaluateBehavior() {
+		Policy north = new FixedAction(new GroundedAction(this.domain.getAction(GridWorldDomain.ACTIONNORTH), new String[]{}));
+		for(int maxSteps = 1; maxSteps <= 4; maxSteps++){
+			EpisodeAnalysis ea = north.evaluateBehavior(this.initialState, this.rf, this.tf, maxSteps);
+			MonteCarloPolicyEvaluation mc = new MonteCarloPolicyEvaluation(this.rf, this.tf, 0.99, maxSteps, 1, 0);
+			MonteCarloPolicyEvaluation.Result result = mc.evaluate(north, this.initialState, 1);
+			Assert.assertEquals(ea.maxTimeStep(), result.lengths.mean(), delta);
+			Assert.assertEquals(ea.getDiscountedReturn(0.99), result.returns.mean(), delta);
+
+			mc.setKeepEpisodes(true);
+			result = mc.evaluate(north, this.initialState, 1);
+			Assert.assertEquals(ea.maxTimeStep(), result.lengths.mean(), delta);
+		}
+	}
+
+	protected List<double[]> rolloutSequence(int nThreads, double targetCIWidth, int numRollouts) {
+		final List<double[]> sequence = new ArrayList<double[]>();
+		MonteCarloPolicyEvaluation mc = new MonteCarloPolicyEvaluation(this.rf, this.tf, 0.99, 100, nThreads, 3);
+		mc.setTargetCIWidth(targetCIWidth);
+		mc.setRolloutListener(new MonteCarloPolicyEvaluation.RolloutListener() {
+			@Override
+			public void rolloutFinished(int rolloutIndex, double discountedReturn, int numSteps, MonteCarloPolicyEvaluation.Result statistics) {
+				sequence.add(new double[]{rolloutIndex, discountedReturn, numSteps, statistics.returns.mean()});
+			}
+		});
+		mc.evaluate(new RandomWalk(this.domain.getActions()), this.initialState, numRollouts);
+		return sequence;
+	}
+
+	/**
+	 * Selects actions uniformly at random with the generator of the calling thread's random scope.
+	 */
+	protected static class RandomWalk extends Policy {
+
+		protected List<Action> actions;
+
+		public RandomWalk(List<Action> actions) {
+			this.actions = actions;
+		}
+
+		@Override
+		public AbstractGroundedAction getAction(State s) {
+			List<GroundedAction> gas = Action.getAllApplicableGroundedActionsFromActionList(this.actions, s);
+			return gas.get(RandomFactory.getMapped(0).nextInt(gas.size()));
+		}
+
+		@Override
+		public List<ActionProb> getActionDistributionForState(State s) {
+			return this.getDeterministicPolicy(s);
+		}
+
+		@Override
+		public boolean isStochastic() {
+			return true;
+		}
+
+		@Override
+		public boolean isDefinedFor(State s) {
+			return true;
+		}
+	}
+
+	protected static class FixedAction extends Policy {
+
+		protected GroundedAction ga;
+
+		public FixedAction(GroundedAction ga) {
+			this.ga = ga;
+		}
+
+		@Override
+		public AbstractGroundedAction getAction(State s) {
+			return this.ga;
+		}
+
+		@Override
+		public List<ActionProb> getActionDistributionForState(State s) {
+			return this.getDeterministicPolicy(s);
+		}
+
+		@Override
+		public boolean isStochastic() {
+			return false;
+		}
+
+		@Override
+		public boolean isDefinedFor(State s) {
+			return true;
+		}
+	}
+
+	@After
+	public void teardown() {
+
+	}
+}
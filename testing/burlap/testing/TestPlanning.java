@@ -1,5 +1,8 @@
 package burlap.testing;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -7,14 +10,19 @@ import org.junit.Test;
 
 import burlap.behavior.singleagent.EpisodeAnalysis;
 import burlap.behavior.singleagent.Policy;
+import burlap.behavior.singleagent.ValueFunctionInitialization;
 import burlap.behavior.singleagent.planning.StateConditionTest;
 import burlap.behavior.singleagent.planning.deterministic.DeterministicPlanner;
 import burlap.behavior.singleagent.planning.deterministic.SDPlannerPolicy;
 import burlap.behavior.singleagent.planning.deterministic.TFGoalCondition;
 import burlap.behavior.singleagent.planning.deterministic.informed.Heuristic;
 import burlap.behavior.singleagent.planning.deterministic.informed.astar.AStar;
+import burlap.behavior.singleagent.planning.deterministic.informed.astar.BidirectionalAStar;
 import burlap.behavior.singleagent.planning.deterministic.uninformed.bfs.BFS;
+import burlap.behavior.singleagent.planning.deterministic.uninformed.bfs.BidirectionalBFS;
 import burlap.behavior.singleagent.planning.deterministic.uninformed.dfs.DFS;
+import burlap.behavior.singleagent.planning.stochastic.rtdp.LabeledRTDP;
+import burlap.behavior.singleagent.planning.stochastic.rtdp.StateBoundTable;
 import burlap.behavior.statehashing.DiscreteStateHashFactory;
 import burlap.domain.singleagent.gridworld.GridWorldDomain;
 import burlap.domain.singleagent.gridworld.GridWorldStateParser;
@@ -117,6 +125,80 @@ public class TestPlanning {
 		this.evaluateEpisode(analysis, true);
 	}
 	
+	@Test
+	public void testBidirectionalBFS() {
+		State initialState = GridWorldDomain.getOneAgentOneLocationState(domain);
+		GridWorldDomain.setAgent(initialState, 0, 0);
+		GridWorldDomain.setLocation(initialState, 0, 10, 10);
+		
+		DeterministicPlanner planner = new BidirectionalBFS(this.domain, this.goalStates(initialState), this.hashingFactory);
+		planner.planFromState(initialState);
+		Policy p = new SDPlannerPolicy(planner);
+		EpisodeAnalysis analysis = p.evaluateBehavior(initialState, this.rf, this.tf);
+		this.evaluateEpisode(analysis, true);
+	}
+	
+	@Test
+	public void testBidirectionalAStar() {
+		State initialState = GridWorldDomain.getOneAgentOneLocationState(domain);
+		GridWorldDomain.setAgent(initialState, 0, 0);
+		GridWorldDomain.setLocation(initialState, 0, 10, 10);
+		
+		Heuristic mdistHeuristic = new Heuristic() {
+			
+			@Override
+			public double h(State s) {
+				ObjectInstance agent = s.getObjectsOfTrueClass(GridWorldDomain.CLASSAGENT).get(0);
+				int ax = agent.getDiscValForAttribute(GridWorldDomain.ATTX);
+				int ay = agent.getDiscValForAttribute(GridWorldDomain.ATTY);
+				return -(Math.abs(ax-10) + Math.abs(ay-10));
+			}
+		};
+		
+		DeterministicPlanner planner = new BidirectionalAStar(this.domain, this.rf, this.goalStates(initialState), 
+				this.hashingFactory, mdistHeuristic);
+		planner.planFromState(initialState);
+		Policy p = new SDPlannerPolicy(planner);
+		EpisodeAnalysis analysis = p.evaluateBehavior(initialState, this.rf, this.tf);
+		this.evaluateEpisode(analysis, true);
+	}
+	
+	@Test
+	public void testLabeledRTDPSolvedBounds() {
+		GridWorldDomain sgw = new GridWorldDomain(11, 11);
+		sgw.setMapToFourRooms();
+		sgw.setProbSucceedTransitionDynamics(0.8);
+		Domain sdomain = sgw.generateDomain();
+		TerminalFunction stf = new SinglePFTF(sdomain.getPropFunction(GridWorldDomain.PFATLOCATION));
+		
+		State initialState = GridWorldDomain.getOneAgentOneLocationState(sdomain);
+		GridWorldDomain.setAgent(initialState, 0, 0);
+		GridWorldDomain.setLocation(initialState, 0, 10, 10);
+		
+		double maxDiff = 0.01;
+		LabeledRTDP planner = new LabeledRTDP(sdomain, this.rf, stf, 0.99, this.hashingFactory,
+				new ValueFunctionInitialization.ConstantValueFunctionInitialization(-100.),
+				new ValueFunctionInitialization.ConstantValueFunctionInitialization(0.), maxDiff, -1);
+		planner.planFromState(initialState);
+		
+		Assert.assertTrue(planner.isSolved(initialState));
+		StateBoundTable table = planner.getBoundTable();
+		Assert.assertTrue(table.numSolved() > 0);
+		for(int id = 0; id < table.size(); id++){
+			if(table.isSolved(id)){
+				Assert.assertTrue(table.gap(id) <= maxDiff);
+			}
+		}
+	}
+	
+	public List<State> goalStates(State initialState) {
+		State goal = initialState.copy();
+		GridWorldDomain.setAgent(goal, 10, 10);
+		List<State> goals = new ArrayList<State>();
+		goals.add(goal);
+		return goals;
+	}
+	
 	public void evaluateEpisode(EpisodeAnalysis analysis) {
 		this.evaluateEpisode(analysis, false);
 	}
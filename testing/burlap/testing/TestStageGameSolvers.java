@@ -0,0 +1,124 @@
+package burlap.testing;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import burlap.behavior.stochasticgame.solvers.CorrelatedEquilibriumSolver;
+import burlap.behavior.stochasticgame.solvers.CorrelatedEquilibriumSolver.CorrelatedEquilibriumObjective;
+import burlap.behavior.stochasticgame.solvers.DenseSimplexSolver;
+import burlap.behavior.stochasticgame.solvers.GeneralBimatrixSolverTools;
+import burlap.behavior.stochasticgame.solvers.LPSolverBackend;
+import burlap.behavior.stochasticgame.solvers.MinMaxSolver;
+
+public class TestStageGameSolvers {
+	public static final double delta = 0.000001;
+	LPSolverBackend oldMinMaxBackend;
+	LPSolverBackend oldCEBackend;
+
+	@Before
+	public void setup() {
+		this.oldMinMaxBackend = MinMaxSolver.getBackend();
+		this.oldCEBackend = CorrelatedEquilibriumSolver.getBackend();
+	}
+
+	@Test
+	public void testDenseSimplexLP() {
+		DenseSimplexSolver solver = new DenseSimplexSolver();
+
+		//max 3x + 5y s.t. x <= 4, 2y <= 12, 3x + 2y <= 18
+		double [] x = solver.maximize(new double[]{3., 5.}, new double[][]{{1., 0.}, {0., 2.}, {3., 2.}},
+				new int[]{DenseSimplexSolver.LE, DenseSimplexSolver.LE, DenseSimplexSolver.LE}, new double[]{4., 12., 18.});
+		Assert.assertEquals(2., x[0], delta);
+		Assert.assertEquals(6., x[1], delta);
+		Assert.assertEquals(36., solver.getObjectiveValue(), delta);
+
+		//max -x - y s.t. x + y >= 2, x - y = 1, with y free
+		x = solver.maximize(new double[]{-1., -1.}, new double[][]{{1., 1.}, {1., -1.}},
+				new int[]{DenseSimplexSolver.GE, DenseSimplexSolver.EQ}, new double[]{2., 1.}, new boolean[]{false, true});
+		Assert.assertEquals(1.5, x[0], delta);
+		Assert.assertEquals(0.5, x[1], delta);
+		Assert.assertEquals(-2., solver.getObjectiveValue(), delta);
+	}
+
+	@Test
+	public void testMinMaxBackendsAgree() {
+		for(double [][] payoff : this.zeroSumGames()){
+			double [] values = new double[2];
+			for(int i = 0; i < 2; i++){
+				MinMaxSolver.setBackend(i == 0 ? LPSolverBackend.SCPSOLVER : LPSolverBackend.DENSESIMPLEX);
+				double [][] strategies = MinMaxSolver.getRowAndColPlayersStrategies(payoff, null);
+				this.assertDistribution(strategies[0]);
+				this.assertDistribution(strategies[1]);
+				values[i] = GeneralBimatrixSolverTools.expectedPayoffs(payoff, payoff, strategies[0], strategies[1])[0];
+			}
+			Assert.assertEquals(values[0], values[1], delta);
+		}
+	}
+
+	@Test
+	public void testCorrelatedEquilibriumBackendsAgree() {
+		Random rand = new Random(7);
+		for(int g = 0; g < 12; g++){
+			int n = 2 + g % 4;
+			double [][] payoffRow = this.randomMatrix(rand, n);
+			double [][] payoffCol = this.randomMatrix(rand, n);
+			double [] values = new double[2];
+			for(int i = 0; i < 2; i++){
+				CorrelatedEquilibriumSolver.setBackend(i == 0 ? LPSolverBackend.SCPSOLVER : LPSolverBackend.DENSESIMPLEX);
+				double [][] jointStrategy = CorrelatedEquilibriumSolver.getCorrelatedEQJointStrategy(CorrelatedEquilibriumObjective.UTILITARIAN, payoffRow, payoffCol);
+				double sum = 0.;
+				for(double [] row : jointStrategy){
+					for(double p : row){
+						Assert.assertTrue(p > -delta);
+						sum += p;
+					}
+				}
+				Assert.assertEquals(1., sum, delta);
+				double [] payoffs = GeneralBimatrixSolverTools.expectedPayoffs(payoffRow, payoffCol, jointStrategy);
+				values[i] = payoffs[0] + payoffs[1];
+			}
+			Assert.assertEquals(values[0], values[1], delta);
+		}
+	}
+
+	protected double [][][] zeroSumGames() {
+		Random rand = new Random(3);
+		double [][][] games = new double[11][][];
+		games[0] = new double[][]{{1., -1.}, {-1., 1.}};
+		games[1] = new double[][]{{0., -1., 1.}, {1., 0., -1.}, {-1., 1., 0.}};
+		games[2] = new double[][]{{3., 1.}, {2., 0.}};
+		for(int g = 3; g < games.length; g++){
+			games[g] = this.randomMatrix(rand, 2 + g % 4);
+		}
+		return games;
+	}
+
+	protected double [][] randomMatrix(Random rand, int n) {
+		double [][] m = new double[n][n];
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				m[i][j] = rand.nextDouble()*20. - 10.;
+			}
+		}
+		return m;
+	}
+
+	protected void assertDistribution(double [] p) {
+		double sum = 0.;
+		for(double v : p){
+			Assert.assertTrue(v > -delta);
+			sum += v;
+		}
+		Assert.assertEquals(1., sum, delta);
+	}
+
+	@After
+	public void teardown() {
+		MinMaxSolver.setBackend(this.oldMinMaxBackend);
+		CorrelatedEquilibriumSolver.setBackend(this.oldCEBackend);
+	}
+}
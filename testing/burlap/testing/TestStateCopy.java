@@ -0,0 +1,231 @@
+package burlap.testing;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import burlap.oomdp.core.Attribute;
+import burlap.oomdp.core.AttributeHandle;
+import burlap.oomdp.core.Domain;
+import burlap.oomdp.core.ObjectClass;
+import burlap.oomdp.core.ObjectInstance;
+import burlap.oomdp.core.State;
+import burlap.oomdp.singleagent.SADomain;
+
+public class TestStateCopy {
+	public static final double delta = 0.000001;
+	Domain domain;
+	ObjectClass thingClass;
+
+	@Before
+	public void setup() {
+		this.domain = new SADomain();
+
+		Attribute disc = new Attribute(this.domain, "disc", Attribute.AttributeType.DISC);
+		disc.setDiscValues(new String[]{"a", "b", "c"});
+		Attribute intAtt = new Attribute(this.domain, "int", Attribute.AttributeType.INT);
+		Attribute real = new Attribute(this.domain, "real", Attribute.AttributeType.REAL);
+		real.setLims(0., 10.);
+		Attribute bool = new Attribute(this.domain, "bool", Attribute.AttributeType.BOOLEAN);
+		Attribute string = new Attribute(this.domain, "string", Attribute.AttributeType.STRING);
+		Attribute intArray = new Attribute(this.domain, "intArray", Attribute.AttributeType.INTARRAY);
+		Attribute doubleArray = new Attribute(this.domain, "doubleArray", Attribute.AttributeType.DOUBLEARRAY);
+		Attribute rel = new Attribute(this.domain, "rel", Attribute.AttributeType.RELATIONAL);
+		Attribute multiRel = new Attribute(this.domain, "multiRel", Attribute.AttributeType.MULTITARGETRELATIONAL);
+
+		this.thingClass = new ObjectClass(this.domain, "thing");
+		this.thingClass.addAttribute(disc);
+		this.thingClass.addAttribute(intAtt);
+		this.thingClass.addAttribute(real);
+		this.thingClass.addAttribute(bool);
+		this.thingClass.addAttribute(string);
+		this.thingClass.addAttribute(intArray);
+		this.thingClass.addAttribute(doubleArray);
+		this.thingClass.addAttribute(rel);
+		this.thingClass.addAttribute(multiRel);
+	}
+
+	@Test
+	public void testSettersOnCopyLeaveSourceUnchanged() {
+		State source = this.initialState();
+		String sourceDescription = source.getCompleteStateDescription();
+
+		State copy = source.copy();
+		this.mutate(copy.getObject("thing0"));
+		Assert.assertEquals(sourceDescription, source.getCompleteStateDescription());
+		this.assertInitialValues(source.getObject("thing0"));
+		this.assertMutatedValues(copy.getObject("thing0"));
+	}
+
+	@Test
+	public void testSettersOnSourceLeaveCopyUnchanged() {
+		State source = this.initialState();
+		State copy = source.copy();
+		State copyOfCopy = copy.copy();
+		String copyDescription = copy.getCompleteStateDescription();
+
+		this.mutate(source.getObject("thing0"));
+		Assert.assertEquals(copyDescription, copy.getCompleteStateDescription());
+		Assert.assertEquals(copyDescription, copyOfCopy.getCompleteStateDescription());
+		this.assertInitialValues(copy.getObject("thing0"));
+		this.assertInitialValues(copyOfCopy.getObject("thing0"));
+	}
+
+	@Test
+	public void testEachSetterOnCopyLeavesSourceUnchanged() {
+		AttributeHandle intHandle = this.thingClass.getAttributeHandle("int");
+		AttributeHandle realHandle = this.thingClass.getAttributeHandle("real");
+		AttributeHandle boolHandle = this.thingClass.getAttributeHandle("bool");
+		for(int i = 0; i < 14; i++){
+			State source = this.initialState();
+			String sourceDescription = source.getCompleteStateDescription();
+			ObjectInstance o = source.copy().getObject("thing0");
+			switch(i){
+				case 0: o.setValue("disc", "c"); break;
+				case 1: o.setValue("int", 7); break;
+				case 2: o.setValue("real", 8.5); break;
+				case 3: o.setValue("bool", false); break;
+				case 4: o.setValue("string", "changed"); break;
+				case 5: o.setValue("intArray", new int[]{9, 9}); break;
+				case 6: o.setValue("doubleArray", new double[]{9.5}); break;
+				case 7: o.setValue(intHandle, 7); break;
+				case 8: o.setValue(realHandle, 8.5); break;
+				case 9: o.setValue(boolHandle, false); break;
+				case 10: o.addRelationalTarget("rel", "thing2"); break;
+				case 11: o.addRelationalTarget("multiRel", "thing0"); break;
+				case 12: o.removeRelationalTarget("multiRel", "thing1"); break;
+				case 13: o.clearRelationalTargets("multiRel"); break;
+			}
+			Assert.assertEquals("setter " + i, sourceDescription, source.getCompleteStateDescription());
+			this.assertInitialValues(source.getObject("thing0"));
+		}
+	}
+
+	@Test
+	public void testConcurrentCopiesOfOneSource() {
+		final State source = this.initialState();
+		final String sourceDescription = source.getCompleteStateDescription();
+		final int nThreads = 4;
+		final int copiesPerThread = 200;
+		final State [][] copies = new State[nThreads][copiesPerThread];
+		final Throwable [] failure = new Throwable[1];
+
+		Thread [] threads = new Thread[nThreads];
+		for(int t = 0; t < nThreads; t++){
+			final int thread = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try{
+						for(int i = 0; i < copiesPerThread; i++){
+							copies[thread][i] = source.copy();
+						}
+						for(int i = 0; i < copiesPerThread; i += 2){
+							TestStateCopy.this.mutate(copies[thread][i].getObject("thing0"));
+						}
+					}
+					catch(Throwable e){
+						synchronized(failure){
+							failure[0] = e;
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread t : threads){
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		Assert.assertNull(failure[0]);
+
+		Assert.assertEquals(sourceDescription, source.getCompleteStateDescription());
+		this.mutate(source.getObject("thing0"));
+		this.assertMutatedValues(source.getObject("thing0"));
+		for(int t = 0; t < nThreads; t++){
+			for(int i = 0; i < copiesPerThread; i++){
+				if(i % 2 == 0){
+					this.assertMutatedValues(copies[t][i].getObject("thing0"));
+				}
+				else{
+					Assert.assertEquals(sourceDescription, copies[t][i].getCompleteStateDescription());
+					this.assertInitialValues(copies[t][i].getObject("thing0"));
+				}
+			}
+		}
+	}
+
+	protected State initialState() {
+		State s = new State();
+		for(int i = 0; i < 3; i++){
+			ObjectInstance o = new ObjectInstance(this.thingClass, "thing" + i);
+			o.setValue("disc", "b");
+			o.setValue("int", 3);
+			o.setValue("real", 2.5);
+			o.setValue("bool", true);
+			o.setValue("string", "original");
+			o.setValue("intArray", new int[]{1, 2});
+			o.setValue("doubleArray", new double[]{0.5, 1.5});
+			o.addRelationalTarget("rel", "thing1");
+			o.addRelationalTarget("multiRel", "thing1");
+			o.addRelationalTarget("multiRel", "thing2");
+			s.addObject(o);
+		}
+		return s;
+	}
+
+	protected void mutate(ObjectInstance o) {
+		o.setValue("disc", "c");
+		o.setValue(this.thingClass.getAttributeHandle("int"), 7);
+		o.setValue("real", 8.5);
+		o.setValue(this.thingClass.getAttributeHandle("bool"), false);
+		o.setValue("string", "changed");
+		o.setValue("intArray", new int[]{9, 9});
+		o.setValue("doubleArray", new double[]{9.5});
+		o.clearRelationalTargets("rel");
+		o.addRelationalTarget("rel", "thing2");
+		o.removeRelationalTarget("multiRel", "thing1");
+		o.addRelationalTarget("multiRel", "thing0");
+	}
+
+	protected void assertInitialValues(ObjectInstance o) {
+		Assert.assertEquals("b", o.getStringValForAttribute("disc"));
+		Assert.assertEquals(3, o.getDiscValForAttribute("int"));
+		Assert.assertEquals(2.5, o.getRealValForAttribute("real"), delta);
+		Assert.assertTrue(o.getBooleanValue("bool"));
+		Assert.assertEquals("original", o.getStringValForAttribute("string"));
+		Assert.assertTrue(Arrays.equals(new int[]{1, 2}, o.getIntArrayValue("intArray")));
+		Assert.assertTrue(Arrays.equals(new double[]{0.5, 1.5}, o.getDoubleArrayValue("doubleArray")));
+		Assert.assertEquals(1, o.getAllRelationalTargets("rel").size());
+		Assert.assertTrue(o.getAllRelationalTargets("rel").contains("thing1"));
+		Assert.assertEquals(2, o.getAllRelationalTargets("multiRel").size());
+		Assert.assertTrue(o.getAllRelationalTargets("multiRel").contains("thing1"));
+		Assert.assertTrue(o.getAllRelationalTargets("multiRel").contains("thing2"));
+	}
+
+	protected void assertMutatedValues(ObjectInstance o) {
+		Assert.assertEquals("c", o.getStringValForAttribute("disc"));
+		Assert.assertEquals(7, o.getDiscValForAttribute("int"));
+		Assert.assertEquals(8.5, o.getRealValForAttribute("real"), delta);
+		Assert.assertFalse(o.getBooleanValue("bool"));
+		Assert.assertEquals("changed", o.getStringValForAttribute("string"));
+		Assert.assertTrue(Arrays.equals(new int[]{9, 9}, o.getIntArrayValue("intArray")));
+		Assert.assertTrue(Arrays.equals(new double[]{9.5}, o.getDoubleArrayValue("doubleArray")));
+		Assert.assertEquals(1, o.getAllRelationalTargets("rel").size());
+		Assert.assertTrue(o.getAllRelationalTargets("rel").contains("thing2"));
+		Assert.assertEquals(2, o.getAllRelationalTargets("multiRel").size());
+		Assert.assertTrue(o.getAllRelationalTargets("multiRel").contains("thing0"));
+		Assert.assertTrue(o.getAllRelationalTargets("multiRel").contains("thing2"));
+	}
+
+	@After
+	public void teardown() {
+
+	}
+}
@@ -8,7 +8,13 @@ import org.junit.runners.Suite;
 	TestTesting.class,
 	TestGridWorld.class,
 	TestPlanning.class,
-	TestBlockDude.class
+	TestBlockDude.class,
+	TestStageGameSolvers.class,
+	TestGridGameMechanics.class,
+	TestStateCopy.class,
+	TestMonteCarloPolicyEvaluation.class,
+	TestMetricsRegistry.class,
+	TestDifferentiableVI.class
 })
 public class TestSuite {
 